@@ -0,0 +1,243 @@
+package es.uvigo.esei.dai.hybridserver;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import es.uvigo.esei.dai.hybridserver.http.HTTPHeaders;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponse;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponseStatus;
+
+/**
+ * Class that admits client tasks into the executor where they are run.
+ * At most maxConcurrency tasks run at the same time, and the tasks in excess wait in a
+ * bounded FIFO queue. When the queue is full, or a task has waited longer than the max.
+ * queue wait, the client is rejected at once with a pre-serialized 503 Service Unavailable
+ * response instead of being left waiting until it times out.
+ */
+public class AdmissionQueue implements AutoCloseable {
+
+    private final Executor executor;    // Executor where the admitted tasks run
+    private final int maxConcurrency;   // Max. number of tasks running at the same time
+    private final int capacity;         // Max. number of tasks waiting to run
+    private final long maxWaitNanos;    // Max. time a task can wait to run (0 means no limit)
+    private final byte[] rejectResponse;    // Pre-serialized 503 response
+
+    private final Deque<Admission> waiting = new ArrayDeque<>();   // Tasks waiting to run (guarded by this)
+    private int running;        // Number of tasks running (guarded by this)
+    private boolean closed;     // Whether the queue has been closed (guarded by this)
+    private final ScheduledExecutorService sweeper; // Rejects the tasks that waited too long
+
+    /**
+     * Constructs an AdmissionQueue.
+     *
+     * @param executor The executor where the admitted tasks run.
+     * @param maxConcurrency The max. number of tasks running at the same time.
+     * @param capacity The max. number of tasks waiting to run.
+     * @param maxWaitMillis The max. time (ms) a task can wait to run, or 0 for no limit.
+     * @param retryAfterSeconds The value of the Retry-After header sent to rejected clients.
+     */
+    public AdmissionQueue(Executor executor, int maxConcurrency, int capacity, long maxWaitMillis, int retryAfterSeconds) {
+        if (maxConcurrency <= 0 || capacity < 0 || maxWaitMillis < 0) {
+            throw new IllegalArgumentException("Invalid admission queue configuration");
+        }
+
+        this.executor = executor;
+        this.maxConcurrency = maxConcurrency;
+        this.capacity = capacity;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.rejectResponse = serviceUnavailable(retryAfterSeconds);
+
+        if (maxWaitMillis > 0) {
+            long period = Math.max(10, maxWaitMillis / 4);
+            this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "admission-queue-sweeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.sweeper.scheduleWithFixedDelay(this::rejectExpired, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            this.sweeper = null;
+        }
+    }
+
+    /**
+     * Submits a client task. It runs at once if there is room for it, waits in
+     * the queue if there is not, and is rejected if the queue is full.
+     *
+     * @param task The task to be run.
+     */
+    public void submit(ClientTask task) {
+        Admission admission = new Admission(task);
+
+        synchronized (this) {
+            if (this.closed) {
+                admission = null;
+            } else if (this.running < this.maxConcurrency) {
+                this.running++;
+            } else if (this.waiting.size() < this.capacity) {
+                this.waiting.addLast(admission);
+                return;
+            } else {
+                admission = null;
+            }
+        }
+
+        if (admission == null) {
+            task.reject(this.rejectResponse);
+        } else {
+            dispatch(admission);
+        }
+    }
+
+    /**
+     * Returns the number of tasks waiting to run.
+     *
+     * @return The number of tasks waiting to run.
+     */
+    public synchronized int getWaiting() {
+        return this.waiting.size();
+    }
+
+    /**
+     * Closes the queue, rejecting every task still waiting.
+     */
+    @Override
+    public void close() {
+        List<Admission> rejected;
+        synchronized (this) {
+            this.closed = true;
+            rejected = new ArrayList<>(this.waiting);
+            this.waiting.clear();
+        }
+
+        if (this.sweeper != null) {
+            this.sweeper.shutdownNow();
+        }
+
+        reject(rejected);
+    }
+
+    /**
+     * Runs an admitted task in the executor, admitting the next one when it finishes.
+     *
+     * @param admission The admitted task.
+     */
+    private void dispatch(Admission admission) {
+        try {
+            this.executor.execute(() -> {
+                try {
+                    admission.task.run();
+                } finally {
+                    release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The executor is being shut down
+            release();
+            admission.task.reject(this.rejectResponse);
+        }
+    }
+
+    /**
+     * Releases the slot of a finished task, handing it to the next task waiting in the queue.
+     */
+    private void release() {
+        List<Admission> expired = new ArrayList<>();
+        Admission next;
+
+        synchronized (this) {
+            next = pollExpired(expired) ? null : this.waiting.pollFirst();
+            if (next == null) {
+                this.running--;
+            }
+        }
+
+        reject(expired);
+        if (next != null) {
+            dispatch(next);
+        }
+    }
+
+    /**
+     * Rejects the tasks at the head of the queue that have waited longer than the max. queue wait.
+     */
+    private void rejectExpired() {
+        List<Admission> expired = new ArrayList<>();
+
+        synchronized (this) {
+            pollExpired(expired);
+        }
+
+        reject(expired);
+    }
+
+    /**
+     * Removes the expired tasks from the head of the queue. As the queue is FIFO,
+     * once a task has not expired neither have the ones behind it.
+     *
+     * @param expired The list where the expired tasks are added.
+     * @return true if the queue has been left empty, false otherwise.
+     */
+    private boolean pollExpired(List<Admission> expired) {
+        if (this.maxWaitNanos > 0) {
+            long now = System.nanoTime();
+            Admission head;
+            while ((head = this.waiting.peekFirst()) != null && now - head.queuedAt > this.maxWaitNanos) {
+                expired.add(this.waiting.pollFirst());
+            }
+        }
+
+        return this.waiting.isEmpty();
+    }
+
+    /**
+     * Rejects the provided tasks.
+     *
+     * @param admissions The tasks to be rejected.
+     */
+    private void reject(List<Admission> admissions) {
+        for (Admission admission : admissions) {
+            admission.task.reject(this.rejectResponse);
+        }
+    }
+
+    /**
+     * Serializes the 503 Service Unavailable response sent to the rejected clients.
+     *
+     * @param retryAfterSeconds The value of the Retry-After header.
+     * @return The serialized response.
+     */
+    private static byte[] serviceUnavailable(int retryAfterSeconds) {
+        HTTPResponse response = new HTTPResponse();
+        response.setVersion(HTTPHeaders.HTTP_1_1.getHeader());
+        response.setStatus(HTTPResponseStatus.S503);
+        response.putParameter("Retry-After", Integer.toString(retryAfterSeconds));
+        response.putParameter(HTTPHeaders.CONNECTION.getHeader(), "close");
+        response.putParameter(HTTPHeaders.CONTENT_TYPE.getHeader(), "text/plain");
+        response.setContent("503 Service Unavailable: The server is overloaded, please try again later.");
+
+        return response.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Class representing a task admitted into the queue.
+     */
+    private static class Admission {
+        private final ClientTask task;  // Task to be run
+        private final long queuedAt;    // Time (ns) the task was submitted
+
+        private Admission(ClientTask task) {
+            this.task = task;
+            this.queuedAt = System.nanoTime();
+        }
+    }
+
+}
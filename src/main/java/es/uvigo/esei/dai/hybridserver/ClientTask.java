@@ -0,0 +1,17 @@
+package es.uvigo.esei.dai.hybridserver;
+
+/**
+ * Interface representing the work done for a client once it is admitted by the {@link AdmissionQueue}.
+ * Besides running, a client task must be able to turn the client away when the server is overloaded.
+ */
+public interface ClientTask extends Runnable {
+
+    /**
+     * Rejects the client without processing its request, sending it the provided
+     * pre-serialized response and closing its connection.
+     *
+     * @param response The serialized HTTP response to be sent to the client.
+     */
+    void reject(byte[] response);
+
+}
@@ -1,133 +1,453 @@
 package es.uvigo.esei.dai.hybridserver;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import es.uvigo.esei.dai.hybridserver.controler.PagesController;
 
+import es.uvigo.esei.dai.hybridserver.http.HTTPHeaders;
 import es.uvigo.esei.dai.hybridserver.http.HTTPParseException;
 import es.uvigo.esei.dai.hybridserver.http.HTTPRequest;
+import es.uvigo.esei.dai.hybridserver.http.HTTPRequestDecoder;
 import es.uvigo.esei.dai.hybridserver.http.HTTPRequestMethod;
 import es.uvigo.esei.dai.hybridserver.http.HTTPResponse;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponseWriter;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponseStatus;
 
-import es.uvigo.esei.dai.hybridserver.handler.RequestHandler;
-import es.uvigo.esei.dai.hybridserver.handler.BaseRequestHandler;
-import es.uvigo.esei.dai.hybridserver.handler.GETRequestHandler;
-import es.uvigo.esei.dai.hybridserver.handler.POSTRequestHandler;
-import es.uvigo.esei.dai.hybridserver.handler.PUTRequestHandler;
-import es.uvigo.esei.dai.hybridserver.handler.DELETERequestHandler;
+import es.uvigo.esei.dai.hybridserver.handler.Router;
 
 /**
  * Class representing a client thread that handles HTTP requests.
  * This class implements Runnable and manages the lifecycle of a client connection,
- * including reading the request, processing it, and sending the response.
+ * reading requests, processing them, and sending the responses. Connections are
+ * persistent (keep-alive) until the client asks to close them, they stay idle for
+ * too long, or they reach the max. number of requests.
+ * A persistent connection holds its slot of the admission queue while it is open, so it gives
+ * it up when other clients are waiting for one: its responses ask the client to close the
+ * connection, and it is closed as soon as it is idle between requests.
+ * The bytes received are pushed to an {@link HTTPRequestDecoder}, which frames the requests.
+ * Clients sending "Expect: 100-continue" get the 100 Continue response only if the request
+ * can be routed; otherwise they get the error response and the connection is closed.
+ * Pipelined requests (sent back-to-back without waiting for the responses) are parsed
+ * from the same stream as they arrive: safe requests (GET and HEAD) are answered
+ * concurrently in the pipeline executor, and the responses are always written in
+ * request order. Any other request waits until the previous ones have been answered.
  */
-public class ClientThread implements Runnable{
+public class ClientThread implements ClientTask {
+
+    private static final int READ_BUFFER_SIZE = 8192;   // Size of the chunks read from the socket
+    private static final int IDLE_CHECK_INTERVAL = 200; // Max. time (ms) an idle connection waits before checking for waiting clients
+
+    // Interim response sent to the clients that wait for their request to be accepted before sending its content
+    static final byte[] CONTINUE_RESPONSE = (HTTPHeaders.HTTP_1_1.getHeader() + " " + HTTPResponseStatus.S100.getCode()
+        + " " + HTTPResponseStatus.S100.getStatus() + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+
+    // Response sent when a request fails unexpectedly, before the connection is closed
+    static final byte[] INTERNAL_ERROR_RESPONSE = errorResponse(HTTPResponseStatus.S500,
+        "The request could not be processed.");
 
     private Socket socket;  // Socket for client connection
     private PagesController controller; // Controller to manage pages
+    private Router router;  // Router of the requests to their handlers
+    private ConnectionSettings settings;    // Settings of the connection
+    private Set<Socket> openSockets;    // Sockets of the server open at the moment (may be null)
+    private Executor pipelineExecutor;  // Executor where pipelined requests are answered (may be null)
+    private AdmissionQueue admissionQueue;  // Queue where other clients wait for a slot (may be null)
 
     /**
-     * Constructs a ClientThread with the specified socket and pages controller.
+     * Constructs a ClientThread with the specified socket and pages controller,
+     * using the default router and connection settings.
      * 
      * @param socket The socket representing the client connection.
      * @param controller The PagesController to manage page operations.
      */
     public ClientThread(Socket socket, PagesController controller) {
+        this(socket, controller, Router.createDefault(), new ConnectionSettings(), null, null, null);
+    }
+
+    /**
+     * Constructs a ClientThread with the specified socket, pages controller, router and connection settings.
+     * 
+     * @param socket The socket representing the client connection.
+     * @param controller The PagesController to manage page operations.
+     * @param router The router of the requests to their handlers.
+     * @param settings The settings of the connection.
+     * @param openSockets The set where the socket is registered while it is being served,
+     * so the server can close it on shutdown (may be null).
+     * @param pipelineExecutor The executor where pipelined requests are answered concurrently
+     * (may be null to answer them one by one).
+     * @param admissionQueue The queue where the client was admitted, so the persistent connection is
+     * closed when other clients are waiting (may be null to keep it open until its idle timeout).
+     */
+    public ClientThread(Socket socket, PagesController controller, Router router, ConnectionSettings settings,
+        Set<Socket> openSockets, Executor pipelineExecutor, AdmissionQueue admissionQueue) {
         this.socket = socket;
         this.controller = controller;
+        this.router = router;
+        this.settings = settings;
+        this.openSockets = openSockets;
+        this.pipelineExecutor = pipelineExecutor;
+        this.admissionQueue = admissionQueue;
     }
 
     /**
      * The main execution method for the client thread.
      * This method handles the entire lifecycle of a client connection,
-     * including reading the request, processing it, and sending the response.
+     * reading requests, processing them, and sending the responses until the connection is closed.
      */
     @Override
     public void run() {
+        if (this.openSockets != null) {
+            this.openSockets.add(socket);
+        }
+
         // Create input and output streams
         try (InputStream is = socket.getInputStream();
             OutputStream os = socket.getOutputStream()) {
 
-            // Wrap with inputStreamReader to translate bytes to chars, then wrap it with bufferedReader for efficiency
-            BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
-            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+            // The bytes received are decoded as they arrive, so requests are framed by their length in bytes
+            HTTPRequestDecoder decoder = this.settings.createDecoder();
+            byte[] chunk = new byte[READ_BUFFER_SIZE];
+            HTTPResponseWriter writer = new HTTPResponseWriter(os);
+
+            // Idle persistent connections are closed after the keep-alive timeout, checking for waiting clients meanwhile
+            socket.setSoTimeout(Math.min(IDLE_CHECK_INTERVAL, this.settings.getKeepAliveTimeout()));
+
+            // Responses of the pipelined requests, in request order
+            Deque<CompletableFuture<HTTPResponse>> pipeline = new ArrayDeque<>();
 
             try {
-            // Parse the HTTP request
-            HTTPRequest request = new HTTPRequest(reader);
-            // Process the request
-            HTTPRequestMethod method = request.getMethod();
-            
-            RequestHandler handler = null;
-            switch (method) {
-                case GET:
-                handler = new GETRequestHandler();
-                break;
-
-                case POST:
-                handler = new POSTRequestHandler();
-                break;
-                
-                case DELETE:
-                handler = new DELETERequestHandler();
-                break;
-                
-                case PUT:
-                handler = new PUTRequestHandler();
-                break;
-                
-                // Handle other methods (Not implemented for the moment)
-                case OPTIONS:
-                case TRACE:
-                case CONNECT:
-                case HEAD:
-                    handler = new BaseRequestHandler();
-                break;
-
-                // Handle unknown method
-                default:
-                    handler = new BaseRequestHandler();
-                break;
-            }
+                int served = 0;
+                boolean keepAlive = true;
+
+                while (keepAlive) {
+                    HTTPRequestDecoder.Status status = decoder.decode();
+
+                    if (status == HTTPRequestDecoder.Status.NEED_MORE) {
+                        if (decoder.isContinueExpected()) {
+                            // The client waits for the request to be accepted before sending its content
+                            sendPipelinedResponses(pipeline, 0, writer);
+
+                            HTTPResponse error = this.router.check(decoder.getHead());
+                            if (error != null) {
+                                this.settings.putConnectionHeaders(error, false, served + 1);
+                                sendHTTPResponse(error, writer);
+                                break;
+                            }
+                            os.write(CONTINUE_RESPONSE);
+                            os.flush();
+                            decoder.continueSent();
+
+                        } else if (!hasInput(is)) {
+                            // Answer every pending request before waiting for the client
+                            sendPipelinedResponses(pipeline, 0, writer);
+                        }
+
+                        int read = readChunk(is, chunk, pipeline.isEmpty() && !decoder.hasBufferedBytes());
+                        if (read == -1) {
+                            break;
+                        }
+                        decoder.feed(chunk, 0, read);
+                        continue;
+                    }
+
+                    // Parse the HTTP request
+                    HTTPRequest request;
+                    try {
+                        if (status == HTTPRequestDecoder.Status.ERROR) {
+                            throw decoder.getError();
+                        }
+                        request = decoder.takeRequest();
+                    } catch (HTTPParseException e) {
+                        //Handle HTTParseException
+                        System.err.println("HTTP Parse Exception: " + e.getMessage());
+                        sendPipelinedResponses(pipeline, 0, writer);
+                        os.write(parseErrorResponse(e));
+                        os.flush();
+                        break;
+                    }
 
-            HTTPResponse response = handler.handle(request, this.controller);
-            // Send the response back to the client
-            sendHTTPResponse(response, writer);
+                    served++;
+                    // The slot of the connection is given up if other clients are waiting for one
+                    keepAlive = this.settings.isKeepAlive(request, served) && !hasWaitingClients();
+
+                    if (!isSafe(request)) {
+                        // The previous requests must be answered before this one changes anything
+                        sendPipelinedResponses(pipeline, 0, writer);
+                        sendHTTPResponse(respond(request, keepAlive, served), writer);
+
+                    } else if (keepAlive && hasPipelinedRequest(decoder, is)) {
+                        // More requests are waiting: answer this one concurrently while they are parsed
+                        pipeline.addLast(respondAsync(request, keepAlive, served));
+                        sendPipelinedResponses(pipeline, this.settings.getPipelineDepth() - 1, writer);
+
+                    } else {
+                        HTTPResponse response = respond(request, keepAlive, served);
+                        sendPipelinedResponses(pipeline, 0, writer);
+                        sendHTTPResponse(response, writer);
+                    }
+                }
+
+                sendPipelinedResponses(pipeline, 0, writer);
 
-            } catch (HTTPParseException e) {
-            //Handle HTTParseException
-                System.err.println("HTTP Parse Exception: " + e.getMessage());
             } catch (IOException e) {
             //Handle IOException
                 System.err.println("IO Exception: " + e.getMessage());
                 e.printStackTrace();
+            } catch (RuntimeException e) {
+                // Unexpected error: the client is answered, but the connection cannot be trusted anymore
+                System.err.println("Error processing request: " + e);
+                e.printStackTrace();
+                sendInternalError(pipeline, writer, os);
             }
             
 
         } catch (IOException e) {
             System.err.println("Error in client thread: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            if (this.openSockets != null) {
+                this.openSockets.remove(socket);
+            }
+        }
+
+    }
+
+    /**
+     * Reads the next bytes sent by the client, blocking until they arrive.
+     * 
+     * @param is The input stream of the connection.
+     * @param chunk The array where the bytes are read.
+     * @param idle Whether the connection is between requests, so it can be closed if other clients are waiting.
+     * @return The number of bytes read, or -1 if the client closed the connection, it has been
+     * idle for longer than the keep-alive timeout, or it is idle and other clients are waiting.
+     * @throws IOException If an I/O error occurs.
+     */
+    private int readChunk(InputStream is, byte[] chunk, boolean idle) throws IOException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.settings.getKeepAliveTimeout());
+
+        while (true) {
+            try {
+                return is.read(chunk);
+            } catch (SocketTimeoutException e) {
+                if (System.nanoTime() - deadline >= 0 || (idle && hasWaitingClients())) {
+                    return -1;
+                }
+            } catch (SocketException e) {
+                // The server closed the connection while it was idle
+                if (socket.isClosed()) {
+                    return -1;
+                }
+                throw e;
+            }
         }
+    }
+
+    /**
+     * Checks whether other clients are waiting in the admission queue for the slot of a connection.
+     * 
+     * @return true if there are clients waiting, false otherwise.
+     */
+    private boolean hasWaitingClients() {
+        return this.admissionQueue != null && this.admissionQueue.getWaiting() > 0;
+    }
+
+    /**
+     * Checks whether the client has already sent (part of) another request, without blocking.
+     * 
+     * @param decoder The decoder of the connection.
+     * @param is The input stream of the connection.
+     * @return true if there are bytes of another request available, false otherwise.
+     */
+    private boolean hasPipelinedRequest(HTTPRequestDecoder decoder, InputStream is) {
+        return decoder.hasBufferedBytes() || hasInput(is);
+    }
+
+    /**
+     * Checks whether there are bytes that can be read without blocking.
+     * 
+     * @param is The input stream of the connection.
+     * @return true if there are bytes available, false otherwise.
+     */
+    private boolean hasInput(InputStream is) {
+        try {
+            return is.available() > 0;
+        } catch (IOException e) {
+            // readChunk will report the state of the connection
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether a request is safe, so it can be answered concurrently with other requests.
+     * 
+     * @param request The HTTP request.
+     * @return true if the request is safe (GET or HEAD), false otherwise.
+     */
+    private boolean isSafe(HTTPRequest request) {
+        return request.getMethod() == HTTPRequestMethod.GET || request.getMethod() == HTTPRequestMethod.HEAD;
+    }
+
+    /**
+     * Answers a request, adding the headers of the connection to the response.
+     * 
+     * @param request The HTTP request to be answered.
+     * @param keepAlive Whether the connection is kept open after the response.
+     * @param served The number of requests received in the connection, including this one.
+     * @return The HTTP response generated for the request.
+     */
+    private HTTPResponse respond(HTTPRequest request, boolean keepAlive, int served) {
+        HTTPResponse response = this.router.handle(request, this.controller);
+        this.settings.putConnectionHeaders(response, keepAlive, served);
+
+        return response;
+    }
+
+    /**
+     * Answers a request in the pipeline executor. If there is no executor, or it does not
+     * accept more tasks, the request is answered in the current thread.
+     * 
+     * @param request The HTTP request to be answered.
+     * @param keepAlive Whether the connection is kept open after the response.
+     * @param served The number of requests received in the connection, including this one.
+     * @return The future HTTP response generated for the request.
+     */
+    private CompletableFuture<HTTPResponse> respondAsync(HTTPRequest request, boolean keepAlive, int served) {
+        if (this.pipelineExecutor != null) {
+            try {
+                return CompletableFuture.supplyAsync(() -> respond(request, keepAlive, served), this.pipelineExecutor);
+            } catch (RejectedExecutionException e) {
+                // The server is being shut down
+            }
+        }
+
+        return CompletableFuture.completedFuture(respond(request, keepAlive, served));
+    }
+
+    /**
+     * Sends the responses of the pipelined requests in request order, waiting for them if needed,
+     * until only the specified number of them is left pending. The writer is flushed once, after
+     * the last response, so consecutive responses share the same packets.
+     * 
+     * @param pipeline The responses of the pipelined requests, in request order.
+     * @param pending The number of responses that can be left pending.
+     * @param writer The HTTPResponseWriter to write the responses to.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void sendPipelinedResponses(Deque<CompletableFuture<HTTPResponse>> pipeline, int pending,
+        HTTPResponseWriter writer) throws IOException {
+        if (pipeline.size() <= pending) {
+            return;
+        }
+
+        while (pipeline.size() > pending) {
+            writer.write(pipeline.pollFirst().join());
+        }
+        writer.flush();
+    }
+
+    /**
+     * Sends the responses of the pipelined requests answered before an unexpected error, followed by
+     * a 500 Internal Server Error response for the first request left unanswered. Any other request
+     * is discarded, as the connection is closed after it.
+     * 
+     * @param pipeline The responses of the pipelined requests, in request order.
+     * @param writer The HTTPResponseWriter to write the responses to.
+     * @param os The output stream of the connection.
+     */
+    private void sendInternalError(Deque<CompletableFuture<HTTPResponse>> pipeline, HTTPResponseWriter writer,
+        OutputStream os) {
+        try {
+            while (!pipeline.isEmpty()) {
+                final HTTPResponse response;
+                try {
+                    response = pipeline.pollFirst().join();
+                } catch (RuntimeException e) {
+                    break;
+                }
+                writer.write(response);
+            }
+            pipeline.clear();
+            writer.flush();
+
+            os.write(INTERNAL_ERROR_RESPONSE);
+            os.flush();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error sending error response: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rejects the client without reading its request, sending it the provided response.
+     * 
+     * @param response The serialized HTTP response to be sent to the client.
+     */
+    @Override
+    public void reject(byte[] response) {
+        try (OutputStream os = socket.getOutputStream()) {
+            os.write(response);
+            os.flush();
+        } catch (IOException e) {
+            System.err.println("Error rejecting client: " + e.getMessage());
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                System.err.println("Error closing client socket: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Creates the response sent to a client whose request could not be parsed.
+     * The connection is closed after it, as the rest of the received bytes cannot be trusted.
+     * 
+     * @param e The error found in the request.
+     * @return The serialized HTTP response.
+     */
+    static byte[] parseErrorResponse(HTTPParseException e) {
+        return errorResponse(e.getStatus(), e.getMessage());
+    }
+
+    /**
+     * Creates an error response that closes the connection.
+     * 
+     * @param status The status of the response.
+     * @param message The description of the error.
+     * @return The serialized HTTP response.
+     */
+    static byte[] errorResponse(HTTPResponseStatus status, String message) {
+        HTTPResponse response = new HTTPResponse();
+        response.setVersion(HTTPHeaders.HTTP_1_1.getHeader());
+        response.setStatus(status);
+        response.putParameter(HTTPHeaders.CONNECTION.getHeader(), "close");
+        response.putParameter(HTTPHeaders.CONTENT_TYPE.getHeader(), "text/plain");
+        response.setContent(status.getCode() + " " + status.getStatus() + ": " + message);
 
+        return response.toString().getBytes(StandardCharsets.UTF_8);
     }
 
     /**
      * Sends the HTTP response to the client.
      * 
      * @param response The HTTP response to be sent.
-     * @param writer The BufferedWriter to write the response to.
+     * @param writer The HTTPResponseWriter to write the response to.
      * @throws IOException If an I/O error occurs.
      */
-    private void sendHTTPResponse(HTTPResponse response, BufferedWriter writer) throws IOException {
-        response.print(writer);
+    private void sendHTTPResponse(HTTPResponse response, HTTPResponseWriter writer) throws IOException {
+        writer.write(response);
         writer.flush();
     }
 
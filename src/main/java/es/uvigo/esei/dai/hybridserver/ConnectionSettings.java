@@ -0,0 +1,174 @@
+package es.uvigo.esei.dai.hybridserver;
+
+import es.uvigo.esei.dai.hybridserver.http.HTTPHeaders;
+import es.uvigo.esei.dai.hybridserver.http.HTTPRequest;
+import es.uvigo.esei.dai.hybridserver.http.HTTPRequestDecoder;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponse;
+
+/**
+ * Class holding the settings that control how client connections are handled,
+ * shared by every connection engine.
+ */
+public class ConnectionSettings {
+
+    private int keepAliveTimeout = 5000;    // Max. time (ms) an idle persistent connection is kept open
+    private int maxRequests = 100;          // Max. number of requests served per connection
+    private int pipelineDepth = 16;         // Max. number of pipelined requests answered concurrently per connection
+    private int maxHeadSize = 64 * 1024;    // Max. size in bytes of the head of a request
+    private int maxContentLength = 8 * 1024 * 1024; // Max. size in bytes of the content of a request
+
+    /**
+     * Returns the max. time (ms) an idle persistent connection is kept open.
+     *
+     * @return The keep-alive timeout in milliseconds.
+     */
+    public int getKeepAliveTimeout() {
+        return this.keepAliveTimeout;
+    }
+
+    /**
+     * Sets the max. time (ms) an idle persistent connection is kept open.
+     *
+     * @param keepAliveTimeout The keep-alive timeout in milliseconds.
+     * @throws IllegalArgumentException if the timeout is not positive.
+     */
+    public void setKeepAliveTimeout(int keepAliveTimeout) {
+        if (keepAliveTimeout <= 0) {
+            throw new IllegalArgumentException("Keep-alive timeout must be positive");
+        }
+        this.keepAliveTimeout = keepAliveTimeout;
+    }
+
+    /**
+     * Returns the max. number of requests served per connection.
+     *
+     * @return The max. number of requests per connection.
+     */
+    public int getMaxRequests() {
+        return this.maxRequests;
+    }
+
+    /**
+     * Sets the max. number of requests served per connection. A value of 1 disables persistent connections.
+     *
+     * @param maxRequests The max. number of requests per connection.
+     * @throws IllegalArgumentException if the value is not positive.
+     */
+    public void setMaxRequests(int maxRequests) {
+        if (maxRequests <= 0) {
+            throw new IllegalArgumentException("Max. requests per connection must be positive");
+        }
+        this.maxRequests = maxRequests;
+    }
+
+    /**
+     * Returns the max. number of pipelined requests of a connection that are answered concurrently.
+     *
+     * @return The max. pipeline depth.
+     */
+    public int getPipelineDepth() {
+        return this.pipelineDepth;
+    }
+
+    /**
+     * Sets the max. number of pipelined requests of a connection that are answered concurrently.
+     * A value of 1 answers the pipelined requests one by one.
+     *
+     * @param pipelineDepth The max. pipeline depth.
+     * @throws IllegalArgumentException if the value is not positive.
+     */
+    public void setPipelineDepth(int pipelineDepth) {
+        if (pipelineDepth <= 0) {
+            throw new IllegalArgumentException("Pipeline depth must be positive");
+        }
+        this.pipelineDepth = pipelineDepth;
+    }
+
+    /**
+     * Returns the max. size in bytes of the head of a request (start line and headers).
+     *
+     * @return The max. head size in bytes.
+     */
+    public int getMaxHeadSize() {
+        return this.maxHeadSize;
+    }
+
+    /**
+     * Sets the max. size in bytes of the head of a request (start line and headers).
+     *
+     * @param maxHeadSize The max. head size in bytes.
+     * @throws IllegalArgumentException if the value is not positive.
+     */
+    public void setMaxHeadSize(int maxHeadSize) {
+        if (maxHeadSize <= 0) {
+            throw new IllegalArgumentException("Max. head size must be positive");
+        }
+        this.maxHeadSize = maxHeadSize;
+    }
+
+    /**
+     * Returns the max. size in bytes of the content of a request.
+     *
+     * @return The max. content length in bytes.
+     */
+    public int getMaxContentLength() {
+        return this.maxContentLength;
+    }
+
+    /**
+     * Sets the max. size in bytes of the content of a request. Requests announcing a longer
+     * content are rejected with a 413 response before the content is received.
+     *
+     * @param maxContentLength The max. content length in bytes.
+     * @throws IllegalArgumentException if the value is negative.
+     */
+    public void setMaxContentLength(int maxContentLength) {
+        if (maxContentLength < 0) {
+            throw new IllegalArgumentException("Max. content length must not be negative");
+        }
+        this.maxContentLength = maxContentLength;
+    }
+
+    /**
+     * Creates the decoder of the requests received in a connection.
+     *
+     * @return A new request decoder with the size limits of these settings.
+     */
+    public HTTPRequestDecoder createDecoder() {
+        return new HTTPRequestDecoder(this.maxHeadSize, this.maxContentLength);
+    }
+
+    /**
+     * Decides whether the connection should be kept open after answering a request.
+     * HTTP/1.1 connections are persistent unless the client sends "Connection: close"
+     * or the connection has already served the max. number of requests.
+     *
+     * @param request The last request received in the connection.
+     * @param served The number of requests served in the connection, including the last one.
+     * @return true if the connection should be kept open, false otherwise.
+     */
+    public boolean isKeepAlive(HTTPRequest request, int served) {
+        String connection = request.getHeader(HTTPHeaders.CONNECTION.getHeader());
+
+        return served < this.maxRequests
+            && (connection == null || !connection.equalsIgnoreCase("close"));
+    }
+
+    /**
+     * Adds the headers announcing to the client whether the connection is kept open.
+     *
+     * @param response The response to be sent.
+     * @param keepAlive Whether the connection is kept open after the response.
+     * @param served The number of requests served in the connection, including the last one.
+     */
+    public void putConnectionHeaders(HTTPResponse response, boolean keepAlive, int served) {
+        if (keepAlive) {
+            response.putParameter(HTTPHeaders.CONNECTION.getHeader(), "keep-alive");
+            response.putParameter("Keep-Alive",
+                "timeout=" + Math.max(1, this.keepAliveTimeout / 1000) + ", max=" + (this.maxRequests - served));
+        } else {
+            response.putParameter(HTTPHeaders.CONNECTION.getHeader(), "close");
+        }
+    }
+
+}
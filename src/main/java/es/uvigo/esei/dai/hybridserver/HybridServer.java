@@ -18,24 +18,48 @@
 package es.uvigo.esei.dai.hybridserver;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.HashMap;
 import java.util.concurrent.ExecutorService;
 
+import es.uvigo.esei.dai.hybridserver.controler.CachingPagesController;
+import es.uvigo.esei.dai.hybridserver.controler.CoalescingPagesController;
 import es.uvigo.esei.dai.hybridserver.controler.DefaultPagesController;
+import es.uvigo.esei.dai.hybridserver.controler.NegativeLookupPagesController;
+import es.uvigo.esei.dai.hybridserver.controler.PagesController;
+import es.uvigo.esei.dai.hybridserver.handler.PageCompressor;
+import es.uvigo.esei.dai.hybridserver.handler.Router;
+import es.uvigo.esei.dai.hybridserver.model.dao.ConnectionPool;
+import es.uvigo.esei.dai.hybridserver.model.dao.ConnectionPoolSettings;
+import es.uvigo.esei.dai.hybridserver.model.dao.DAOException;
 import es.uvigo.esei.dai.hybridserver.model.dao.PageDAO;
 import es.uvigo.esei.dai.hybridserver.model.dao.PageDBDAO;
 import es.uvigo.esei.dai.hybridserver.model.dao.PageMapDAO;
 
 public class HybridServer implements AutoCloseable {
   
-  private Thread serverThread;
+  private List<Thread> serverThreads;     // Acceptor threads
+  private List<ServerSocket> serverSockets;   // Listening sockets of the blocking engine
+  private List<NIOServer> nioServers;     // Selector loops of the nio engine
   private ExecutorService threadPool;
+  private ExecutorService pipelinePool;   // Executor where pipelined requests are answered concurrently
+  private AdmissionQueue admissionQueue;
+  private ExecutorService streamPool;     // Executor where the streamed responses of the nio engine are generated
+  private AdmissionQueue streamQueue;     // Queue where the streamed responses wait to be generated
+  private final ConnectionSettings connectionSettings = new ConnectionSettings();
+  private Router router = Router.createDefault();   // Routes of the server, built once
+  private final Set<Socket> openSockets = ConcurrentHashMap.newKeySet();  // Client sockets being served
   private final static int DEFAULT_NUM_CLIENTS = 50;
   private boolean stop;
   
@@ -44,10 +68,26 @@ public class HybridServer implements AutoCloseable {
   private String DB_URL;
   private String DB_USERNAME;
   private String DB_PASSWORD;
-
+  private String SERVER_ENGINE;   // Connection engine: "blocking" (one thread per connection) or "nio" (selector)
+  private String SERVER_EXECUTOR; // Client executor: "platform" (fixed thread pool) or "virtual" (virtual threads)
+  private int QUEUE_CAPACITY;     // Max. number of clients waiting to be served
+  private long QUEUE_MAX_WAIT;    // Max. time (ms) a client waits to be served (0 means no limit)
+  private int RETRY_AFTER;        // Seconds rejected clients are told to wait before retrying
+  private int PIPELINE_THREADS;   // Max. number of pipelined requests answered at the same time
+  private int STREAM_THREADS;     // Max. number of streamed responses generated at the same time (nio engine)
+  private int ACCEPTORS;          // Number of listening sockets sharing the port (SO_REUSEPORT)
+  private int COMPRESSION_MIN_SIZE = PageCompressor.DEFAULT_MIN_SIZE; // Min. size (bytes) of the compressed pages
+  private long COMPRESSION_CACHE_BYTES = PageCompressor.DEFAULT_CACHE_BYTES; // Max. size (bytes) of the cached compressed pages
+  private long CACHE_MAX_BYTES;   // Max. size (bytes) of the cached pages (0 disables the cache)
+  private int CACHE_MAX_MISSES;   // Max. number of missing pages remembered (0 disables the filter of missing pages)
+  private final static int UUID_BATCH_SIZE = 1000;  // Number of UUIDs read at once to build the filter of pages
+
+  private final ConnectionPoolSettings poolSettings = new ConnectionPoolSettings();
+  private ConnectionPool pool;            // Pool of database connections, or null if the pages are in memory
   private PageDAO dao;
   private Map<String, String> pages;
-  private DefaultPagesController controller;
+  private PagesController controller;
+  private NegativeLookupPagesController negativeLookups;  // Filter of missing pages, or null if disabled
 
   /**
    * Initializes the server with default parameters.
@@ -63,6 +103,10 @@ public class HybridServer implements AutoCloseable {
     this.controller = new DefaultPagesController(dao);
 
     this.threadPool = Executors.newFixedThreadPool(DEFAULT_NUM_CLIENTS);
+    this.pipelinePool = createPipelineExecutor();
+    this.admissionQueue = createAdmissionQueue(DEFAULT_NUM_CLIENTS);
+    this.streamPool = createStreamExecutor();
+    this.streamQueue = createStreamQueue();
 
   }
 
@@ -86,6 +130,10 @@ public class HybridServer implements AutoCloseable {
     this.controller = new DefaultPagesController(dao);
 
     this.threadPool = Executors.newFixedThreadPool(DEFAULT_NUM_CLIENTS);
+    this.pipelinePool = createPipelineExecutor();
+    this.admissionQueue = createAdmissionQueue(DEFAULT_NUM_CLIENTS);
+    this.streamPool = createStreamExecutor();
+    this.streamQueue = createStreamQueue();
   }
 
   /**
@@ -101,15 +149,74 @@ public class HybridServer implements AutoCloseable {
     this.DB_URL = properties.getProperty("db.url", "jdbc:mysql://localhost:3306/hstestdb");
     this.DB_USERNAME = properties.getProperty("db.user", "hsdb");
     this.DB_PASSWORD = properties.getProperty("db.password", "hsdbpass");
+    this.SERVER_ENGINE = validateEngine(properties.getProperty("server.engine", "blocking"));
+    this.SERVER_EXECUTOR = validateExecutor(properties.getProperty("server.executor", "platform"));
+    this.QUEUE_CAPACITY = Integer.parseInt(properties.getProperty("server.queue.capacity", String.valueOf(Integer.MAX_VALUE)));
+    this.QUEUE_MAX_WAIT = Long.parseLong(properties.getProperty("server.queue.maxWait", "0"));
+    this.RETRY_AFTER = Integer.parseInt(properties.getProperty("server.retryAfter", "1"));
+    this.connectionSettings.setKeepAliveTimeout(Integer.parseInt(
+      properties.getProperty("http.keepAlive.timeout", String.valueOf(connectionSettings.getKeepAliveTimeout()))));
+    this.connectionSettings.setMaxRequests(Integer.parseInt(
+      properties.getProperty("http.keepAlive.maxRequests", String.valueOf(connectionSettings.getMaxRequests()))));
+    this.connectionSettings.setPipelineDepth(Integer.parseInt(
+      properties.getProperty("http.pipeline.maxDepth", String.valueOf(connectionSettings.getPipelineDepth()))));
+    this.connectionSettings.setMaxHeadSize(Integer.parseInt(
+      properties.getProperty("http.maxHeadSize", String.valueOf(connectionSettings.getMaxHeadSize()))));
+    this.connectionSettings.setMaxContentLength(Integer.parseInt(
+      properties.getProperty("http.maxContentLength", String.valueOf(connectionSettings.getMaxContentLength()))));
+    this.PIPELINE_THREADS = Integer.parseInt(properties.getProperty("server.pipeline.threads",
+      String.valueOf(Runtime.getRuntime().availableProcessors())));
+    this.STREAM_THREADS = Integer.parseInt(properties.getProperty("server.stream.threads",
+      String.valueOf(Runtime.getRuntime().availableProcessors())));
+    this.ACCEPTORS = Integer.parseInt(properties.getProperty("server.acceptors", "1"));
+    this.COMPRESSION_MIN_SIZE = Integer.parseInt(properties.getProperty("http.compression.minSize",
+      String.valueOf(PageCompressor.DEFAULT_MIN_SIZE)));
+    this.COMPRESSION_CACHE_BYTES = Long.parseLong(properties.getProperty("http.compression.cacheBytes",
+      String.valueOf(PageCompressor.DEFAULT_CACHE_BYTES)));
+    this.CACHE_MAX_BYTES = Long.parseLong(properties.getProperty("cache.maxBytes",
+      String.valueOf(CachingPagesController.DEFAULT_MAX_BYTES)));
+    this.CACHE_MAX_MISSES = Integer.parseInt(properties.getProperty("cache.negative.maxEntries",
+      String.valueOf(NegativeLookupPagesController.DEFAULT_MAX_MISSES)));
+    this.poolSettings.setMinSize(Integer.parseInt(
+      properties.getProperty("db.pool.minSize", String.valueOf(poolSettings.getMinSize()))));
+    this.poolSettings.setMaxSize(Integer.parseInt(
+      properties.getProperty("db.pool.maxSize", String.valueOf(poolSettings.getMaxSize()))));
+    this.poolSettings.setBorrowTimeout(Long.parseLong(
+      properties.getProperty("db.pool.borrowTimeout", String.valueOf(poolSettings.getBorrowTimeout()))));
+    this.poolSettings.setIdleTimeout(Long.parseLong(
+      properties.getProperty("db.pool.idleTimeout", String.valueOf(poolSettings.getIdleTimeout()))));
+    this.poolSettings.setMaxLifetime(Long.parseLong(
+      properties.getProperty("db.pool.maxLifetime", String.valueOf(poolSettings.getMaxLifetime()))));
+    this.poolSettings.setValidationInterval(Long.parseLong(
+      properties.getProperty("db.pool.validationInterval", String.valueOf(poolSettings.getValidationInterval()))));
+    this.poolSettings.setStatementCacheSize(Integer.parseInt(
+      properties.getProperty("db.pool.statementCacheSize", String.valueOf(poolSettings.getStatementCacheSize()))));
+    this.router = Router.createDefault(new PageCompressor(COMPRESSION_MIN_SIZE, COMPRESSION_CACHE_BYTES));
 
     // Initialize default pages
     //initDefaultPages();
 
     // Initialize the DAO (DB-based DAO)
-    this.dao = new PageDBDAO(DB_URL, DB_USERNAME, DB_PASSWORD);
-    this.controller = new DefaultPagesController(dao);
+    // Connections are reused across requests instead of opened for each query
+    this.pool = new ConnectionPool(DB_URL, DB_USERNAME, DB_PASSWORD, poolSettings);
+    this.dao = new PageDBDAO(pool);
+    // Concurrent lookups of the same page share a single query
+    this.controller = new CoalescingPagesController(new DefaultPagesController(dao));
+    if (CACHE_MAX_BYTES > 0) {
+      // Most requests are reads, so the pages are cached in front of the database
+      this.controller = new CachingPagesController(this.controller, CACHE_MAX_BYTES);
+    }
+    if (CACHE_MAX_MISSES > 0) {
+      // Requests for missing pages are answered without reaching the database
+      this.negativeLookups = new NegativeLookupPagesController(this.controller, CACHE_MAX_MISSES);
+      this.controller = this.negativeLookups;
+    }
 
-    this.threadPool = Executors.newFixedThreadPool(NUM_CLIENTS);
+    this.threadPool = createClientExecutor(NUM_CLIENTS);
+    this.pipelinePool = createPipelineExecutor();
+    this.admissionQueue = createAdmissionQueue(NUM_CLIENTS);
+    this.streamPool = createStreamExecutor();
+    this.streamQueue = createStreamQueue();
 
   }
 
@@ -118,31 +225,63 @@ public class HybridServer implements AutoCloseable {
   }
 
   public void start() {
-    this.serverThread = new Thread() {
-      @Override
-      public void run() {
-        try (final ServerSocket serverSocket = new ServerSocket(SERVICE_PORT)) {
+    this.stop = false;
+    this.serverThreads = new ArrayList<>();
 
-          
-          while (true) {
-            Socket socket = serverSocket.accept();
-              if (stop)
-                break;
-              
-              infoParams();
-              
-              threadPool.execute(new ClientThread(socket, controller));
+    final int acceptors = resolveAcceptors();
+    final boolean reusePort = acceptors > 1;
 
+    loadPageFilter();
 
-          }
-        } catch (IOException e) {
-          e.printStackTrace();
+    if (SERVER_ENGINE.equals("nio")) {
+      infoParams();
+
+      // Every selector loop has its own listening channel, bound here as the sockets of the blocking engine
+      this.nioServers = new ArrayList<>();
+      try {
+        for (int i = 0; i < acceptors; i++) {
+          NIOServer nioServer = new NIOServer(SERVICE_PORT, reusePort, controller, router, admissionQueue, streamQueue,
+            connectionSettings);
+          nioServer.open();
+          this.nioServers.add(nioServer);
         }
+      } catch (IOException e) {
+        for (NIOServer nioServer : this.nioServers) {
+          nioServer.close();
+        }
+        this.nioServers = null;
+        throw new RuntimeException(e);
       }
-    };
 
-    this.stop = false;
-    this.serverThread.start();
+      for (int i = 0; i < acceptors; i++) {
+        this.serverThreads.add(new Thread(this.nioServers.get(i), "nio-acceptor-" + i));
+      }
+    } else {
+      // The sockets are bound here, so the server accepts connections as soon as start returns
+      this.serverSockets = new ArrayList<>();
+      try {
+        for (int i = 0; i < acceptors; i++) {
+          this.serverSockets.add(openServerSocket(reusePort));
+        }
+      } catch (IOException e) {
+        closeServerSockets();
+        throw new RuntimeException(e);
+      }
+
+      for (int i = 0; i < acceptors; i++) {
+        final ServerSocket serverSocket = this.serverSockets.get(i);
+        this.serverThreads.add(new Thread("acceptor-" + i) {
+          @Override
+          public void run() {
+            acceptClients(serverSocket);
+          }
+        });
+      }
+    }
+
+    for (Thread serverThread : this.serverThreads) {
+      serverThread.start();
+    }
   }
 
   @Override
@@ -150,22 +289,43 @@ public class HybridServer implements AutoCloseable {
     // TODO Si es necesario, añadir el código para liberar otros recursos.
     this.stop = true;
 
-    try (Socket socket = new Socket("localhost", SERVICE_PORT)) {
-      // Esta conexión se hace, simplemente, para "despertar" el hilo servidor
-    } catch (IOException e) {
-      throw new RuntimeException(e);
+    if (this.nioServers != null) {
+      // The selector threads are woken up directly
+      for (NIOServer nioServer : this.nioServers) {
+        nioServer.stop();
+      }
+      this.nioServers = null;
+    } else {
+      // Closing the listening sockets wakes up every acceptor blocked in accept
+      closeServerSockets();
     }
 
     try {
-      this.serverThread.join();
+      for (Thread serverThread : this.serverThreads) {
+        serverThread.join();
+      }
     } catch (InterruptedException e) {
       throw new RuntimeException(e);
     }
 
-    this.serverThread = null;
+    this.serverThreads = null;
 
+    // Reject the clients still waiting to be served
+    admissionQueue.close();
+    streamQueue.close();
+
+    // Close the persistent connections still open, so their threads do not wait for the idle timeout
+    for (Socket socket : openSockets) {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        System.err.println("Error closing client socket: " + e.getMessage());
+      }
+    }
     
     threadPool.shutdownNow();
+    pipelinePool.shutdownNow();
+    streamPool.shutdownNow();
 
     // Add this give error in the tests
     
@@ -174,9 +334,127 @@ public class HybridServer implements AutoCloseable {
     } catch (InterruptedException e) {
       e.printStackTrace();
     }
+
+    // The connections are closed once no client can borrow them
+    if (this.pool != null) {
+      System.out.println(String.format("Database pool: %d borrows (avg. wait %.2f ms, max. wait %.2f ms), %d saturated, %d timed out",
+        pool.getBorrowCount(), pool.getAverageBorrowWait(), pool.getMaxBorrowWait(),
+        pool.getSaturatedBorrowCount(), pool.getTimeoutCount()));
+      System.out.println(String.format("Database statements: %d reused, %d prepared (hit rate %.1f%%)",
+        pool.getStatementCacheHitCount(), pool.getStatementCacheMissCount(), pool.getStatementCacheHitRate() * 100));
+      this.pool.close();
+    }
     
   }
 
+  /**
+   * Accepts the clients of a listening socket until the server is stopped,
+   * submitting each one to the admission queue.
+   * 
+   * @param serverSocket The listening socket.
+   */
+  private void acceptClients(ServerSocket serverSocket) {
+    try (serverSocket) {
+      while (true) {
+        Socket socket = serverSocket.accept();
+          if (stop) {
+            socket.close();
+            break;
+          }
+          
+          infoParams();
+          
+          admissionQueue.submit(new ClientThread(socket, controller, router, connectionSettings, openSockets, pipelinePool,
+            admissionQueue));
+      }
+    } catch (IOException e) {
+      // The socket is closed on purpose when the server is stopped
+      if (!stop) {
+        e.printStackTrace();
+      }
+    }
+  }
+
+  /**
+   * Opens a listening socket on the service port.
+   * 
+   * @param reusePort Whether the port is shared with other listening sockets (SO_REUSEPORT).
+   * @return The bound listening socket.
+   * @throws IOException If the socket cannot be opened or bound.
+   */
+  private ServerSocket openServerSocket(boolean reusePort) throws IOException {
+    ServerSocket serverSocket = new ServerSocket();
+    try {
+      if (reusePort) {
+        serverSocket.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+      }
+      serverSocket.bind(new InetSocketAddress(SERVICE_PORT));
+    } catch (IOException e) {
+      serverSocket.close();
+      throw e;
+    }
+
+    return serverSocket;
+  }
+
+  /**
+   * Closes the listening sockets of the blocking engine, if any.
+   */
+  private void closeServerSockets() {
+    if (this.serverSockets == null) {
+      return;
+    }
+
+    for (ServerSocket serverSocket : this.serverSockets) {
+      try {
+        serverSocket.close();
+      } catch (IOException e) {
+        System.err.println("Error closing server socket: " + e.getMessage());
+      }
+    }
+    this.serverSockets = null;
+  }
+
+  /**
+   * Loads the UUIDs of the stored pages in the filter of missing pages, if it is enabled.
+   * If they cannot be read, every request is looked up in the database until the filter is built.
+   */
+  private void loadPageFilter() {
+    if (this.negativeLookups == null) {
+      return;
+    }
+
+    try {
+      this.negativeLookups.rebuild(UUID_BATCH_SIZE);
+    } catch (DAOException e) {
+      System.err.println("Error loading the UUIDs of the pages, missing pages will be looked up: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Returns the number of acceptors to start. Several acceptors need SO_REUSEPORT;
+   * if the platform does not support it, a single acceptor is used instead.
+   * 
+   * @return The number of acceptors.
+   */
+  private int resolveAcceptors() {
+    if (ACCEPTORS <= 1) {
+      return 1;
+    }
+
+    try (ServerSocket probe = new ServerSocket()) {
+      if (probe.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+        return ACCEPTORS;
+      }
+    } catch (IOException e) {
+      // Handled as not supported
+    }
+
+    System.err.println("SO_REUSEPORT is not supported by this platform, using a single acceptor");
+    this.ACCEPTORS = 1;
+    return 1;
+  }
+
   /**
    * Initializes default server parameters.
    */
@@ -186,6 +464,116 @@ public class HybridServer implements AutoCloseable {
     this.DB_URL = "jdbc:mysql://localhost:3306/hstestdb";
     this.DB_USERNAME = "hsdb";
     this.DB_PASSWORD = "hsdbpass";
+    this.SERVER_ENGINE = "blocking";
+    this.SERVER_EXECUTOR = "platform";
+    this.QUEUE_CAPACITY = Integer.MAX_VALUE;
+    this.QUEUE_MAX_WAIT = 0;
+    this.RETRY_AFTER = 1;
+    this.PIPELINE_THREADS = Runtime.getRuntime().availableProcessors();
+    this.STREAM_THREADS = Runtime.getRuntime().availableProcessors();
+    this.ACCEPTORS = 1;
+  }
+
+  /**
+   * Creates the queue where the clients wait to be served when every slot of the executor is busy.
+   * 
+   * @param numClients The max. number of clients served at the same time.
+   * @return The admission queue of the server.
+   */
+  private AdmissionQueue createAdmissionQueue(int numClients) {
+    return new AdmissionQueue(threadPool, numClients, QUEUE_CAPACITY, QUEUE_MAX_WAIT, RETRY_AFTER);
+  }
+
+  /**
+   * Creates the executor where the clients are served, according to the configured executor mode.
+   * In "virtual" mode every client runs on its own virtual thread, without a limit of its own, as
+   * the admission queue already limits the clients served at the same time to numClients; if the
+   * JVM does not support virtual threads, a fixed pool is used instead.
+   * 
+   * @param numClients The max. number of clients served at the same time.
+   * @return The executor where the clients are served.
+   */
+  private ExecutorService createClientExecutor(int numClients) {
+    if (SERVER_EXECUTOR.equals("virtual")) {
+      if (VirtualThreadExecutor.isSupported()) {
+        return new VirtualThreadExecutor();
+      }
+
+      System.err.println("Virtual threads are not supported by this JVM (Java 21+ required), using platform threads");
+      this.SERVER_EXECUTOR = "platform";
+    }
+
+    return Executors.newFixedThreadPool(numClients);
+  }
+
+  /**
+   * Creates the executor where the pipelined requests of the clients are answered concurrently.
+   * It is kept apart from the client executor, so a client waiting for its pipelined responses
+   * never takes the thread those responses need.
+   * 
+   * @return The executor where the pipelined requests are answered.
+   */
+  private ExecutorService createPipelineExecutor() {
+    if (SERVER_EXECUTOR.equals("virtual")) {
+      return new VirtualThreadExecutor(PIPELINE_THREADS);
+    }
+
+    return Executors.newFixedThreadPool(PIPELINE_THREADS);
+  }
+
+  /**
+   * Creates the executor where the nio engine generates the streamed responses. A streamed response
+   * is generated at the pace the client reads it, so it is kept apart from the client executor,
+   * and a slow reader never holds the thread where the requests are answered.
+   * 
+   * @return The executor where the streamed responses are generated.
+   */
+  private ExecutorService createStreamExecutor() {
+    if (SERVER_EXECUTOR.equals("virtual")) {
+      return new VirtualThreadExecutor(STREAM_THREADS);
+    }
+
+    return Executors.newFixedThreadPool(STREAM_THREADS);
+  }
+
+  /**
+   * Creates the queue where the streamed responses wait to be generated when every thread of the
+   * stream executor is busy. The responses in excess are rejected as the clients are.
+   * 
+   * @return The queue of the streamed responses.
+   */
+  private AdmissionQueue createStreamQueue() {
+    return new AdmissionQueue(streamPool, STREAM_THREADS, QUEUE_CAPACITY, QUEUE_MAX_WAIT, RETRY_AFTER);
+  }
+
+  /**
+   * Validates the connection engine selected in the configuration.
+   * 
+   * @param engine The name of the engine ("blocking" or "nio").
+   * @return The validated engine name, in lower case.
+   * @throws IllegalArgumentException if the engine is not supported.
+   */
+  private String validateEngine(String engine) {
+    String normalized = engine.trim().toLowerCase();
+    if (!normalized.equals("blocking") && !normalized.equals("nio")) {
+      throw new IllegalArgumentException("Unsupported server engine: " + engine);
+    }
+    return normalized;
+  }
+
+  /**
+   * Validates the client executor selected in the configuration.
+   * 
+   * @param executor The name of the executor ("platform" or "virtual").
+   * @return The validated executor name, in lower case.
+   * @throws IllegalArgumentException if the executor is not supported.
+   */
+  private String validateExecutor(String executor) {
+    String normalized = executor.trim().toLowerCase();
+    if (!normalized.equals("platform") && !normalized.equals("virtual")) {
+      throw new IllegalArgumentException("Unsupported server executor: " + executor);
+    }
+    return normalized;
   }
 
   /**
@@ -229,7 +617,26 @@ public class HybridServer implements AutoCloseable {
   private void infoParams() {
     System.out.println("Service port: " + SERVICE_PORT);
     System.out.println("Max. number of clients: " + NUM_CLIENTS);
+    System.out.println("Server engine: " + SERVER_ENGINE + " (acceptors: " + ACCEPTORS + ")");
+    if (SERVER_ENGINE.equals("nio")) {
+      System.out.println("Streamed responses: up to " + STREAM_THREADS + " generated at the same time");
+    }
+    System.out.println("Server executor: " + SERVER_EXECUTOR);
+    System.out.println("Keep-alive timeout: " + connectionSettings.getKeepAliveTimeout() + " ms (max. requests: " + connectionSettings.getMaxRequests() + ")");
+    System.out.println("Pipelining: max. depth " + connectionSettings.getPipelineDepth() + " (threads: " + PIPELINE_THREADS + ")");
+    System.out.println("Compression: gzip/deflate for pages of at least " + COMPRESSION_MIN_SIZE + " bytes"
+      + (COMPRESSION_CACHE_BYTES > 0 ? " (cache: up to " + COMPRESSION_CACHE_BYTES + " bytes)" : " (not cached)"));
+    System.out.println("Page cache: " + (CACHE_MAX_BYTES > 0 ? "up to " + CACHE_MAX_BYTES + " bytes" : "disabled"));
+    System.out.println("Missing pages: " + (CACHE_MAX_MISSES > 0 ? "filtered (remembering up to " + CACHE_MAX_MISSES + ")" : "not filtered"));
+    System.out.println("Max. request size: head " + connectionSettings.getMaxHeadSize() + " bytes, content "
+      + connectionSettings.getMaxContentLength() + " bytes");
+    System.out.println("Max. queued clients: " + QUEUE_CAPACITY + " (max. wait: " + QUEUE_MAX_WAIT + " ms)");
     System.out.println("Database URL: " + DB_URL);
+    if (this.pool != null) {
+      System.out.println("Database pool: " + poolSettings.getMinSize() + " to " + poolSettings.getMaxSize()
+        + " connections (borrow timeout: " + poolSettings.getBorrowTimeout() + " ms, statements cached: "
+        + poolSettings.getStatementCacheSize() + " per connection)");
+    }
     System.out.println("Database user: " + DB_USERNAME);
     System.out.println("Database password: " + DB_PASSWORD); // For security reasons, do not print the password
   }
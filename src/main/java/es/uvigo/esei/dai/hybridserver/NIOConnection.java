@@ -0,0 +1,221 @@
+package es.uvigo.esei.dai.hybridserver;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import es.uvigo.esei.dai.hybridserver.http.HTTPRequestDecoder;
+
+/**
+ * Class representing the state of a single client connection handled by the {@link NIOServer}.
+ * It pushes the bytes received from a non-blocking channel to an {@link HTTPRequestDecoder}
+ * until a full HTTP request is available, and keeps the queue of bytes pending to be written back to the client.
+ * A streamed response is queued chunk by chunk from a worker thread, which waits while the client
+ * has not read the previous chunks.
+ */
+class NIOConnection {
+
+    private static final ByteBuffer[] NO_BUFFERS = new ByteBuffer[0];
+
+    private final SocketChannel channel;    // Non-blocking channel of the client
+    private final HTTPRequestDecoder decoder;   // Decoder of the bytes received from the client
+    private final Queue<ByteBuffer> output = new ConcurrentLinkedQueue<>();  // Bytes pending to be sent
+    private volatile boolean closeAfterWrite;   // Whether to close the channel once the output is sent
+    private boolean streaming;  // Whether more output of the current response will be queued (guarded by this)
+    private int served;         // Number of requests received in the connection (selector thread only)
+    private boolean busy;       // Whether a request is being processed (selector thread only)
+    private long lastActive;    // Last time (ms) the connection became idle (selector thread only)
+
+    /**
+     * Constructs a NIOConnection for the specified channel.
+     *
+     * @param channel The non-blocking channel of the client.
+     * @param decoder The decoder of the requests received in the connection.
+     */
+    NIOConnection(SocketChannel channel, HTTPRequestDecoder decoder) {
+        this.channel = channel;
+        this.decoder = decoder;
+        this.lastActive = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the channel of the client.
+     *
+     * @return The channel of the client.
+     */
+    SocketChannel getChannel() {
+        return this.channel;
+    }
+
+    /**
+     * Marks the connection as busy processing a new request.
+     *
+     * @return The number of requests received in the connection, including the new one.
+     */
+    int startRequest() {
+        this.busy = true;
+        return ++this.served;
+    }
+
+    /**
+     * Marks the connection as idle, waiting for a new request.
+     */
+    void finishRequest() {
+        this.busy = false;
+        this.lastActive = System.currentTimeMillis();
+    }
+
+    /**
+     * Checks whether the connection has been idle for longer than the specified time.
+     *
+     * @param now The current time (ms).
+     * @param timeout The max. idle time (ms).
+     * @return true if the connection is idle and expired, false otherwise.
+     */
+    boolean isIdleExpired(long now, long timeout) {
+        return !this.busy && now - this.lastActive > timeout;
+    }
+
+    /**
+     * Reads the bytes available in the channel without blocking, pushing them to the request decoder.
+     *
+     * @param buffer The buffer where the bytes are read before being pushed (shared by the selector thread).
+     * @return The number of bytes read, or -1 if the client closed the connection.
+     * @throws IOException If an I/O error occurs.
+     */
+    int read(ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        final int read = this.channel.read(buffer);
+        if (read > 0) {
+            buffer.flip();
+            this.decoder.feed(buffer);
+
+            // A request being received is not idle, however slowly it arrives
+            this.lastActive = System.currentTimeMillis();
+        }
+
+        return read;
+    }
+
+    /**
+     * Returns the decoder of the requests received in the connection.
+     *
+     * @return The request decoder.
+     */
+    HTTPRequestDecoder getDecoder() {
+        return this.decoder;
+    }
+
+    /**
+     * Queues bytes to be written to the client.
+     *
+     * @param buffers The buffers with the bytes to be written.
+     * @param close Whether the channel should be closed once every queued byte is sent.
+     */
+    void send(ByteBuffer[] buffers, boolean close) {
+        send(buffers, close, false);
+    }
+
+    /**
+     * Queues bytes to be written to the client, which may be only a part of a streamed response.
+     *
+     * @param buffers The buffers with the bytes to be written.
+     * @param close Whether the channel should be closed once every queued byte is sent.
+     * @param streaming Whether more bytes of the response will be queued.
+     */
+    synchronized void send(ByteBuffer[] buffers, boolean close, boolean streaming) {
+        Collections.addAll(this.output, buffers);
+        this.closeAfterWrite = close;
+        this.streaming = streaming;
+    }
+
+    /**
+     * Waits until the queued bytes fit in the specified number of buffers, so a streamed
+     * response is generated at the pace the client reads it.
+     *
+     * @param maxQueued The max. number of queued buffers.
+     * @param timeout The max. time (ms) to wait.
+     * @throws IOException If the channel is closed or the client does not read in time.
+     */
+    synchronized void awaitOutput(int maxQueued, long timeout) throws IOException {
+        final long deadline = System.currentTimeMillis() + timeout;
+        while (this.output.size() > maxQueued) {
+            final long remaining = deadline - System.currentTimeMillis();
+            if (!this.channel.isOpen()) {
+                throw new IOException("Client connection closed");
+            } else if (remaining <= 0) {
+                throw new IOException("Timeout writing a streamed response");
+            }
+
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted writing a streamed response");
+            }
+        }
+    }
+
+    /**
+     * Writes as many queued bytes as the channel accepts without blocking.
+     * Every queued buffer is written with a single gathering write.
+     *
+     * @return true if the whole response has been written, false if some queued bytes have
+     *   not been written or more bytes of a streamed response are to be queued.
+     * @throws IOException If an I/O error occurs.
+     */
+    synchronized boolean write() throws IOException {
+        final ByteBuffer[] buffers = this.output.toArray(NO_BUFFERS);
+        if (buffers.length > 0) {
+            this.channel.write(buffers);
+        }
+
+        for (ByteBuffer buffer : buffers) {
+            if (buffer.hasRemaining()) {
+                break;
+            }
+            this.output.poll();
+        }
+        notifyAll();    // The producer of a streamed response may wait for room
+
+        return this.output.isEmpty() && !this.streaming;
+    }
+
+    /**
+     * Checks whether there are queued bytes pending to be written.
+     *
+     * @return true if there are queued bytes, false otherwise.
+     */
+    boolean hasOutput() {
+        return !this.output.isEmpty();
+    }
+
+    /**
+     * Returns whether the channel should be closed once the output is sent.
+     *
+     * @return true if the channel should be closed, false otherwise.
+     */
+    boolean isCloseAfterWrite() {
+        return this.closeAfterWrite;
+    }
+
+    /**
+     * Closes the channel of the client, ignoring any error.
+     */
+    void close() {
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing client channel: " + e.getMessage());
+        }
+
+        synchronized (this) {
+            notifyAll();    // The producer of a streamed response may wait for room
+        }
+    }
+
+}
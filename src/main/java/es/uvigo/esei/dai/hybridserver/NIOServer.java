@@ -0,0 +1,523 @@
+package es.uvigo.esei.dai.hybridserver;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import es.uvigo.esei.dai.hybridserver.controler.PagesController;
+import es.uvigo.esei.dai.hybridserver.handler.Router;
+import es.uvigo.esei.dai.hybridserver.http.HTTPChunkedOutputStream;
+import es.uvigo.esei.dai.hybridserver.http.HTTPParseException;
+import es.uvigo.esei.dai.hybridserver.http.HTTPRequest;
+import es.uvigo.esei.dai.hybridserver.http.HTTPRequestDecoder;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponse;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponseWriter;
+
+/**
+ * Non-blocking connection engine built on a {@link Selector}.
+ * A single selector thread accepts the connections and reads and writes every channel
+ * without blocking, so idle or slow clients do not pin a worker thread. Only the requests
+ * that have been fully received are dispatched to the worker pool.
+ * Connections are persistent (keep-alive) with the same rules as in {@link ClientThread}:
+ * once a response is sent the connection goes back to reading, and idle connections are
+ * closed after the keep-alive timeout. Pipelined requests are answered one at a time,
+ * in the order they were received. Streamed responses are generated at the pace the client
+ * reads them in a bounded executor of their own, so the worker that answered the request is
+ * released at once and a slow reader never holds it.
+ * Several NIOServers can listen on the same port with SO_REUSEPORT, each one with its own
+ * selector thread, so the kernel spreads the incoming connections across them.
+ */
+public class NIOServer implements Runnable {
+
+    private static final long SELECT_TIMEOUT = 1000;    // Max. time (ms) blocked in a select call
+    private static final int READ_BUFFER_SIZE = 64 * 1024;  // Size of the buffer where the channels are read
+    private static final int MAX_STREAMED_CHUNKS = 4;       // Max. number of queued chunks of a streamed response
+    private static final long STREAM_TIMEOUT = 30000;       // Max. time (ms) waiting for a client to read a chunk
+    private static final ByteBuffer[] NO_BUFFERS = new ByteBuffer[0];
+
+    private final int port;                         // Port to listen on
+    private final boolean reusePort;                // Whether the port is shared with other listening sockets
+    private final PagesController controller;       // Controller to manage pages
+    private final Router router;                    // Router of the requests to their handlers
+    private final AdmissionQueue workers;           // Queue where the requests wait to be processed
+    private final AdmissionQueue streams;           // Queue where the streamed responses wait to be generated
+    private final ConnectionSettings settings;      // Settings of the connections
+    private final Queue<NIOConnection> pendingWrites = new ConcurrentLinkedQueue<>();   // Connections with new output
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);  // Selector thread only
+
+    private volatile Selector selector;
+    private ServerSocketChannel serverChannel;      // Listening channel, bound by open()
+    private volatile boolean stop;
+
+    /**
+     * Constructs a NIOServer listening on the specified port.
+     *
+     * @param port The port to listen on.
+     * @param reusePort Whether the port is shared with other NIOServers (SO_REUSEPORT).
+     * @param controller The PagesController to manage page operations.
+     * @param router The router of the requests to their handlers.
+     * @param workers The queue where the received requests wait to be processed.
+     * @param streams The queue where the streamed responses wait to be generated.
+     * @param settings The settings of the connections.
+     */
+    public NIOServer(int port, boolean reusePort, PagesController controller, Router router, AdmissionQueue workers,
+        AdmissionQueue streams, ConnectionSettings settings) {
+        this.port = port;
+        this.reusePort = reusePort;
+        this.controller = controller;
+        this.router = router;
+        this.workers = workers;
+        this.streams = streams;
+        this.settings = settings;
+    }
+
+    /**
+     * Opens the selector and the listening channel, and binds the channel to the port. The server
+     * accepts connections as soon as this method returns, and a failed bind reaches the caller
+     * instead of the selector thread.
+     *
+     * @throws IOException If the channel cannot be opened or bound (e.g. the port is already in use).
+     */
+    public void open() throws IOException {
+        this.selector = Selector.open();
+        try {
+            this.serverChannel = ServerSocketChannel.open();
+            if (this.reusePort) {
+                this.serverChannel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            this.serverChannel.bind(new InetSocketAddress(this.port));
+            this.serverChannel.configureBlocking(false);
+            this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes the selector and the listening channel of a server that is not running.
+     * A running server closes them itself when it is stopped.
+     */
+    public void close() {
+        try {
+            if (this.serverChannel != null) {
+                this.serverChannel.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing server channel: " + e.getMessage());
+        }
+
+        try {
+            if (this.selector != null) {
+                this.selector.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing selector: " + e.getMessage());
+        }
+    }
+
+    /**
+     * The selector loop. Accepts connections, reads requests and writes responses
+     * until {@link #stop()} is called. The server must have been opened with {@link #open()}.
+     */
+    @Override
+    public void run() {
+        if (this.serverChannel == null) {
+            throw new IllegalStateException("The server must be opened before it is run");
+        }
+
+        try (Selector selector = this.selector;
+            ServerSocketChannel serverChannel = this.serverChannel) {
+
+            final long selectTimeout = Math.min(SELECT_TIMEOUT, this.settings.getKeepAliveTimeout());
+            long lastSweep = System.currentTimeMillis();
+
+            while (!this.stop) {
+                selector.select(selectTimeout);
+
+                // Close the idle persistent connections
+                long now = System.currentTimeMillis();
+                if (now - lastSweep >= selectTimeout) {
+                    closeIdle(selector, now);
+                    lastSweep = now;
+                }
+
+                // Register write interest for the connections with new output
+                NIOConnection connection;
+                while ((connection = this.pendingWrites.poll()) != null) {
+                    SelectionKey key = connection.getChannel().keyFor(selector);
+                    if (key != null && key.isValid()) {
+                        key.interestOps(SelectionKey.OP_WRITE);
+                    }
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+
+                        if (key.isAcceptable()) {
+                            accept(serverChannel, selector);
+                        } else if (key.isReadable()) {
+                            read(key);
+                        } else if (key.isWritable()) {
+                            write(key);
+                        }
+                    } catch (IOException e) {
+                        System.err.println("Error in client connection: " + e.getMessage());
+                        closeKey(key);
+                    }
+                }
+            }
+
+            // Close every client connection still open
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof NIOConnection) {
+                    ((NIOConnection) key.attachment()).close();
+                }
+            }
+
+        } catch (ClosedSelectorException e) {
+            // The server has been stopped
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Stops the selector loop, closing every connection.
+     */
+    public void stop() {
+        this.stop = true;
+
+        Selector selector = this.selector;
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Accepts a new connection and registers it for reading.
+     *
+     * @param serverChannel The listening channel.
+     * @param selector The selector where the connection is registered.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void accept(ServerSocketChannel serverChannel, Selector selector) throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ, new NIOConnection(channel, this.settings.createDecoder()));
+    }
+
+    /**
+     * Reads the bytes available for a connection and, once a full request
+     * has been received, dispatches it to the worker pool. Every connection is read
+     * through the same buffer, and only the bytes of its partial request are kept.
+     *
+     * @param key The selection key of the connection.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void read(SelectionKey key) throws IOException {
+        NIOConnection connection = (NIOConnection) key.attachment();
+
+        if (connection.read(this.readBuffer) == -1) {
+            closeKey(key);
+            return;
+        }
+
+        dispatchIfComplete(key, connection);
+    }
+
+    /**
+     * Dispatches the next request of a connection to the worker pool, if it has been fully received.
+     * If the request is not valid, the connection is answered with an error and closed.
+     *
+     * @param key The selection key of the connection.
+     * @param connection The connection.
+     */
+    private void dispatchIfComplete(SelectionKey key, NIOConnection connection) {
+        HTTPRequestDecoder decoder = connection.getDecoder();
+
+        switch (decoder.decode()) {
+            case COMPLETE:
+                // Stop reading until the response is sent
+                key.interestOps(0);
+
+                int served = connection.startRequest();
+                this.workers.submit(new RequestTask(connection, served));
+                break;
+            case ERROR:
+                key.interestOps(0);
+                connection.startRequest();
+
+                System.err.println("HTTP Parse Exception: " + decoder.getError().getMessage());
+                send(connection, ClientThread.parseErrorResponse(decoder.getError()), true);
+                break;
+            default:
+                // More bytes are needed, unless the client waits for the request to be accepted
+                if (decoder.isContinueExpected()) {
+                    HTTPResponse error = this.router.check(decoder.getHead());
+                    if (error != null) {
+                        key.interestOps(0);
+                        int rejected = connection.startRequest();
+
+                        this.settings.putConnectionHeaders(error, false, rejected);
+                        send(connection, HTTPResponseWriter.encode(error), true);
+                    } else {
+                        decoder.continueSent();
+                        send(connection, ClientThread.CONTINUE_RESPONSE, false);
+                    }
+                }
+                break;
+        }
+    }
+
+    /**
+     * Writes the pending output of a connection. Once everything has been sent, the connection
+     * is closed or, if it is persistent, it goes back to reading the next request.
+     *
+     * @param key The selection key of the connection.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void write(SelectionKey key) throws IOException {
+        NIOConnection connection = (NIOConnection) key.attachment();
+
+        if (!connection.write()) {
+            if (!connection.hasOutput()) {
+                // A streamed response waits for its next chunks, which register the write interest again
+                key.interestOps(0);
+            }
+        } else {
+            if (connection.isCloseAfterWrite()) {
+                closeKey(key);
+            } else {
+                connection.finishRequest();
+                key.interestOps(SelectionKey.OP_READ);
+
+                // The next request may have been received while the last one was processed
+                dispatchIfComplete(key, connection);
+            }
+        }
+    }
+
+    /**
+     * Closes the connections that have been idle for longer than the keep-alive timeout.
+     *
+     * @param selector The selector where the connections are registered.
+     * @param now The current time (ms).
+     */
+    private void closeIdle(Selector selector, long now) {
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof NIOConnection
+                && ((NIOConnection) key.attachment()).isIdleExpired(now, this.settings.getKeepAliveTimeout())) {
+                closeKey(key);
+            }
+        }
+    }
+
+    /**
+     * Parses and handles a request in a worker thread, queuing the response for the selector thread.
+     * The selector thread does not use the decoder of the connection until the response is sent.
+     *
+     * @param connection The connection that received the request.
+     * @param served The number of requests received in the connection, including this one.
+     */
+    private void process(NIOConnection connection, int served) {
+        try {
+            HTTPRequest request = connection.getDecoder().takeRequest();
+            boolean keepAlive = this.settings.isKeepAlive(request, served);
+
+            HTTPResponse response = this.router.handle(request, this.controller);
+            this.settings.putConnectionHeaders(response, keepAlive, served);
+
+            if (response.getContentStream() != null) {
+                // The content is generated in the stream executor, releasing this worker
+                this.streams.submit(new StreamTask(connection, response, !keepAlive));
+            } else {
+                send(connection, HTTPResponseWriter.encode(response), !keepAlive);
+            }
+        } catch (HTTPParseException e) {
+            System.err.println("HTTP Parse Exception: " + e.getMessage());
+            send(connection, ClientThread.parseErrorResponse(e), true);
+        } catch (RuntimeException e) {
+            // Unexpected error: the client is answered, but the connection cannot be trusted anymore
+            System.err.println("Error processing request: " + e);
+            e.printStackTrace();
+            send(connection, ClientThread.INTERNAL_ERROR_RESPONSE, true);
+        }
+    }
+
+    /**
+     * Sends a response with a streamed content, generating its chunks in a thread of the stream
+     * executor as the client reads them, so only a few chunks are held in memory. If the content cannot be
+     * generated, the response is left incomplete and the connection is closed.
+     *
+     * @param connection The connection where the response is sent.
+     * @param response The response, with a streamed content.
+     * @param close Whether the connection should be closed once the response is sent.
+     */
+    private void stream(NIOConnection connection, HTTPResponse response, boolean close) {
+        send(connection, HTTPResponseWriter.encode(response), false, true);
+
+        try {
+            final HTTPChunkedOutputStream chunks = new HTTPChunkedOutputStream(new ConnectionStream(connection));
+            response.getContentStream().writeTo(chunks);
+            chunks.close();
+        } catch (IOException | RuntimeException e) {
+            // The head has already been sent, so no error response can follow it
+            System.err.println("Error streaming response: " + e.getMessage());
+            send(connection, NO_BUFFERS, true, false);
+            return;
+        }
+
+        send(connection, NO_BUFFERS, close, false);
+    }
+
+    /**
+     * Queues the bytes of a response and wakes up the selector thread to write them.
+     *
+     * @param connection The connection where the response is sent.
+     * @param response The bytes of the response.
+     * @param close Whether the connection should be closed once the response is sent.
+     */
+    private void send(NIOConnection connection, byte[] response, boolean close) {
+        send(connection, new ByteBuffer[] { ByteBuffer.wrap(response) }, close);
+    }
+
+    /**
+     * Queues the buffers of a response and wakes up the selector thread to write them.
+     *
+     * @param connection The connection where the response is sent.
+     * @param response The buffers with the bytes of the response, written with a single gathering write.
+     * @param close Whether the connection should be closed once the response is sent.
+     */
+    private void send(NIOConnection connection, ByteBuffer[] response, boolean close) {
+        send(connection, response, close, false);
+    }
+
+    /**
+     * Queues the buffers of a response, or of a part of a streamed response, and wakes up the
+     * selector thread to write them.
+     *
+     * @param connection The connection where the response is sent.
+     * @param response The buffers with the bytes of the response.
+     * @param close Whether the connection should be closed once the response is sent.
+     * @param streaming Whether more bytes of the response will be queued.
+     */
+    private void send(NIOConnection connection, ByteBuffer[] response, boolean close, boolean streaming) {
+        connection.send(response, close, streaming);
+        this.pendingWrites.add(connection);
+
+        Selector selector = this.selector;
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Cancels a selection key and closes its connection.
+     *
+     * @param key The selection key to close.
+     */
+    private void closeKey(SelectionKey key) {
+        key.cancel();
+        if (key.attachment() instanceof NIOConnection) {
+            ((NIOConnection) key.attachment()).close();
+        }
+    }
+
+    /**
+     * Stream that queues the bytes written to it in a connection, waiting while the client
+     * has not read the previously queued ones.
+     */
+    private class ConnectionStream extends OutputStream {
+        private final NIOConnection connection; // Connection where the bytes are sent
+
+        private ConnectionStream(NIOConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            // The bytes are copied, as the array is reused by the writer
+            final ByteBuffer buffer = ByteBuffer.allocate(length).put(bytes, offset, length);
+            buffer.flip();
+            send(this.connection, new ByteBuffer[] { buffer }, false, true);
+            this.connection.awaitOutput(MAX_STREAMED_CHUNKS, STREAM_TIMEOUT);
+        }
+    }
+
+    /**
+     * Class representing a streamed response waiting to be generated. If it is rejected, its head
+     * has not been sent yet, so the client is answered with the rejection instead.
+     */
+    private class StreamTask implements ClientTask {
+        private final NIOConnection connection; // Connection where the response is sent
+        private final HTTPResponse response;    // Response, with a streamed content
+        private final boolean close;            // Whether the connection is closed once the response is sent
+
+        private StreamTask(NIOConnection connection, HTTPResponse response, boolean close) {
+            this.connection = connection;
+            this.response = response;
+            this.close = close;
+        }
+
+        @Override
+        public void run() {
+            stream(this.connection, this.response, this.close);
+        }
+
+        @Override
+        public void reject(byte[] response) {
+            send(this.connection, response, true);
+        }
+    }
+
+    /**
+     * Class representing a received request waiting in the admission queue to be processed.
+     */
+    private class RequestTask implements ClientTask {
+        private final NIOConnection connection; // Connection that received the request
+        private final int served;               // Number of requests received in the connection
+
+        private RequestTask(NIOConnection connection, int served) {
+            this.connection = connection;
+            this.served = served;
+        }
+
+        @Override
+        public void run() {
+            process(this.connection, this.served);
+        }
+
+        @Override
+        public void reject(byte[] response) {
+            send(this.connection, response, true);
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+package es.uvigo.esei.dai.hybridserver;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor that runs every task on its own virtual thread.
+ * As virtual threads are not a scarce resource, the number of tasks running at the
+ * same time is either not limited (when the caller already limits it, as the admission
+ * queue does for the clients) or limited with a semaphore instead of with the size of a
+ * thread pool: the tasks in excess wait parked (without pinning a platform thread) until
+ * a permit is released.
+ *
+ * Virtual threads require Java 21, so the executor is created by reflection to keep
+ * the project compatible with older JVMs (see {@link #isSupported()}).
+ */
+public class VirtualThreadExecutor extends AbstractExecutorService {
+
+    private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutorFactory();
+
+    private final ExecutorService delegate; // One virtual thread per task executor
+    private final Semaphore permits;        // Limit of tasks running at the same time, or null if not limited
+
+    /**
+     * Constructs a VirtualThreadExecutor that runs every task at once.
+     *
+     * @throws UnsupportedOperationException if the JVM does not support virtual threads.
+     */
+    public VirtualThreadExecutor() {
+        this(0);
+    }
+
+    /**
+     * Constructs a VirtualThreadExecutor that runs, at most, the specified number of tasks at the same time.
+     *
+     * @param maxConcurrency The max. number of tasks running at the same time, or 0 for no limit.
+     * @throws UnsupportedOperationException if the JVM does not support virtual threads.
+     */
+    public VirtualThreadExecutor(int maxConcurrency) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by this JVM");
+        }
+
+        try {
+            this.delegate = (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new UnsupportedOperationException("Virtual thread executor could not be created", e);
+        }
+        this.permits = maxConcurrency > 0 ? new Semaphore(maxConcurrency, true) : null;
+    }
+
+    /**
+     * Checks if the running JVM supports virtual threads (Java 21+).
+     *
+     * @return true if virtual threads are supported, false otherwise.
+     */
+    public static boolean isSupported() {
+        return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+    }
+
+    /**
+     * Runs the task on a new virtual thread, once a permit is available if the tasks are limited.
+     *
+     * @param task The task to be run.
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (this.permits == null) {
+            this.delegate.execute(task);
+            return;
+        }
+
+        this.delegate.execute(() -> {
+            try {
+                this.permits.acquire();
+            } catch (InterruptedException e) {
+                // The executor is being shut down
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            try {
+                task.run();
+            } finally {
+                this.permits.release();
+            }
+        });
+    }
+
+    @Override
+    public void shutdown() {
+        this.delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return this.delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return this.delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return this.delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return this.delegate.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Looks for the Executors.newVirtualThreadPerTaskExecutor factory method.
+     *
+     * @return The factory method, or null if the JVM does not support virtual threads.
+     */
+    private static Method findVirtualThreadExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,543 @@
+package es.uvigo.esei.dai.hybridserver.controler;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import es.uvigo.esei.dai.hybridserver.PageNotFoundException;
+import es.uvigo.esei.dai.hybridserver.model.dao.DAOException;
+import es.uvigo.esei.dai.hybridserver.model.dao.PageSummaryCursor;
+import es.uvigo.esei.dai.hybridserver.model.entity.Page;
+import es.uvigo.esei.dai.hybridserver.model.entity.PageSummary;
+
+/**
+ * Implementation of the PagesController interface that keeps the most requested pages in memory
+ * in front of another controller (read-through cache).
+ * The size of the cache is bounded by the bytes of the contents of the pages, and it follows the
+ * W-TinyLFU policy: new pages enter a small LRU window, and the pages leaving it only replace the
+ * least recently used pages of the main region if they have been requested more often, according
+ * to a frequency sketch of the recent requests. That way, a burst of pages requested only once
+ * does not flush the popular ones.
+ * The pages are invalidated as soon as they are created, updated or deleted through this controller,
+ * so the changes made by other servers on the same store are not seen until the pages are evicted.
+ */
+public class CachingPagesController implements PagesController {
+
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;   // Default max. number of bytes of the cached pages
+
+    private static final int WINDOW_PERCENT = 1;        // Percentage of the capacity for the admission window
+    private static final int ENTRY_OVERHEAD = 64;       // Estimated bytes of a cached page besides its content
+    private static final int AVERAGE_PAGE_SIZE = 4096;  // Estimated size of a page, to size the frequency sketch
+
+    private final PagesController controller;   // Controller the pages are read from and written to
+    private final long maxBytes;                // Max. number of bytes of the cached pages
+    private final long maxWindowBytes;          // Max. number of bytes of the pages in the window
+    private final FrequencySketch sketch;       // Frequency of the recent requests by UUID
+
+    // Pages by UUID in access order (the least recently used first), guarded by this
+    private final LinkedHashMap<String, Entry> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Entry> main = new LinkedHashMap<>(16, 0.75f, true);
+    private long windowBytes = 0;
+    private long mainBytes = 0;
+    private long invalidations = 0;     // Number of invalidations, to discard the pages read before one
+
+    private long hits = 0;          // Number of requests answered from the cache
+    private long misses = 0;        // Number of requests answered by the underlying controller
+    private long evictions = 0;     // Number of pages discarded to make room for others or not admitted
+
+    /**
+     * Constructs a CachingPagesController.
+     *
+     * @param controller the controller the pages are read from and written to
+     * @param maxBytes the max. number of bytes of the contents of the cached pages
+     * @throws IllegalArgumentException if the max. number of bytes is not positive
+     */
+    public CachingPagesController(PagesController controller, long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+
+        this.controller = controller;
+        this.maxBytes = maxBytes;
+        this.maxWindowBytes = Math.max(1, maxBytes * WINDOW_PERCENT / 100);
+        this.sketch = new FrequencySketch((int) Math.min(1 << 20, Math.max(1024, maxBytes / AVERAGE_PAGE_SIZE)));
+    }
+
+    /**
+     * Retrieves a page by its UUID, from the cache if it is there.
+     * The returned page is shared with the cache, so it must not be modified.
+     *
+     * @param uuid the UUID of the page to retrieve
+     * @return the page with the specified UUID, or an empty Optional if it does not exist
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public Optional<Page> get(String uuid) throws DAOException {
+        final Page cached = lookup(uuid);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        final long invalidations = invalidations();
+        final Optional<Page> page = this.controller.get(uuid);
+        page.ifPresent(found -> admit(found, invalidations));
+
+        return page;
+    }
+
+    /**
+     * Retrieves the version of a page by its UUID, from the cache if it is there.
+     *
+     * @param uuid the UUID of the page
+     * @return the version of the page with the specified UUID
+     * @throws DAOException if there is an error accessing the data store
+     * @throws PageNotFoundException if the page with the specified UUID does not exist
+     */
+    @Override
+    public int getVersion(String uuid) throws DAOException, PageNotFoundException {
+        final Page cached = lookup(uuid);
+        return cached != null ? cached.getVersion() : this.controller.getVersion(uuid);
+    }
+
+    /**
+     * Retrieves the metadata of a page by its UUID, from the cache if it is there.
+     *
+     * @param uuid the UUID of the page
+     * @return the summary (UUID, version and size) of the page with the specified UUID
+     * @throws DAOException if there is an error accessing the data store
+     * @throws PageNotFoundException if the page with the specified UUID does not exist
+     */
+    @Override
+    public PageSummary getSummary(String uuid) throws DAOException, PageNotFoundException {
+        final Page cached = lookup(uuid);
+        return cached != null
+            ? new PageSummary(uuid, cached.getVersion(), cached.getContentBytes().length)
+            : this.controller.getSummary(uuid);
+    }
+
+    /**
+     * Retrieves a range of the content of a page, encoded as UTF-8, from the cache if it is there.
+     *
+     * @param uuid the UUID of the page
+     * @param version the version of the page the range is read from
+     * @param offset the position of the first byte of the range
+     * @param length the max. number of bytes of the range
+     * @return the bytes of the range, fewer than requested if the content ends before, or null
+     * if the page is not at that version anymore (it has been updated or deleted)
+     * @throws DAOException if there is an error accessing the data store
+     * @throws PageNotFoundException if the page with the specified UUID does not exist
+     */
+    @Override
+    public byte[] getContentRange(String uuid, int version, long offset, int length) throws DAOException, PageNotFoundException {
+        final Page cached = lookup(uuid);
+        if (cached == null || cached.getVersion() != version) {
+            return this.controller.getContentRange(uuid, version, offset, length);
+        }
+
+        final byte[] content = cached.getContentBytes();
+        final int from = (int) Math.min(offset, content.length);
+        return Arrays.copyOfRange(content, from, (int) Math.min((long) from + length, content.length));
+    }
+
+    /**
+     * Lists all pages, from the underlying controller.
+     *
+     * @return a list of all pages
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public List<Page> list() throws DAOException {
+        return this.controller.list();
+    }
+
+    /**
+     * Lists the metadata of the pages after a UUID, in UUID order (keyset pagination), from the underlying controller.
+     *
+     * @param after the UUID after which the pages are listed, or null to list from the first one
+     * @param limit the max. number of pages listed
+     * @return the summaries (UUID, version and size) of the pages, sorted by UUID
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public List<PageSummary> listSummaries(String after, int limit) throws DAOException {
+        return this.controller.listSummaries(after, limit);
+    }
+
+    /**
+     * Lists the metadata of all pages, in UUID order, from the underlying controller.
+     *
+     * @return the summaries (UUID, version and size) of all pages, sorted by UUID
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public List<PageSummary> listSummaries() throws DAOException {
+        return this.controller.listSummaries();
+    }
+
+    /**
+     * Lists the UUIDs of the pages after a UUID, in UUID order (keyset pagination), from the underlying controller.
+     *
+     * @param after the UUID after which the pages are listed, or null to list from the first one
+     * @param limit the max. number of UUIDs listed
+     * @return the UUIDs of the pages, sorted
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public List<String> listUuids(String after, int limit) throws DAOException {
+        return this.controller.listUuids(after, limit);
+    }
+
+    /**
+     * Opens a cursor over the metadata of the pages after a UUID, in UUID order, from the underlying controller.
+     *
+     * @param after the UUID after which the pages are listed, or null to list from the first one
+     * @param limit the max. number of pages listed
+     * @param batchSize the max. number of pages read at once
+     * @return the cursor over the summaries of the pages
+     * @throws IllegalArgumentException if the limit or the batch size are not positive
+     */
+    @Override
+    public PageSummaryCursor openSummaryCursor(String after, int limit, int batchSize) {
+        return this.controller.openSummaryCursor(after, limit, batchSize);
+    }
+
+    /**
+     * Creates a new page, invalidating it in the cache.
+     *
+     * @param page the page to create
+     * @return true if the page was created, false if its UUID is already in use
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public boolean create(Page page) throws DAOException {
+        try {
+            return this.controller.create(page);
+        } finally {
+            invalidate(page.getUuid());
+        }
+    }
+
+    /**
+     * Updates an existing page, invalidating it in the cache.
+     *
+     * @param page the page to update
+     * @return true if the page was updated, false if the page with the specified UUID does not exist
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public boolean update(Page page) throws DAOException {
+        try {
+            return this.controller.update(page);
+        } finally {
+            invalidate(page.getUuid());
+        }
+    }
+
+    /**
+     * Deletes a page by its UUID, invalidating it in the cache.
+     *
+     * @param uuid the UUID of the page to delete
+     * @return true if the page was deleted, false if the page with the specified UUID does not exist
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public boolean delete(String uuid) throws DAOException {
+        try {
+            return this.controller.delete(uuid);
+        } finally {
+            invalidate(uuid);
+        }
+    }
+
+    /**
+     * Creates several pages at once, invalidating them in the cache.
+     *
+     * @param pages the pages to create
+     * @return true if the pages were created, false if any of their UUIDs is already in use or repeated
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public boolean createAll(List<Page> pages) throws DAOException {
+        try {
+            return this.controller.createAll(pages);
+        } finally {
+            for (Page page : pages) {
+                invalidate(page == null ? null : page.getUuid());
+            }
+        }
+    }
+
+    /**
+     * Updates several pages at once, invalidating them in the cache.
+     *
+     * @param pages the pages to update
+     * @return the UUIDs of the updated pages
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public List<String> updateAll(List<Page> pages) throws DAOException {
+        try {
+            return this.controller.updateAll(pages);
+        } finally {
+            for (Page page : pages) {
+                invalidate(page == null ? null : page.getUuid());
+            }
+        }
+    }
+
+    /**
+     * Deletes several pages at once, invalidating them in the cache.
+     *
+     * @param uuids the UUIDs of the pages to delete
+     * @return the UUIDs of the deleted pages
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public List<String> deleteAll(List<String> uuids) throws DAOException {
+        try {
+            return this.controller.deleteAll(uuids);
+        } finally {
+            for (String uuid : uuids) {
+                invalidate(uuid);
+            }
+        }
+    }
+
+    /**
+     * Checks if a page exists by its UUID, from the cache if it is there.
+     *
+     * @param uuid the UUID of the page to check
+     * @return true if the page exists, false otherwise
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public boolean exists(String uuid) throws DAOException {
+        return lookup(uuid) != null || this.controller.exists(uuid);
+    }
+
+    /**
+     * Returns the number of requests answered from the cache.
+     *
+     * @return the number of cache hits
+     */
+    public synchronized long getHitCount() {
+        return this.hits;
+    }
+
+    /**
+     * Returns the number of requests answered by the underlying controller.
+     *
+     * @return the number of cache misses
+     */
+    public synchronized long getMissCount() {
+        return this.misses;
+    }
+
+    /**
+     * Returns the number of pages discarded to make room for others, or not admitted because
+     * they were requested less often than the pages they would replace.
+     *
+     * @return the number of evictions
+     */
+    public synchronized long getEvictionCount() {
+        return this.evictions;
+    }
+
+    /**
+     * Returns the number of bytes of the contents of the cached pages, with their estimated overhead.
+     *
+     * @return the weight of the cached pages
+     */
+    public synchronized long getWeightedSize() {
+        return this.windowBytes + this.mainBytes;
+    }
+
+    /**
+     * Looks for a page in the cache, recording the request.
+     *
+     * @param uuid the UUID of the page
+     * @return the cached page, or null if it is not cached
+     */
+    private synchronized Page lookup(String uuid) {
+        this.sketch.increment(uuid);
+
+        Entry entry = this.window.get(uuid);
+        if (entry == null) {
+            entry = this.main.get(uuid);
+        }
+
+        if (entry == null) {
+            this.misses++;
+            return null;
+        }
+        this.hits++;
+        return entry.page;
+    }
+
+    /**
+     * Returns the number of invalidations so far, to be taken before a page is read.
+     *
+     * @return the number of invalidations
+     */
+    private synchronized long invalidations() {
+        return this.invalidations;
+    }
+
+    /**
+     * Adds a page read from the underlying controller to the window of the cache, unless a page has
+     * been invalidated since it was read (as it could be this one) or it does not fit in the cache.
+     * The pages leaving the window compete to enter the main region.
+     *
+     * @param page the page read
+     * @param invalidations the number of invalidations before the page was read
+     */
+    private synchronized void admit(Page page, long invalidations) {
+        final long weight = (long) page.getContentBytes().length + ENTRY_OVERHEAD;
+        if (invalidations != this.invalidations || weight > this.maxBytes - this.maxWindowBytes
+            || this.window.containsKey(page.getUuid()) || this.main.containsKey(page.getUuid())) {
+            return;
+        }
+
+        this.window.put(page.getUuid(), new Entry(page, weight));
+        this.windowBytes += weight;
+
+        while (this.windowBytes > this.maxWindowBytes) {
+            final Iterator<Entry> eldest = this.window.values().iterator();
+            final Entry candidate = eldest.next();
+            eldest.remove();
+            this.windowBytes -= candidate.weight;
+            promote(candidate);
+        }
+    }
+
+    /**
+     * Moves a page leaving the window to the main region, if there is room for it or it has been
+     * requested more often than every page it would replace, which are evicted. Otherwise, it is
+     * evicted itself.
+     *
+     * @param candidate the page leaving the window
+     */
+    private void promote(Entry candidate) {
+        final long maxMainBytes = this.maxBytes - this.maxWindowBytes;
+        final int frequency = this.sketch.frequency(candidate.page.getUuid());
+
+        // Check that the least recently used pages freeing enough room are less popular
+        long freed = 0;
+        int victims = 0;
+        for (Map.Entry<String, Entry> victim : this.main.entrySet()) {
+            if (this.mainBytes - freed + candidate.weight <= maxMainBytes) {
+                break;
+            }
+            if (this.sketch.frequency(victim.getKey()) >= frequency) {
+                this.evictions++;
+                return;
+            }
+            freed += victim.getValue().weight;
+            victims++;
+        }
+
+        final Iterator<Entry> eldest = this.main.values().iterator();
+        for (int i = 0; i < victims; i++) {
+            this.mainBytes -= eldest.next().weight;
+            eldest.remove();
+            this.evictions++;
+        }
+
+        this.main.put(candidate.page.getUuid(), candidate);
+        this.mainBytes += candidate.weight;
+    }
+
+    /**
+     * Removes a page from the cache, and discards any page being read.
+     *
+     * @param uuid the UUID of the page
+     */
+    private synchronized void invalidate(String uuid) {
+        this.invalidations++;
+
+        Entry entry = this.window.remove(uuid);
+        if (entry != null) {
+            this.windowBytes -= entry.weight;
+        }
+        entry = this.main.remove(uuid);
+        if (entry != null) {
+            this.mainBytes -= entry.weight;
+        }
+    }
+
+    /**
+     * Class holding a cached page and its weight.
+     */
+    private static class Entry {
+        private final Page page;    // Cached page
+        private final long weight;  // Bytes of the content of the page plus its overhead
+
+        private Entry(Page page, long weight) {
+            this.page = page;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Class estimating how often the pages have been requested recently (Count-Min sketch).
+     * Every request increments a 4-bit counter in each of four rows, and the estimate is the
+     * smallest of them. All the counters are halved periodically, so old requests fade out.
+     */
+    private static class FrequencySketch {
+        private static final int ROWS = 4;          // Number of counters per page
+        private static final int MAX_COUNT = 15;    // Max. value of a counter
+        private static final int[] SEEDS = { 0x97cb3127, 0xb8ef33b5, 0x5b2b5ec5, 0x2c1f3d43 };
+
+        private final byte[][] counters;    // Counters by row and hashed UUID
+        private final int mask;             // Mask of the index of a counter in a row
+        private final int sampleSize;       // Number of increments between halvings
+        private int increments = 0;         // Number of increments since the last halving
+
+        private FrequencySketch(int expectedEntries) {
+            final int width = Integer.highestOneBit(Math.max(16, expectedEntries - 1) << 1);
+            this.counters = new byte[ROWS][width];
+            this.mask = width - 1;
+            this.sampleSize = 10 * width;
+        }
+
+        private int frequency(String uuid) {
+            final int hash = uuid.hashCode();
+            int frequency = MAX_COUNT;
+            for (int row = 0; row < ROWS; row++) {
+                frequency = Math.min(frequency, this.counters[row][index(hash, row)]);
+            }
+            return frequency;
+        }
+
+        private void increment(String uuid) {
+            final int hash = uuid.hashCode();
+            boolean incremented = false;
+            for (int row = 0; row < ROWS; row++) {
+                final int index = index(hash, row);
+                if (this.counters[row][index] < MAX_COUNT) {
+                    this.counters[row][index]++;
+                    incremented = true;
+                }
+            }
+
+            if (incremented && ++this.increments >= this.sampleSize) {
+                for (byte[] row : this.counters) {
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] >>= 1;
+                    }
+                }
+                this.increments /= 2;
+            }
+        }
+
+        private int index(int hash, int row) {
+            int h = (hash ^ SEEDS[row]) * SEEDS[(row + 1) % ROWS];
+            h ^= h >>> 16;
+            return h & this.mask;
+        }
+    }
+
+}
@@ -0,0 +1,383 @@
+package es.uvigo.esei.dai.hybridserver.controler;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import es.uvigo.esei.dai.hybridserver.PageNotFoundException;
+import es.uvigo.esei.dai.hybridserver.model.dao.DAOException;
+import es.uvigo.esei.dai.hybridserver.model.dao.PageSummaryCursor;
+import es.uvigo.esei.dai.hybridserver.model.entity.Page;
+import es.uvigo.esei.dai.hybridserver.model.entity.PageSummary;
+
+/**
+ * Implementation of the PagesController interface that coalesces the concurrent lookups of the same
+ * page in another controller (single flight): the first one reaches the controller, and the rest wait
+ * for it and get the same result, or the same failure.
+ * Writes are never coalesced. Once one completes, the lookups of the page still in flight are detached,
+ * so the lookups that start after the write do not get a result read before it.
+ */
+public class CoalescingPagesController implements PagesController {
+
+    private final PagesController controller;   // Controller the pages are read from and written to
+
+    // Lookups in flight by page UUID
+    private final Map<String, CompletableFuture<Optional<Page>>> pages = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Integer>> versions = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<PageSummary>> summaries = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Boolean>> existences = new ConcurrentHashMap<>();
+
+    private final AtomicLong coalesced = new AtomicLong();  // Number of lookups that waited for another one
+
+    /**
+     * Constructs a CoalescingPagesController.
+     *
+     * @param controller the controller the pages are read from and written to
+     */
+    public CoalescingPagesController(PagesController controller) {
+        this.controller = controller;
+    }
+
+    /**
+     * Retrieves a page by its UUID, sharing the lookup with the concurrent ones of the same page.
+     * The returned page may be shared with other callers, so it must not be modified.
+     *
+     * @param uuid the UUID of the page to retrieve
+     * @return the page with the specified UUID, or an empty Optional if it does not exist
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public Optional<Page> get(String uuid) throws DAOException {
+        try {
+            return lookup(this.pages, uuid, () -> this.controller.get(uuid));
+        } catch (PageNotFoundException e) {
+            // Not thrown by the lookup
+            throw new DAOException(e);
+        }
+    }
+
+    /**
+     * Retrieves the version of a page by its UUID, sharing the lookup with the concurrent ones of the same page.
+     *
+     * @param uuid the UUID of the page
+     * @return the version of the page with the specified UUID
+     * @throws DAOException if there is an error accessing the data store
+     * @throws PageNotFoundException if the page with the specified UUID does not exist
+     */
+    @Override
+    public int getVersion(String uuid) throws DAOException, PageNotFoundException {
+        return lookup(this.versions, uuid, () -> this.controller.getVersion(uuid));
+    }
+
+    /**
+     * Retrieves the metadata of a page by its UUID, sharing the lookup with the concurrent ones of the same page.
+     *
+     * @param uuid the UUID of the page
+     * @return the summary (UUID, version and size) of the page with the specified UUID
+     * @throws DAOException if there is an error accessing the data store
+     * @throws PageNotFoundException if the page with the specified UUID does not exist
+     */
+    @Override
+    public PageSummary getSummary(String uuid) throws DAOException, PageNotFoundException {
+        return lookup(this.summaries, uuid, () -> this.controller.getSummary(uuid));
+    }
+
+    /**
+     * Retrieves a range of the content of a page, encoded as UTF-8, from the underlying controller.
+     *
+     * @param uuid the UUID of the page
+     * @param version the version of the page the range is read from
+     * @param offset the position of the first byte of the range
+     * @param length the max. number of bytes of the range
+     * @return the bytes of the range, fewer than requested if the content ends before, or null
+     * if the page is not at that version anymore (it has been updated or deleted)
+     * @throws DAOException if there is an error accessing the data store
+     * @throws PageNotFoundException if the page with the specified UUID does not exist
+     */
+    @Override
+    public byte[] getContentRange(String uuid, int version, long offset, int length) throws DAOException, PageNotFoundException {
+        return this.controller.getContentRange(uuid, version, offset, length);
+    }
+
+    /**
+     * Lists all pages, from the underlying controller.
+     *
+     * @return a list of all pages
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public List<Page> list() throws DAOException {
+        return this.controller.list();
+    }
+
+    /**
+     * Lists the metadata of the pages after a UUID, in UUID order (keyset pagination), from the underlying controller.
+     *
+     * @param after the UUID after which the pages are listed, or null to list from the first one
+     * @param limit the max. number of pages listed
+     * @return the summaries (UUID, version and size) of the pages, sorted by UUID
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public List<PageSummary> listSummaries(String after, int limit) throws DAOException {
+        return this.controller.listSummaries(after, limit);
+    }
+
+    /**
+     * Lists the metadata of all pages, in UUID order, from the underlying controller.
+     *
+     * @return the summaries (UUID, version and size) of all pages, sorted by UUID
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public List<PageSummary> listSummaries() throws DAOException {
+        return this.controller.listSummaries();
+    }
+
+    /**
+     * Lists the UUIDs of the pages after a UUID, in UUID order (keyset pagination), from the underlying controller.
+     *
+     * @param after the UUID after which the pages are listed, or null to list from the first one
+     * @param limit the max. number of UUIDs listed
+     * @return the UUIDs of the pages, sorted
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public List<String> listUuids(String after, int limit) throws DAOException {
+        return this.controller.listUuids(after, limit);
+    }
+
+    /**
+     * Opens a cursor over the metadata of the pages after a UUID, in UUID order, from the underlying controller.
+     *
+     * @param after the UUID after which the pages are listed, or null to list from the first one
+     * @param limit the max. number of pages listed
+     * @param batchSize the max. number of pages read at once
+     * @return the cursor over the summaries of the pages
+     * @throws IllegalArgumentException if the limit or the batch size are not positive
+     */
+    @Override
+    public PageSummaryCursor openSummaryCursor(String after, int limit, int batchSize) {
+        return this.controller.openSummaryCursor(after, limit, batchSize);
+    }
+
+    /**
+     * Creates a new page, detaching the lookups of the page in flight.
+     *
+     * @param page the page to create
+     * @return true if the page was created, false if its UUID is already in use
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public boolean create(Page page) throws DAOException {
+        try {
+            return this.controller.create(page);
+        } finally {
+            detach(page == null ? null : page.getUuid());
+        }
+    }
+
+    /**
+     * Updates an existing page, detaching the lookups of the page in flight.
+     *
+     * @param page the page to update
+     * @return true if the page was updated, false if the page with the specified UUID does not exist
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public boolean update(Page page) throws DAOException {
+        try {
+            return this.controller.update(page);
+        } finally {
+            detach(page == null ? null : page.getUuid());
+        }
+    }
+
+    /**
+     * Deletes a page by its UUID, detaching the lookups of the page in flight.
+     *
+     * @param uuid the UUID of the page to delete
+     * @return true if the page was deleted, false if the page with the specified UUID does not exist
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public boolean delete(String uuid) throws DAOException {
+        try {
+            return this.controller.delete(uuid);
+        } finally {
+            detach(uuid);
+        }
+    }
+
+    /**
+     * Creates several pages at once, detaching the lookups of the pages in flight.
+     *
+     * @param pages the pages to create
+     * @return true if the pages were created, false if any of their UUIDs is already in use or repeated
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public boolean createAll(List<Page> pages) throws DAOException {
+        try {
+            return this.controller.createAll(pages);
+        } finally {
+            for (Page page : pages) {
+                detach(page == null ? null : page.getUuid());
+            }
+        }
+    }
+
+    /**
+     * Updates several pages at once, detaching the lookups of the pages in flight.
+     *
+     * @param pages the pages to update
+     * @return the UUIDs of the updated pages
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public List<String> updateAll(List<Page> pages) throws DAOException {
+        try {
+            return this.controller.updateAll(pages);
+        } finally {
+            for (Page page : pages) {
+                detach(page == null ? null : page.getUuid());
+            }
+        }
+    }
+
+    /**
+     * Deletes several pages at once, detaching the lookups of the pages in flight.
+     *
+     * @param uuids the UUIDs of the pages to delete
+     * @return the UUIDs of the deleted pages
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public List<String> deleteAll(List<String> uuids) throws DAOException {
+        try {
+            return this.controller.deleteAll(uuids);
+        } finally {
+            for (String uuid : uuids) {
+                detach(uuid);
+            }
+        }
+    }
+
+    /**
+     * Checks if a page exists by its UUID, sharing the lookup with the concurrent ones of the same page.
+     *
+     * @param uuid the UUID of the page to check
+     * @return true if the page exists, false otherwise
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public boolean exists(String uuid) throws DAOException {
+        try {
+            return lookup(this.existences, uuid, () -> this.controller.exists(uuid));
+        } catch (PageNotFoundException e) {
+            // Not thrown by the lookup
+            throw new DAOException(e);
+        }
+    }
+
+    /**
+     * Returns the number of lookups that got the result of another one instead of reaching the underlying controller.
+     *
+     * @return the number of coalesced lookups
+     */
+    public long getCoalescedCount() {
+        return this.coalesced.get();
+    }
+
+    /**
+     * Looks for a page in the underlying controller, or waits for the lookup of the same page in flight.
+     *
+     * @param <T> the type of the result of the lookup
+     * @param calls the lookups in flight of the same kind
+     * @param uuid the UUID of the page
+     * @param lookup the lookup of the page in the underlying controller
+     * @return the result of the lookup
+     * @throws DAOException if there is an error accessing the data store
+     * @throws PageNotFoundException if the page with the specified UUID does not exist
+     */
+    private <T> T lookup(Map<String, CompletableFuture<T>> calls, String uuid, Lookup<T> lookup)
+        throws DAOException, PageNotFoundException {
+        if (uuid == null) {
+            return lookup.read();
+        }
+
+        final CompletableFuture<T> call = new CompletableFuture<>();
+        final CompletableFuture<T> current = calls.putIfAbsent(uuid, call);
+        if (current != null) {
+            this.coalesced.incrementAndGet();
+            return await(current);
+        }
+
+        try {
+            final T result = lookup.read();
+            call.complete(result);
+            return result;
+        } catch (DAOException | PageNotFoundException | RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(uuid, call);
+        }
+    }
+
+    /**
+     * Waits for a lookup in flight, throwing its failure as if it had been done by the caller.
+     *
+     * @param <T> the type of the result of the lookup
+     * @param call the lookup in flight
+     * @return the result of the lookup
+     * @throws DAOException if there was an error accessing the data store
+     * @throws PageNotFoundException if the page does not exist
+     */
+    private static <T> T await(CompletableFuture<T> call) throws DAOException, PageNotFoundException {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            // The exception of the first lookup is wrapped, so every waiter gets its own stack trace
+            final Throwable cause = e.getCause();
+            if (cause instanceof PageNotFoundException) {
+                final PageNotFoundException notFound = (PageNotFoundException) cause;
+                throw new PageNotFoundException(notFound.getMessage(), notFound, notFound.getUuid());
+            } else if (cause instanceof DAOException) {
+                throw new DAOException(cause.getMessage(), cause);
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Detaches the lookups of a page in flight, so the next lookups reach the underlying controller.
+     *
+     * @param uuid the UUID of the page (may be null)
+     */
+    private void detach(String uuid) {
+        if (uuid != null) {
+            this.pages.remove(uuid);
+            this.versions.remove(uuid);
+            this.summaries.remove(uuid);
+            this.existences.remove(uuid);
+        }
+    }
+
+    /**
+     * Functional interface for a lookup of a page in the underlying controller.
+     *
+     * @param <T> the type of the result of the lookup
+     */
+    @FunctionalInterface
+    private interface Lookup<T> {
+        T read() throws DAOException, PageNotFoundException;
+    }
+
+}
@@ -0,0 +1,629 @@
+package es.uvigo.esei.dai.hybridserver.controler;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import es.uvigo.esei.dai.hybridserver.PageNotFoundException;
+import es.uvigo.esei.dai.hybridserver.model.dao.DAOException;
+import es.uvigo.esei.dai.hybridserver.model.dao.PageSummaryCursor;
+import es.uvigo.esei.dai.hybridserver.model.entity.Page;
+import es.uvigo.esei.dai.hybridserver.model.entity.PageSummary;
+
+/**
+ * Implementation of the PagesController interface that answers the requests for pages that do not
+ * exist without reaching another controller.
+ * A Bloom filter of the UUIDs of all the pages, loaded with {@link #rebuild(int)} and updated on every
+ * creation and deletion, tells which pages certainly do not exist. The few lookups it lets through
+ * for missing pages (false positives, and deleted pages whose counters are shared) are remembered in
+ * a bounded negative cache, which is invalidated when the page is created.
+ * Every page must be created and deleted through this controller, as pages created by other servers
+ * on the same store would not be in the filter until it is rebuilt.
+ */
+public class NegativeLookupPagesController implements PagesController {
+
+    public static final int DEFAULT_MAX_MISSES = 10000;         // Default max. number of missing UUIDs remembered
+    private static final int DEFAULT_EXPECTED_PAGES = 65536;    // Min. number of pages the filter is sized for
+
+    private final PagesController controller;   // Controller the pages are read from and written to
+    private final int maxMisses;                // Max. number of missing UUIDs remembered
+
+    // State guarded by this
+    private CountingBloomFilter filter;     // UUIDs of the pages, or null until the filter is built
+    private CountingBloomFilter building;   // Filter being built, which is updated too, or null
+    private final Map<String, Boolean> misses;  // Missing UUIDs, the least recently used first
+    private long creations = 0;             // Number of creations, to discard the misses read before one
+
+    private long filtered = 0;      // Number of lookups answered by the filter
+    private long remembered = 0;    // Number of lookups answered by the negative cache
+
+    /**
+     * Constructs a NegativeLookupPagesController. No lookup is answered by the filter until it is built.
+     *
+     * @param controller the controller the pages are read from and written to
+     * @param maxMisses the max. number of missing UUIDs remembered
+     * @throws IllegalArgumentException if the max. number of missing UUIDs is negative
+     */
+    public NegativeLookupPagesController(PagesController controller, int maxMisses) {
+        if (maxMisses < 0) {
+            throw new IllegalArgumentException("Max. number of missing pages cannot be negative");
+        }
+
+        this.controller = controller;
+        this.maxMisses = maxMisses;
+        this.misses = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > NegativeLookupPagesController.this.maxMisses;
+            }
+        };
+    }
+
+    /**
+     * Builds the filter from the UUIDs of all the pages, read in batches (keyset pagination).
+     * The pages created and deleted meanwhile are taken into account, and the current filter
+     * keeps answering until the new one is complete.
+     *
+     * @param batchSize the max. number of UUIDs read at once
+     * @throws DAOException if there is an error accessing the data store, in which case the current filter is kept
+     */
+    public void rebuild(int batchSize) throws DAOException {
+        int expected;
+        synchronized (this) {
+            expected = Math.max(DEFAULT_EXPECTED_PAGES, this.filter == null ? 0 : 2 * this.filter.size());
+        }
+
+        long pages = load(expected, batchSize);
+        if (pages > expected) {
+            // Too many pages for the filter to be accurate, it is loaded again with the right size
+            load((int) Math.min(Integer.MAX_VALUE / CountingBloomFilter.SLOTS_PER_ENTRY, 2 * pages), batchSize);
+        }
+    }
+
+    /**
+     * Loads the UUIDs of all the pages in a new filter, which replaces the current one when it is complete.
+     *
+     * @param expected the number of pages the new filter is sized for
+     * @param batchSize the max. number of UUIDs read at once
+     * @return the number of pages loaded
+     * @throws DAOException if there is an error accessing the data store
+     */
+    private long load(int expected, int batchSize) throws DAOException {
+        final CountingBloomFilter filter = new CountingBloomFilter(expected);
+        synchronized (this) {
+            this.building = filter;
+        }
+
+        long pages = 0;
+        try {
+            String last = null;
+            List<String> uuids;
+            do {
+                uuids = this.controller.listUuids(last, batchSize);
+                synchronized (this) {
+                    for (String uuid : uuids) {
+                        filter.add(uuid);
+                    }
+                }
+                pages += uuids.size();
+                if (!uuids.isEmpty()) {
+                    last = uuids.get(uuids.size() - 1);
+                }
+            } while (uuids.size() == batchSize);
+
+            synchronized (this) {
+                this.filter = filter;
+            }
+        } finally {
+            synchronized (this) {
+                this.building = null;
+            }
+        }
+
+        return pages;
+    }
+
+    /**
+     * Retrieves a page by its UUID, unless it certainly does not exist.
+     *
+     * @param uuid the UUID of the page to retrieve
+     * @return the page with the specified UUID, or an empty Optional if it does not exist
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public Optional<Page> get(String uuid) throws DAOException {
+        if (isMissing(uuid)) {
+            return Optional.empty();
+        }
+
+        final long creations = creations();
+        final Optional<Page> page = this.controller.get(uuid);
+        if (page.isEmpty()) {
+            missed(uuid, creations);
+        }
+        return page;
+    }
+
+    /**
+     * Retrieves the version of a page by its UUID, unless it certainly does not exist.
+     *
+     * @param uuid the UUID of the page
+     * @return the version of the page with the specified UUID
+     * @throws DAOException if there is an error accessing the data store
+     * @throws PageNotFoundException if the page with the specified UUID does not exist
+     */
+    @Override
+    public int getVersion(String uuid) throws DAOException, PageNotFoundException {
+        return lookup(uuid, () -> this.controller.getVersion(uuid));
+    }
+
+    /**
+     * Retrieves the metadata of a page by its UUID, unless it certainly does not exist.
+     *
+     * @param uuid the UUID of the page
+     * @return the summary (UUID, version and size) of the page with the specified UUID
+     * @throws DAOException if there is an error accessing the data store
+     * @throws PageNotFoundException if the page with the specified UUID does not exist
+     */
+    @Override
+    public PageSummary getSummary(String uuid) throws DAOException, PageNotFoundException {
+        return lookup(uuid, () -> this.controller.getSummary(uuid));
+    }
+
+    /**
+     * Retrieves a range of the content of a page, encoded as UTF-8, unless it certainly does not exist.
+     *
+     * @param uuid the UUID of the page
+     * @param version the version of the page the range is read from
+     * @param offset the position of the first byte of the range
+     * @param length the max. number of bytes of the range
+     * @return the bytes of the range, fewer than requested if the content ends before, or null
+     * if the page is not at that version anymore (it has been updated or deleted)
+     * @throws DAOException if there is an error accessing the data store
+     * @throws PageNotFoundException if the page with the specified UUID does not exist
+     */
+    @Override
+    public byte[] getContentRange(String uuid, int version, long offset, int length) throws DAOException, PageNotFoundException {
+        return lookup(uuid, () -> this.controller.getContentRange(uuid, version, offset, length));
+    }
+
+    /**
+     * Lists all pages, from the underlying controller.
+     *
+     * @return a list of all pages
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public List<Page> list() throws DAOException {
+        return this.controller.list();
+    }
+
+    /**
+     * Lists the metadata of the pages after a UUID, in UUID order (keyset pagination), from the underlying controller.
+     *
+     * @param after the UUID after which the pages are listed, or null to list from the first one
+     * @param limit the max. number of pages listed
+     * @return the summaries (UUID, version and size) of the pages, sorted by UUID
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public List<PageSummary> listSummaries(String after, int limit) throws DAOException {
+        return this.controller.listSummaries(after, limit);
+    }
+
+    /**
+     * Lists the metadata of all pages, in UUID order, from the underlying controller.
+     *
+     * @return the summaries (UUID, version and size) of all pages, sorted by UUID
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public List<PageSummary> listSummaries() throws DAOException {
+        return this.controller.listSummaries();
+    }
+
+    /**
+     * Lists the UUIDs of the pages after a UUID, in UUID order (keyset pagination), from the underlying controller.
+     *
+     * @param after the UUID after which the pages are listed, or null to list from the first one
+     * @param limit the max. number of UUIDs listed
+     * @return the UUIDs of the pages, sorted
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public List<String> listUuids(String after, int limit) throws DAOException {
+        return this.controller.listUuids(after, limit);
+    }
+
+    /**
+     * Opens a cursor over the metadata of the pages after a UUID, in UUID order, from the underlying controller.
+     *
+     * @param after the UUID after which the pages are listed, or null to list from the first one
+     * @param limit the max. number of pages listed
+     * @param batchSize the max. number of pages read at once
+     * @return the cursor over the summaries of the pages
+     * @throws IllegalArgumentException if the limit or the batch size are not positive
+     */
+    @Override
+    public PageSummaryCursor openSummaryCursor(String after, int limit, int batchSize) {
+        return this.controller.openSummaryCursor(after, limit, batchSize);
+    }
+
+    /**
+     * Creates a new page, adding it to the filter before it is stored, so it is never reported missing.
+     *
+     * @param page the page to create
+     * @return true if the page was created, false if its UUID is already in use
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public boolean create(Page page) throws DAOException {
+        if (page != null && page.getUuid() != null) {
+            created(page.getUuid());
+        }
+        return this.controller.create(page);
+    }
+
+    /**
+     * Updates an existing page, unless it certainly does not exist.
+     *
+     * @param page the page to update
+     * @return true if the page was updated, false if the page with the specified UUID does not exist
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public boolean update(Page page) throws DAOException {
+        return check(page.getUuid(), () -> this.controller.update(page));
+    }
+
+    /**
+     * Deletes a page by its UUID, unless it certainly does not exist, removing it from the filter.
+     *
+     * @param uuid the UUID of the page to delete
+     * @return true if the page was deleted, false if the page with the specified UUID does not exist
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public boolean delete(String uuid) throws DAOException {
+        final boolean deleted = check(uuid, () -> this.controller.delete(uuid));
+        if (deleted) {
+            deleted(uuid);
+        }
+        return deleted;
+    }
+
+    /**
+     * Creates several pages at once, adding them to the filter before they are stored.
+     *
+     * @param pages the pages to create
+     * @return true if the pages were created, false if any of their UUIDs is already in use or repeated
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public boolean createAll(List<Page> pages) throws DAOException {
+        for (Page page : pages) {
+            if (page != null && page.getUuid() != null) {
+                created(page.getUuid());
+            }
+        }
+        return this.controller.createAll(pages);
+    }
+
+    /**
+     * Updates several pages at once, skipping the ones that certainly do not exist, and remembering
+     * as missing the ones that were not found.
+     *
+     * @param pages the pages to update
+     * @return the UUIDs of the updated pages
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public List<String> updateAll(List<Page> pages) throws DAOException {
+        final List<Page> candidates = new ArrayList<>(pages.size());
+        for (Page page : pages) {
+            if (page == null || !isMissing(page.getUuid())) {
+                candidates.add(page);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        final long creations = creations();
+        final List<String> updated = this.controller.updateAll(candidates);
+        final Set<String> found = new HashSet<>(updated);
+        for (Page page : candidates) {
+            if (!found.contains(page.getUuid())) {
+                missed(page.getUuid(), creations);
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * Deletes several pages at once, skipping the ones that certainly do not exist, removing the
+     * deleted ones from the filter and remembering as missing the ones that were not found.
+     *
+     * @param uuids the UUIDs of the pages to delete
+     * @return the UUIDs of the deleted pages
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public List<String> deleteAll(List<String> uuids) throws DAOException {
+        final List<String> candidates = new ArrayList<>(uuids.size());
+        for (String uuid : uuids) {
+            if (!isMissing(uuid)) {
+                candidates.add(uuid);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        final long creations = creations();
+        final List<String> deleted = this.controller.deleteAll(candidates);
+        final Set<String> found = new HashSet<>(deleted);
+        for (String uuid : found) {
+            deleted(uuid);
+        }
+        for (String uuid : candidates) {
+            if (!found.contains(uuid)) {
+                missed(uuid, creations);
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Checks if a page exists by its UUID, without reaching the underlying controller if it certainly does not.
+     *
+     * @param uuid the UUID of the page to check
+     * @return true if the page exists, false otherwise
+     * @throws DAOException if there is an error accessing the data store
+     */
+    @Override
+    public boolean exists(String uuid) throws DAOException {
+        return check(uuid, () -> this.controller.exists(uuid));
+    }
+
+    /**
+     * Returns the number of lookups answered by the filter without reaching the underlying controller.
+     *
+     * @return the number of lookups of pages that are not in the filter
+     */
+    public synchronized long getFilteredCount() {
+        return this.filtered;
+    }
+
+    /**
+     * Returns the number of lookups answered by the negative cache without reaching the underlying controller.
+     *
+     * @return the number of lookups of pages remembered as missing
+     */
+    public synchronized long getRememberedCount() {
+        return this.remembered;
+    }
+
+    /**
+     * Looks for a page in the underlying controller, unless it certainly does not exist, and
+     * remembers it as missing if it is not found.
+     *
+     * @param <T> the type of the result of the lookup
+     * @param uuid the UUID of the page
+     * @param lookup the lookup of the page in the underlying controller
+     * @return the result of the lookup
+     * @throws DAOException if there is an error accessing the data store
+     * @throws PageNotFoundException if the page with the specified UUID does not exist
+     */
+    private <T> T lookup(String uuid, Lookup<T> lookup) throws DAOException, PageNotFoundException {
+        if (isMissing(uuid)) {
+            throw new PageNotFoundException("Page with UUID " + uuid + " not found", uuid);
+        }
+
+        final long creations = creations();
+        try {
+            return lookup.read();
+        } catch (PageNotFoundException e) {
+            missed(uuid, creations);
+            throw e;
+        }
+    }
+
+    /**
+     * Runs an operation on a page in the underlying controller that tells whether the page was found,
+     * unless it certainly does not exist, and remembers it as missing if it is not found.
+     *
+     * @param uuid the UUID of the page
+     * @param operation the operation on the page in the underlying controller
+     * @return true if the page was found, false otherwise
+     * @throws DAOException if there is an error accessing the data store
+     */
+    private boolean check(String uuid, Check operation) throws DAOException {
+        if (isMissing(uuid)) {
+            return false;
+        }
+
+        final long creations = creations();
+        final boolean found = operation.run();
+        if (!found) {
+            missed(uuid, creations);
+        }
+        return found;
+    }
+
+    /**
+     * Checks whether a page certainly does not exist, because it is not in the filter or it is
+     * remembered as missing.
+     *
+     * @param uuid the UUID of the page (may be null)
+     * @return true if the page does not exist, false if it may exist
+     */
+    private synchronized boolean isMissing(String uuid) {
+        if (uuid == null) {
+            return false;
+        }
+
+        if (this.filter != null && !this.filter.mightContain(uuid)) {
+            this.filtered++;
+            return true;
+        }
+        if (this.misses.get(uuid) != null) {
+            this.remembered++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of creations so far, to be taken before a page is looked for.
+     *
+     * @return the number of creations
+     */
+    private synchronized long creations() {
+        return this.creations;
+    }
+
+    /**
+     * Remembers a page as missing, unless a page has been created since it was looked for (as it could be this one).
+     *
+     * @param uuid the UUID of the page
+     * @param creations the number of creations before the page was looked for
+     */
+    private synchronized void missed(String uuid, long creations) {
+        if (creations == this.creations && this.maxMisses > 0) {
+            this.misses.put(uuid, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Adds a page that is going to be created to the filters, and forgets it as missing.
+     *
+     * @param uuid the UUID of the page
+     */
+    private synchronized void created(String uuid) {
+        this.creations++;
+        this.misses.remove(uuid);
+
+        if (this.filter != null) {
+            this.filter.add(uuid);
+        }
+        if (this.building != null) {
+            this.building.add(uuid);
+        }
+    }
+
+    /**
+     * Removes a deleted page from the filter and remembers it as missing. The filter being built is
+     * not updated, as the page could have not been loaded in it yet, and its counters belong to others.
+     *
+     * @param uuid the UUID of the page
+     */
+    private synchronized void deleted(String uuid) {
+        if (this.filter != null) {
+            this.filter.remove(uuid);
+        }
+        if (this.maxMisses > 0) {
+            this.misses.put(uuid, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Functional interface for a lookup of a page in the underlying controller.
+     *
+     * @param <T> the type of the result of the lookup
+     */
+    @FunctionalInterface
+    private interface Lookup<T> {
+        T read() throws DAOException, PageNotFoundException;
+    }
+
+    /**
+     * Functional interface for an operation on a page in the underlying controller that tells
+     * whether the page was found.
+     */
+    @FunctionalInterface
+    private interface Check {
+        boolean run() throws DAOException;
+    }
+
+    /**
+     * Class implementing a counting Bloom filter of UUIDs, sized for a false positive rate of about 1%.
+     * Every UUID increments a counter in each of several positions, so it can be removed again by
+     * decrementing them. The counters that reach their max. value are never decremented, as they
+     * could belong to more UUIDs than counted.
+     */
+    private static class CountingBloomFilter {
+        private static final int SLOTS_PER_ENTRY = 10;  // Number of counters per expected UUID
+        private static final int HASHES = 7;            // Number of counters of a UUID
+        private static final int MAX_COUNT = 255;       // Max. value of a counter
+
+        private final byte[] counters;  // Counters, as unsigned bytes
+        private int size = 0;           // Number of UUIDs in the filter
+
+        private CountingBloomFilter(int expectedEntries) {
+            this.counters = new byte[Math.max(1, expectedEntries) * SLOTS_PER_ENTRY];
+        }
+
+        private int size() {
+            return this.size;
+        }
+
+        private boolean mightContain(String uuid) {
+            final long hash = hash(uuid);
+            for (int i = 0; i < HASHES; i++) {
+                if (this.counters[index(hash, i)] == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void add(String uuid) {
+            final long hash = hash(uuid);
+            for (int i = 0; i < HASHES; i++) {
+                final int index = index(hash, i);
+                if ((this.counters[index] & 0xff) < MAX_COUNT) {
+                    this.counters[index]++;
+                }
+            }
+            this.size++;
+        }
+
+        private void remove(String uuid) {
+            if (!mightContain(uuid)) {
+                return;
+            }
+
+            final long hash = hash(uuid);
+            for (int i = 0; i < HASHES; i++) {
+                final int index = index(hash, i);
+                if ((this.counters[index] & 0xff) < MAX_COUNT) {
+                    this.counters[index]--;
+                }
+            }
+            this.size--;
+        }
+
+        private int index(long hash, int i) {
+            // Double hashing: the i-th position is h1 + i * h2, with an odd h2 so the positions differ
+            return Math.floorMod((int) hash + i * ((int) (hash >>> 32) | 1), this.counters.length);
+        }
+
+        private static long hash(String uuid) {
+            // 64-bit FNV-1a of the chars of the UUID
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < uuid.length(); i++) {
+                hash ^= uuid.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            return hash;
+        }
+    }
+
+}
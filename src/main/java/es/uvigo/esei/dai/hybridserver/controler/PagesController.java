@@ -1,9 +1,12 @@
 package es.uvigo.esei.dai.hybridserver.controler;
 
 import java.util.List;
+import java.util.Optional;
 import es.uvigo.esei.dai.hybridserver.model.entity.Page;
+import es.uvigo.esei.dai.hybridserver.model.entity.PageSummary;
 import es.uvigo.esei.dai.hybridserver.PageNotFoundException;
 import es.uvigo.esei.dai.hybridserver.model.dao.DAOException;
+import es.uvigo.esei.dai.hybridserver.model.dao.PageSummaryCursor;
 
 /**
  * Interface defining the contract for managing web pages.
@@ -15,11 +18,45 @@ public interface PagesController {
      * Retrieves a page by its UUID.
      * 
      * @param uuid the UUID of the page to retrieve
-     * @return the page with the specified UUID
+     * @return the page with the specified UUID, or an empty Optional if it does not exist
+     * @throws DAOException if there is an error accessing the data store
+     */
+    public Optional<Page> get(String uuid) throws DAOException;
+
+    /**
+     * Retrieves the version of a page by its UUID, without its content.
+     * 
+     * @param uuid the UUID of the page
+     * @return the version of the page with the specified UUID
+     * @throws DAOException if there is an error accessing the data store
+     * @throws PageNotFoundException if the page with the specified UUID does not exist
+     */
+    public int getVersion(String uuid) throws DAOException, PageNotFoundException;
+
+    /**
+     * Retrieves the metadata of a page by its UUID, without its content.
+     * 
+     * @param uuid the UUID of the page
+     * @return the summary (UUID, version and size) of the page with the specified UUID
      * @throws DAOException if there is an error accessing the data store
      * @throws PageNotFoundException if the page with the specified UUID does not exist
      */
-    public Page get(String uuid) throws DAOException, PageNotFoundException;
+    public PageSummary getSummary(String uuid) throws DAOException, PageNotFoundException;
+
+    /**
+     * Retrieves a range of the content of a version of a page, encoded as UTF-8, so every range
+     * of a response is cut from the same content.
+     * 
+     * @param uuid the UUID of the page
+     * @param version the version of the page the range is read from
+     * @param offset the position of the first byte of the range
+     * @param length the max. number of bytes of the range
+     * @return the bytes of the range, fewer than requested if the content ends before, or null
+     * if the page is not at that version anymore (it has been updated or deleted)
+     * @throws DAOException if there is an error accessing the data store
+     * @throws PageNotFoundException if the page with the specified UUID does not exist
+     */
+    public byte[] getContentRange(String uuid, int version, long offset, int length) throws DAOException, PageNotFoundException;
 
     /**
      * Lists all pages.
@@ -29,31 +66,99 @@ public interface PagesController {
      */
     public List<Page> list() throws DAOException;
 
+    /**
+     * Lists the metadata of the pages after a UUID, in UUID order (keyset pagination), without their content.
+     * 
+     * @param after the UUID after which the pages are listed, or null to list from the first one
+     * @param limit the max. number of pages listed
+     * @return the summaries (UUID, version and size) of the pages, sorted by UUID
+     * @throws DAOException if there is an error accessing the data store
+     */
+    public List<PageSummary> listSummaries(String after, int limit) throws DAOException;
+
+    /**
+     * Lists the metadata of all pages, in UUID order, without their content.
+     * 
+     * @return the summaries (UUID, version and size) of all pages, sorted by UUID
+     * @throws DAOException if there is an error accessing the data store
+     */
+    public List<PageSummary> listSummaries() throws DAOException;
+
+    /**
+     * Lists the UUIDs of the pages after a UUID, in UUID order (keyset pagination), without their metadata nor content.
+     * 
+     * @param after the UUID after which the pages are listed, or null to list from the first one
+     * @param limit the max. number of UUIDs listed
+     * @return the UUIDs of the pages, sorted
+     * @throws DAOException if there is an error accessing the data store
+     */
+    public List<String> listUuids(String after, int limit) throws DAOException;
+
+    /**
+     * Opens a cursor over the metadata of the pages after a UUID, in UUID order, which reads them
+     * in batches so they can be walked without holding all of them in memory.
+     * 
+     * @param after the UUID after which the pages are listed, or null to list from the first one
+     * @param limit the max. number of pages listed
+     * @param batchSize the max. number of pages read at once
+     * @return the cursor over the summaries of the pages
+     * @throws IllegalArgumentException if the limit or the batch size are not positive
+     */
+    public PageSummaryCursor openSummaryCursor(String after, int limit, int batchSize);
+
     /**
     * Creates a new page.
     * 
     * @param page the page to create
+    * @return true if the page was created, false if its UUID is already in use
     * @throws DAOException if there is an error accessing the data store
     */
-    public void create(Page page) throws DAOException;
+    public boolean create(Page page) throws DAOException;
 
     /**
      * Updates the specified page.
      *
      * @param page the page to update
+     * @return true if the page was updated, false if the page with the specified UUID does not exist
      * @throws DAOException if there is an error accessing the data store
-     * @throws PageNotFoundException if the page with the specified UUID does not exist
      */
-    public void update(Page page) throws DAOException, PageNotFoundException;
+    public boolean update(Page page) throws DAOException;
 
     /**
      * Deletes the page with the specified UUID.
      * 
      * @param uuid the UUID of the page to delete
+     * @return true if the page was deleted, false if the page with the specified UUID does not exist
+     * @throws DAOException if there is an error accessing the data store
+     */
+    public boolean delete(String uuid) throws DAOException;
+
+    /**
+     * Creates several pages at once: either all of them are created or none is.
+     * 
+     * @param pages the pages to create
+     * @return true if the pages were created, false if any of their UUIDs is already in use or repeated
+     * @throws DAOException if there is an error accessing the data store
+     */
+    public boolean createAll(List<Page> pages) throws DAOException;
+
+    /**
+     * Updates several pages at once, skipping the ones that do not exist.
+     * 
+     * @param pages the pages to update
+     * @return the UUIDs of the updated pages
+     * @throws DAOException if there is an error accessing the data store
+     */
+    public List<String> updateAll(List<Page> pages) throws DAOException;
+
+    /**
+     * Deletes several pages at once, skipping the ones that do not exist.
+     * 
+     * @param uuids the UUIDs of the pages to delete
+     * @return the UUIDs of the deleted pages
      * @throws DAOException if there is an error accessing the data store
-     * @throws PageNotFoundException if the page with the specified UUID does not exist
      */
-    public void delete(String uuid) throws DAOException, PageNotFoundException;
+    public List<String> deleteAll(List<String> uuids) throws DAOException;
 
     /**
      * Checks if a page with the specified UUID exists.
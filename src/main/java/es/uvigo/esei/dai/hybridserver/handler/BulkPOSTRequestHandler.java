@@ -0,0 +1,112 @@
+package es.uvigo.esei.dai.hybridserver.handler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import es.uvigo.esei.dai.hybridserver.model.entity.Page;
+import es.uvigo.esei.dai.hybridserver.controler.PagesController;
+import es.uvigo.esei.dai.hybridserver.http.HTTPRequest;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponse;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponseStatus;
+
+import es.uvigo.esei.dai.hybridserver.model.dao.DAOException;
+
+/**
+ * Handler for POST HTTP requests to create several HTML pages at once (/html/bulk).
+ * The pages are sent as a repeated form parameter (html=&lt;content&gt;&amp;html=&lt;content&gt;...),
+ * and they are stored together, so a single request replaces one POST per page.
+ */
+public class BulkPOSTRequestHandler extends BaseRequestHandler {
+
+    /**
+     * Creates a new instance of the BulkPOSTRequestHandler.
+     */
+    public BulkPOSTRequestHandler() {}
+
+    /**
+     * Handles POST requests to create several HTML pages.
+     * Validates the request content and parameters, generates a unique UUID for every new page,
+     * and stores all of them at once using the PagesController. Returns the UUIDs of the pages,
+     * one per line and in the order of their contents.
+     *
+     * @param request The HTTP request to be handled.
+     * @param controller The PagesController to manage page operations.
+     * @return The HTTP response generated for the request.
+     */
+    @Override
+    public HTTPResponse handle(HTTPRequest request, PagesController controller) {
+        // Check for a uuid parameter, without decoding the contents of the pages
+        if (!request.getResourceParameterValues("uuid").isEmpty()) {
+            // POST does not support edit actions
+            return badRequest(createBaseHTTPResponse(request.getHttpVersion()));
+
+        }
+
+        // Check for content validity
+        final List<String> contents = contents(request);
+        if (contents == null) {
+            return badRequest(createBaseHTTPResponse(request.getHttpVersion()));
+        }
+
+        final List<Page> pages = new ArrayList<>(contents.size());
+        try {
+            // Store the new pages, with other uuids if any of them already exists (very unlikely)
+            do {
+                pages.clear();
+                for (String html : contents) {
+                    pages.add(new Page(UUID.randomUUID().toString(), html));
+                }
+            } while (!controller.createAll(pages));
+
+        } catch (DAOException e) {
+            // Return internal server error response
+            return internalServerError(createBaseHTTPResponse(request.getHttpVersion()));
+        }
+
+        // Return OK response with the created page uuids
+        return created(createBaseHTTPResponse(request.getHttpVersion()), pages);
+    }
+
+    /**
+     * Generates a created pages response.
+     *
+     * @param response The base HTTP response to be modified.
+     * @param pages The created pages.
+     * @return The modified HTTP response.
+     */
+    private HTTPResponse created(HTTPResponse response, List<Page> pages) {
+        final StringBuilder uuids = new StringBuilder(pages.size() * 37);
+        for (Page page : pages) {
+            uuids.append(page.getUuid()).append('\n');
+        }
+
+        response.setStatus(HTTPResponseStatus.S200);
+        response.putParameter("Content-Type", "text/plain");
+
+        response.setContent(uuids.toString());
+
+        return response;
+    }
+
+    /**
+     * Validates the content of the POST request and returns the contents of the pages.
+     * Ensures that required headers are present and that the content includes at least an 'html' parameter.
+     *
+     * @param request The HTTP request to validate.
+     * @return The contents of the pages, or null if the content is not valid.
+     */
+    private List<String> contents(HTTPRequest request) {
+        // Check for content absence of required headers
+        if (!request.getHeaderParameters().containsKey("Content-Type")
+            || !request.getHeaderParameters().containsKey("Content-Length")) {
+            return null;
+        }
+
+        // Valid content, send as repeated form parameter (html = <content>). Only these values are
+        // decoded, instead of the whole content
+        final List<String> contents = request.getResourceParameterValues("html");
+        return contents.isEmpty() ? null : contents;
+
+    }
+
+}
@@ -5,7 +5,6 @@ import es.uvigo.esei.dai.hybridserver.http.HTTPRequest;
 import es.uvigo.esei.dai.hybridserver.http.HTTPResponse;
 import es.uvigo.esei.dai.hybridserver.http.HTTPResponseStatus;
 
-import es.uvigo.esei.dai.hybridserver.PageNotFoundException;
 import es.uvigo.esei.dai.hybridserver.model.dao.DAOException;
 
 /**
@@ -25,7 +24,7 @@ public class DELETERequestHandler extends BaseRequestHandler {
      * Handles DELETE requests to remove a page by its UUID.
      * If the page exists, it is deleted and a success response is returned.
      * If the page does not exist, a 404 Not Found response is returned.
-     * For unsupported resources, a 400 Bad Request response is returned.
+     * If no UUID is provided, a 400 Bad Request response is returned.
      * 
      * @param request The HTTP request to be handled.
      * @param controller The PagesController to manage page operations.
@@ -34,27 +33,20 @@ public class DELETERequestHandler extends BaseRequestHandler {
     @Override
     public HTTPResponse handle(HTTPRequest request, PagesController controller) {
 
-        // Check if it is a request for a html resource
-        if (request.getResourceName().equals("html") && request.getResourceParameters().containsKey("uuid")) {
+        // Check for a uuid parameter
+        if (request.getResourceParameters().containsKey("uuid")) {
             
             String uuid = request.getResourceParameters().get("uuid");
             
             try {
-                // Check if the requested page exists
-                if (controller.exists(uuid)) {
-
-                    // Delete the page and return success response
-                    controller.delete(uuid);
+                // Delete the page, which tells whether it existed in the same statement
+                if (controller.delete(uuid)) {
                     return removed(createBaseHTTPResponse(request.getHttpVersion()), uuid);
-                
-                } else {
-                    // Return not found response
-                    return notFound(createBaseHTTPResponse(request.getHttpVersion()));
                 }
 
-            } catch (PageNotFoundException e) {
                 // Return not found response
                 return notFound(createBaseHTTPResponse(request.getHttpVersion()));
+
             } catch (DAOException e) {
                 // Return internal server error response
                 return internalServerError(createBaseHTTPResponse(request.getHttpVersion()));
@@ -62,9 +54,7 @@ public class DELETERequestHandler extends BaseRequestHandler {
             
         }
 
-        // For other resources (initially only html files are supported)
-
-        // No supported resource, 400 Bad Request
+        // No uuid parameter provided, 400 Bad Request
         return badRequest(createBaseHTTPResponse(request.getHttpVersion()));
     }
 
@@ -1,31 +1,71 @@
 package es.uvigo.esei.dai.hybridserver.handler;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
 import es.uvigo.esei.dai.hybridserver.model.entity.Page;
+import es.uvigo.esei.dai.hybridserver.model.entity.PageSummary;
 import es.uvigo.esei.dai.hybridserver.controler.PagesController;
+import es.uvigo.esei.dai.hybridserver.http.ByteRange;
+import es.uvigo.esei.dai.hybridserver.http.HTTPHeaders;
 import es.uvigo.esei.dai.hybridserver.http.HTTPRequest;
+import es.uvigo.esei.dai.hybridserver.http.HTTPRequestMethod;
 import es.uvigo.esei.dai.hybridserver.http.HTTPResponse;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponseStatus;
 
 import es.uvigo.esei.dai.hybridserver.PageNotFoundException;
 import es.uvigo.esei.dai.hybridserver.model.dao.DAOException;
+import es.uvigo.esei.dai.hybridserver.model.dao.PageSummaryCursor;
 
 /**
- * Handler for GET HTTP requests to retrieve pages or the welcome/main page.
+ * Handler for GET HTTP requests to the html resource, retrieving pages.
  * This class extends the BaseRequestHandler to provide specific handling
- * for GET requests, including serving the welcome page, main page listing,
- * and individual HTML pages by UUID.
+ * for GET requests, including the main page listing and individual HTML pages by UUID.
  */
 public class GETRequestHandler extends BaseRequestHandler {
 
+    private static final byte[] CRLF = { '\r', '\n' };
+    private static final Set<String> LISTING_PARAMETERS = Set.of("after", "limit");
+    private static final int UNLIMITED = Integer.MAX_VALUE; // Page size of the whole listing
+    private static final int DEFAULT_PAGE_SIZE = 100;       // Page size of the listing when no limit is given
+    private static final int MAX_PAGE_SIZE = 10000;         // Max. page size of the listing
+    private static final int BATCH_SIZE = 500;              // Number of pages read at once while listing
+
+    private final PageCompressor compressor;    // Compressor of the contents of the pages
+    private final PageValidator validator = new PageValidator();    // Validators of the pages (ETag and Last-Modified)
+
+    /**
+     * Creates a new instance of the GETRequestHandler, compressing the pages with the default threshold.
+     */
+    public GETRequestHandler() {
+        this(new PageCompressor());
+    }
+
     /**
      * Creates a new instance of the GETRequestHandler.
+     * 
+     * @param compressor The compressor of the contents of the pages.
      */
-    public GETRequestHandler() {}
+    public GETRequestHandler(PageCompressor compressor) {
+        this.compressor = compressor;
+    }
 
     /**
-     * Handles GET requests to retrieve pages or the welcome/main page.
-     * Supports requests for the root resource ("/"), specific HTML pages by UUID,
-     * and lists all available HTML pages.
-     * For unsupported resources or parameters, a 400 Bad Request response is returned.
+     * Handles GET and HEAD requests to retrieve pages of the html resource.
+     * Supports requests for specific HTML pages by UUID, and lists all available HTML pages.
+     * HEAD requests for a page are answered from its metadata when possible, and so are the
+     * headers of range requests, whose ranges are read from the cached content of the page or
+     * from the store.
+     * For unsupported parameters, a 400 Bad Request response is returned.
      * 
      * @param request The HTTP request to be handled.
      * @param controller The PagesController to manage page operations.
@@ -34,49 +74,75 @@ public class GETRequestHandler extends BaseRequestHandler {
     @Override
     public HTTPResponse handle(HTTPRequest request, PagesController controller) {
 
-        // Check if its a request for the root resource
-        if (request.getResourceChain().equals("/")) {
-            return welcomePage(createBaseHTTPResponse(request.getHttpVersion()));
+        // Check if it doesnt request an especific page
+        if (request.getResourceParameters().isEmpty()) {
+            return mainPage(createBaseHTTPResponse(request.getHttpVersion()), request.getMethod(), controller, null, UNLIMITED);
         }
 
-        // Check if its a request for a html resource
-        if (request.getResourceName().equals("html")) {
-            // Check if it doesnt request an especific page
-            if (request.getResourceParameters().isEmpty()) {
-                return mainPage(createBaseHTTPResponse(request.getHttpVersion()), controller);
-            }
-            
-            // Check for an uuid parameter
-            if (request.getResourceParameters().containsKey("uuid")) {
-                String uuid = request.getResourceParameters().get("uuid");
-                try {
-                    // Check if the requested page exists
-                    if (controller.exists(uuid)) {                        
-                        
-                        return requestedPage(createBaseHTTPResponse(request.getHttpVersion()), controller.get(uuid));
-
-                    } else {
-                        // Return not found response
-                        return notFound(createBaseHTTPResponse(request.getHttpVersion()));
-                    }
-                } catch (PageNotFoundException e) {
-                    // Return not found response
-                    return notFound(createBaseHTTPResponse(request.getHttpVersion()));
-                } catch (DAOException e) {
-                    // Return internal server error response
-                    return internalServerError(createBaseHTTPResponse(request.getHttpVersion()));
+        // Check for a page of the listing (?after=<uuid>&limit=N)
+        if (LISTING_PARAMETERS.containsAll(request.getResourceParameters().keySet())) {
+            final String limit = request.getResourceParameters().get("limit");
+            try {
+                final int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Integer.parseInt(limit);
+                if (pageSize > 0 && pageSize <= MAX_PAGE_SIZE) {
+                    return mainPage(createBaseHTTPResponse(request.getHttpVersion()), request.getMethod(), controller,
+                        request.getResourceParameters().get("after"), pageSize);
                 }
+            } catch (NumberFormatException e) {
+                // Invalid limit, 400 Bad Request
             }
-            
-            // Logic for other parameters here
-
-            // No supported parameter, 400 Bad Request
             return badRequest(createBaseHTTPResponse(request.getHttpVersion()));
         }
+        
+        // Check for an uuid parameter
+        if (request.getResourceParameters().containsKey("uuid")) {
+            String uuid = request.getResourceParameters().get("uuid");
+            try {
+                // Conditional requests are checked against the version of the page, without fetching its content
+                if (isConditional(request)) {
+                    final int version = controller.getVersion(uuid);
+                    if (this.validator.isNotModified(request, uuid, version)) {
+                        return notModified(createBaseHTTPResponse(request.getHttpVersion()), request, uuid, version);
+                    }
+                }
+
+                // HEAD and range requests are answered from the metadata of the page, if its content is not needed
+                if (request.getMethod() == HTTPRequestMethod.HEAD || isRangeRequest(request)) {
+                    final PageSummary summary = controller.getSummary(uuid);
+                    final HTTPResponse response = pageHead(createBaseHTTPResponse(request.getHttpVersion()), request, summary);
+                    if (response != null) {
+                        if (request.getMethod() == HTTPRequestMethod.HEAD) {
+                            return response;
+                        }
+
+                        final HTTPResponse partial = ranges(response, request, summary.getSize(),
+                            (offset, length) -> controller.getContentRange(summary.getUuid(), summary.getVersion(), offset, length));
+                        if (partial != null) {
+                            return partial;
+                        }
+                    }
+                }
+
+                // Get the requested page, which tells whether it exists in the same lookup
+                final Optional<Page> page = controller.get(uuid);
+                if (page.isPresent()) {
+                    return requestedPage(createBaseHTTPResponse(request.getHttpVersion()), request, page.get());
+                }
 
-        // For other resources (initially only html files are supported)
+                // Return not found response
+                return notFound(createBaseHTTPResponse(request.getHttpVersion()));
+            } catch (PageNotFoundException e) {
+                // Return not found response
+                return notFound(createBaseHTTPResponse(request.getHttpVersion()));
+            } catch (DAOException e) {
+                // Return internal server error response
+                return internalServerError(createBaseHTTPResponse(request.getHttpVersion()));
+            }
+        }
+        
+        // Logic for other parameters here
 
-        // No supported resource, 400 Bad Request
+        // No supported parameter, 400 Bad Request
         return badRequest(createBaseHTTPResponse(request.getHttpVersion()));
 
     }
@@ -85,59 +151,242 @@ public class GETRequestHandler extends BaseRequestHandler {
      * Generates a requested page response.
      * 
      * @param response The base HTTP response to be modified.
-     * @param pageContent The content of the requested page.
+     * @param request The HTTP request being answered.
+     * @param page The requested page.
      * @return The modified HTTP response.
      */
-    private HTTPResponse requestedPage(HTTPResponse response, Page page) {
+    private HTTPResponse requestedPage(HTTPResponse response, HTTPRequest request, Page page)
+        throws DAOException, PageNotFoundException {
         response.putParameter("Content-Type", "text/html");
         response.putParameter("X-Version", Integer.toString(page.getVersion()));    // Add a parameter with indicating the page version
+        response.putParameter(HTTPHeaders.ACCEPT_RANGES.getHeader(), "bytes");
 
-        response.setContent(page.getContent());
+        // The content is compressed if the client accepts it, and shared by the responses of the same version of the page
+        this.compressor.setContent(response, request, page);
+        this.validator.setValidators(response, page.getUuid(), page.getVersion());
+
+        // The ranges are cut from the content that would be sent, compressed or not
+        if (isRangeRequest(request)) {
+            final byte[] content = response.getContentBytes();
+            final HTTPResponse partial = ranges(response, request, content.length,
+                (offset, length) -> Arrays.copyOfRange(content, (int) offset, (int) offset + length));
+            if (partial != null) {
+                return partial;
+            }
+        }
 
         return response;
     }
 
     /**
-     * Generates a main page response listing available HTML pages.
+     * Generates the headers of a page response from its metadata, the same ones as the response to
+     * a GET request.
      * 
      * @param response The base HTTP response to be modified.
-     * @param pages A map of available pages.
-     * @return The modified HTTP response.
+     * @param request The HTTP request being answered.
+     * @param summary The metadata of the requested page.
+     * @return The modified HTTP response, or null if the content of the page is needed to compute its headers.
      */
-    private HTTPResponse mainPage(HTTPResponse response, PagesController controller) {
+    private HTTPResponse pageHead(HTTPResponse response, HTTPRequest request, PageSummary summary) {
         response.putParameter("Content-Type", "text/html");
+        response.putParameter("X-Version", Integer.toString(summary.getVersion()));
+        response.putParameter(HTTPHeaders.ACCEPT_RANGES.getHeader(), "bytes");
 
-        
-        String content = "<html><body><h1>Available Pages</h1><ul>";
+        if (!this.compressor.setContentLength(response, request, summary.getSize())) {
+            return null;
+        }
+        this.validator.setValidators(response, summary.getUuid(), summary.getVersion());
 
-        try {
-            for (Page page : controller.list()) {
-                content += "<li><a href='html?uuid=" + page.getUuid() + "'>" + page.getUuid() + " (Version:" + page.getVersion() + ")</a></li>";
+        return response;
+    }
+
+    /**
+     * Generates a partial content response with the ranges of the content of a page requested
+     * with the Range header, or a range not satisfiable response if none of them can be sent.
+     * 
+     * @param response The response with the headers of the whole page.
+     * @param request The HTTP request being answered.
+     * @param size The length of the content of the whole page response.
+     * @param reader The reader of the ranges of the content.
+     * @return The modified HTTP response, or null if the whole page must be sent.
+     * @throws DAOException if there is an error reading the content.
+     * @throws PageNotFoundException if the page does not exist anymore.
+     */
+    private HTTPResponse ranges(HTTPResponse response, HTTPRequest request, long size, ContentReader reader)
+        throws DAOException, PageNotFoundException {
+        if (!this.validator.matchesIfRange(request, response)) {
+            return null;
+        }
+
+        final List<ByteRange> ranges = ByteRange.parse(request.getHeader(HTTPHeaders.RANGE.getHeader()), size);
+        if (ranges == null) {
+            return null;
+        }
+
+        if (ranges.isEmpty()) {
+            final HTTPResponse unsatisfiable = createBaseHTTPResponse(response.getVersion());
+            unsatisfiable.setStatus(HTTPResponseStatus.S416);
+            unsatisfiable.putParameter(HTTPHeaders.CONTENT_RANGE.getHeader(), ByteRange.unsatisfiedContentRange(size));
+            unsatisfiable.putParameter("Content-Type", "text/plain");
+            unsatisfiable.setContent("416 Range Not Satisfiable: None of the requested ranges overlap the content.");
+
+            return unsatisfiable;
+        }
+
+        response.setStatus(HTTPResponseStatus.S206);
+
+        if (ranges.size() == 1) {
+            final ByteRange range = ranges.get(0);
+            final byte[] part = reader.read(range.getFirst(), range.getLength());
+            if (part == null || part.length != range.getLength()) {
+                return null;    // The page has changed
             }
-        } catch (DAOException e) {
-            // Return internal server error response
-            return internalServerError(createBaseHTTPResponse(response.getVersion()));
+            response.putParameter(HTTPHeaders.CONTENT_RANGE.getHeader(), range.toContentRange(size));
+            response.setContentBytes(part);
+
+            return response;
         }
 
-        content += "</ul></body></html>";
+        // Several ranges are sent as the parts of a multipart/byteranges content
+        final String boundary = "HYBRID_SERVER_" + Long.toHexString(ThreadLocalRandom.current().nextLong());
+        final String partType = response.getParameters().get("Content-Type");
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (ByteRange range : ranges) {
+            final byte[] part = reader.read(range.getFirst(), range.getLength());
+            if (part == null || part.length != range.getLength()) {
+                return null;    // The page has changed
+            }
+            final String head = "--" + boundary + "\r\nContent-Type: " + partType + "\r\n"
+                + HTTPHeaders.CONTENT_RANGE.getHeader() + ": " + range.toContentRange(size) + "\r\n\r\n";
+            content.writeBytes(head.getBytes(StandardCharsets.ISO_8859_1));
+            content.writeBytes(part);
+            content.writeBytes(CRLF);
+        }
+        content.writeBytes(("--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1));
 
-        response.setContent(content);
+        response.putParameter("Content-Type", "multipart/byteranges; boundary=" + boundary);
+        response.setContentBytes(content.toByteArray());
 
         return response;
     }
 
     /**
-     * Generates a welcome page response.
+     * Checks whether a request asks for ranges of a page (only GET requests may).
+     * 
+     * @param request The HTTP request.
+     * @return true if the request is a GET request with a Range header, false otherwise.
+     */
+    private static boolean isRangeRequest(HTTPRequest request) {
+        return request.getMethod() == HTTPRequestMethod.GET && request.getHeader(HTTPHeaders.RANGE.getHeader()) != null;
+    }
+
+    /**
+     * Generates a not modified response for a page, without its content.
      * 
      * @param response The base HTTP response to be modified.
+     * @param request The HTTP request being answered.
+     * @param uuid The UUID of the requested page.
+     * @param version The current version of the requested page.
      * @return The modified HTTP response.
      */
-    private HTTPResponse welcomePage(HTTPResponse response) {
+    private HTTPResponse notModified(HTTPResponse response, HTTPRequest request, String uuid, int version) {
+        response.putParameter("X-Version", Integer.toString(version));
+
+        return this.validator.notModified(response, request, uuid, version);
+    }
+
+    /**
+     * Checks whether a request is conditional, i.e. it asks for the page only if it has been modified.
+     * 
+     * @param request The HTTP request.
+     * @return true if the request has an If-None-Match or If-Modified-Since header, false otherwise.
+     */
+    private static boolean isConditional(HTTPRequest request) {
+        return request.getHeader(HTTPHeaders.IF_NONE_MATCH.getHeader()) != null
+            || request.getHeader(HTTPHeaders.IF_MODIFIED_SINCE.getHeader()) != null;
+    }
+
+    /**
+     * Reader of ranges of the content of a page.
+     */
+    @FunctionalInterface
+    private interface ContentReader {
 
+        /**
+         * Reads a range of the content.
+         * 
+         * @param offset The position of the first byte of the range.
+         * @param length The number of bytes of the range.
+         * @return The bytes of the range, fewer than requested if the content ends before, or null if the content has changed.
+         * @throws DAOException if there is an error accessing the data store.
+         * @throws PageNotFoundException if the page does not exist anymore.
+         */
+        byte[] read(long offset, int length) throws DAOException, PageNotFoundException;
+    }
+
+    /**
+     * Generates a main page response listing available HTML pages, sorted by UUID.
+     * The metadata of the pages is read in batches with a cursor while the listing is sent with
+     * the chunked transfer coding, so its cost depends on the number of pages but not on their contents.
+     * The listing of a HEAD request is not sent, so its pages are not read.
+     * 
+     * @param response The base HTTP response to be modified.
+     * @param method The method of the request, GET or HEAD.
+     * @param controller The PagesController to manage page operations.
+     * @param after The UUID after which the pages are listed, or null to list from the first one.
+     * @param pageSize The max. number of pages listed, or {@link #UNLIMITED} to list every page.
+     * @return The modified HTTP response.
+     */
+    private HTTPResponse mainPage(HTTPResponse response, HTTPRequestMethod method, PagesController controller, String after, int pageSize) {
         response.putParameter("Content-Type", "text/html");
-        response.setContent("<html><body><h1>Welcome to the Hybrid Server</h1><h2>Ismael Salgado Lopez</h2></body></html>");
+
+        // Only the headers are sent, the same as if the listing were streamed
+        if (method == HTTPRequestMethod.HEAD) {
+            response.putParameter("Transfer-Encoding", "chunked");
+            return response;
+        }
+
+        // The first batch is read in advance, so a failing store is still answered with an error
+        final PageSummaryCursor pages = controller.openSummaryCursor(after, pageSize, BATCH_SIZE);
+        try {
+            pages.hasNext();
+        } catch (DAOException e) {
+            // Return internal server error response
+            return internalServerError(createBaseHTTPResponse(response.getVersion()));
+        }
+
+        response.setContentStream(out -> writeListing(out, pages, pageSize));
 
         return response;
     }
 
+    /**
+     * Writes the listing of the pages, walking the cursor over them.
+     * 
+     * @param out The stream where the listing is written.
+     * @param pages The cursor over the pages listed.
+     * @param pageSize The max. number of pages listed, or {@link #UNLIMITED} to list every page.
+     * @throws IOException If an I/O error occurs, or the pages cannot be read.
+     */
+    private static void writeListing(OutputStream out, PageSummaryCursor pages, int pageSize) throws IOException {
+        final Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        writer.write("<html><body><h1>Available Pages</h1><ul>");
+
+        try {
+            while (pages.hasNext()) {
+                final PageSummary page = pages.next();
+                writer.write("<li><a href='html?uuid=" + page.getUuid() + "'>" + page.getUuid() + " (Version:" + page.getVersion() + ")</a></li>");
+            }
+        } catch (DAOException e) {
+            throw new IOException("Error listing the pages", e);
+        }
+
+        writer.write("</ul>");
+        if (pageSize != UNLIMITED && pages.isLimitReached()) {
+            writer.write("<a href='html?after=" + pages.getLast() + "&limit=" + pageSize + "'>Next</a>");
+        }
+        writer.write("</body></html>");
+        writer.flush();
+    }
+
 }
@@ -0,0 +1,103 @@
+package es.uvigo.esei.dai.hybridserver.handler;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Class representing a map of bounded size that discards its least recently used entries
+ * to make room for a new one. The size is the number of entries, or the sum of the weights
+ * of their values (e.g. their bytes). It is thread-safe: every operation locks the whole map,
+ * which is enough for the small caches of the handlers, as their lookups are short.
+ *
+ * @param <K> The type of the keys.
+ * @param <V> The type of the values.
+ */
+class LRUCache<K, V> {
+
+    private final Map<K, V> entries = new LinkedHashMap<>(16, 0.75f, true); // From the least to the most recently used (guarded by this)
+    private final long capacity;            // Max. total weight of the entries
+    private final ToLongFunction<V> weigher;    // Weight of a value, which must not change while it is cached
+    private long weight = 0;                // Total weight of the entries (guarded by this)
+
+    /**
+     * Constructs an LRUCache bounded by its number of entries.
+     *
+     * @param capacity The max. number of entries.
+     * @throws IllegalArgumentException if the capacity is not positive.
+     */
+    LRUCache(int capacity) {
+        this(capacity, value -> 1);
+    }
+
+    /**
+     * Constructs an LRUCache bounded by the total weight of its values.
+     *
+     * @param capacity The max. total weight of the values.
+     * @param weigher The function that returns the weight of a value.
+     * @throws IllegalArgumentException if the capacity is not positive.
+     */
+    LRUCache(long capacity, ToLongFunction<V> weigher) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity of the cache must be positive");
+        }
+
+        this.capacity = capacity;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Returns the value of a key, marking it as the most recently used.
+     *
+     * @param key The key.
+     * @return The value of the key, or null if it is not cached.
+     */
+    synchronized V get(K key) {
+        return this.entries.get(key);
+    }
+
+    /**
+     * Caches the value of a key, discarding the least recently used entries while the cache is full.
+     * A value heavier than the whole capacity is not cached, and the previous value of its key is discarded.
+     *
+     * @param key The key.
+     * @param value The value of the key.
+     */
+    synchronized void put(K key, V value) {
+        final long weight = this.weigher.applyAsLong(value);
+        final V previous = weight > this.capacity ? this.entries.remove(key) : this.entries.put(key, value);
+        if (previous != null) {
+            this.weight -= this.weigher.applyAsLong(previous);
+        }
+        if (weight > this.capacity) {
+            return;
+        }
+
+        this.weight += weight;
+        final Iterator<V> eldest = this.entries.values().iterator();
+        while (this.weight > this.capacity) {
+            this.weight -= this.weigher.applyAsLong(eldest.next());
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Returns the number of cached entries.
+     *
+     * @return The number of entries.
+     */
+    synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Returns the total weight of the cached entries (their number, if the cache is bounded by it).
+     *
+     * @return The weight of the entries.
+     */
+    synchronized long weight() {
+        return this.weight;
+    }
+
+}
@@ -33,43 +33,33 @@ public class POSTRequestHandler extends BaseRequestHandler {
      */
     @Override
     public HTTPResponse handle(HTTPRequest request, PagesController controller) {
-        // Check if its a request for a html resource
-        if (request.getResourceName().equals("html")) {
-
-            // Check for a uuid parameter
-            if (request.getResourceParameters().containsKey("uuid")) {
-                // POST does not support edit actions
-                return badRequest(createBaseHTTPResponse(request.getHttpVersion()));
-
-            }
-            
-            // Check for content validity
-            if (isContentValid(request)) {
-                // Generate a new uuid to store the new page
-                String uuid = UUID.randomUUID().toString();
-                try {
-                    // Check if the uuid already exists (very unlikely)
-                    while (controller.exists(uuid)) {
-                        uuid = UUID.randomUUID().toString();
-                    }
-                    // Store the new page
-                    controller.create(new Page(uuid, request.getResourceParameters().get("html")));                
-
-                } catch (DAOException e) {
-                    // Return internal server error response
-                    return internalServerError(createBaseHTTPResponse(request.getHttpVersion()));
-                } 
-                
-                // Return OK response with the created page link
-                return created(createBaseHTTPResponse(request.getHttpVersion()), uuid);
-            }
-
+        // Check for a uuid parameter
+        if (request.getResourceParameters().containsKey("uuid")) {
+            // POST does not support edit actions
             return badRequest(createBaseHTTPResponse(request.getHttpVersion()));
+
         }
 
-        // For other resources (initially only html files are supported)
+        // Check for content validity
+        if (isContentValid(request)) {
+            // Generate a new uuid to store the new page
+            String uuid = UUID.randomUUID().toString();
+            try {
+                // Store the new page, with another uuid if it already exists (very unlikely)
+                final String html = request.getResourceParameters().get("html");
+                while (!controller.create(new Page(uuid, html))) {
+                    uuid = UUID.randomUUID().toString();
+                }
+
+            } catch (DAOException e) {
+                // Return internal server error response
+                return internalServerError(createBaseHTTPResponse(request.getHttpVersion()));
+            } 
+
+            // Return OK response with the created page link
+            return created(createBaseHTTPResponse(request.getHttpVersion()), uuid);
+        }
 
-        // No supported resource, 400 Bad Request
         return badRequest(createBaseHTTPResponse(request.getHttpVersion()));
 
     }
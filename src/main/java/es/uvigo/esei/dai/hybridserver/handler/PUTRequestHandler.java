@@ -2,7 +2,6 @@ package es.uvigo.esei.dai.hybridserver.handler;
 
 import es.uvigo.esei.dai.hybridserver.model.dao.DAOException;
 import es.uvigo.esei.dai.hybridserver.model.entity.Page;
-import es.uvigo.esei.dai.hybridserver.PageNotFoundException;
 import es.uvigo.esei.dai.hybridserver.controler.PagesController;
 import es.uvigo.esei.dai.hybridserver.http.HTTPRequest;
 import es.uvigo.esei.dai.hybridserver.http.HTTPResponse;
@@ -15,54 +14,40 @@ public class PUTRequestHandler extends BaseRequestHandler {
 
     @Override
     public HTTPResponse handle(HTTPRequest request, PagesController controller) {
-        // Check if it is a request for a html resource
-        if (request.getResourceName().equals("html")) {
-
-            // Check for uuid parameter
-            if (request.getResourceParameters().containsKey("uuid")) {
-
-                // Obtain the uuid
-                String uuid = request.getResourceParameters().get("uuid");
-
-                try {
-                    // Check if uuid exists
-                    if (controller.exists(uuid)) {
-                        // Check content validity
-                        if (isContentValid(request)) {
-
-                            // Update the page
-                            controller.update(new Page(uuid, request.getResourceParameters().get("html")));
-                            
-                            // Return OK response with updated page link
-                            return updated(createBaseHTTPResponse(request.getHttpVersion()), uuid);
-                        }
-
-                        // Invalid content
-                        return badRequest(createBaseHTTPResponse(request.getHttpVersion()));
-
-                    }
-
-                    // Uuid does not exist
-                    return notFound(createBaseHTTPResponse(request.getHttpVersion()));
-                
-                } catch (PageNotFoundException e) {
-                    // Return not found response
-                    return notFound(createBaseHTTPResponse(request.getHttpVersion()));
-                } catch (DAOException e) {
-                    // Return internal server error response
-                    return internalServerError(createBaseHTTPResponse(request.getHttpVersion()));
+        // Check for uuid parameter
+        if (request.getResourceParameters().containsKey("uuid")) {
+
+            // Obtain the uuid
+            String uuid = request.getResourceParameters().get("uuid");
+
+            try {
+                // Check content validity, a missing page is still reported as not found
+                if (!isContentValid(request)) {
+                    return controller.exists(uuid)
+                        ? badRequest(createBaseHTTPResponse(request.getHttpVersion()))
+                        : notFound(createBaseHTTPResponse(request.getHttpVersion()));
                 }
-                
+
+                // Update the page, which tells whether it exists in the same statement
+                if (controller.update(new Page(uuid, request.getResourceParameters().get("html")))) {
+
+                    // Return OK response with updated page link
+                    return updated(createBaseHTTPResponse(request.getHttpVersion()), uuid);
+                }
+
+                // Uuid does not exist
+                return notFound(createBaseHTTPResponse(request.getHttpVersion()));
+
+            } catch (DAOException e) {
+                // Return internal server error response
+                return internalServerError(createBaseHTTPResponse(request.getHttpVersion()));
             }
 
-            // No uuid parameter provided
-            return badRequest(createBaseHTTPResponse(request.getHttpVersion()));
         }
 
-        // For others resources (just html supported for now)
-
-        //No supported resource
+        // No uuid parameter provided
         return badRequest(createBaseHTTPResponse(request.getHttpVersion()));
+
     }
 
     private HTTPResponse updated(HTTPResponse response, String uuid) {
@@ -0,0 +1,198 @@
+package es.uvigo.esei.dai.hybridserver.handler;
+
+import es.uvigo.esei.dai.hybridserver.http.ContentCoding;
+import es.uvigo.esei.dai.hybridserver.http.HTTPHeaders;
+import es.uvigo.esei.dai.hybridserver.http.HTTPRequest;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponse;
+import es.uvigo.esei.dai.hybridserver.model.entity.Page;
+
+/**
+ * Class that sets the content of the pages in the responses, compressed with the coding
+ * accepted by the client (Accept-Encoding) when it is worth it.
+ * The compressed contents are cached by page, version and coding for the most recently sent
+ * pages, up to a number of bytes, so a hot page is compressed once instead of once per request.
+ * The contents themselves are not cached here, as they are taken from the pages, which the
+ * page cache already holds within its own size. As the entity tags, the compressed contents
+ * assume a version of a page never changes.
+ * Contents smaller than a threshold are sent as they are, as compressing them does not pay off,
+ * and so are the ones that do not get smaller.
+ */
+public class PageCompressor {
+
+    public static final int DEFAULT_MIN_SIZE = 1024;    // Default min. size (bytes) of the compressed contents
+    public static final long DEFAULT_CACHE_BYTES = 16L * 1024 * 1024;  // Default max. size (bytes) of the cached compressed contents
+    private static final int ENTRY_OVERHEAD = 96;       // Estimated size (bytes) of a cached content besides its bytes
+    private static final byte[] NOT_SMALLER = new byte[0];  // Marks the contents that do not get smaller
+
+    private final int minSize;  // Min. size in bytes of the contents that are compressed
+    private final LRUCache<CompressedKey, Compressed> cache;    // Compressed contents, or null if they are not cached
+
+    /**
+     * Constructs a PageCompressor with the default size threshold and cache size.
+     */
+    public PageCompressor() {
+        this(DEFAULT_MIN_SIZE);
+    }
+
+    /**
+     * Constructs a PageCompressor with the default cache size.
+     *
+     * @param minSize The min. size in bytes of the contents that are compressed.
+     * @throws IllegalArgumentException if the size is negative.
+     */
+    public PageCompressor(int minSize) {
+        this(minSize, DEFAULT_CACHE_BYTES);
+    }
+
+    /**
+     * Constructs a PageCompressor.
+     *
+     * @param minSize The min. size in bytes of the contents that are compressed.
+     * @param cacheBytes The max. size in bytes of the cached compressed contents (0 disables the cache).
+     * @throws IllegalArgumentException if any size is negative.
+     */
+    public PageCompressor(int minSize, long cacheBytes) {
+        if (minSize < 0) {
+            throw new IllegalArgumentException("Min. size of the compressed contents must not be negative");
+        }
+        if (cacheBytes < 0) {
+            throw new IllegalArgumentException("Size of the cache of compressed contents must not be negative");
+        }
+        this.minSize = minSize;
+        this.cache = cacheBytes > 0
+            ? new LRUCache<>(cacheBytes, compressed -> (long) compressed.content.length + ENTRY_OVERHEAD)
+            : null;
+    }
+
+    /**
+     * Sets the content of a page in a response, compressed if the client accepts it and it is worth it.
+     *
+     * @param response The HTTP response.
+     * @param request The HTTP request being answered.
+     * @param page The page whose content is sent.
+     */
+    public void setContent(HTTPResponse response, HTTPRequest request, Page page) {
+        final byte[] content = page.getContentBytes();
+
+        if (content.length >= this.minSize) {
+            // The response depends on the codings accepted by the client
+            response.putParameter(HTTPHeaders.VARY.getHeader(), HTTPHeaders.ACCEPT_ENCODING.getHeader());
+
+            final ContentCoding coding = ContentCoding.negotiate(request.getHeader(HTTPHeaders.ACCEPT_ENCODING.getHeader()));
+            if (coding != null) {
+                final byte[] compressed = compressed(page, content, coding);
+                if (compressed != NOT_SMALLER) {
+                    response.putParameter(HTTPHeaders.CONTENT_ENCODING.getHeader(), coding.getToken());
+                    response.setContentBytes(compressed);
+                    return;
+                }
+            }
+        }
+
+        response.setContentBytes(content);
+    }
+
+    /**
+     * Sets the length of the content of a page in a response without its content (e.g. to a HEAD
+     * request), as long as it is known from the size of the page. The length of a compressed
+     * content is only known once it has been compressed.
+     *
+     * @param response The HTTP response.
+     * @param request The HTTP request being answered.
+     * @param size The size in bytes of the content of the page encoded as UTF-8.
+     * @return true if the length has been set, false if the content would be compressed.
+     */
+    public boolean setContentLength(HTTPResponse response, HTTPRequest request, long size) {
+        if (size >= this.minSize) {
+            if (ContentCoding.negotiate(request.getHeader(HTTPHeaders.ACCEPT_ENCODING.getHeader())) != null) {
+                return false;
+            }
+            response.putParameter(HTTPHeaders.VARY.getHeader(), HTTPHeaders.ACCEPT_ENCODING.getHeader());
+        }
+
+        response.putParameter(HTTPHeaders.CONTENT_LENGTH.getHeader(), Long.toString(size));
+        return true;
+    }
+
+    /**
+     * Returns the compressed content of a version of a page, compressing it if it is not cached.
+     * Versions are compared instead of contents, so a hit costs the same for any page size.
+     *
+     * @param page The page.
+     * @param content The content of the page encoded as UTF-8.
+     * @param coding The coding of the compressed content.
+     * @return The compressed content, or {@link #NOT_SMALLER} if it is not smaller than the content.
+     */
+    private byte[] compressed(Page page, byte[] content, ContentCoding coding) {
+        if (this.cache == null) {
+            return compress(content, coding);
+        }
+
+        final CompressedKey key = new CompressedKey(page.getUuid(), coding);
+        final Compressed cached = this.cache.get(key);
+        if (cached != null && cached.version == page.getVersion()) {
+            return cached.content;
+        }
+
+        final byte[] compressed = compress(content, coding);
+        this.cache.put(key, new Compressed(page.getVersion(), compressed));
+
+        return compressed;
+    }
+
+    /**
+     * Compresses a content.
+     *
+     * @param content The content encoded as UTF-8.
+     * @param coding The coding of the compressed content.
+     * @return The compressed content, or {@link #NOT_SMALLER} if it is not smaller than the content.
+     */
+    private static byte[] compress(byte[] content, ContentCoding coding) {
+        final byte[] compressed = coding.encode(content);
+        return compressed.length < content.length ? compressed : NOT_SMALLER;
+    }
+
+    /**
+     * Class identifying the compressed contents of a page with a coding.
+     */
+    private static class CompressedKey {
+        private final String uuid;              // UUID of the page
+        private final ContentCoding coding;     // Coding of the content
+
+        private CompressedKey(String uuid, ContentCoding coding) {
+            this.uuid = uuid;
+            this.coding = coding;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CompressedKey)) {
+                return false;
+            }
+            final CompressedKey other = (CompressedKey) obj;
+            return this.uuid.equals(other.uuid) && this.coding == other.coding;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.uuid.hashCode() + this.coding.hashCode();
+        }
+    }
+
+    /**
+     * Class holding the compressed content of a version of a page.
+     */
+    private static class Compressed {
+        private final int version;      // Version of the page
+        private final byte[] content;   // Compressed content, or NOT_SMALLER
+
+        private Compressed(int version, byte[] content) {
+            this.version = version;
+            this.content = content;
+        }
+    }
+
+}
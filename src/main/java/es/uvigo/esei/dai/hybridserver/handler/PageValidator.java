@@ -0,0 +1,222 @@
+package es.uvigo.esei.dai.hybridserver.handler;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+import es.uvigo.esei.dai.hybridserver.http.HTTPHeaders;
+import es.uvigo.esei.dai.hybridserver.http.HTTPRequest;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponse;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponseStatus;
+
+/**
+ * Class that sets the validators of the pages in the responses (ETag and Last-Modified) and
+ * evaluates the conditional requests (If-None-Match and If-Modified-Since) against them.
+ * The validators only depend on the UUID and the version of a page, so a conditional request
+ * can be answered without the content of the page.
+ * The entity tags are strong and distinct for each coding of the content (e.g. "uuid-2-gzip"),
+ * but the coding is ignored when they are compared, as it does not change the page.
+ * The stores do not record when a page was modified, so the last modification date of a page
+ * is only a bound: the time the server first saw its current version, which is never earlier
+ * than the actual one. The dates of the least recently used pages are discarded, and a page
+ * seen again gets a later date, so If-Modified-Since may answer an unchanged page with its
+ * content, but never a changed page with 304 Not Modified. A version seen within the same second
+ * as the previous one has the same date, so that date does not validate it. The entity tags are
+ * exact, so they are checked first.
+ */
+public class PageValidator {
+
+    private static final int MAX_PAGES = 1024;  // Max. number of pages whose modification date is recorded
+    private static final DateTimeFormatter DATE_FORMAT =
+        DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.ENGLISH).withZone(ZoneOffset.UTC);
+
+    private final LRUCache<String, Modification> modifications = new LRUCache<>(MAX_PAGES);  // By page UUID
+
+    /**
+     * Checks whether the version of a page the client has is the current one, according to
+     * the If-None-Match header of the request or, if it is absent, the If-Modified-Since one.
+     *
+     * @param request The HTTP request.
+     * @param uuid The UUID of the page.
+     * @param version The current version of the page.
+     * @return true if the page has not been modified, false otherwise.
+     */
+    public boolean isNotModified(HTTPRequest request, String uuid, int version) {
+        return matchingTag(request, uuid, version) != null || (request.getHeader(HTTPHeaders.IF_NONE_MATCH.getHeader()) == null
+            && !isModifiedSince(request.getHeader(HTTPHeaders.IF_MODIFIED_SINCE.getHeader()), uuid, version));
+    }
+
+    /**
+     * Generates a 304 Not Modified response for a page, with the validators the client sent.
+     *
+     * @param response The base HTTP response to be modified.
+     * @param request The HTTP request.
+     * @param uuid The UUID of the page.
+     * @param version The current version of the page.
+     * @return The modified HTTP response.
+     */
+    public HTTPResponse notModified(HTTPResponse response, HTTPRequest request, String uuid, int version) {
+        response.setStatus(HTTPResponseStatus.S304);
+
+        final String tag = matchingTag(request, uuid, version);
+        if (tag != null && !tag.equals("*")) {
+            response.putParameter(HTTPHeaders.ETAG.getHeader(), tag);
+        }
+        response.putParameter(HTTPHeaders.LAST_MODIFIED.getHeader(), modification(uuid, version).date);
+
+        return response;
+    }
+
+    /**
+     * Sets the validators of a page in a response, once its content has been set.
+     *
+     * @param response The HTTP response with the content of the page.
+     * @param uuid The UUID of the page.
+     * @param version The version of the page.
+     */
+    public void setValidators(HTTPResponse response, String uuid, int version) {
+        final String coding = response.getParameters().get(HTTPHeaders.CONTENT_ENCODING.getHeader());
+
+        response.putParameter(HTTPHeaders.ETAG.getHeader(),
+            "\"" + opaqueTag(uuid, version) + (coding == null ? "" : "-" + coding) + "\"");
+        response.putParameter(HTTPHeaders.LAST_MODIFIED.getHeader(), modification(uuid, version).date);
+    }
+
+    /**
+     * Checks whether the If-Range header of a request matches the validators of a response, so
+     * the ranges of the request can be sent. Entity tags are compared with the strong comparison,
+     * and dates must be the exact Last-Modified date.
+     *
+     * @param request The HTTP request.
+     * @param response The HTTP response with the validators of the page.
+     * @return true if the request has no If-Range header or it matches, false otherwise.
+     */
+    public boolean matchesIfRange(HTTPRequest request, HTTPResponse response) {
+        final String ifRange = request.getHeader(HTTPHeaders.IF_RANGE.getHeader());
+        if (ifRange == null) {
+            return true;
+        }
+
+        final String validator = ifRange.trim();
+        if (validator.startsWith("\"") || validator.startsWith("W/")) {
+            return validator.equals(response.getParameters().get(HTTPHeaders.ETAG.getHeader()));
+        }
+
+        final String lastModified = response.getParameters().get(HTTPHeaders.LAST_MODIFIED.getHeader());
+        try {
+            return lastModified != null && ZonedDateTime.parse(validator, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond()
+                == ZonedDateTime.parse(lastModified, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Looks for an entity tag of the If-None-Match header that matches the current version of a page.
+     *
+     * @param request The HTTP request.
+     * @param uuid The UUID of the page.
+     * @param version The current version of the page.
+     * @return The matching entity tag as it was sent, or null if none matches.
+     */
+    private String matchingTag(HTTPRequest request, String uuid, int version) {
+        final String ifNoneMatch = request.getHeader(HTTPHeaders.IF_NONE_MATCH.getHeader());
+        if (ifNoneMatch == null) {
+            return null;
+        }
+
+        final String current = opaqueTag(uuid, version);
+        for (String element : ifNoneMatch.split(",")) {
+            final String tag = element.trim();
+            if (tag.equals("*")) {
+                return tag;
+            }
+
+            // Weak comparison: the W/ prefix and the coding of the content are ignored
+            final int start = tag.startsWith("W/") ? 3 : 1;
+            if (tag.length() > start && tag.endsWith("\"") && tag.startsWith(current, start)) {
+                final int end = start + current.length();
+                if (end == tag.length() - 1 || tag.charAt(end) == '-' && tag.indexOf('-', end + 1) == -1) {
+                    return tag;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Checks whether a page has been modified after the date of the If-Modified-Since header.
+     *
+     * @param ifModifiedSince The value of the If-Modified-Since header (may be null).
+     * @param uuid The UUID of the page.
+     * @param version The current version of the page.
+     * @return true if the page has been modified or the date is absent or not valid, false otherwise.
+     */
+    private boolean isModifiedSince(String ifModifiedSince, String uuid, int version) {
+        if (ifModifiedSince == null) {
+            return true;
+        }
+
+        try {
+            final long since = ZonedDateTime.parse(ifModifiedSince.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+            final Modification modification = modification(uuid, version);
+            return modification.second > since || (modification.second == since && modification.ambiguous);
+        } catch (DateTimeParseException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Returns the modification of the current version of a page, recording it if it is new.
+     * Only the most recently used pages are remembered, so a page that has been discarded
+     * looks modified when it is seen again. A version seen in the same second as the previous
+     * one is marked, as its date is also the date of the previous version.
+     *
+     * @param uuid The UUID of the page.
+     * @param version The current version of the page.
+     * @return The modification of the page.
+     */
+    private Modification modification(String uuid, int version) {
+        Modification modification = this.modifications.get(uuid);
+        if (modification == null || modification.version != version) {
+            final long second = System.currentTimeMillis() / 1000;
+            modification = new Modification(version, second, modification != null && modification.second >= second);
+            this.modifications.put(uuid, modification);
+        }
+
+        return modification;
+    }
+
+    /**
+     * Returns the opaque part of the entity tag of a version of a page, without quotes nor coding.
+     *
+     * @param uuid The UUID of the page.
+     * @param version The version of the page.
+     * @return The opaque tag.
+     */
+    private static String opaqueTag(String uuid, int version) {
+        return uuid + "-" + version;
+    }
+
+    /**
+     * Class holding when the server first saw a version of a page.
+     */
+    private static class Modification {
+        private final int version;  // Version of the page
+        private final long second;  // Epoch second the version was first seen
+        private final String date;  // Value of the Last-Modified header
+        private final boolean ambiguous;    // Whether the previous version was first seen in the same second
+
+        private Modification(int version, long second, boolean ambiguous) {
+            this.version = version;
+            this.second = second;
+            this.ambiguous = ambiguous;
+            this.date = DATE_FORMAT.format(Instant.ofEpochSecond(second));
+        }
+    }
+
+}
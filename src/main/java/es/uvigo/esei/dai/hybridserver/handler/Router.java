@@ -0,0 +1,203 @@
+package es.uvigo.esei.dai.hybridserver.handler;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+
+import es.uvigo.esei.dai.hybridserver.controler.PagesController;
+import es.uvigo.esei.dai.hybridserver.http.HTTPRequest;
+import es.uvigo.esei.dai.hybridserver.http.HTTPRequestMethod;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponse;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponseStatus;
+
+/**
+ * Class that routes each HTTP request to the handler registered for its method and resource path.
+ * The routes are kept in a trie of path segments, where every node maps the HTTP methods to their
+ * handlers, so a request is routed by walking its path once. The handlers are stateless and shared
+ * by every request.
+ * Requests for a resource that is not registered get a 400 Bad Request response, and requests
+ * for a registered resource with an unsupported method get a 405 Method Not Allowed response.
+ * HEAD requests are supported by every resource with a GET handler: they are routed to their own
+ * handler if one is registered, or to the GET one otherwise, and the content of their responses
+ * is never sent.
+ */
+public class Router {
+
+    private final Node root = new Node();   // Node of the root resource ("/")
+
+    /**
+     * Creates the router with the resources served by the Hybrid Server.
+     *
+     * @return The default router.
+     */
+    public static Router createDefault() {
+        return createDefault(new PageCompressor());
+    }
+
+    /**
+     * Creates the router with the resources served by the Hybrid Server.
+     *
+     * @param compressor The compressor of the contents of the pages.
+     * @return The default router.
+     */
+    public static Router createDefault(PageCompressor compressor) {
+        final GETRequestHandler pages = new GETRequestHandler(compressor);
+
+        return new Router()
+            .register(HTTPRequestMethod.GET, "/", new WelcomePageHandler())
+            .register(HTTPRequestMethod.HEAD, "/html", pages)     // Answered from the metadata of the pages
+            .register(HTTPRequestMethod.GET, "/html", pages)
+            .register(HTTPRequestMethod.POST, "/html", new POSTRequestHandler())
+            .register(HTTPRequestMethod.POST, "/html/bulk", new BulkPOSTRequestHandler())
+            .register(HTTPRequestMethod.PUT, "/html", new PUTRequestHandler())
+            .register(HTTPRequestMethod.DELETE, "/html", new DELETERequestHandler());
+    }
+
+    /**
+     * Registers the handler of a method for a resource path.
+     *
+     * @param method The HTTP method.
+     * @param path The resource path, starting with "/" (e.g. "/html").
+     * @param handler The handler of the requests.
+     * @return This router, to chain registrations.
+     * @throws IllegalArgumentException if the path is not valid or the route is already registered.
+     */
+    public Router register(HTTPRequestMethod method, String path, RequestHandler handler) {
+        if (!path.startsWith("/")) {
+            throw new IllegalArgumentException("Route path must start with /: " + path);
+        }
+
+        Node node = this.root;
+        for (String segment : path.substring(1).split("/")) {
+            if (!segment.isEmpty()) {
+                node = node.children.computeIfAbsent(segment, key -> new Node());
+            }
+        }
+
+        if (node.handlers.putIfAbsent(method, handler) != null) {
+            throw new IllegalArgumentException("Route already registered: " + method + " " + path);
+        }
+
+        // The Allow header is built once, in the declaration order of the methods
+        StringJoiner allow = new StringJoiner(", ");
+        if (!node.handlers.containsKey(HTTPRequestMethod.HEAD) && node.handlers.containsKey(HTTPRequestMethod.GET)) {
+            allow.add(HTTPRequestMethod.HEAD.name());
+        }
+        for (HTTPRequestMethod registered : node.handlers.keySet()) {
+            allow.add(registered.name());
+        }
+        node.allow = allow.toString();
+
+        return this;
+    }
+
+    /**
+     * Handles a request with the handler registered for its method and resource path.
+     *
+     * @param request The HTTP request to be handled.
+     * @param controller The PagesController to manage page operations.
+     * @return The HTTP response generated for the request.
+     */
+    public HTTPResponse handle(HTTPRequest request, PagesController controller) {
+        HTTPResponse response = check(request);
+        if (response == null) {
+            response = handler(find(request.getResourcePath()), request.getMethod()).handle(request, controller);
+        }
+
+        if (request.getMethod() == HTTPRequestMethod.HEAD) {
+            // The headers are kept, including the Content-Length of the content that is not sent
+            response.setContent(null);
+        }
+
+        return response;
+    }
+
+    /**
+     * Checks whether there is a handler for the method and resource path of a request, without
+     * handling it. Only the head of the request is used, so it can be checked before its content
+     * is received.
+     *
+     * @param request The HTTP request to be checked.
+     * @return The error response for the request, or null if it can be handled.
+     */
+    public HTTPResponse check(HTTPRequest request) {
+        Node node = find(request.getResourcePath());
+        if (node == null || node.handlers.isEmpty()) {
+            return error(request, HTTPResponseStatus.S400,
+                "400 Bad Request: The server could not understand the request.");
+        }
+
+        if (handler(node, request.getMethod()) == null) {
+            HTTPResponse response = error(request, HTTPResponseStatus.S405,
+                "405 Method Not Allowed: The requested resource does not support the method " + request.getMethod() + ".");
+            response.putParameter("Allow", node.allow);
+
+            return response;
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the handler of a method for a resource, routing HEAD requests to the GET handler
+     * if the resource has no HEAD handler.
+     *
+     * @param node The node of the resource.
+     * @param method The HTTP method.
+     * @return The handler, or null if the resource does not support the method.
+     */
+    private RequestHandler handler(Node node, HTTPRequestMethod method) {
+        RequestHandler handler = node.handlers.get(method);
+        if (handler == null && method == HTTPRequestMethod.HEAD) {
+            handler = node.handlers.get(HTTPRequestMethod.GET);
+        }
+
+        return handler;
+    }
+
+    /**
+     * Finds the node of a resource path.
+     *
+     * @param path The segments of the resource path.
+     * @return The node of the resource path, or null if no route starts with it.
+     */
+    private Node find(String[] path) {
+        Node node = this.root;
+        for (int i = 0; i < path.length && node != null; i++) {
+            node = node.children.get(path[i]);
+        }
+
+        return node;
+    }
+
+    /**
+     * Creates an error response with a plain text description.
+     *
+     * @param request The HTTP request being answered.
+     * @param status The status of the response.
+     * @param message The description of the error.
+     * @return The error response.
+     */
+    private HTTPResponse error(HTTPRequest request, HTTPResponseStatus status, String message) {
+        HTTPResponse response = new HTTPResponse();
+        response.setVersion(request.getHttpVersion());
+        response.setStatus(status);
+        response.putParameter("Content-Type", "text/plain");
+        response.setContent(message);
+
+        return response;
+    }
+
+    /**
+     * Class representing a node of the route trie (a segment of a resource path).
+     */
+    private static class Node {
+        private final Map<String, Node> children = new HashMap<>();    // Nodes of the next segments
+        private final Map<HTTPRequestMethod, RequestHandler> handlers = new EnumMap<>(HTTPRequestMethod.class);
+        private String allow = "";  // Value of the Allow header of the node
+
+        private Node() {}
+    }
+
+}
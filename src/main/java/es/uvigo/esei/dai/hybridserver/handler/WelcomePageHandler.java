@@ -0,0 +1,34 @@
+package es.uvigo.esei.dai.hybridserver.handler;
+
+import es.uvigo.esei.dai.hybridserver.controler.PagesController;
+import es.uvigo.esei.dai.hybridserver.http.HTTPRequest;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponse;
+
+/**
+ * Handler for GET HTTP requests to the root resource ("/"), serving the welcome page.
+ */
+public class WelcomePageHandler extends BaseRequestHandler {
+
+    /**
+     * Creates a new instance of the WelcomePageHandler.
+     */
+    public WelcomePageHandler() {}
+
+    /**
+     * Handles GET requests to the root resource, returning the welcome page.
+     * 
+     * @param request The HTTP request to be handled.
+     * @param controller The PagesController to manage page operations.
+     * @return The HTTP response generated for the request.
+     */
+    @Override
+    public HTTPResponse handle(HTTPRequest request, PagesController controller) {
+        HTTPResponse response = createBaseHTTPResponse(request.getHttpVersion());
+
+        response.putParameter("Content-Type", "text/html");
+        response.setContent("<html><body><h1>Welcome to the Hybrid Server</h1><h2>Ismael Salgado Lopez</h2></body></html>");
+
+        return response;
+    }
+
+}
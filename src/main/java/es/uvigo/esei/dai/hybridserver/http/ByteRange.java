@@ -0,0 +1,158 @@
+package es.uvigo.esei.dai.hybridserver.http;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class representing a range of bytes of a response content requested with the Range header
+ * (e.g. "bytes=0-499", "bytes=500-" or "bytes=-500"), resolved against the length of the content.
+ */
+public final class ByteRange {
+
+  private static final String UNIT = "bytes";  // Only supported range unit
+  private static final int MAX_RANGES = 16;     // Max. number of ranges of a request
+
+  private final long first; // Position of the first byte of the range
+  private final long last;  // Position of the last byte of the range (inclusive)
+
+  private ByteRange(long first, long last) {
+    this.first = first;
+    this.last = last;
+  }
+
+  /**
+   * Returns the position of the first byte of the range.
+   *
+   * @return The position of the first byte.
+   */
+  public long getFirst() {
+    return this.first;
+  }
+
+  /**
+   * Returns the position of the last byte of the range, which is included in it.
+   *
+   * @return The position of the last byte.
+   */
+  public long getLast() {
+    return this.last;
+  }
+
+  /**
+   * Returns the number of bytes of the range.
+   *
+   * @return The length of the range.
+   */
+  public int getLength() {
+    return (int) (this.last - this.first + 1);
+  }
+
+  /**
+   * Returns the value of the Content-Range header of a response with this range.
+   *
+   * @param size The length of the whole content.
+   * @return The value of the Content-Range header (e.g. "bytes 0-499/1234").
+   */
+  public String toContentRange(long size) {
+    return UNIT + " " + this.first + "-" + this.last + "/" + size;
+  }
+
+  /**
+   * Returns the value of the Content-Range header of a response to a request whose ranges
+   * cannot be satisfied.
+   *
+   * @param size The length of the whole content.
+   * @return The value of the Content-Range header (e.g. "bytes &#42;/1234").
+   */
+  public static String unsatisfiedContentRange(long size) {
+    return UNIT + " */" + size;
+  }
+
+  /**
+   * Parses the value of a Range header against the length of a content. The ranges that
+   * start after the end of the content are discarded, and the rest are limited to it.
+   * The header is ignored, so the whole content should be sent, if it is not valid, uses
+   * another unit, or asks for too many ranges or for more bytes than the whole content.
+   *
+   * @param range The value of the Range header (may be null).
+   * @param size The length of the content.
+   * @return The satisfiable ranges, in the order they were requested, an empty list if none
+   *   is satisfiable, or null if the header must be ignored.
+   */
+  public static List<ByteRange> parse(String range, long size) {
+    if (range == null) {
+      return null;
+    }
+
+    final int equals = range.indexOf('=');
+    if (equals == -1 || !range.substring(0, equals).trim().equalsIgnoreCase(UNIT)) {
+      return null;
+    }
+
+    final String[] specs = range.substring(equals + 1).split(",");
+    if (specs.length > MAX_RANGES) {
+      return null;
+    }
+
+    final List<ByteRange> ranges = new ArrayList<>(specs.length);
+    long total = 0;
+    for (String spec : specs) {
+      final String trimmed = spec.trim();
+      final int dash = trimmed.indexOf('-');
+      if (dash == -1) {
+        return null;
+      }
+
+      final long first;
+      final long last;
+      try {
+        if (dash == 0) {
+          // Suffix range: the last N bytes
+          final long suffix = parsePosition(trimmed.substring(1));
+          if (suffix == 0) {
+            continue;
+          }
+          first = Math.max(0, size - suffix);
+          last = size - 1;
+        } else {
+          first = parsePosition(trimmed.substring(0, dash));
+          last = dash == trimmed.length() - 1 ? size - 1 : Math.min(parsePosition(trimmed.substring(dash + 1)), size - 1);
+          if (last < first && first < size) {
+            return null;
+          }
+        }
+      } catch (NumberFormatException e) {
+        return null;
+      }
+
+      if (first < size) {
+        ranges.add(new ByteRange(first, last));
+        total += last - first + 1;
+      }
+    }
+
+    // Overlapping ranges asking for more than the whole content are not worth serving
+    if (total > size) {
+      return null;
+    }
+
+    return ranges.isEmpty() ? Collections.emptyList() : ranges;
+  }
+
+  /**
+   * Parses a byte position of a range.
+   *
+   * @param position The position, as decimal digits.
+   * @return The position.
+   * @throws NumberFormatException if the position is not valid.
+   */
+  private static long parsePosition(String position) {
+    if (position.isEmpty() || position.charAt(0) == '+' || position.charAt(0) == '-') {
+      throw new NumberFormatException("Invalid byte position: " + position);
+    }
+
+    return Long.parseLong(position);
+  }
+
+}
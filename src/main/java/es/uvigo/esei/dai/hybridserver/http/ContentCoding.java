@@ -0,0 +1,140 @@
+package es.uvigo.esei.dai.hybridserver.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Enum representing the content codings (compressions) the server can apply to a response
+ * body, with the negotiation of the coding from the Accept-Encoding header of a request.
+ */
+public enum ContentCoding {
+  GZIP("gzip"),
+  DEFLATE("deflate");
+
+  private final String token;
+
+  private ContentCoding(String token) {
+    this.token = token;
+  }
+
+  /**
+   * Returns the token of the coding, used in the Accept-Encoding and Content-Encoding headers.
+   *
+   * @return The token of the coding.
+   */
+  public String getToken() {
+    return this.token;
+  }
+
+  /**
+   * Compresses a body with the best compression level, as compressed bodies are meant to be reused.
+   *
+   * @param body The body to be compressed.
+   * @return The compressed body.
+   */
+  public byte[] encode(byte[] body) {
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, body.length / 3));
+
+    try (OutputStream out = this == GZIP ? new BestGZIPOutputStream(compressed) : new BestDeflaterOutputStream(compressed)) {
+      out.write(body);
+    } catch (IOException e) {
+      // A ByteArrayOutputStream does not throw I/O exceptions
+      throw new UncheckedIOException(e);
+    }
+
+    return compressed.toByteArray();
+  }
+
+  /**
+   * Chooses the coding of a response from the Accept-Encoding header of the request,
+   * e.g. "gzip, deflate;q=0.5". The coding with the highest quality value is chosen,
+   * preferring gzip on ties. Codings with a quality of 0 are not acceptable.
+   *
+   * @param acceptEncoding The value of the Accept-Encoding header (may be null).
+   * @return The chosen coding, or null if the body must not be compressed.
+   */
+  public static ContentCoding negotiate(String acceptEncoding) {
+    if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+      return null;
+    }
+
+    final float[] quality = new float[values().length];
+    float wildcard = -1;
+
+    for (String element : acceptEncoding.split(",")) {
+      final int semicolon = element.indexOf(';');
+      final String coding = (semicolon == -1 ? element : element.substring(0, semicolon)).trim();
+      final float q = semicolon == -1 ? 1 : parseQuality(element.substring(semicolon + 1));
+
+      if (coding.equals("*")) {
+        wildcard = q;
+      } else {
+        for (ContentCoding candidate : values()) {
+          if (candidate.token.equalsIgnoreCase(coding) || (candidate == GZIP && coding.equalsIgnoreCase("x-gzip"))) {
+            quality[candidate.ordinal()] = q + 1; // 0 means not listed
+          }
+        }
+      }
+    }
+
+    ContentCoding chosen = null;
+    float best = 0;
+    for (ContentCoding candidate : values()) {
+      final float q = quality[candidate.ordinal()] > 0 ? quality[candidate.ordinal()] - 1 : wildcard;
+      if (q > best) {
+        chosen = candidate;
+        best = q;
+      }
+    }
+
+    return chosen;
+  }
+
+  /**
+   * Parses the parameters of an element of the Accept-Encoding header, looking for its quality value.
+   *
+   * @param parameters The parameters of the element (e.g. "q=0.5").
+   * @return The quality value, or 1 if it is absent, or 0 if it is not valid.
+   */
+  private static float parseQuality(String parameters) {
+    for (String parameter : parameters.split(";")) {
+      final String trimmed = parameter.trim();
+      if (trimmed.length() > 2 && (trimmed.charAt(0) == 'q' || trimmed.charAt(0) == 'Q') && trimmed.charAt(1) == '=') {
+        try {
+          final float q = Float.parseFloat(trimmed.substring(2));
+          return q >= 0 && q <= 1 ? q : 0;
+        } catch (NumberFormatException e) {
+          return 0;
+        }
+      }
+    }
+
+    return 1;
+  }
+
+  /**
+   * GZIPOutputStream using the best compression level.
+   */
+  private static class BestGZIPOutputStream extends GZIPOutputStream {
+    private BestGZIPOutputStream(OutputStream out) throws IOException {
+      super(out);
+      this.def.setLevel(Deflater.BEST_COMPRESSION);
+    }
+  }
+
+  /**
+   * DeflaterOutputStream (zlib format) using the best compression level.
+   */
+  private static class BestDeflaterOutputStream extends DeflaterOutputStream {
+    private BestDeflaterOutputStream(OutputStream out) {
+      super(out);
+      this.def.setLevel(Deflater.BEST_COMPRESSION);
+    }
+  }
+
+}
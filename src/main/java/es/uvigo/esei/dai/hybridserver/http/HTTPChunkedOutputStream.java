@@ -0,0 +1,136 @@
+package es.uvigo.esei.dai.hybridserver.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Stream that encodes the bytes written to it with the chunked transfer coding.
+ * The bytes are gathered in a buffer and sent as a chunk whenever it is full or the stream is
+ * flushed, each chunk with its size line and its line end in a single write. Closing the stream
+ * sends the last chunk, which ends the content, but does not close the underlying stream.
+ */
+public class HTTPChunkedOutputStream extends OutputStream {
+
+  private static final int DEFAULT_CHUNK_SIZE = 8192;   // Default max. size of the chunks
+  private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+  private final OutputStream out; // Stream where the chunks are written
+  private final byte[] chunk;     // Size line, data and line end of the current chunk
+  private final int dataStart;    // Position of the data of the chunks
+  private int size;               // Number of bytes of data in the current chunk
+  private boolean closed;
+
+  /**
+   * Constructs an HTTPChunkedOutputStream with the default chunk size.
+   *
+   * @param out The stream where the chunks are written.
+   */
+  public HTTPChunkedOutputStream(OutputStream out) {
+    this(out, DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Constructs an HTTPChunkedOutputStream.
+   *
+   * @param out The stream where the chunks are written.
+   * @param chunkSize The max. number of bytes of data of a chunk.
+   * @throws IllegalArgumentException if the chunk size is not positive.
+   */
+  public HTTPChunkedOutputStream(OutputStream out, int chunkSize) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("Chunk size must be positive");
+    }
+    this.out = out;
+    this.dataStart = Integer.toHexString(chunkSize).length() + 2;
+    this.chunk = new byte[this.dataStart + chunkSize + 2];
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    ensureOpen();
+    if (this.size == this.chunk.length - this.dataStart - 2) {
+      writeChunk();
+    }
+    this.chunk[this.dataStart + this.size++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) throws IOException {
+    ensureOpen();
+    final int capacity = this.chunk.length - this.dataStart - 2;
+    while (length > 0) {
+      if (this.size == capacity) {
+        writeChunk();
+      }
+      final int copied = Math.min(length, capacity - this.size);
+      System.arraycopy(bytes, offset, this.chunk, this.dataStart + this.size, copied);
+      this.size += copied;
+      offset += copied;
+      length -= copied;
+    }
+  }
+
+  /**
+   * Sends the buffered bytes as a chunk and flushes the underlying stream.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Override
+  public void flush() throws IOException {
+    ensureOpen();
+    writeChunk();
+    this.out.flush();
+  }
+
+  /**
+   * Sends the buffered bytes and the last chunk. The underlying stream is not closed.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Override
+  public void close() throws IOException {
+    if (!this.closed) {
+      writeChunk();
+      this.out.write(LAST_CHUNK);
+      this.closed = true;
+    }
+  }
+
+  /**
+   * Sends the buffered bytes as a chunk, if there are any (an empty chunk would end the content).
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  private void writeChunk() throws IOException {
+    if (this.size == 0) {
+      return;
+    }
+
+    // The size line is written right before the data, so the chunk is sent with a single write
+    final String sizeLine = Integer.toHexString(this.size);
+    final int start = this.dataStart - sizeLine.length() - 2;
+    for (int i = 0; i < sizeLine.length(); i++) {
+      this.chunk[start + i] = (byte) sizeLine.charAt(i);
+    }
+    this.chunk[this.dataStart - 2] = '\r';
+    this.chunk[this.dataStart - 1] = '\n';
+    this.chunk[this.dataStart + this.size] = '\r';
+    this.chunk[this.dataStart + this.size + 1] = '\n';
+
+    this.out.write(this.chunk, start, this.dataStart + this.size + 2 - start);
+    this.size = 0;
+  }
+
+  /**
+   * Checks that the stream has not been closed.
+   *
+   * @throws IOException if the stream has been closed.
+   */
+  private void ensureOpen() throws IOException {
+    if (this.closed) {
+      throw new IOException("Chunked stream closed");
+    }
+  }
+
+}
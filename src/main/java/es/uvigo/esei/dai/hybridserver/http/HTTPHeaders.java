@@ -21,7 +21,20 @@ public enum HTTPHeaders {
   CONTENT_LENGTH("Content-Length"),
   CONTENT_TYPE("Content-Type"),
   HTTP_1_1("HTTP/1.1"),
-  CONNECTION("Connection");
+  CONNECTION("Connection"),
+  EXPECT("Expect"),
+  ACCEPT_ENCODING("Accept-Encoding"),
+  CONTENT_ENCODING("Content-Encoding"),
+  VARY("Vary"),
+  ETAG("ETag"),
+  IF_NONE_MATCH("If-None-Match"),
+  LAST_MODIFIED("Last-Modified"),
+  IF_MODIFIED_SINCE("If-Modified-Since"),
+  RANGE("Range"),
+  IF_RANGE("If-Range"),
+  CONTENT_RANGE("Content-Range"),
+  ACCEPT_RANGES("Accept-Ranges"),
+  TRANSFER_ENCODING("Transfer-Encoding");
 
   private final String header;
 
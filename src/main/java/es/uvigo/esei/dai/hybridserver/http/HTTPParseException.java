@@ -20,22 +20,49 @@ package es.uvigo.esei.dai.hybridserver.http;
 public class HTTPParseException extends Exception {
   private static final long serialVersionUID = 1L;
 
+  private final HTTPResponseStatus status; // Status of the response to send to the client
+
   public HTTPParseException() {
+    this.status = HTTPResponseStatus.S400;
   }
 
   public HTTPParseException(String message) {
     super(message);
+    this.status = HTTPResponseStatus.S400;
+  }
+
+  /**
+   * Constructs an HTTPParseException answered with a status other than 400 Bad Request.
+   * 
+   * @param message the detail message
+   * @param status the status of the response to send to the client
+   */
+  public HTTPParseException(String message, HTTPResponseStatus status) {
+    super(message);
+    this.status = status;
   }
 
   public HTTPParseException(Throwable cause) {
     super(cause);
+    this.status = HTTPResponseStatus.S400;
   }
 
   public HTTPParseException(String message, Throwable cause) {
     super(message, cause);
+    this.status = HTTPResponseStatus.S400;
   }
 
   public HTTPParseException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
     super(message, cause, enableSuppression, writableStackTrace);
+    this.status = HTTPResponseStatus.S400;
+  }
+
+  /**
+   * Returns the status of the response to send to the client that sent the invalid request.
+   * 
+   * @return the status of the response (400 Bad Request unless stated otherwise)
+   */
+  public HTTPResponseStatus getStatus() {
+    return this.status;
   }
 }
@@ -21,14 +21,18 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.net.URLDecoder;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.LinkedHashMap;
 
 /**
  * Class representing an HTTP request.
- * This class parses an HTTP request from a Reader and provides access to its components.
+ * This class parses an HTTP request from a Reader or from its bytes and provides access to its components.
+ * When it is parsed from bytes, the components are decoded the first time they are requested.
  */
 public class HTTPRequest {
 
@@ -36,11 +40,14 @@ public class HTTPRequest {
   private String resourceChain; // Full resource chain (path + parameters)
   private String[] resourcePath;  // Resource path as an array of strings
   private String resourceName;  // Resource name
-  private Map<String, String> resourceParameters = new LinkedHashMap<>(); // Resource parameters
+  private Map<String, String> resourceParameters; // Resource parameters
   private String httpVersion;  // HTTP version
-  private Map<String, String> headerParameters = new LinkedHashMap<>(); // Header parameters
+  private Map<String, String> headerParameters; // Header parameters
   private int contentLength = 0;  // Content length
   private String content;  // Content
+  private HTTPRequestParser parser; // Parser of the bytes of the request, when it is parsed from bytes
+
+  private static final int CONTENT_CHUNK_SIZE = 8192; // Max. number of chars of content read at once
 
   /**
    * Constructs an HTTPRequest by parsing the provided Reader.
@@ -51,6 +58,9 @@ public class HTTPRequest {
    * @throws HTTPParseException if the HTTP request is not valid
    */
   public HTTPRequest(Reader reader) throws IOException, HTTPParseException {
+    this.resourceParameters = new LinkedHashMap<>();
+    this.headerParameters = new LinkedHashMap<>();
+
     // Wrap it into a bufferedReader
     BufferedReader br = (reader instanceof BufferedReader) ? (BufferedReader) reader : new BufferedReader(reader);
     String line = br.readLine();
@@ -83,6 +93,50 @@ public class HTTPRequest {
 
   }
 
+  /**
+   * Constructs an HTTPRequest by parsing the bytes of a buffer, from its position to its limit.
+   * The request is parsed in place and then only its bytes are copied, so the buffer can be
+   * reused as soon as this constructor returns. The position of the buffer is moved past the
+   * request, leaving any following byte (e.g. the next pipelined request) to be read.
+   * 
+   * @param buffer the buffer containing the HTTP request
+   * @throws HTTPParseException if the HTTP request is not valid or it is not complete
+   */
+  public HTTPRequest(ByteBuffer buffer) throws HTTPParseException {
+    if (buffer.hasArray()) {
+      parse(new HTTPRequestParser(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining()));
+    } else {
+      final byte[] bytes = new byte[buffer.remaining()];
+      buffer.duplicate().get(bytes);
+      parse(new HTTPRequestParser(bytes, 0, bytes.length));
+    }
+
+    this.parser.detach();
+    buffer.position(buffer.position() + this.parser.length());
+  }
+
+  /**
+   * Constructs an HTTPRequest by parsing the bytes of an array, without copying them.
+   * The bytes must not be modified while the request is in use.
+   * 
+   * @param bytes the array containing the HTTP request
+   * @param offset the position of the first byte of the request
+   * @param length the number of bytes of the request
+   * @throws HTTPParseException if the HTTP request is not valid or it is not complete
+   */
+  public HTTPRequest(byte[] bytes, int offset, int length) throws HTTPParseException {
+    parse(new HTTPRequestParser(bytes, offset, length));
+  }
+
+  /**
+   * Constructs an HTTPRequest from a parser of its bytes.
+   * 
+   * @param parser the parser of the HTTP request
+   */
+  HTTPRequest(HTTPRequestParser parser) {
+    parse(parser);
+  }
+
   /**
    * Returns the HTTP method of the request.
    * 
@@ -99,6 +153,9 @@ public class HTTPRequest {
    * @return the resource chain as a string
    */
   public String getResourceChain() {
+    if (this.resourceChain == null && this.parser != null) {
+      this.resourceChain = this.parser.resourceChain();
+    }
     return this.resourceChain;
   }
 
@@ -109,6 +166,9 @@ public class HTTPRequest {
    * @return an array of strings containing the parts of the resource path
    */
   public String[] getResourcePath() {
+    if (this.resourcePath == null && this.parser != null) {
+      this.resourcePath = this.parser.resourcePath();
+    }
     return this.resourcePath;
   }
 
@@ -118,6 +178,9 @@ public class HTTPRequest {
    * @return the resource name as a string
    */
   public String getResourceName() {
+    if (this.resourceName == null && this.parser != null) {
+      this.resourceName = String.join("/", getResourcePath());
+    }
     return this.resourceName;
   }
 
@@ -127,9 +190,28 @@ public class HTTPRequest {
    * @return a map containing the resource parameters
    */
   public Map<String, String> getResourceParameters() {
+    if (this.resourceParameters == null && this.parser != null) {
+      this.resourceParameters = this.parser.parameters();
+    }
     return this.resourceParameters;
   }
 
+  /**
+   * Returns every value of a resource parameter, for parameters repeated in the request
+   * (e.g. html=a&amp;html=b). Requests read from a Reader only keep the last value.
+   * 
+   * @param name the name of the parameter
+   * @return the values of the parameter, in the order they were received, or an empty list if it is not included
+   */
+  public List<String> getResourceParameterValues(String name) {
+    if (this.parser != null) {
+      return this.parser.parameterValues(name);
+    }
+
+    final String value = getResourceParameters().get(name);
+    return value == null ? Collections.emptyList() : Collections.singletonList(value);
+  }
+
   /**
    * Returns the HTTP version of the request.
    * 
@@ -145,15 +227,43 @@ public class HTTPRequest {
    * @return a map containing the header parameters
    */
   public Map<String, String> getHeaderParameters() {
+    if (this.headerParameters == null && this.parser != null) {
+      this.headerParameters = this.parser.headers();
+    }
     return this.headerParameters;
   }
 
+  /**
+   * Returns the value of a header of the HTTP request.
+   * Header names are compared ignoring case, as defined by the HTTP protocol.
+   * 
+   * @param name the name of the header
+   * @return the value of the header, or null if the request does not include it
+   */
+  public String getHeader(String name) {
+    if (this.headerParameters == null && this.parser != null) {
+      // No need to decode every header
+      return this.parser.header(name);
+    }
+
+    for (Map.Entry<String, String> header : this.headerParameters.entrySet()) {
+      if (header.getKey().equalsIgnoreCase(name)) {
+        return header.getValue();
+      }
+    }
+
+    return null;
+  }
+
   /**
    * Returns the content of the HTTP request.
    * 
    * @return the content as a string
    */
   public String getContent() {
+    if (this.content == null && this.parser != null) {
+      this.content = this.parser.content();
+    }
     return this.content;
   }
 
@@ -184,6 +294,19 @@ public class HTTPRequest {
 
   // Additional functions
 
+  /**
+   * Takes the components of an HTTP request from the parser of its bytes. Only the method, the version
+   * and the content length are set at once: the other components are decoded when they are requested.
+   * 
+   * @param parser the parser of the HTTP request
+   */
+  private void parse(HTTPRequestParser parser) {
+    this.parser = parser;
+    this.method = this.parser.method();
+    this.httpVersion = HTTPHeaders.HTTP_1_1.getHeader();
+    this.contentLength = this.parser.contentLength();
+  }
+
   /**
    * Parse the start line from an HTTP request.
    * 
@@ -248,11 +371,16 @@ public class HTTPRequest {
    * @throws HTTPParseException if the content is not valid
    */
   private void parseContent(BufferedReader br) throws IOException, HTTPParseException {
-    char[] contentChars = new char[this.contentLength];
-
-    int readChars = br.read(contentChars, 0, this.contentLength);
-    if (readChars != this.contentLength) {
-      throw new HTTPParseException("ERROR: invalid content length found in http request");
+    // The content is read in chunks, so a wrong Content-Length does not allocate a huge array up front
+    StringBuilder contentChars = new StringBuilder(Math.min(this.contentLength, CONTENT_CHUNK_SIZE));
+    char[] chunk = new char[Math.min(this.contentLength, CONTENT_CHUNK_SIZE)];
+
+    while (contentChars.length() < this.contentLength) {
+      int readChars = br.read(chunk, 0, Math.min(chunk.length, this.contentLength - contentChars.length()));
+      if (readChars == -1) {
+        throw new HTTPParseException("ERROR: invalid content length found in http request");
+      }
+      contentChars.append(chunk, 0, readChars);
     }
 
     // Check if content type is application/x-www-form-urlencoded
@@ -269,11 +397,11 @@ public class HTTPRequest {
       }
       
       // Decode content
-      this.content = URLDecoder.decode(new String(contentChars), charset);
+      this.content = URLDecoder.decode(contentChars.toString(), charset);
 
     } else {
       // Just set content
-      this.content = new String(contentChars);
+      this.content = contentChars.toString();
       
     }
     
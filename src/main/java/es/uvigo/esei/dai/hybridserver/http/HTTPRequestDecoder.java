@@ -0,0 +1,303 @@
+package es.uvigo.esei.dai.hybridserver.http;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Class that decodes HTTP requests from the bytes of a connection as they arrive.
+ * The bytes are pushed in chunks of any size and the decoder keeps its state between
+ * calls, so it can be driven from a selector or an asynchronous channel as well as from
+ * a blocking stream. After each chunk it reports whether a full request has been received
+ * ({@link Status#COMPLETE}), more bytes are needed ({@link Status#NEED_MORE}) or the
+ * request is not valid ({@link Status#ERROR}).
+ * The head of a request is parsed as soon as it is complete, so invalid requests and
+ * requests whose content exceeds the max. size are rejected before their content is received.
+ * The length of the content is the one found by that parse, so the request is framed exactly
+ * as it is later read. The content is then written straight into the array of the request,
+ * which is sized from its Content-Length, so it is never buffered twice. Instances are not thread-safe.
+ */
+public class HTTPRequestDecoder {
+
+  /**
+   * State of the request being decoded.
+   */
+  public enum Status {
+    NEED_MORE,  // The request is not complete yet
+    COMPLETE,   // A full request is available
+    ERROR       // The request is not valid, or it exceeds the max. size
+  }
+
+  private static final int INITIAL_CAPACITY = 4096;  // Initial size of the buffer
+  private static final String CONTINUE = "100-continue";  // Only supported expectation
+
+  private final int maxHeadSize;      // Max. size in bytes of the head of a request
+  private final int maxContentLength; // Max. size in bytes of the content of a request
+
+  private byte[] buffer;      // Bytes received and not assigned to a request yet (null while there are none)
+  private int size;           // Number of bytes in the buffer
+  private int scanned;        // Number of bytes of the head already searched for its end
+
+  private byte[] request;             // Bytes of the current request, once its head is complete
+  private int received;               // Number of bytes of the current request received
+  private HTTPRequestParser parser;   // Parser of the head of the current request
+  private HTTPRequest head;           // Current request, whose content may not be complete
+  private boolean continueExpected;   // Whether the client waits for a 100 Continue response
+  private HTTPParseException error;   // Error found in the request, if any
+
+  /**
+   * Constructs an HTTPRequestDecoder.
+   *
+   * @param maxHeadSize The max. size in bytes of the head of a request (start line and headers).
+   * @param maxContentLength The max. size in bytes of the content of a request.
+   */
+  public HTTPRequestDecoder(int maxHeadSize, int maxContentLength) {
+    if (maxHeadSize <= 0 || maxContentLength < 0) {
+      throw new IllegalArgumentException("Max. head size must be positive and max. content length not negative");
+    }
+    this.maxHeadSize = maxHeadSize;
+    this.maxContentLength = maxContentLength;
+  }
+
+  /**
+   * Pushes the bytes remaining in a buffer, consuming them.
+   *
+   * @param chunk The buffer with the received bytes.
+   * @return The state of the current request.
+   */
+  public Status feed(ByteBuffer chunk) {
+    if (this.error == null) {
+      // The content of the current request goes straight to its array
+      if (this.request != null && this.received < this.request.length) {
+        final int length = Math.min(chunk.remaining(), this.request.length - this.received);
+        chunk.get(this.request, this.received, length);
+        this.received += length;
+      }
+
+      final int length = chunk.remaining();
+      if (length > 0) {
+        ensureCapacity(length);
+        chunk.get(this.buffer, this.size, length);
+        this.size += length;
+      }
+    }
+
+    return decode();
+  }
+
+  /**
+   * Pushes the bytes of an array.
+   *
+   * @param bytes The array with the received bytes.
+   * @param offset The position of the first received byte.
+   * @param length The number of received bytes.
+   * @return The state of the current request.
+   */
+  public Status feed(byte[] bytes, int offset, int length) {
+    return feed(ByteBuffer.wrap(bytes, offset, length));
+  }
+
+  /**
+   * Checks the state of the current request with the bytes already received.
+   *
+   * @return The state of the current request.
+   */
+  public Status decode() {
+    if (this.error != null) {
+      return Status.ERROR;
+    }
+
+    if (this.request == null) {
+      final int headLength = findHeadEnd();
+      if ((headLength == -1 ? this.size : headLength) > this.maxHeadSize) {
+        return fail(new HTTPParseException("ERROR: http request head exceeds the max. size of "
+          + this.maxHeadSize + " bytes"));
+      }
+      if (headLength == -1) {
+        return Status.NEED_MORE;
+      }
+
+      try {
+        startRequest(headLength);
+      } catch (HTTPParseException e) {
+        return fail(e);
+      }
+    }
+
+    return this.received == this.request.length ? Status.COMPLETE : Status.NEED_MORE;
+  }
+
+  /**
+   * Checks whether the client waits for a 100 Continue response before sending the content
+   * of the current request. The head of the request is available with {@link #getHead()}
+   * to decide whether the content should be sent.
+   *
+   * @return true if the client waits for a 100 Continue response, false otherwise.
+   */
+  public boolean isContinueExpected() {
+    return this.continueExpected && this.received < this.request.length;
+  }
+
+  /**
+   * Records that the 100 Continue response has been sent to the client.
+   */
+  public void continueSent() {
+    this.continueExpected = false;
+  }
+
+  /**
+   * Returns the current request as soon as its head is complete. Its content, and the
+   * parameters sent in it, must not be used until the request is complete.
+   *
+   * @return The current request, or null if its head is not complete.
+   */
+  public HTTPRequest getHead() {
+    return this.head;
+  }
+
+  /**
+   * Takes the current request, which must be complete, leaving the decoder ready for the next one.
+   * Any byte received after the request (e.g. the next pipelined request) is kept.
+   *
+   * @return The HTTP request.
+   * @throws HTTPParseException if the request is not valid.
+   * @throws IllegalStateException if the request is not complete.
+   */
+  public HTTPRequest takeRequest() throws HTTPParseException {
+    if (decode() != Status.COMPLETE) {
+      if (this.error != null) {
+        throw this.error;
+      }
+      throw new IllegalStateException("The http request is not complete");
+    }
+
+    final HTTPRequestParser parser = this.parser;
+    final HTTPRequest request = this.head;
+
+    this.request = null;
+    this.received = 0;
+    this.parser = null;
+    this.head = null;
+    this.continueExpected = false;
+
+    try {
+      parser.parseContent();
+    } catch (HTTPParseException e) {
+      fail(e);
+      throw e;
+    }
+
+    return request;
+  }
+
+  /**
+   * Checks whether there are received bytes that have not been taken yet.
+   *
+   * @return true if there are bytes of another request, false otherwise.
+   */
+  public boolean hasBufferedBytes() {
+    return this.size > 0 || this.request != null;
+  }
+
+  /**
+   * Returns the error found in the request.
+   *
+   * @return The error, or null if no error has been found.
+   */
+  public HTTPParseException getError() {
+    return this.error;
+  }
+
+  /**
+   * Parses the head of a new request, which is at the beginning of the buffer, and moves
+   * it to an array sized for the whole request, together with any content already received.
+   *
+   * @param headLength The length of the head, including the blank line.
+   * @throws HTTPParseException if the head is not valid, the content exceeds the max. size,
+   * or the expectation of the client is not supported.
+   */
+  private void startRequest(int headLength) throws HTTPParseException {
+    final HTTPRequestParser parser = new HTTPRequestParser(this.buffer, 0, headLength, true);
+
+    final int contentLength = parser.contentLength();
+    if (contentLength > this.maxContentLength || contentLength > Integer.MAX_VALUE - headLength) {
+      throw new HTTPParseException("ERROR: http request content exceeds the max. size of "
+        + this.maxContentLength + " bytes", HTTPResponseStatus.S413);
+    }
+
+    final String expect = parser.header(HTTPHeaders.EXPECT.getHeader());
+    if (expect != null && !expect.equalsIgnoreCase(CONTINUE)) {
+      throw new HTTPParseException("ERROR: unsupported expectation found in http request: " + expect,
+        HTTPResponseStatus.S417);
+    }
+
+    this.request = new byte[headLength + contentLength];
+    this.received = Math.min(this.size, this.request.length);
+    System.arraycopy(this.buffer, 0, this.request, 0, this.received);
+
+    // Keep the bytes of the next requests
+    this.size -= this.received;
+    this.scanned = 0;
+    if (this.size == 0) {
+      this.buffer = null;
+    } else {
+      System.arraycopy(this.buffer, this.received, this.buffer, 0, this.size);
+    }
+
+    parser.relocate(this.request, 0);
+    this.parser = parser;
+    this.head = new HTTPRequest(parser);
+    this.continueExpected = expect != null;
+  }
+
+  /**
+   * Records an error. The decoder does not accept more bytes after an error.
+   *
+   * @param error The error found in the request.
+   * @return The ERROR status.
+   */
+  private Status fail(HTTPParseException error) {
+    this.error = error;
+    this.buffer = null;
+    this.size = 0;
+    this.request = null;
+    this.parser = null;
+    this.head = null;
+    this.continueExpected = false;
+
+    return Status.ERROR;
+  }
+
+  /**
+   * Looks for the blank line that ends the head of the request, resuming the search
+   * where the last one stopped.
+   *
+   * @return The length of the head, including the blank line, or -1 if it is not complete.
+   */
+  private int findHeadEnd() {
+    for (int i = Math.max(this.scanned, 1); i < this.size; i++) {
+      // A blank line is a LF preceded by a LF, or by CR LF
+      if (this.buffer[i] == '\n'
+        && (this.buffer[i - 1] == '\n' || (i > 1 && this.buffer[i - 1] == '\r' && this.buffer[i - 2] == '\n'))) {
+        return i + 1;
+      }
+    }
+
+    this.scanned = this.size;
+    return -1;
+  }
+
+  /**
+   * Makes room in the buffer for the specified number of bytes.
+   *
+   * @param length The number of bytes to be added.
+   */
+  private void ensureCapacity(int length) {
+    final int required = this.size + length;
+    if (this.buffer == null) {
+      this.buffer = new byte[Math.max(INITIAL_CAPACITY, required)];
+    } else if (required > this.buffer.length) {
+      this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, required));
+    }
+  }
+
+}
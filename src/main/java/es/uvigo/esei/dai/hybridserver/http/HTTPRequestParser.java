@@ -0,0 +1,741 @@
+package es.uvigo.esei.dai.hybridserver.http;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class that parses an HTTP request directly from its bytes.
+ * The request is validated in a single pass that only records where each element
+ * (resource path, parameters, headers and content) starts and ends. The strings of
+ * those elements are created when they are requested for the first time, so the
+ * elements a handler does not use are never decoded.
+ * The parser does not copy the bytes: they must not be modified while the request is in use,
+ * unless the parser is detached from them (see {@link #detach()}).
+ * Instances are not thread-safe.
+ */
+final class HTTPRequestParser {
+
+  private static final HTTPRequestMethod[] METHODS = HTTPRequestMethod.values();
+  private static final byte[] HTTP_PREFIX = "HTTP/".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] HTTP_1_1 = HTTPHeaders.HTTP_1_1.getHeader().getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] CONTENT_LENGTH = HTTPHeaders.CONTENT_LENGTH.getHeader().getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] CONTENT_TYPE = HTTPHeaders.CONTENT_TYPE.getHeader().getBytes(StandardCharsets.US_ASCII);
+
+  private byte[] bytes;           // Bytes of the request
+  private int offset;             // Position of the first byte of the request
+
+  private HTTPRequestMethod method;
+  private int chainStart, chainEnd;   // Resource chain
+  private int queryStart = -1;        // Parameters of the resource chain (after '?'), or -1 if there are none
+  private int[] headers = new int[32];    // Start and end of the name and value of each header
+  private int headerCount;
+  private int contentStart;           // Position of the first byte of the content
+  private int contentLength = -1;     // Value of the Content-Length header, or -1 if it is absent
+  private boolean contentParameters;  // Whether the parameters come from the content instead of the resource chain
+  private int length;                 // Length in bytes of the request (head and content)
+
+  /**
+   * Parses an HTTP request. Any byte after the request (e.g. the next pipelined request) is not read.
+   *
+   * @param bytes The array holding the request.
+   * @param offset The position of the first byte of the request.
+   * @param available The number of bytes available from the offset.
+   * @throws HTTPParseException if the HTTP request is not valid or it is not complete.
+   */
+  HTTPRequestParser(byte[] bytes, int offset, int available) throws HTTPParseException {
+    this(bytes, offset, available, false);
+  }
+
+  /**
+   * Parses an HTTP request, or only its head when the content has not been received yet.
+   * In that case, the content must be validated with {@link #parseContent()} once it has been
+   * written in the array, after the head.
+   *
+   * @param bytes The array holding the request.
+   * @param offset The position of the first byte of the request.
+   * @param available The number of bytes available from the offset.
+   * @param headOnly Whether only the head of the request is available.
+   * @throws HTTPParseException if the HTTP request is not valid or it is not complete.
+   */
+  HTTPRequestParser(byte[] bytes, int offset, int available, boolean headOnly) throws HTTPParseException {
+    this.bytes = bytes;
+    this.offset = offset;
+
+    final int limit = offset + available;
+
+    // Parse start line
+    int lineEnd = lineEnd(offset, limit);
+    int next = nextLine(lineEnd, limit);
+    if (lineEnd == offset) {
+      throw new HTTPParseException("ERROR: null or empty string found where content expected");
+    }
+    parseStartLine(offset, lineEnd);
+
+    // Parse header lines, until a blank line or the end of the bytes
+    while (next < limit) {
+      lineEnd = lineEnd(next, limit);
+      final int lineStart = next;
+      next = nextLine(lineEnd, limit);
+
+      if (lineEnd == lineStart) {
+        break;
+      }
+      parseHeaderLine(lineStart, lineEnd);
+    }
+
+    // Check if there is content
+    this.contentStart = next;
+    parseContentLength();
+    this.length = this.contentStart + contentLength() - offset;
+
+    if (!headOnly) {
+      if (contentLength() > limit - this.contentStart) {
+        throw new HTTPParseException("ERROR: invalid content length found in http request");
+      }
+      parseContent();
+    }
+  }
+
+  /**
+   * Validates the content of the request. The parameters of form content are checked
+   * here, so they are not validated again when they are decoded.
+   *
+   * @throws HTTPParseException if the content is not valid.
+   */
+  void parseContent() throws HTTPParseException {
+    if (this.contentLength > 0) {
+      validateContent();
+    }
+  }
+
+  /**
+   * Returns the length in bytes of the request, including its content.
+   *
+   * @return The length of the request.
+   */
+  int length() {
+    return this.length;
+  }
+
+  /**
+   * Copies the bytes of the request (and only them) into a new array, so the original
+   * bytes can be modified or reused while the request is in use.
+   */
+  void detach() {
+    relocate(Arrays.copyOfRange(this.bytes, this.offset, this.offset + this.length), 0);
+  }
+
+  /**
+   * Moves the parser to another array, where the bytes of the request already parsed
+   * have been copied (e.g. an array sized for the whole request, once its head is parsed).
+   *
+   * @param bytes The array now holding the request.
+   * @param offset The position of the first byte of the request in that array.
+   */
+  void relocate(byte[] bytes, int offset) {
+    final int shift = this.offset - offset;
+
+    this.bytes = bytes;
+    this.offset = offset;
+    this.chainStart -= shift;
+    this.chainEnd -= shift;
+    if (this.queryStart != -1) {
+      this.queryStart -= shift;
+    }
+    for (int i = 0; i < this.headerCount * 4; i++) {
+      this.headers[i] -= shift;
+    }
+    this.contentStart -= shift;
+  }
+
+  /**
+   * Returns the HTTP method of the request.
+   *
+   * @return The HTTP method.
+   */
+  HTTPRequestMethod method() {
+    return this.method;
+  }
+
+  /**
+   * Returns the length of the content of the request.
+   *
+   * @return The content length.
+   */
+  int contentLength() {
+    return Math.max(0, this.contentLength);
+  }
+
+  /**
+   * Decodes the resource chain of the request (path and parameters).
+   *
+   * @return The resource chain.
+   */
+  String resourceChain() {
+    return string(this.chainStart, this.chainEnd);
+  }
+
+  /**
+   * Decodes the segments of the resource path.
+   *
+   * @return The segments of the resource path, or an empty array for the root resource.
+   */
+  String[] resourcePath() {
+    final int pathEnd = this.queryStart == -1 ? this.chainEnd : this.queryStart - 1;
+
+    // Trailing slashes do not create segments
+    int end = pathEnd;
+    while (end > this.chainStart + 1 && this.bytes[end - 1] == '/') {
+      end--;
+    }
+    if (end - this.chainStart <= 1) {
+      return new String[0];
+    }
+
+    String[] path = new String[count(this.chainStart + 1, end, (byte) '/') + 1];
+    int segment = 0;
+    int start = this.chainStart + 1;
+    for (int i = start; i <= end; i++) {
+      if (i == end || this.bytes[i] == '/') {
+        path[segment++] = string(start, i);
+        start = i + 1;
+      }
+    }
+
+    return path;
+  }
+
+  /**
+   * Decodes the parameters of the request. If the content holds parameters,
+   * they replace the ones of the resource chain.
+   *
+   * @return The parameters of the request.
+   */
+  Map<String, String> parameters() {
+    if (this.contentParameters) {
+      return parameters(this.contentStart, this.contentStart + contentLength(), isFormEncoded());
+    } else if (this.queryStart != -1) {
+      return parameters(this.queryStart, this.chainEnd, false);
+    }
+
+    return Collections.emptyMap();
+  }
+
+  /**
+   * Decodes every value of a repeated parameter of the request, in the order they were received.
+   * Only the values of that parameter are decoded.
+   *
+   * @param name The name of the parameter.
+   * @return The values of the parameter, empty if the request does not include it.
+   */
+  List<String> parameterValues(String name) {
+    if (this.contentParameters) {
+      return parameterValues(name, this.contentStart, this.contentStart + contentLength(), isFormEncoded());
+    } else if (this.queryStart != -1) {
+      return parameterValues(name, this.queryStart, this.chainEnd, false);
+    }
+
+    return Collections.emptyList();
+  }
+
+  /**
+   * Decodes the headers of the request, in the order they were received.
+   *
+   * @return The headers of the request.
+   */
+  Map<String, String> headers() {
+    Map<String, String> headers = new LinkedHashMap<>();
+    for (int i = 0; i < this.headerCount; i++) {
+      final int base = i * 4;
+      headers.put(string(this.headers[base], this.headers[base + 1]),
+        string(this.headers[base + 2], this.headers[base + 3]));
+    }
+
+    return headers;
+  }
+
+  /**
+   * Decodes the value of a header, comparing the names ignoring case.
+   * If the header is repeated, the last value is returned.
+   *
+   * @param name The name of the header.
+   * @return The value of the header, or null if the request does not include it.
+   */
+  String header(String name) {
+    final int index = findHeader(name.getBytes(StandardCharsets.US_ASCII));
+    return index == -1 ? null : string(this.headers[index * 4 + 2], this.headers[index * 4 + 3]);
+  }
+
+  /**
+   * Decodes the content of the request. Form encoded content is URL decoded.
+   *
+   * @return The content of the request, or null if it has no Content-Length header.
+   */
+  String content() {
+    if (this.contentLength == -1) {
+      return null;
+    }
+
+    final String content = string(this.contentStart, this.contentStart + this.contentLength);
+    return isFormEncoded() ? URLDecoder.decode(content, StandardCharsets.UTF_8) : content;
+  }
+
+  /**
+   * Parses the start line: method, resource chain and version, separated by a space.
+   *
+   * @param start The position of the first byte of the line.
+   * @param end The position after the last byte of the line.
+   * @throws HTTPParseException if the start line is not valid.
+   */
+  private void parseStartLine(int start, int end) throws HTTPParseException {
+    final int firstSpace = indexOf(start, end, (byte) ' ');
+    final int secondSpace = firstSpace == -1 ? -1 : indexOf(firstSpace + 1, end, (byte) ' ');
+
+    // Start line should have 3 parts: Method + /ResourceChain + HTTP/Version
+    if (secondSpace == -1 || indexOf(secondSpace + 1, end, (byte) ' ') != -1
+      || firstSpace == start || secondSpace == firstSpace + 1 || secondSpace + 1 == end) {
+      throw new HTTPParseException("ERROR: error while parsing start line from http request, 3 fields expected");
+    }
+
+    // Parse version first (NOTE: only supported version is HTTP/1.1)
+    if (!regionEquals(secondSpace + 1, end, HTTP_PREFIX, true)) {
+      throw new HTTPParseException("ERROR: http version from http request does not start with HTTP/");
+    }
+    if (!regionEquals(secondSpace + 1, end, HTTP_1_1, false)) {
+      throw new HTTPParseException("ERROR: http version from http request is not supported");
+    }
+
+    this.method = parseMethod(start, firstSpace);
+    parseResourceChain(firstSpace + 1, secondSpace);
+  }
+
+  /**
+   * Finds the HTTP method matching some bytes, without decoding them.
+   *
+   * @param start The position of the first byte of the method.
+   * @param end The position after the last byte of the method.
+   * @return The HTTP method.
+   * @throws HTTPParseException if the bytes do not match any HTTP method.
+   */
+  private HTTPRequestMethod parseMethod(int start, int end) throws HTTPParseException {
+    for (HTTPRequestMethod method : METHODS) {
+      final String name = method.name();
+      if (name.length() == end - start) {
+        int i = 0;
+        while (i < name.length() && this.bytes[start + i] == name.charAt(i)) {
+          i++;
+        }
+        if (i == name.length()) {
+          return method;
+        }
+      }
+    }
+
+    throw new HTTPParseException("ERROR: Method from http request do not match any existing http methods");
+  }
+
+  /**
+   * Validates the resource chain: /path/to/resource?param1=value1&amp;param2=value2 (parameters are optional).
+   *
+   * @param start The position of the first byte of the resource chain.
+   * @param end The position after the last byte of the resource chain.
+   * @throws HTTPParseException if the resource chain is not valid.
+   */
+  private void parseResourceChain(int start, int end) throws HTTPParseException {
+    if (this.bytes[start] != '/') {
+      throw new HTTPParseException("ERROR: invalid resource chain found in http request");
+    }
+
+    int pathEnd = end;
+    for (int i = start; i < end; i++) {
+      final byte b = this.bytes[i];
+      if (isInvalidCharacter(b) || (b == '/' && i > start && this.bytes[i - 1] == '/')) {
+        throw new HTTPParseException("ERROR: invalid resource chain found in http request");
+      }
+      if (b == '?' && pathEnd == end) {
+        pathEnd = i;
+      }
+    }
+
+    // Segments of the path must not be "." or ".."
+    int segmentStart = start + 1;
+    for (int i = segmentStart; i <= pathEnd; i++) {
+      if (i == pathEnd || this.bytes[i] == '/') {
+        final int segmentLength = i - segmentStart;
+        if ((segmentLength == 1 || segmentLength == 2) && this.bytes[segmentStart] == '.'
+          && this.bytes[i - 1] == '.') {
+          throw new HTTPParseException("ERROR: invalid part found in resource path from http request");
+        }
+        segmentStart = i + 1;
+      }
+    }
+
+    this.chainStart = start;
+    this.chainEnd = end;
+
+    if (pathEnd != end) {
+      this.queryStart = pathEnd + 1;
+      validateParameters(this.queryStart, end);
+    }
+  }
+
+  /**
+   * Parses a header line: Key: Value.
+   *
+   * @param start The position of the first byte of the line.
+   * @param end The position after the last byte of the line.
+   * @throws HTTPParseException if the header line is not valid.
+   */
+  private void parseHeaderLine(int start, int end) throws HTTPParseException {
+    final int colon = indexOf(start, end, (byte) ':');
+    if (colon == -1) {
+      throw new HTTPParseException("ERROR: invalid header line found in http request");
+    }
+
+    final int nameStart = skipSpaces(start, colon);
+    final int nameEnd = trimSpaces(nameStart, colon);
+    final int valueStart = skipSpaces(colon + 1, end);
+    final int valueEnd = trimSpaces(valueStart, end);
+
+    // Key and value must not be empty
+    if (nameStart == nameEnd || valueStart == valueEnd) {
+      throw new HTTPParseException("ERROR: empty key or value found in header line from http request");
+    }
+
+    if (this.headerCount * 4 == this.headers.length) {
+      this.headers = Arrays.copyOf(this.headers, this.headers.length * 2);
+    }
+
+    final int base = this.headerCount++ * 4;
+    this.headers[base] = nameStart;
+    this.headers[base + 1] = nameEnd;
+    this.headers[base + 2] = valueStart;
+    this.headers[base + 3] = valueEnd;
+  }
+
+  /**
+   * Parses the value of the Content-Length header, if present. The header may be repeated
+   * only with the same value, as the length of the request would be ambiguous otherwise.
+   *
+   * @throws HTTPParseException if a value is not a valid length, or the values differ.
+   */
+  private void parseContentLength() throws HTTPParseException {
+    for (int i = 0; i < this.headerCount; i++) {
+      final int start = this.headers[i * 4];
+      if (this.headers[i * 4 + 1] - start == CONTENT_LENGTH.length && equalsIgnoreCase(start, CONTENT_LENGTH)) {
+        final int value = parseLength(this.headers[i * 4 + 2], this.headers[i * 4 + 3]);
+        if (this.contentLength != -1 && this.contentLength != value) {
+          throw new HTTPParseException("ERROR: conflicting Content-Length values found in http request header");
+        }
+        this.contentLength = value;
+      }
+    }
+  }
+
+  /**
+   * Parses a Content-Length value: a decimal number with an optional sign, that must not be negative.
+   *
+   * @param start The position of the first byte of the value.
+   * @param end The position after the last byte of the value.
+   * @return The length.
+   * @throws HTTPParseException if the value is not a valid length.
+   */
+  private int parseLength(int start, int end) throws HTTPParseException {
+    long value = 0;
+    boolean negative = this.bytes[start] == '-';
+    int i = negative || this.bytes[start] == '+' ? start + 1 : start;
+    if (i == end) {
+      throw new HTTPParseException("ERROR: invalid Content-Length value found in http request header");
+    }
+    for (; i < end; i++) {
+      final byte b = this.bytes[i];
+      if (b < '0' || b > '9' || (value = value * 10 + (b - '0')) > Integer.MAX_VALUE) {
+        throw new HTTPParseException("ERROR: invalid Content-Length value found in http request header");
+      }
+    }
+
+    if (negative && value > 0) {
+      throw new HTTPParseException("ERROR: negative Content-Length value found in http request header");
+    }
+
+    return (int) value;
+  }
+
+  /**
+   * Validates the content. If it contains any '=', it must hold a list of parameters.
+   *
+   * @throws HTTPParseException if the parameters of the content are not valid.
+   */
+  private void validateContent() throws HTTPParseException {
+    final int end = this.contentStart + this.contentLength;
+    if (indexOf(this.contentStart, end, (byte) '=') != -1) {
+      validateParameters(this.contentStart, end);
+      this.contentParameters = true;
+    }
+  }
+
+  /**
+   * Validates a list of parameters: key1=value1&amp;key2=value2.
+   * Every parameter must have a non empty key and value.
+   *
+   * @param start The position of the first byte of the parameters.
+   * @param end The position after the last byte of the parameters.
+   * @throws HTTPParseException if the parameters are not valid.
+   */
+  private void validateParameters(int start, int end) throws HTTPParseException {
+    // Trailing separators are ignored
+    while (end > start && this.bytes[end - 1] == '&') {
+      end--;
+    }
+
+    int paramStart = start;
+    for (int i = start; i <= end; i++) {
+      if (i == end || this.bytes[i] == '&') {
+        final int equals = indexOf(paramStart, i, (byte) '=');
+        if (equals == -1) {
+          throw new HTTPParseException("ERROR: invalid resource parameter found in http request");
+        }
+        if (equals == paramStart || equals + 1 == i) {
+          throw new HTTPParseException("ERROR: empty key or value found in resource parameter from http request");
+        }
+        paramStart = i + 1;
+      }
+    }
+  }
+
+  /**
+   * Decodes a list of previously validated parameters.
+   *
+   * @param start The position of the first byte of the parameters.
+   * @param end The position after the last byte of the parameters.
+   * @param urlEncoded Whether the keys and values are URL encoded.
+   * @return The parameters.
+   */
+  private Map<String, String> parameters(int start, int end, boolean urlEncoded) {
+    Map<String, String> parameters = new HashMap<>();
+
+    int paramStart = start;
+    for (int i = start; i <= end; i++) {
+      if (i == end || this.bytes[i] == '&') {
+        if (i > paramStart) {
+          final int equals = indexOf(paramStart, i, (byte) '=');
+          String key = string(paramStart, equals);
+          String value = string(equals + 1, i);
+          if (urlEncoded) {
+            key = URLDecoder.decode(key, StandardCharsets.UTF_8);
+            value = URLDecoder.decode(value, StandardCharsets.UTF_8);
+          }
+          parameters.put(key, value);
+        }
+        paramStart = i + 1;
+      }
+    }
+
+    return parameters;
+  }
+
+  /**
+   * Decodes every value of a parameter in a list of previously validated parameters.
+   *
+   * @param name The name of the parameter.
+   * @param start The position of the first byte of the parameters.
+   * @param end The position after the last byte of the parameters.
+   * @param urlEncoded Whether the keys and values are URL encoded.
+   * @return The values of the parameter.
+   */
+  private List<String> parameterValues(String name, int start, int end, boolean urlEncoded) {
+    List<String> values = new ArrayList<>();
+
+    int paramStart = start;
+    for (int i = start; i <= end; i++) {
+      if (i == end || this.bytes[i] == '&') {
+        if (i > paramStart) {
+          final int equals = indexOf(paramStart, i, (byte) '=');
+          String key = string(paramStart, equals);
+          if (urlEncoded) {
+            key = URLDecoder.decode(key, StandardCharsets.UTF_8);
+          }
+          if (key.equals(name)) {
+            final String value = string(equals + 1, i);
+            values.add(urlEncoded ? URLDecoder.decode(value, StandardCharsets.UTF_8) : value);
+          }
+        }
+        paramStart = i + 1;
+      }
+    }
+
+    return values;
+  }
+
+  /**
+   * Checks whether the content is form encoded (application/x-www-form-urlencoded).
+   *
+   * @return true if the content is form encoded, false otherwise.
+   */
+  private boolean isFormEncoded() {
+    final int index = findHeader(CONTENT_TYPE);
+    if (index == -1) {
+      return false;
+    }
+
+    final String type = string(this.headers[index * 4 + 2], this.headers[index * 4 + 3]);
+    return type.contains(MIME.FORM.getMime());
+  }
+
+  /**
+   * Finds the last header with the specified name, comparing the names ignoring case.
+   *
+   * @param name The name of the header, as ASCII bytes.
+   * @return The index of the header, or -1 if the request does not include it.
+   */
+  private int findHeader(byte[] name) {
+    for (int i = this.headerCount - 1; i >= 0; i--) {
+      final int start = this.headers[i * 4];
+      if (this.headers[i * 4 + 1] - start == name.length && equalsIgnoreCase(start, name)) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Compares the bytes of a region with a name, ignoring ASCII case.
+   *
+   * @param start The position of the first byte of the region.
+   * @param name The name to compare with.
+   * @return true if they are equal, false otherwise.
+   */
+  private boolean equalsIgnoreCase(int start, byte[] name) {
+    for (int i = 0; i < name.length; i++) {
+      if (toLowerCase(this.bytes[start + i]) != toLowerCase(name[i])) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Checks whether a region starts with (or is equal to) some bytes.
+   *
+   * @param start The position of the first byte of the region.
+   * @param end The position after the last byte of the region.
+   * @param expected The expected bytes.
+   * @param prefix Whether the region only has to start with the expected bytes.
+   * @return true if the region matches, false otherwise.
+   */
+  private boolean regionEquals(int start, int end, byte[] expected, boolean prefix) {
+    if (prefix ? end - start < expected.length : end - start != expected.length) {
+      return false;
+    }
+
+    for (int i = 0; i < expected.length; i++) {
+      if (this.bytes[start + i] != expected[i]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Returns the end of the line starting at a position, excluding the line terminator (LF or CRLF).
+   *
+   * @param start The position of the first byte of the line.
+   * @param limit The position after the last available byte.
+   * @return The position after the last byte of the line.
+   */
+  private int lineEnd(int start, int limit) {
+    int lf = indexOf(start, limit, (byte) '\n');
+    if (lf == -1) {
+      return limit;
+    }
+
+    return lf > start && this.bytes[lf - 1] == '\r' ? lf - 1 : lf;
+  }
+
+  /**
+   * Returns the start of the line following a line.
+   *
+   * @param lineEnd The position after the last byte of the line, as returned by lineEnd.
+   * @param limit The position after the last available byte.
+   * @return The position of the first byte of the next line.
+   */
+  private int nextLine(int lineEnd, int limit) {
+    if (lineEnd < limit && this.bytes[lineEnd] == '\r') {
+      lineEnd++;
+    }
+
+    return lineEnd < limit ? lineEnd + 1 : limit;
+  }
+
+  private int indexOf(int start, int end, byte value) {
+    for (int i = start; i < end; i++) {
+      if (this.bytes[i] == value) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  private int count(int start, int end, byte value) {
+    int count = 0;
+    for (int i = start; i < end; i++) {
+      if (this.bytes[i] == value) {
+        count++;
+      }
+    }
+
+    return count;
+  }
+
+  private int skipSpaces(int start, int end) {
+    while (start < end && this.bytes[start] <= ' ' && this.bytes[start] >= 0) {
+      start++;
+    }
+
+    return start;
+  }
+
+  private int trimSpaces(int start, int end) {
+    while (end > start && this.bytes[end - 1] <= ' ' && this.bytes[end - 1] >= 0) {
+      end--;
+    }
+
+    return end;
+  }
+
+  private String string(int start, int end) {
+    return new String(this.bytes, start, end - start, StandardCharsets.UTF_8);
+  }
+
+  private static byte toLowerCase(byte b) {
+    return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+  }
+
+  /**
+   * Checks if a byte of the resource chain is not valid.
+   * This includes control characters, whitespace, and certain special characters.
+   *
+   * @param b The byte to check.
+   * @return true if the byte is not valid, false otherwise.
+   */
+  private static boolean isInvalidCharacter(byte b) {
+    switch (b) {
+      case '<': case '>': case '"': case '{': case '}': case '|': case '\\': case '^': case '~': case '`':
+        return true;
+      default:
+        return (b >= 0 && b <= ' ') || b == 0x7f;
+    }
+  }
+
+}
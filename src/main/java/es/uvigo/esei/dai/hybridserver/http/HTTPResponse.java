@@ -17,9 +17,11 @@
  */
 package es.uvigo.esei.dai.hybridserver.http;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.ArrayList;
@@ -34,6 +36,8 @@ public class HTTPResponse {
   private HTTPResponseStatus status;  // HTTP response status
   private String version;  // HTTP version
   private String content; // Content of the response
+  private byte[] contentBytes;  // Content of the response encoded as UTF-8, when it is set as bytes
+  private HTTPStreamedContent contentStream;  // Content of the response generated while it is sent
   private Map<String, String> parameters = new java.util.HashMap<>(); // Parameters of the response
 
   private String CRLF = "\r\n";
@@ -87,9 +91,11 @@ public class HTTPResponse {
   }
 
   /**
-   * Returns the content of the HTTP response.
+   * Returns the content of the HTTP response, if it was set as a string.
+   * A content set as bytes is not decoded, as it may be compressed (see "Content-Encoding")
+   * or a range that splits a character, so it is only available through {@link #getContentBytes()}.
    * 
-   * @return The content of the HTTP response.
+   * @return The content of the HTTP response, or null if it was set as bytes or is streamed.
    */
   public String getContent() {
     return this.content;
@@ -97,16 +103,73 @@ public class HTTPResponse {
 
   /**
    * Sets the content of the HTTP response.
-   * Also updates the "Content-Length" parameter accordingly.
+   * Also updates the "Content-Length" parameter with the length of the content encoded as UTF-8.
    * 
    * @param content The content to set in the HTTP response.
    */
   public void setContent(String content) {
     if (content != null) {
-      this.putParameter("Content-Length", String.valueOf(content.length()));
+      this.removeStreamParameters();
+      this.putParameter("Content-Length", String.valueOf(utf8Length(content)));
     }
 
     this.content = content;
+    this.contentBytes = null;
+    this.contentStream = null;
+  }
+
+  /**
+   * Returns the content of the HTTP response encoded as UTF-8, if it was set as bytes.
+   * 
+   * @return The encoded content, or null if the content was set as a string.
+   */
+  public byte[] getContentBytes() {
+    return this.contentBytes;
+  }
+
+  /**
+   * Sets the content of the HTTP response already encoded as UTF-8, so it is sent
+   * without encoding it again. The array is not copied, so it must not be modified.
+   * Also updates the "Content-Length" parameter accordingly.
+   * 
+   * @param contentBytes The encoded content to set in the HTTP response.
+   */
+  public void setContentBytes(byte[] contentBytes) {
+    if (contentBytes != null) {
+      this.removeStreamParameters();
+      this.putParameter("Content-Length", String.valueOf(contentBytes.length));
+    }
+
+    this.contentBytes = contentBytes;
+    this.content = null;
+    this.contentStream = null;
+  }
+
+  /**
+   * Returns the content of the HTTP response that is generated while it is sent.
+   * 
+   * @return The streamed content, or null if the content is not streamed.
+   */
+  public HTTPStreamedContent getContentStream() {
+    return this.contentStream;
+  }
+
+  /**
+   * Sets a content of the HTTP response that is generated while it is sent, so it is never held
+   * in memory. The response is sent with the chunked transfer coding, so the "Content-Length"
+   * parameter is replaced by the "Transfer-Encoding" one. Only HTTP/1.1 clients support it.
+   * 
+   * @param contentStream The streamed content to set in the HTTP response.
+   */
+  public void setContentStream(HTTPStreamedContent contentStream) {
+    if (contentStream != null) {
+      this.removeParameter("Content-Length");
+      this.putParameter("Transfer-Encoding", "chunked");
+    }
+
+    this.contentStream = contentStream;
+    this.content = null;
+    this.contentBytes = null;
   }
 
   /**
@@ -186,11 +249,17 @@ public class HTTPResponse {
 
   /**
    * Prints the HTTP response to the provided Writer.
+   * A content set as bytes cannot be printed, as a Writer would change the bytes counted
+   * by "Content-Length": those responses are sent with {@link HTTPResponseWriter}.
    * 
    * @param writer The Writer to print the HTTP response to.
    * @throws IOException If an I/O error occurs.
+   * @throws IllegalStateException If the content of the response was set as bytes.
    */
   public void print(Writer writer) throws IOException {
+    if (this.contentBytes != null && this.parameters.containsKey("Content-Length")) {
+      throw new IllegalStateException("The content of the response was set as bytes, it cannot be printed to a Writer");
+    }
 
     // Print status line
     writer.write(this.version + " " + parseHTTPResponseStatus() + CRLF);
@@ -204,9 +273,15 @@ public class HTTPResponse {
     writer.write(CRLF);
 
     // Print content if available
-    if (this.parameters.containsKey("Content-Length") && this.content != null) {
-      writer.write(this.content);
-      // ADD case has encoded content
+    if (this.parameters.containsKey("Content-Length") && getContent() != null) {
+      writer.write(getContent());
+    } else if (this.contentStream != null) {
+      // Print the chunks of the streamed content
+      final ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+      final HTTPChunkedOutputStream out = new HTTPChunkedOutputStream(chunks);
+      this.contentStream.writeTo(out);
+      out.close();
+      writer.write(new String(chunks.toByteArray(), StandardCharsets.UTF_8));
     }
 
   }
@@ -215,6 +290,7 @@ public class HTTPResponse {
    * Returns the string representation of the HTTP response.
    * 
    * @return The string representation of the HTTP response.
+   * @throws IllegalStateException If the content of the response was set as bytes.
    */
   @Override
   public String toString() {
@@ -238,6 +314,39 @@ public class HTTPResponse {
     return this.status.getCode() + " " + this.status.getStatus();
   }
 
+  /**
+   * Removes the parameters of a streamed content, when it is replaced by a content of known length.
+   */
+  private void removeStreamParameters() {
+    if (this.contentStream != null) {
+      this.removeParameter("Transfer-Encoding");
+    }
+  }
+
+  /**
+   * Computes the length of a string encoded as UTF-8, without encoding it.
+   * 
+   * @param content The string
+   * @return The number of bytes of the string encoded as UTF-8
+   */
+  private static int utf8Length(String content) {
+    int length = content.length();
+    for (int i = 0; i < content.length(); i++) {
+      final char c = content.charAt(i);
+      if (c >= 0x800) {
+        if (Character.isHighSurrogate(c) && i + 1 < content.length() && Character.isLowSurrogate(content.charAt(i + 1))) {
+          length += 2;  // 4 bytes for the pair of chars
+          i++;
+        } else {
+          length += 2;
+        }
+      } else if (c >= 0x80) {
+        length++;
+      }
+    }
+    return length;
+  }
+
   /**
    * Parse parameter to "name: value" format
    * 
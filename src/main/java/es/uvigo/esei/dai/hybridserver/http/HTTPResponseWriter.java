@@ -0,0 +1,374 @@
+package es.uvigo.esei.dai.hybridserver.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Class that serializes HTTP responses straight to bytes.
+ * The status lines and the names of the common headers are encoded once, and the value of
+ * the Date header is encoded once per second, so writing a response only copies bytes.
+ * Content set as bytes is copied as is, without encoding it again.
+ * The head and the content of a response are written to the same buffer, which is sent
+ * with a single write when it fits, and consecutive responses (e.g. pipelined ones) share
+ * the buffer until it is flushed.
+ * Streamed contents are written chunk by chunk through the same buffer while they are generated.
+ * Unlike {@link HTTPResponse#print(java.io.Writer)}, the serialized responses include a Date
+ * header if they do not have one. Instances are not thread-safe.
+ */
+public class HTTPResponseWriter {
+
+  private static final int DEFAULT_BUFFER_SIZE = 16 * 1024;  // Default size of the output buffer
+  private static final byte[] CRLF = { '\r', '\n' };
+  private static final byte[] SEPARATOR = { ':', ' ' };
+  private static final String DATE = "Date";
+  private static final DateTimeFormatter DATE_FORMAT =
+    DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.ENGLISH).withZone(ZoneOffset.UTC);
+
+  // Status lines of HTTP/1.1 (e.g. "HTTP/1.1 200 OK\r\n"), by ordinal of their status
+  private static final byte[][] STATUS_LINES = new byte[HTTPResponseStatus.values().length][];
+  // Names of the common headers followed by ": "
+  private static final Map<String, byte[]> HEADER_NAMES = new HashMap<>();
+
+  static {
+    for (HTTPResponseStatus status : HTTPResponseStatus.values()) {
+      STATUS_LINES[status.ordinal()] = ascii(HTTPHeaders.HTTP_1_1.getHeader() + " " + status.getCode() + " "
+        + status.getStatus() + "\r\n");
+    }
+    for (String name : new String[] { HTTPHeaders.CONTENT_LENGTH.getHeader(), HTTPHeaders.CONTENT_TYPE.getHeader(),
+      HTTPHeaders.CONNECTION.getHeader(), HTTPHeaders.CONTENT_ENCODING.getHeader(), HTTPHeaders.VARY.getHeader(),
+      HTTPHeaders.ETAG.getHeader(), HTTPHeaders.LAST_MODIFIED.getHeader(), HTTPHeaders.CONTENT_RANGE.getHeader(),
+      HTTPHeaders.ACCEPT_RANGES.getHeader(), HTTPHeaders.TRANSFER_ENCODING.getHeader(), "Keep-Alive", "Allow", "Retry-After",
+      "X-Version", DATE }) {
+      HEADER_NAMES.put(name, ascii(name + ": "));
+    }
+  }
+
+  private static volatile CachedDate cachedDate;  // Value of the Date header of the current second
+
+  private final OutputStream out;   // Stream where the responses are written
+  private final ByteBuffer buffer;  // Bytes pending to be written
+  private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+    .onMalformedInput(CodingErrorAction.REPLACE)
+    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+  /**
+   * Constructs an HTTPResponseWriter with the default buffer size.
+   *
+   * @param out The stream where the responses are written.
+   */
+  public HTTPResponseWriter(OutputStream out) {
+    this(out, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Constructs an HTTPResponseWriter.
+   *
+   * @param out The stream where the responses are written.
+   * @param bufferSize The size of the output buffer. Longer responses are written in several chunks.
+   * @throws IllegalArgumentException if the buffer cannot hold an encoded char.
+   */
+  public HTTPResponseWriter(OutputStream out, int bufferSize) {
+    if (bufferSize < 4) {
+      throw new IllegalArgumentException("Buffer size must be at least 4 bytes");
+    }
+    this.out = out;
+    this.buffer = ByteBuffer.allocate(bufferSize);
+  }
+
+  /**
+   * Writes a response to the buffer. The buffer is only sent when it is full, so
+   * {@link #flush()} must be called once the pending responses have been written.
+   *
+   * @param response The HTTP response to be written.
+   * @throws IOException If an I/O error occurs.
+   */
+  public void write(HTTPResponse response) throws IOException {
+    final byte[] statusLine = statusLine(response);
+    put(statusLine, 0, statusLine.length);
+
+    for (Map.Entry<String, String> parameter : response.getParameters().entrySet()) {
+      putHeaderName(parameter.getKey());
+      putValue(parameter.getValue());
+      put(CRLF, 0, CRLF.length);
+    }
+    if (!response.containsParameter(DATE)) {
+      final byte[] name = HEADER_NAMES.get(DATE);
+      final byte[] date = date();
+      put(name, 0, name.length);
+      put(date, 0, date.length);
+      put(CRLF, 0, CRLF.length);
+    }
+    put(CRLF, 0, CRLF.length);
+
+    if (hasContent(response)) {
+      if (response.getContentBytes() != null) {
+        put(response.getContentBytes(), 0, response.getContentBytes().length);
+      } else {
+        putContent(response.getContent());
+      }
+    } else if (response.getContentStream() != null) {
+      // The last chunk is only sent if the whole content has been generated
+      final HTTPChunkedOutputStream chunks = new HTTPChunkedOutputStream(new BufferStream());
+      response.getContentStream().writeTo(chunks);
+      chunks.close();
+    }
+  }
+
+  /**
+   * Sends the buffered responses and flushes the stream.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  public void flush() throws IOException {
+    drain();
+    this.out.flush();
+  }
+
+  /**
+   * Serializes a response into buffers ready for a gathering write: the head and, if the
+   * response has content, its content. A streamed content is not included, so it must be
+   * sent after the head.
+   *
+   * @param response The HTTP response to be serialized.
+   * @return The buffers with the bytes of the response.
+   */
+  public static ByteBuffer[] encode(HTTPResponse response) {
+    final byte[] statusLine = statusLine(response);
+    final byte[] date = response.containsParameter(DATE) ? null : date();
+
+    // Every char of the head is encoded as a single byte
+    int length = statusLine.length + CRLF.length;
+    for (Map.Entry<String, String> parameter : response.getParameters().entrySet()) {
+      length += parameter.getKey().length() + SEPARATOR.length + parameter.getValue().length() + CRLF.length;
+    }
+    if (date != null) {
+      length += DATE.length() + SEPARATOR.length + date.length + CRLF.length;
+    }
+
+    final ByteBuffer head = ByteBuffer.allocate(length);
+    head.put(statusLine);
+    for (Map.Entry<String, String> parameter : response.getParameters().entrySet()) {
+      putAscii(head, parameter.getKey());
+      head.put(SEPARATOR);
+      putAscii(head, parameter.getValue());
+      head.put(CRLF);
+    }
+    if (date != null) {
+      head.put(HEADER_NAMES.get(DATE)).put(date).put(CRLF);
+    }
+    head.put(CRLF).flip();
+
+    if (!hasContent(response)) {
+      return new ByteBuffer[] { head };
+    }
+    final byte[] content = response.getContentBytes() != null
+      ? response.getContentBytes() : response.getContent().getBytes(StandardCharsets.UTF_8);
+    return new ByteBuffer[] { head, ByteBuffer.wrap(content) };
+  }
+
+  /**
+   * Returns the value of the Date header for the current second.
+   *
+   * @return The bytes of the current date, in the IMF-fixdate format.
+   */
+  static byte[] date() {
+    final long second = System.currentTimeMillis() / 1000;
+
+    CachedDate date = cachedDate;
+    if (date == null || date.second != second) {
+      date = new CachedDate(second, ascii(DATE_FORMAT.format(Instant.ofEpochSecond(second))));
+      cachedDate = date;
+    }
+
+    return date.value;
+  }
+
+  /**
+   * Returns the status line of a response.
+   *
+   * @param response The HTTP response.
+   * @return The bytes of the status line, including its line end.
+   */
+  private static byte[] statusLine(HTTPResponse response) {
+    if (HTTPHeaders.HTTP_1_1.getHeader().equals(response.getVersion())) {
+      return STATUS_LINES[response.getStatus().ordinal()];
+    }
+
+    return ascii(response.getVersion() + " " + response.getStatus().getCode() + " "
+      + response.getStatus().getStatus() + "\r\n");
+  }
+
+  /**
+   * Checks whether the content of a response is sent, as in {@link HTTPResponse#print(java.io.Writer)}.
+   *
+   * @param response The HTTP response.
+   * @return true if the response has content to be sent, false otherwise.
+   */
+  private static boolean hasContent(HTTPResponse response) {
+    return (response.getContentBytes() != null || response.getContent() != null)
+      && response.containsParameter(HTTPHeaders.CONTENT_LENGTH.getHeader());
+  }
+
+  /**
+   * Writes the name of a header followed by ": ".
+   *
+   * @param name The name of the header.
+   * @throws IOException If an I/O error occurs.
+   */
+  private void putHeaderName(String name) throws IOException {
+    final byte[] cached = HEADER_NAMES.get(name);
+    if (cached != null) {
+      put(cached, 0, cached.length);
+    } else {
+      putValue(name);
+      put(SEPARATOR, 0, SEPARATOR.length);
+    }
+  }
+
+  /**
+   * Writes a header value, encoding each char as a single byte.
+   *
+   * @param value The value to be written.
+   * @throws IOException If an I/O error occurs.
+   */
+  private void putValue(String value) throws IOException {
+    for (int i = 0; i < value.length(); i++) {
+      if (!this.buffer.hasRemaining()) {
+        drain();
+      }
+      this.buffer.put(toByte(value.charAt(i)));
+    }
+  }
+
+  /**
+   * Writes the content of a response, encoding it as UTF-8 directly into the buffer.
+   *
+   * @param content The content to be written.
+   * @throws IOException If an I/O error occurs.
+   */
+  private void putContent(String content) throws IOException {
+    final CharBuffer chars = CharBuffer.wrap(content);
+
+    this.encoder.reset();
+    while (this.encoder.encode(chars, this.buffer, true).isOverflow()) {
+      drain();
+    }
+    while (this.encoder.flush(this.buffer).isOverflow()) {
+      drain();
+    }
+  }
+
+  /**
+   * Writes bytes to the buffer, sending it whenever it gets full.
+   *
+   * @param bytes The array with the bytes.
+   * @param offset The position of the first byte.
+   * @param length The number of bytes.
+   * @throws IOException If an I/O error occurs.
+   */
+  private void put(byte[] bytes, int offset, int length) throws IOException {
+    while (length > 0) {
+      if (!this.buffer.hasRemaining()) {
+        drain();
+      }
+      final int chunk = Math.min(length, this.buffer.remaining());
+      this.buffer.put(bytes, offset, chunk);
+      offset += chunk;
+      length -= chunk;
+    }
+  }
+
+  /**
+   * Sends the bytes of the buffer to the stream, without flushing it.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  private void drain() throws IOException {
+    if (this.buffer.position() > 0) {
+      this.out.write(this.buffer.array(), this.buffer.arrayOffset(), this.buffer.position());
+      this.buffer.clear();
+    }
+  }
+
+  /**
+   * Encodes a string with a single byte per char.
+   *
+   * @param value The string to be encoded.
+   * @return The encoded bytes.
+   */
+  private static byte[] ascii(String value) {
+    final byte[] bytes = new byte[value.length()];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = toByte(value.charAt(i));
+    }
+
+    return bytes;
+  }
+
+  /**
+   * Puts a string in a buffer with a single byte per char.
+   *
+   * @param buffer The buffer.
+   * @param value The string to be encoded.
+   */
+  private static void putAscii(ByteBuffer buffer, String value) {
+    for (int i = 0; i < value.length(); i++) {
+      buffer.put(toByte(value.charAt(i)));
+    }
+  }
+
+  /**
+   * Encodes a char of a header as ISO-8859-1, the charset of the HTTP headers.
+   *
+   * @param c The char to be encoded.
+   * @return The encoded byte, or '?' if the char cannot be encoded.
+   */
+  private static byte toByte(char c) {
+    return c <= 0xFF ? (byte) c : (byte) '?';
+  }
+
+  /**
+   * Stream that writes to the buffer of the writer, sending it whenever it gets full.
+   */
+  private class BufferStream extends OutputStream {
+
+    @Override
+    public void write(int b) throws IOException {
+      if (!HTTPResponseWriter.this.buffer.hasRemaining()) {
+        drain();
+      }
+      HTTPResponseWriter.this.buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      put(bytes, offset, length);
+    }
+
+  }
+
+  /**
+   * Class holding the value of the Date header of a second.
+   */
+  private static final class CachedDate {
+    private final long second;  // Epoch second of the date
+    private final byte[] value; // Encoded value of the Date header
+
+    private CachedDate(long second, byte[] value) {
+      this.second = second;
+      this.value = value;
+    }
+  }
+
+}
@@ -0,0 +1,24 @@
+package es.uvigo.esei.dai.hybridserver.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Content of an HTTP response that is generated while it is sent, instead of being held in
+ * memory, so its length is not known in advance. Responses with streamed content are sent
+ * with the chunked transfer coding.
+ */
+@FunctionalInterface
+public interface HTTPStreamedContent {
+
+  /**
+   * Writes the content. It may be called more than once (e.g. to print the response), and it
+   * must not close the stream.
+   *
+   * @param out The stream where the content is written, encoded as UTF-8.
+   * @throws IOException If an I/O error occurs, or the content cannot be generated. The response
+   *   is then left incomplete.
+   */
+  void writeTo(OutputStream out) throws IOException;
+
+}
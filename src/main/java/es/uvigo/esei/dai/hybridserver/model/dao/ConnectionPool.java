@@ -0,0 +1,701 @@
+package es.uvigo.esei.dai.hybridserver.model.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class implementing a pool of database connections, so the requests do not open a new connection each.
+ * The connections are lent as proxies whose close method returns them to the pool, and the most
+ * recently returned one is lent first, so the rest can become idle and be closed.
+ * A connection is validated before it is lent if it has been idle for a while, and it is closed
+ * instead of returned if it failed or reached its max. lifetime. A background task closes the idle
+ * and expired connections and keeps the min. number of them open.
+ * Every connection keeps its most recently used prepared statements open, so the same SQL is not
+ * prepared again each time the connection is lent: closing a cached statement returns it to its connection.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private static final int VALIDATION_TIMEOUT = 2;                // Max. time (s) to validate a connection
+    private static final long MAX_HOUSEKEEPING_PERIOD = 30000;      // Max. time (ms) between housekeeping tasks
+    private static final String MYSQL_URL_PREFIX = "jdbc:mysql:";
+
+    private final String url;       // Database URL
+    private final ConnectionPoolSettings settings;
+    private final Properties info;  // Properties the connections are opened with
+    private final ScheduledExecutorService housekeeper;
+
+    // State guarded by this
+    private final ArrayDeque<PooledConnection> idle = new ArrayDeque<>();  // Idle connections, the most recently returned first
+    private int total = 0;          // Number of connections open or being opened, lent or idle
+    private int waiting = 0;        // Number of threads waiting for a connection
+    private boolean closed = false;
+    private boolean failing = false;    // Whether the last connection could not be opened in background
+
+    // Statistics guarded by this
+    private long borrows = 0;           // Number of connections lent
+    private long saturatedBorrows = 0;  // Number of borrows that had to wait because every connection was in use
+    private long timeouts = 0;          // Number of borrows that timed out
+    private long totalWait = 0;         // Total time (ns) waited by the borrows
+    private long maxWait = 0;           // Max. time (ns) waited by a borrow
+
+    private final AtomicLong statementHits = new AtomicLong();      // Number of prepared statements reused
+    private final AtomicLong statementMisses = new AtomicLong();    // Number of prepared statements prepared
+
+    /**
+     * Constructs a ConnectionPool, which starts opening its min. number of connections in background.
+     * The statements of the MySQL connections are prepared in the server, unless the URL says otherwise,
+     * since they are reused.
+     *
+     * @param url the database URL
+     * @param user the database user
+     * @param password the database password
+     * @param settings the settings of the pool
+     * @throws IllegalArgumentException if the min. size of the pool is greater than its max. size
+     */
+    public ConnectionPool(String url, String user, String password, ConnectionPoolSettings settings) {
+        if (settings.getMinSize() > settings.getMaxSize()) {
+            throw new IllegalArgumentException("Min. pool size cannot be greater than max. pool size");
+        }
+
+        this.url = url;
+        this.settings = settings;
+        this.info = new Properties();
+        if (user != null) {
+            this.info.setProperty("user", user);
+        }
+        if (password != null) {
+            this.info.setProperty("password", password);
+        }
+        if (settings.getStatementCacheSize() > 0 && url.startsWith(MYSQL_URL_PREFIX)) {
+            // The properties of the URL take precedence
+            this.info.setProperty("useServerPrepStmts", "true");
+        }
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(task -> {
+            final Thread thread = new Thread(task, "db-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final long period = Math.max(1000, Math.min(MAX_HOUSEKEEPING_PERIOD,
+            Math.min(settings.getIdleTimeout(), settings.getMaxLifetime()) / 2));
+        this.housekeeper.scheduleWithFixedDelay(this::housekeep, 0, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new one if none is idle and the pool is not full,
+     * or waiting for one to be returned otherwise. The connection must be closed to return it.
+     *
+     * @return A connection to the database.
+     * @throws SQLTransientConnectionException If no connection is returned before the borrow timeout.
+     * @throws SQLException If the pool is closed, a connection cannot be opened, or the thread is interrupted.
+     */
+    public Connection getConnection() throws SQLException {
+        final long start = System.nanoTime();
+        final long deadline = start + TimeUnit.MILLISECONDS.toNanos(this.settings.getBorrowTimeout());
+        boolean saturated = false;
+
+        while (true) {
+            PooledConnection pooled = null;
+            synchronized (this) {
+                while (!this.closed && this.idle.isEmpty() && this.total >= this.settings.getMaxSize()) {
+                    saturated = true;
+                    final long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        this.timeouts++;
+                        recordBorrow(start, saturated, false);
+                        throw new SQLTransientConnectionException("Timed out after " + this.settings.getBorrowTimeout()
+                            + " ms waiting for a database connection (" + this.total + " in use)");
+                    }
+
+                    this.waiting++;
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a database connection", e);
+                    } finally {
+                        this.waiting--;
+                    }
+                }
+
+                if (this.closed) {
+                    throw new SQLException("Connection pool is closed");
+                }
+
+                if (!this.idle.isEmpty()) {
+                    pooled = this.idle.pollFirst();
+                } else {
+                    this.total++;   // Reserved, the connection is opened out of the lock
+                }
+            }
+
+            if (pooled == null) {
+                pooled = open();
+            } else if (!isUsable(pooled)) {
+                discard(pooled);
+                continue;
+            }
+
+            synchronized (this) {
+                recordBorrow(start, saturated, true);
+            }
+            return pooled.lend();
+        }
+    }
+
+    /**
+     * Returns the number of connections lent and not returned yet.
+     *
+     * @return The number of connections in use.
+     */
+    public synchronized int getActiveCount() {
+        return this.total - this.idle.size();
+    }
+
+    /**
+     * Returns the number of idle connections.
+     *
+     * @return The number of idle connections.
+     */
+    public synchronized int getIdleCount() {
+        return this.idle.size();
+    }
+
+    /**
+     * Returns the number of threads waiting for a connection because every connection is in use.
+     *
+     * @return The number of waiting threads.
+     */
+    public synchronized int getWaitingCount() {
+        return this.waiting;
+    }
+
+    /**
+     * Returns the number of connections lent so far.
+     *
+     * @return The number of borrows.
+     */
+    public synchronized long getBorrowCount() {
+        return this.borrows;
+    }
+
+    /**
+     * Returns the number of borrows that found every connection in use and had to wait (pool saturation).
+     *
+     * @return The number of saturated borrows, including the ones that timed out.
+     */
+    public synchronized long getSaturatedBorrowCount() {
+        return this.saturatedBorrows;
+    }
+
+    /**
+     * Returns the number of borrows that timed out.
+     *
+     * @return The number of timeouts.
+     */
+    public synchronized long getTimeoutCount() {
+        return this.timeouts;
+    }
+
+    /**
+     * Returns the average time waited to borrow a connection, including the time to open it.
+     *
+     * @return The average borrow wait in milliseconds.
+     */
+    public synchronized double getAverageBorrowWait() {
+        final long attempts = this.borrows + this.timeouts;
+        return attempts == 0 ? 0 : this.totalWait / (attempts * 1e6);
+    }
+
+    /**
+     * Returns the max. time waited to borrow a connection, including the time to open it.
+     *
+     * @return The max. borrow wait in milliseconds.
+     */
+    public synchronized double getMaxBorrowWait() {
+        return this.maxWait / 1e6;
+    }
+
+    /**
+     * Returns the number of prepared statements reused from the cache of their connection.
+     *
+     * @return The number of statement cache hits.
+     */
+    public long getStatementCacheHitCount() {
+        return this.statementHits.get();
+    }
+
+    /**
+     * Returns the number of prepared statements that were not in the cache of their connection.
+     *
+     * @return The number of statement cache misses.
+     */
+    public long getStatementCacheMissCount() {
+        return this.statementMisses.get();
+    }
+
+    /**
+     * Returns the fraction of the prepared statements reused from the cache of their connection.
+     *
+     * @return The statement cache hit rate, between 0 and 1.
+     */
+    public double getStatementCacheHitRate() {
+        final long hits = this.statementHits.get();
+        final long lookups = hits + this.statementMisses.get();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Closes the pool and its idle connections. The connections in use are closed when they are returned,
+     * and the threads waiting for a connection fail.
+     */
+    @Override
+    public void close() {
+        final List<PooledConnection> connections;
+        synchronized (this) {
+            this.closed = true;
+            connections = new ArrayList<>(this.idle);
+            this.total -= this.idle.size();
+            this.idle.clear();
+            notifyAll();
+        }
+
+        this.housekeeper.shutdownNow();
+        for (PooledConnection connection : connections) {
+            connection.closePhysical();
+        }
+    }
+
+    /**
+     * Opens a new connection, whose place in the pool has already been reserved.
+     *
+     * @return The new connection.
+     * @throws SQLException If the connection cannot be opened.
+     */
+    private PooledConnection open() throws SQLException {
+        try {
+            return new PooledConnection(DriverManager.getConnection(this.url, this.info));
+        } catch (SQLException | RuntimeException e) {
+            synchronized (this) {
+                this.total--;
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Checks whether an idle connection can be lent: it has not reached its max. lifetime and,
+     * if it has been idle for a while, it is still valid.
+     *
+     * @param pooled The idle connection.
+     * @return true if the connection can be lent, false if it must be discarded.
+     */
+    private boolean isUsable(PooledConnection pooled) {
+        final long now = System.currentTimeMillis();
+        if (pooled.isExpired(now)) {
+            return false;
+        }
+
+        if (now - pooled.returned >= this.settings.getValidationInterval()) {
+            try {
+                return pooled.physical.isValid(VALIDATION_TIMEOUT);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Closes a connection taken from the pool, freeing its place.
+     *
+     * @param pooled The connection.
+     */
+    private void discard(PooledConnection pooled) {
+        pooled.closePhysical();
+        synchronized (this) {
+            this.total--;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Returns a lent connection to the pool, or closes it if it failed, reached its max. lifetime,
+     * its state cannot be reset, or the pool is closed.
+     *
+     * @param pooled The connection.
+     * @param broken Whether the connection failed while it was lent.
+     */
+    private void release(PooledConnection pooled, boolean broken) {
+        boolean reusable = !broken && !pooled.isExpired(System.currentTimeMillis());
+        if (reusable) {
+            try {
+                // Uncommitted transactions are not carried to the next borrower
+                if (!pooled.physical.getAutoCommit()) {
+                    pooled.physical.rollback();
+                    pooled.physical.setAutoCommit(true);
+                }
+                reusable = !pooled.physical.isClosed();
+            } catch (SQLException e) {
+                reusable = false;
+            }
+        }
+
+        synchronized (this) {
+            if (reusable && !this.closed) {
+                pooled.returned = System.currentTimeMillis();
+                this.idle.addFirst(pooled);
+                notifyAll();
+                return;
+            }
+        }
+        discard(pooled);
+    }
+
+    /**
+     * Closes the connections that have been idle for too long (above the min. size of the pool)
+     * or reached their max. lifetime, and opens connections up to the min. size of the pool.
+     */
+    private void housekeep() {
+        final List<PooledConnection> evicted = new ArrayList<>();
+        final int missing;
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+
+            // The idle connections returned the longest ago are at the end
+            final long now = System.currentTimeMillis();
+            final Iterator<PooledConnection> connections = this.idle.descendingIterator();
+            while (connections.hasNext()) {
+                final PooledConnection connection = connections.next();
+                if (connection.isExpired(now) || (now - connection.returned >= this.settings.getIdleTimeout()
+                    && this.total - evicted.size() > this.settings.getMinSize())) {
+                    connections.remove();
+                    evicted.add(connection);
+                }
+            }
+            this.total -= evicted.size();
+
+            missing = Math.max(0, this.settings.getMinSize() - this.total);
+            this.total += missing;  // Reserved, the connections are opened out of the lock
+        }
+
+        for (PooledConnection connection : evicted) {
+            connection.closePhysical();
+        }
+
+        for (int i = 0; i < missing; i++) {
+            final PooledConnection connection;
+            try {
+                connection = open();
+            } catch (SQLException | RuntimeException e) {
+                synchronized (this) {
+                    this.total -= missing - i - 1;  // The reservation of the failed one is freed by open
+                    if (!this.failing) {
+                        System.err.println("Error opening database connection: " + e.getMessage());
+                    }
+                    this.failing = true;
+                }
+                return;
+            }
+
+            synchronized (this) {
+                this.failing = false;
+                if (this.closed) {
+                    this.total--;
+                } else {
+                    connection.returned = System.currentTimeMillis();
+                    this.idle.addLast(connection);
+                    notifyAll();
+                    continue;
+                }
+            }
+            connection.closePhysical();
+        }
+    }
+
+    /**
+     * Records the time waited by a borrow.
+     *
+     * @param start The time (ns) the borrow started.
+     * @param saturated Whether every connection was in use when the borrow started.
+     * @param lent Whether a connection was lent.
+     */
+    private void recordBorrow(long start, boolean saturated, boolean lent) {
+        final long wait = System.nanoTime() - start;
+        this.totalWait += wait;
+        this.maxWait = Math.max(this.maxWait, wait);
+        if (lent) {
+            this.borrows++;
+        }
+        if (saturated) {
+            this.saturatedBorrows++;
+        }
+    }
+
+    /**
+     * Class holding a physical connection of the pool.
+     */
+    private class PooledConnection {
+        private final Connection physical;  // Connection to the database
+        private final long created;         // Time (ms) the connection was opened
+        private long returned;              // Time (ms) the connection was last returned, guarded by the pool
+
+        // Idle prepared statements by SQL, the least recently used first. Only used by the borrower
+        private final Map<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.created = System.currentTimeMillis();
+            this.returned = this.created;
+        }
+
+        /**
+         * Takes the prepared statement of a SQL from the cache, or prepares it if it is not cached or in use.
+         *
+         * @param sql The SQL of the statement.
+         * @return The prepared statement, which is not in the cache until it is returned.
+         * @throws SQLException If the statement cannot be prepared.
+         */
+        private PreparedStatement takeStatement(String sql) throws SQLException {
+            final PreparedStatement statement = this.statements.remove(sql);
+            if (statement != null) {
+                statementHits.incrementAndGet();
+                return statement;
+            }
+
+            statementMisses.incrementAndGet();
+            return this.physical.prepareStatement(sql);
+        }
+
+        /**
+         * Returns a prepared statement to the cache, closing the least recently used one if the cache is full.
+         *
+         * @param sql The SQL of the statement.
+         * @param statement The prepared statement.
+         */
+        private void returnStatement(String sql, PreparedStatement statement) {
+            PreparedStatement evicted = this.statements.putIfAbsent(sql, statement) == null ? null : statement;
+            if (evicted == null && this.statements.size() > settings.getStatementCacheSize()) {
+                final Iterator<PreparedStatement> eldest = this.statements.values().iterator();
+                evicted = eldest.next();
+                eldest.remove();
+            }
+
+            if (evicted != null) {
+                closeStatement(evicted);
+            }
+        }
+
+        private boolean isExpired(long now) {
+            return now - this.created >= ConnectionPool.this.settings.getMaxLifetime();
+        }
+
+        private Connection lend() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new Lease(this));
+        }
+
+        private void closePhysical() {
+            for (PreparedStatement statement : this.statements.values()) {
+                closeStatement(statement);
+            }
+            this.statements.clear();
+
+            try {
+                this.physical.close();
+            } catch (SQLException e) {
+                // The connection is discarded anyway
+            }
+        }
+    }
+
+    /**
+     * Class handling the calls to a lent connection: close returns it to the pool, and the rest are
+     * made on the physical connection until then.
+     */
+    private class Lease implements InvocationHandler {
+        private final PooledConnection pooled;  // Connection lent
+        private boolean closed = false;         // Whether the connection has been returned
+        private boolean broken = false;         // Whether the connection failed
+
+        private Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!this.closed) {
+                        this.closed = true;
+                        release(this.pooled, this.broken);
+                    }
+                    return null;
+                case "isClosed":
+                    return this.closed || this.pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled " + this.pooled.physical;
+                default:
+                    break;
+            }
+
+            if (this.closed) {
+                throw new SQLException("Connection is closed");
+            }
+
+            try {
+                if (method.getName().equals("prepareStatement") && args.length == 1
+                    && settings.getStatementCacheSize() > 0) {
+                    final String sql = (String) args[0];
+                    final PreparedStatement statement = this.pooled.takeStatement(sql);
+                    return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                        new Class<?>[] { PreparedStatement.class }, new CachedStatement(this, (Connection) proxy, sql, statement));
+                }
+                return method.invoke(this.pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw failed(e.getCause());
+            } catch (SQLException e) {
+                throw failed(e);
+            }
+        }
+
+        /**
+         * Marks the connection as broken if an error of a call means it is unusable.
+         *
+         * @param cause The error of the call.
+         * @return The same error, to be thrown.
+         */
+        private Throwable failed(Throwable cause) {
+            if (cause instanceof SQLNonTransientConnectionException
+                || cause instanceof SQLException && ((SQLException) cause).getSQLState() != null
+                    && ((SQLException) cause).getSQLState().startsWith("08")) {
+                // Connection errors leave the connection unusable
+                this.broken = true;
+            }
+            return cause;
+        }
+    }
+
+    /**
+     * Class handling the calls to a prepared statement of the cache: close clears its parameters and
+     * returns it to the cache of its connection, and the rest are made on the statement until then.
+     */
+    private class CachedStatement implements InvocationHandler {
+        private final Lease lease;              // Lease of the connection the statement was prepared in
+        private final Connection connection;    // Connection lent, returned as the connection of the statement
+        private final String sql;               // SQL of the statement
+        private final PreparedStatement statement;
+        private ResultSet result;               // Last result of the statement, closed with it
+        private boolean closed = false;         // Whether the statement has been returned
+
+        private CachedStatement(Lease lease, Connection connection, String sql, PreparedStatement statement) {
+            this.lease = lease;
+            this.connection = connection;
+            this.sql = sql;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!this.closed) {
+                        this.closed = true;
+                        release();
+                    }
+                    return null;
+                case "isClosed":
+                    return this.closed || this.statement.isClosed();
+                case "getConnection":
+                    return this.connection;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached " + this.statement;
+                default:
+                    break;
+            }
+
+            if (this.closed) {
+                throw new SQLException("Statement is closed");
+            }
+
+            try {
+                final Object value = method.invoke(this.statement, args);
+                if (value instanceof ResultSet) {
+                    this.result = (ResultSet) value;
+                }
+                return value;
+            } catch (InvocationTargetException e) {
+                throw this.lease.failed(e.getCause());
+            }
+        }
+
+        /**
+         * Returns the statement to the cache of its connection, without the result and parameters of this use,
+         * or closes it if they cannot be cleared or the connection has already been returned.
+         */
+        private void release() {
+            try {
+                if (this.result != null) {
+                    this.result.close();
+                }
+                this.statement.clearParameters();
+                this.statement.clearWarnings();
+            } catch (SQLException e) {
+                this.lease.failed(e);
+                closeStatement(this.statement);
+                return;
+            }
+
+            if (this.lease.closed || this.lease.broken) {
+                closeStatement(this.statement);
+            } else {
+                this.lease.pooled.returnStatement(this.sql, this.statement);
+            }
+        }
+    }
+
+    /**
+     * Closes a prepared statement that is no longer cached.
+     *
+     * @param statement The prepared statement.
+     */
+    private static void closeStatement(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            // The statement is discarded anyway
+        }
+    }
+
+}
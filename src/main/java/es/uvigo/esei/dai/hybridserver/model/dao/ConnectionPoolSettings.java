@@ -0,0 +1,173 @@
+package es.uvigo.esei.dai.hybridserver.model.dao;
+
+/**
+ * Class holding the settings of a pool of database connections.
+ */
+public class ConnectionPoolSettings {
+
+    private int minSize = 2;                    // Min. number of connections kept open, even if idle
+    private int maxSize = 10;                   // Max. number of connections open at the same time
+    private long borrowTimeout = 5000;          // Max. time (ms) waited for a connection when all are in use
+    private long idleTimeout = 10 * 60 * 1000;  // Max. time (ms) a connection above the min. size is kept idle
+    private long maxLifetime = 30 * 60 * 1000;  // Max. time (ms) a connection is used since it was opened
+    private long validationInterval = 5000;     // Idle time (ms) after which a connection is validated before it is lent
+    private int statementCacheSize = 32;        // Max. number of prepared statements kept open per connection
+
+    /**
+     * Returns the min. number of connections kept open, even if they are idle.
+     *
+     * @return The min. size of the pool.
+     */
+    public int getMinSize() {
+        return this.minSize;
+    }
+
+    /**
+     * Sets the min. number of connections kept open, even if they are idle.
+     *
+     * @param minSize The min. size of the pool.
+     * @throws IllegalArgumentException if the value is negative.
+     */
+    public void setMinSize(int minSize) {
+        if (minSize < 0) {
+            throw new IllegalArgumentException("Min. pool size cannot be negative");
+        }
+        this.minSize = minSize;
+    }
+
+    /**
+     * Returns the max. number of connections open at the same time.
+     *
+     * @return The max. size of the pool.
+     */
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * Sets the max. number of connections open at the same time.
+     *
+     * @param maxSize The max. size of the pool.
+     * @throws IllegalArgumentException if the value is not positive.
+     */
+    public void setMaxSize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Max. pool size must be positive");
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the max. time (ms) waited for a connection when all of them are in use.
+     *
+     * @return The borrow timeout in milliseconds.
+     */
+    public long getBorrowTimeout() {
+        return this.borrowTimeout;
+    }
+
+    /**
+     * Sets the max. time (ms) waited for a connection when all of them are in use.
+     *
+     * @param borrowTimeout The borrow timeout in milliseconds.
+     * @throws IllegalArgumentException if the value is negative.
+     */
+    public void setBorrowTimeout(long borrowTimeout) {
+        if (borrowTimeout < 0) {
+            throw new IllegalArgumentException("Borrow timeout cannot be negative");
+        }
+        this.borrowTimeout = borrowTimeout;
+    }
+
+    /**
+     * Returns the max. time (ms) a connection above the min. size of the pool is kept idle before it is closed.
+     *
+     * @return The idle timeout in milliseconds.
+     */
+    public long getIdleTimeout() {
+        return this.idleTimeout;
+    }
+
+    /**
+     * Sets the max. time (ms) a connection above the min. size of the pool is kept idle before it is closed.
+     *
+     * @param idleTimeout The idle timeout in milliseconds.
+     * @throws IllegalArgumentException if the value is not positive.
+     */
+    public void setIdleTimeout(long idleTimeout) {
+        if (idleTimeout <= 0) {
+            throw new IllegalArgumentException("Idle timeout must be positive");
+        }
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Returns the max. time (ms) a connection is used since it was opened. It is closed when it is
+     * next returned to the pool, or when it is found idle.
+     *
+     * @return The max. lifetime in milliseconds.
+     */
+    public long getMaxLifetime() {
+        return this.maxLifetime;
+    }
+
+    /**
+     * Sets the max. time (ms) a connection is used since it was opened.
+     *
+     * @param maxLifetime The max. lifetime in milliseconds.
+     * @throws IllegalArgumentException if the value is not positive.
+     */
+    public void setMaxLifetime(long maxLifetime) {
+        if (maxLifetime <= 0) {
+            throw new IllegalArgumentException("Max. lifetime must be positive");
+        }
+        this.maxLifetime = maxLifetime;
+    }
+
+    /**
+     * Returns the idle time (ms) after which a connection is validated before it is lent again.
+     * A value of 0 validates the connections every time they are lent.
+     *
+     * @return The validation interval in milliseconds.
+     */
+    public long getValidationInterval() {
+        return this.validationInterval;
+    }
+
+    /**
+     * Sets the idle time (ms) after which a connection is validated before it is lent again.
+     *
+     * @param validationInterval The validation interval in milliseconds.
+     * @throws IllegalArgumentException if the value is negative.
+     */
+    public void setValidationInterval(long validationInterval) {
+        if (validationInterval < 0) {
+            throw new IllegalArgumentException("Validation interval cannot be negative");
+        }
+        this.validationInterval = validationInterval;
+    }
+
+    /**
+     * Returns the max. number of prepared statements kept open per connection to be reused.
+     * A value of 0 disables the cache of prepared statements.
+     *
+     * @return The size of the statement cache of each connection.
+     */
+    public int getStatementCacheSize() {
+        return this.statementCacheSize;
+    }
+
+    /**
+     * Sets the max. number of prepared statements kept open per connection to be reused.
+     *
+     * @param statementCacheSize The size of the statement cache of each connection.
+     * @throws IllegalArgumentException if the value is negative.
+     */
+    public void setStatementCacheSize(int statementCacheSize) {
+        if (statementCacheSize < 0) {
+            throw new IllegalArgumentException("Statement cache size cannot be negative");
+        }
+        this.statementCacheSize = statementCacheSize;
+    }
+
+}
@@ -1,6 +1,5 @@
 package es.uvigo.esei.dai.hybridserver.model.dao;
 
-import java.sql.DriverManager;
 import java.sql.Connection;
 import java.sql.SQLException;
 
@@ -10,32 +9,37 @@ import java.sql.SQLException;
  */
 public class DBDAO {
     
-    private final String DB_URL;    // Database URL
-    private final String DB_USER;   // Database user
-    private final String DB_PASSWORD; // Database password
+    private final ConnectionPool pool;  // Pool the database connections are borrowed from
 
     /**
-     * Constructs a DBDAO with the specified database connection parameters.
+     * Constructs a DBDAO with the specified database connection parameters,
+     * using a pool of connections with the default settings.
      * 
      * @param url the database URL
      * @param user the database user
      * @param password the database password
      */
     public DBDAO(String url, String user, String password) {
-        this.DB_URL = url;
-        this.DB_USER = user;
-        this.DB_PASSWORD = password;
+        this(new ConnectionPool(url, user, password, new ConnectionPoolSettings()));
+    }
 
+    /**
+     * Constructs a DBDAO that borrows its database connections from a pool.
+     * 
+     * @param pool the pool of database connections
+     */
+    public DBDAO(ConnectionPool pool) {
+        this.pool = pool;
     }
 
     /**
-     * Establishes and returns a new database connection.
+     * Borrows a database connection from the pool. Closing it returns it to the pool.
      * 
-     * @return A new Connection object to the database.
-     * @throws SQLException If a database access error occurs.
+     * @return A Connection object to the database.
+     * @throws SQLException If a database access error occurs, or no connection is available before the borrow timeout.
      */
     protected Connection openConnection() throws SQLException {
-        return DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+        return this.pool.getConnection();
     }
 
 }
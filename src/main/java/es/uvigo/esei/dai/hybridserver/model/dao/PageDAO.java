@@ -1,9 +1,11 @@
 package es.uvigo.esei.dai.hybridserver.model.dao;
 
 import java.util.List;
+import java.util.Optional;
 
 import es.uvigo.esei.dai.hybridserver.PageNotFoundException;
 import es.uvigo.esei.dai.hybridserver.model.entity.Page;
+import es.uvigo.esei.dai.hybridserver.model.entity.PageSummary;
 
 /**
  * Data Access Object (DAO) interface for managing Page entities in the database.
@@ -12,13 +14,43 @@ import es.uvigo.esei.dai.hybridserver.model.entity.Page;
 public interface PageDAO {
     
     /**
-     * Retrieves a page by its UUID from the database.
+     * Retrieves a page by its UUID from the database, with a single query.
      * @param uuid The UUID of the page to retrieve.
-     * @return The Page with the specified UUID.
+     * @return The Page with the specified UUID, or an empty Optional if no page with the specified UUID exists.
+     * @throws DAOException If an error occurs while accessing the database.
+     */
+    public Optional<Page> get(String uuid) throws DAOException;
+
+    /**
+     * Retrieves the version of a page by its UUID from the database, without its content.
+     * @param uuid The UUID of the page.
+     * @return The version of the page with the specified UUID.
+     * @throws DAOException If an error occurs while accessing the database.
+     * @throws PageNotFoundException If no page with the specified UUID exists.
+     */
+    public int getVersion(String uuid) throws DAOException, PageNotFoundException;
+
+    /**
+     * Retrieves the metadata of a page by its UUID from the database, without its content.
+     * @param uuid The UUID of the page.
+     * @return The summary (UUID, version and size) of the page with the specified UUID.
+     * @throws DAOException If an error occurs while accessing the database.
+     * @throws PageNotFoundException If no page with the specified UUID exists.
+     */
+    public PageSummary getSummary(String uuid) throws DAOException, PageNotFoundException;
+
+    /**
+     * Retrieves a range of the content of a version of a page, encoded as UTF-8, from the database.
+     * @param uuid The UUID of the page.
+     * @param version The version of the page the range is read from.
+     * @param offset The position of the first byte of the range.
+     * @param length The max. number of bytes of the range.
+     * @return The bytes of the range, fewer than requested if the content ends before, or null
+     * if the page is not at that version (it has been updated or deleted).
      * @throws DAOException If an error occurs while accessing the database.
      * @throws PageNotFoundException If no page with the specified UUID exists.
      */
-    public Page get(String uuid) throws DAOException, PageNotFoundException;
+    public byte[] getContentRange(String uuid, int version, long offset, int length) throws DAOException, PageNotFoundException;
 
     /**
      * Lists all pages in the database.
@@ -28,28 +60,92 @@ public interface PageDAO {
     public List<Page> list() throws DAOException;
 
     /**
-     * Creates a new page in the database.
+     * Lists the metadata of the pages after a UUID, in UUID order (keyset pagination), without their content.
+     * @param after The UUID after which the pages are listed, or null to list from the first one.
+     * @param limit The max. number of pages listed.
+     * @return The summaries (UUID, version and size) of the pages, sorted by UUID.
+     * @throws DAOException If an error occurs while accessing the database.
+     */
+    public List<PageSummary> listSummaries(String after, int limit) throws DAOException;
+
+    /**
+     * Lists the metadata of all pages in the database, in UUID order, without their content.
+     * @return The summaries (UUID, version and size) of all pages, sorted by UUID.
+     * @throws DAOException If an error occurs while accessing the database.
+     */
+    public List<PageSummary> listSummaries() throws DAOException;
+
+    /**
+     * Lists the UUIDs of the pages after a UUID, in UUID order (keyset pagination), without reading any other column.
+     * @param after The UUID after which the pages are listed, or null to list from the first one.
+     * @param limit The max. number of UUIDs listed.
+     * @return The UUIDs of the pages, sorted.
+     * @throws DAOException If an error occurs while accessing the database.
+     */
+    public List<String> listUuids(String after, int limit) throws DAOException;
+
+    /**
+     * Opens a cursor over the metadata of the pages after a UUID, in UUID order, which reads them
+     * in batches so they can be walked without holding all of them in memory.
+     * @param after The UUID after which the pages are listed, or null to list from the first one.
+     * @param limit The max. number of pages listed.
+     * @param batchSize The max. number of pages read at once.
+     * @return The cursor over the summaries of the pages.
+     * @throws IllegalArgumentException If the limit or the batch size are not positive.
+     */
+    public PageSummaryCursor openSummaryCursor(String after, int limit, int batchSize);
+
+    /**
+     * Creates a new page in the database, unless a page with the same UUID already exists.
      * @param page The page to create.
+     * @return true if the page was created, false if its UUID is already in use.
      * @throws DAOException If an error occurs while accessing the database.
      * @throws IllegalArgumentException If the page is null or has a null/empty UUID.
      */
-    public void create(Page page) throws DAOException;
+    public boolean create(Page page) throws DAOException;
 
     /**
-     * Updates the specified page in the database.
+     * Updates the specified page in the database, with a single statement.
      * @param page The page to update.
+     * @return true if the page was updated, false if no page with the specified UUID exists.
      * @throws DAOException If an error occurs while accessing the database.
-     * @throws PageNotFoundException If no page with the specified UUID exists.
      */
-    public void update(Page page) throws DAOException, PageNotFoundException;
+    public boolean update(Page page) throws DAOException;
 
     /**
-     * Deletes the page with the specified UUID from the database.
+     * Deletes the page with the specified UUID from the database, with a single statement.
      * @param uuid The UUID of the page to delete.
+     * @return true if the page was deleted, false if no page with the specified UUID exists.
      * @throws DAOException If an error occurs while accessing the database.
-     * @throws PageNotFoundException If no page with the specified UUID exists.
      */
-    public void delete(String uuid) throws DAOException, PageNotFoundException;
+    public boolean delete(String uuid) throws DAOException;
+
+    /**
+     * Creates several pages in the database, in a single transaction: either all of them are created or none is.
+     * @param pages The pages to create.
+     * @return true if the pages were created, false if any of their UUIDs is already in use or repeated, so none was created.
+     * @throws DAOException If an error occurs while accessing the database.
+     * @throws IllegalArgumentException If the list or any page is null, or a page has a null/empty UUID.
+     */
+    public boolean createAll(List<Page> pages) throws DAOException;
+
+    /**
+     * Updates several pages in the database, in a single transaction. The pages that do not exist are skipped.
+     * @param pages The pages to update.
+     * @return The UUIDs of the updated pages.
+     * @throws DAOException If an error occurs while accessing the database.
+     * @throws IllegalArgumentException If the list or any page is null, or a page has a null/empty UUID.
+     */
+    public List<String> updateAll(List<Page> pages) throws DAOException;
+
+    /**
+     * Deletes several pages from the database, in a single transaction. The pages that do not exist are skipped.
+     * @param uuids The UUIDs of the pages to delete.
+     * @return The UUIDs of the deleted pages.
+     * @throws DAOException If an error occurs while accessing the database.
+     * @throws IllegalArgumentException If the list is null or any UUID is null or empty.
+     */
+    public List<String> deleteAll(List<String> uuids) throws DAOException;
 
     /**
      * Checks if a page with the specified UUID exists in the database.
@@ -1,12 +1,18 @@
 package es.uvigo.esei.dai.hybridserver.model.dao;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import es.uvigo.esei.dai.hybridserver.model.entity.Page;
+import es.uvigo.esei.dai.hybridserver.model.entity.PageSummary;
 
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
 import es.uvigo.esei.dai.hybridserver.PageNotFoundException;
 
 /**
@@ -16,6 +22,12 @@ import es.uvigo.esei.dai.hybridserver.PageNotFoundException;
  */
 public class PageDBDAO extends DBDAO implements PageDAO {
 
+    private static final int BATCH_SIZE = 500;              // Max. number of rows of a multi-row statement or JDBC batch
+    private static final int MAX_BATCH_CHARS = 1 << 20;     // Max. number of content characters of a multi-row insert
+    // Numbers of rows of the multi-row statements, from the largest (BATCH_SIZE) to 1. Only these few statements are
+    // prepared, instead of one per number of rows, so they stay in the statement cache of the connections
+    private static final int[] BATCH_SHAPES = { BATCH_SIZE, 128, 32, 8, 1 };
+
     /**
      * Constructs a PageDBDAO with the specified database connection parameters.
      * 
@@ -28,14 +40,22 @@ public class PageDBDAO extends DBDAO implements PageDAO {
     }
 
     /**
-     * Retrieves a page by its UUID from the database.
+     * Constructs a PageDBDAO that borrows its database connections from a pool.
+     * 
+     * @param pool the pool of database connections
+     */
+    public PageDBDAO(ConnectionPool pool) {
+        super(pool);
+    }
+
+    /**
+     * Retrieves a page by its UUID from the database, with a single query.
      * @param uuid The UUID of the page to retrieve.
-     * @return The Page with the specified UUID.
+     * @return The Page with the specified UUID, or an empty Optional if no page with the specified UUID exists.
      * @throws DAOException If an error occurs while accessing the database.
-     * @throws PageNotFoundException If no page with the specified UUID exists.
      */
     @Override
-    public Page get(String uuid) throws DAOException, PageNotFoundException {
+    public Optional<Page> get(String uuid) throws DAOException {
         
         if (uuid == null || uuid.isEmpty()) {
             throw new IllegalArgumentException("Page UUID cannot be null or empty");
@@ -47,6 +67,43 @@ public class PageDBDAO extends DBDAO implements PageDAO {
             // create query
             final String query = "SELECT uuid, content, version FROM HTML WHERE uuid = ?";
 
+            // Prepare statement
+            try (PreparedStatement statement = conn.prepareStatement(query)) {
+
+                statement.setString(1, uuid);
+
+                // Execute query
+                try (final ResultSet result = statement.executeQuery()) {
+                    return result.next() ? Optional.of(rowToEntity(result)) : Optional.empty();
+                }
+
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new DAOException("ERROR getting page from the database", e);
+        }
+    }
+
+    /**
+     * Retrieves the version of a page by its UUID from the database, without its content.
+     * @param uuid The UUID of the page.
+     * @return The version of the page with the specified UUID.
+     * @throws DAOException If an error occurs while accessing the database.
+     * @throws PageNotFoundException If no page with the specified UUID exists.
+     */
+    @Override
+    public int getVersion(String uuid) throws DAOException, PageNotFoundException {
+
+        if (uuid == null || uuid.isEmpty()) {
+            throw new IllegalArgumentException("Page UUID cannot be null or empty");
+        }
+
+        // Open connection with DB
+        try (Connection conn = this.openConnection()) {
+
+            // Create query, the content is not fetched
+            final String query = "SELECT version FROM HTML WHERE uuid = ?";
+
             // Prepare statement
             try (PreparedStatement statement = conn.prepareStatement(query)) {
 
@@ -55,7 +112,7 @@ public class PageDBDAO extends DBDAO implements PageDAO {
                 // Execute query
                 try (final ResultSet result = statement.executeQuery()) {
                     if (result.next()) {
-                        return rowToEntity(result);
+                        return result.getInt("version");
                     } else {
                         throw new PageNotFoundException("Page with UUID " + uuid + " not found", uuid);
                     }
@@ -64,7 +121,99 @@ public class PageDBDAO extends DBDAO implements PageDAO {
             }
         } catch (SQLException e) {
             e.printStackTrace();
-            throw new DAOException("ERROR getting page from the database", e);
+            throw new DAOException("ERROR getting page version from the database", e);
+        }
+    }
+
+    /**
+     * Retrieves the metadata of a page by its UUID from the database, without its content.
+     * @param uuid The UUID of the page.
+     * @return The summary (UUID, version and size) of the page with the specified UUID.
+     * @throws DAOException If an error occurs while accessing the database.
+     * @throws PageNotFoundException If no page with the specified UUID exists.
+     */
+    @Override
+    public PageSummary getSummary(String uuid) throws DAOException, PageNotFoundException {
+
+        if (uuid == null || uuid.isEmpty()) {
+            throw new IllegalArgumentException("Page UUID cannot be null or empty");
+        }
+
+        // Open connection with DB
+        try (Connection conn = this.openConnection()) {
+
+            // Create query, the size of the content (in UTF-8, whatever the charset of the column) is computed by the database so the content is not fetched
+            final String query = "SELECT uuid, version, OCTET_LENGTH(CONVERT(content USING utf8mb4)) AS size FROM HTML WHERE uuid = ?";
+
+            // Prepare statement
+            try (PreparedStatement statement = conn.prepareStatement(query)) {
+
+                statement.setString(1, uuid);
+
+                // Execute query
+                try (final ResultSet result = statement.executeQuery()) {
+                    if (result.next()) {
+                        return rowToSummary(result);
+                    } else {
+                        throw new PageNotFoundException("Page with UUID " + uuid + " not found", uuid);
+                    }
+                }
+
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new DAOException("ERROR getting page summary from the database", e);
+        }
+    }
+
+    /**
+     * Retrieves a range of the content of a version of a page, encoded as UTF-8, from the database.
+     * The version is part of the condition of the query, so a range is never cut from a newer content.
+     * @param uuid The UUID of the page.
+     * @param version The version of the page the range is read from.
+     * @param offset The position of the first byte of the range.
+     * @param length The max. number of bytes of the range.
+     * @return The bytes of the range, fewer than requested if the content ends before, or null
+     * if the page is not at that version (it has been updated or deleted).
+     * @throws DAOException If an error occurs while accessing the database.
+     * @throws PageNotFoundException If no page with the specified UUID exists.
+     */
+    @Override
+    public byte[] getContentRange(String uuid, int version, long offset, int length) throws DAOException, PageNotFoundException {
+
+        if (uuid == null || uuid.isEmpty()) {
+            throw new IllegalArgumentException("Page UUID cannot be null or empty");
+        }
+
+        // Open connection with DB
+        try (Connection conn = this.openConnection()) {
+
+            // Create query, the range is cut by the database from the content converted to UTF-8, so only its bytes are fetched
+            final String query = "SELECT SUBSTRING(CAST(CONVERT(content USING utf8mb4) AS BINARY), ?, ?) AS part FROM HTML WHERE uuid = ? AND version = ?";
+
+            // Prepare statement
+            try (PreparedStatement statement = conn.prepareStatement(query)) {
+
+                statement.setLong(1, offset + 1);   // Positions start at 1
+                statement.setInt(2, length);
+                statement.setString(3, uuid);
+                statement.setInt(4, version);
+
+                // Execute query
+                try (final ResultSet result = statement.executeQuery()) {
+                    if (result.next()) {
+                        final byte[] part = result.getBytes("part");
+                        return part == null ? new byte[0] : part;
+                    } else {
+                        // The page has been updated or deleted since its version was read
+                        return null;
+                    }
+                }
+
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new DAOException("ERROR getting page content range from the database", e);
         }
     }
 
@@ -104,13 +253,166 @@ public class PageDBDAO extends DBDAO implements PageDAO {
     }
 
     /**
-     * Creates a new page in the database.
+     * Lists the metadata of the pages after a UUID, in UUID order (keyset pagination), without their content.
+     * @param after The UUID after which the pages are listed, or null to list from the first one.
+     * @param limit The max. number of pages listed.
+     * @return The summaries (UUID, version and size) of the pages, sorted by UUID.
+     * @throws DAOException If an error occurs while accessing the database.
+     */
+    @Override
+    public List<PageSummary> listSummaries(String after, int limit) throws DAOException {
+
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+
+        // Open connection with DB
+        try (Connection conn = this.openConnection()) {
+
+            // Create query, the pages are sought by the primary key so no row before them is read
+            final String query = after == null
+                ? "SELECT uuid, version, OCTET_LENGTH(CONVERT(content USING utf8mb4)) AS size FROM HTML ORDER BY uuid LIMIT ?"
+                : "SELECT uuid, version, OCTET_LENGTH(CONVERT(content USING utf8mb4)) AS size FROM HTML WHERE uuid > ? ORDER BY uuid LIMIT ?";
+
+            // Prepare statement
+            try (PreparedStatement statement = conn.prepareStatement(query)) {
+
+                int parameter = 1;
+                if (after != null) {
+                    statement.setString(parameter++, after);
+                }
+                statement.setInt(parameter, limit);
+
+                // Execute query
+                try (final ResultSet result = statement.executeQuery()) {
+
+                    final List<PageSummary> summaries = new java.util.ArrayList<>(Math.min(limit, 1024));
+
+                    while (result.next()) {
+                        summaries.add(rowToSummary(result));
+                    }
+                    return summaries;
+                }
+
+            }
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new DAOException("Error listing page summaries from the database", e);
+        }
+    }
+
+    /**
+     * Lists the metadata of all pages in the database, in UUID order, without their content.
+     * Only the size of the contents is computed by the database, so they are not transferred.
+     * @return The summaries (UUID, version and size) of all pages, sorted by UUID.
+     * @throws DAOException If an error occurs while accessing the database.
+     */
+    @Override
+    public List<PageSummary> listSummaries() throws DAOException {
+        // Open connection with DB
+        try (Connection conn = this.openConnection()) {
+
+            // Create query
+            final String query = "SELECT uuid, version, OCTET_LENGTH(CONVERT(content USING utf8mb4)) AS size FROM HTML ORDER BY uuid";
+
+            // Prepare statement
+            try (PreparedStatement statement = conn.prepareStatement(query)) {
+
+                // Execute query
+                try (final ResultSet result = statement.executeQuery()) {
+
+                    final List<PageSummary> summaries = new java.util.ArrayList<>();
+
+                    while (result.next()) {
+                        summaries.add(rowToSummary(result));
+                    }
+                    return summaries;
+                }
+
+            }
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new DAOException("Error listing page summaries from the database", e);
+        }
+    }
+
+    /**
+     * Lists the UUIDs of the pages after a UUID, in UUID order (keyset pagination), without reading any other column.
+     * The query is answered from the primary key index, so the rows themselves are not read.
+     * @param after The UUID after which the pages are listed, or null to list from the first one.
+     * @param limit The max. number of UUIDs listed.
+     * @return The UUIDs of the pages, sorted.
+     * @throws DAOException If an error occurs while accessing the database.
+     */
+    @Override
+    public List<String> listUuids(String after, int limit) throws DAOException {
+
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+
+        // Open connection with DB
+        try (Connection conn = this.openConnection()) {
+
+            // Create query
+            final String query = after == null
+                ? "SELECT uuid FROM HTML ORDER BY uuid LIMIT ?"
+                : "SELECT uuid FROM HTML WHERE uuid > ? ORDER BY uuid LIMIT ?";
+
+            // Prepare statement
+            try (PreparedStatement statement = conn.prepareStatement(query)) {
+
+                int parameter = 1;
+                if (after != null) {
+                    statement.setString(parameter++, after);
+                }
+                statement.setInt(parameter, limit);
+
+                // Execute query
+                try (final ResultSet result = statement.executeQuery()) {
+
+                    final List<String> uuids = new java.util.ArrayList<>(Math.min(limit, 1024));
+
+                    while (result.next()) {
+                        uuids.add(result.getString("uuid"));
+                    }
+                    return uuids;
+                }
+
+            }
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new DAOException("Error listing page UUIDs from the database", e);
+        }
+    }
+
+    /**
+     * Opens a cursor over the metadata of the pages after a UUID, in UUID order. Each batch is read
+     * with its own query, so no connection is held while the pages are walked.
+     * @param after The UUID after which the pages are listed, or null to list from the first one.
+     * @param limit The max. number of pages listed.
+     * @param batchSize The max. number of pages read at once.
+     * @return The cursor over the summaries of the pages.
+     * @throws IllegalArgumentException If the limit or the batch size are not positive.
+     */
+    @Override
+    public PageSummaryCursor openSummaryCursor(String after, int limit, int batchSize) {
+        return new PageSummaryCursor(this::listSummaries, after, limit, batchSize);
+    }
+
+    /**
+     * Creates a new page in the database, unless a page with the same UUID already exists.
+     * The UUID is checked by the primary key of the table, so no query is run before the insertion.
      * @param page The page to create.
+     * @return true if the page was created, false if its UUID is already in use.
      * @throws DAOException If an error occurs while accessing the database.
      * @throws IllegalArgumentException If the page is null or has a null/empty UUID.
      */
     @Override
-    public void create(Page page) throws DAOException, IllegalArgumentException {
+    public boolean create(Page page) throws DAOException, IllegalArgumentException {
         
         if (page == null) {
             throw new IllegalArgumentException("Page cannot be null");
@@ -138,8 +440,12 @@ public class PageDBDAO extends DBDAO implements PageDAO {
                 if (rowsAffected != 1) {
                     throw new SQLException("Failed to insert the page into the database");
                 }
+                return true;
 
             }
+        } catch (SQLIntegrityConstraintViolationException e) {
+            // Duplicate primary key, the UUID is already in use
+            return false;
         } catch (SQLException e) {
             e.printStackTrace();
             throw new DAOException("Error creating page in the database", e);
@@ -147,13 +453,13 @@ public class PageDBDAO extends DBDAO implements PageDAO {
     }
 
     /**
-     * Updates the specified page in the database.
+     * Updates the specified page in the database, with a single statement whose affected rows tell whether the page exists.
      * @param page The page to update.
+     * @return true if the page was updated, false if no page with the specified UUID exists.
      * @throws DAOException If an error occurs while accessing the database.
-     * @throws PageNotFoundException If no page with the specified UUID exists.
      */
     @Override
-    public void update(Page page) throws DAOException, PageNotFoundException {
+    public boolean update(Page page) throws DAOException {
 
         if (page == null) {
             throw new IllegalArgumentException("Page cannot be null");
@@ -176,11 +482,10 @@ public class PageDBDAO extends DBDAO implements PageDAO {
             
                 // Execute query
                 int rowsAffected = statement.executeUpdate();
-                if (rowsAffected == 0) {
-                    throw new PageNotFoundException("Page with UUID " + page.getUuid() + " not found", page.getUuid());
-                } else if (rowsAffected > 1) {
+                if (rowsAffected > 1) {
                     throw new SQLException("Multiple pages updated, expected only one");
                 }
+                return rowsAffected == 1;
 
             }
 
@@ -191,13 +496,13 @@ public class PageDBDAO extends DBDAO implements PageDAO {
     }
 
     /**
-     * Deletes the page with the specified UUID from the database.
+     * Deletes the page with the specified UUID from the database, with a single statement whose affected rows tell whether the page exists.
      * @param uuid The UUID of the page to delete.
+     * @return true if the page was deleted, false if no page with the specified UUID exists.
      * @throws DAOException If an error occurs while accessing the database.
-     * @throws PageNotFoundException If no page with the specified UUID exists.
      */
     @Override
-    public void delete(String uuid) throws DAOException, PageNotFoundException {
+    public boolean delete(String uuid) throws DAOException {
         
         if (uuid == null || uuid.isEmpty()) {
             throw new IllegalArgumentException("Page UUID cannot be null or empty");
@@ -215,11 +520,10 @@ public class PageDBDAO extends DBDAO implements PageDAO {
 
                 // Execute query
                 int rowsAffected = statement.executeUpdate();
-                if (rowsAffected == 0) {
-                    throw new PageNotFoundException("Page with UUID " + uuid + " not found", uuid);
-                } else if (rowsAffected > 1) {
+                if (rowsAffected > 1) {
                     throw new SQLException("Multiple pages deleted, expected only one");
                 }
+                return rowsAffected == 1;
 
             }
         } catch (SQLException e) {
@@ -261,6 +565,343 @@ public class PageDBDAO extends DBDAO implements PageDAO {
         }
     }
 
+    /**
+     * Creates several pages in the database, in a single transaction, with multi-row inserts of up to
+     * {@value #BATCH_SIZE} pages. The pages are split into inserts of a few fixed numbers of rows, so the
+     * same statements are reused whatever the number of pages. Either all the pages are created or none is.
+     * @param pages The pages to create.
+     * @return true if the pages were created, false if any of their UUIDs is already in use or repeated, so none was created.
+     * @throws DAOException If an error occurs while accessing the database.
+     * @throws IllegalArgumentException If the list or any page is null, or a page has a null/empty UUID.
+     */
+    @Override
+    public boolean createAll(List<Page> pages) throws DAOException {
+
+        validatePages(pages);
+        if (pages.isEmpty()) {
+            return true;
+        }
+
+        // Open connection with DB
+        try (Connection conn = this.openConnection()) {
+
+            conn.setAutoCommit(false);
+            try {
+                int start = 0;
+                while (start < pages.size()) {
+                    // The rows of a statement are limited, so it is not too big for the database
+                    int end = start;
+                    long chars = 0;
+                    while (end < pages.size() && end - start < BATCH_SIZE && (end == start || chars < MAX_BATCH_CHARS)) {
+                        final String content = pages.get(end).getContent();
+                        chars += content == null ? 0 : content.length();
+                        end++;
+                    }
+                    // Rows cannot be repeated to fill a statement, so the largest one that fits is used
+                    end = start + floorShape(end - start);
+
+                    // Create query, on creation version value would be 1
+                    final String query = "INSERT INTO HTML (uuid, content, version) VALUES " + rows("(?, ?, 1)", end - start);
+
+                    // Prepare statement
+                    try (PreparedStatement statement = conn.prepareStatement(query)) {
+
+                        int index = 1;
+                        for (Page page : pages.subList(start, end)) {
+                            statement.setString(index++, page.getUuid());
+                            statement.setString(index++, page.getContent());
+                        }
+
+                        // Execute query
+                        int rowsAffected = statement.executeUpdate();
+                        if (rowsAffected != end - start) {
+                            throw new SQLException("Failed to insert the pages into the database");
+                        }
+
+                    }
+                    start = end;
+                }
+
+                conn.commit();
+                return true;
+
+            } catch (SQLIntegrityConstraintViolationException e) {
+                // Duplicate primary key, a UUID is already in use
+                conn.rollback();
+                return false;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new DAOException("Error creating pages in the database", e);
+        }
+    }
+
+    /**
+     * Updates several pages in the database, in a single transaction. The existing pages are locked with
+     * multi-row queries, and then updated with JDBC batches of up to {@value #BATCH_SIZE} statements.
+     * @param pages The pages to update.
+     * @return The UUIDs of the updated pages.
+     * @throws DAOException If an error occurs while accessing the database.
+     * @throws IllegalArgumentException If the list or any page is null, or a page has a null/empty UUID.
+     */
+    @Override
+    public List<String> updateAll(List<Page> pages) throws DAOException {
+
+        validatePages(pages);
+        if (pages.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        final List<String> uuids = new ArrayList<>(pages.size());
+        for (Page page : pages) {
+            uuids.add(page.getUuid());
+        }
+
+        // Open connection with DB
+        try (Connection conn = this.openConnection()) {
+
+            conn.setAutoCommit(false);
+            try {
+                // The pages that do not exist are skipped, and the rest cannot be deleted until the commit
+                final Set<String> existing = lockExisting(conn, uuids);
+                final List<String> updated = new ArrayList<>(existing.size());
+
+                // Create query
+                final String query = "UPDATE HTML SET content = ?, version = version + 1 WHERE uuid = ?";    // Increment the version value in 1
+                // Prepare statement
+                try (PreparedStatement statement = conn.prepareStatement(query)) {
+
+                    int batched = 0;
+                    for (Page page : pages) {
+                        if (existing.contains(page.getUuid())) {
+                            statement.setString(1, page.getContent());
+                            statement.setString(2, page.getUuid());
+                            statement.addBatch();
+                            updated.add(page.getUuid());
+
+                            if (++batched == BATCH_SIZE) {
+                                statement.executeBatch();
+                                batched = 0;
+                            }
+                        }
+                    }
+
+                    // Execute query
+                    if (batched > 0) {
+                        statement.executeBatch();
+                    }
+
+                }
+
+                conn.commit();
+                return updated;
+
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new DAOException("Error updating pages in the database", e);
+        }
+    }
+
+    /**
+     * Deletes several pages from the database, in a single transaction, with multi-row statements of up to
+     * {@value #BATCH_SIZE} pages, of a few fixed sizes. The existing pages are locked first, so the deleted ones are known.
+     * @param uuids The UUIDs of the pages to delete.
+     * @return The UUIDs of the deleted pages.
+     * @throws DAOException If an error occurs while accessing the database.
+     * @throws IllegalArgumentException If the list is null or any UUID is null or empty.
+     */
+    @Override
+    public List<String> deleteAll(List<String> uuids) throws DAOException {
+
+        validateUuids(uuids);
+        if (uuids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Open connection with DB
+        try (Connection conn = this.openConnection()) {
+
+            conn.setAutoCommit(false);
+            try {
+                final List<String> deleted = new ArrayList<>(lockExisting(conn, uuids));
+
+                for (int start = 0; start < deleted.size(); start += BATCH_SIZE) {
+                    final List<String> batch = deleted.subList(start, Math.min(deleted.size(), start + BATCH_SIZE));
+
+                    // Create query
+                    final String query = "DELETE FROM HTML WHERE uuid IN (" + rows("?", ceilingShape(batch.size())) + ")";
+                    // Prepare statement
+                    try (PreparedStatement statement = conn.prepareStatement(query)) {
+
+                        setUuids(statement, batch, ceilingShape(batch.size()));
+
+                        // Execute query, the repeated UUIDs are only deleted once
+                        int rowsAffected = statement.executeUpdate();
+                        if (rowsAffected != batch.size()) {
+                            throw new SQLException("Failed to delete the locked pages from the database");
+                        }
+
+                    }
+                }
+
+                conn.commit();
+                return deleted;
+
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new DAOException("Error deleting pages from the database", e);
+        }
+    }
+
+    /**
+     * Locks the existing pages among several, with multi-row queries of up to {@value #BATCH_SIZE} pages,
+     * of a few fixed sizes, so they cannot be modified by other transactions until the current one ends.
+     * 
+     * @param conn The connection, inside a transaction.
+     * @param uuids The UUIDs of the pages.
+     * @return The UUIDs of the existing pages.
+     * @throws SQLException If an SQL error occurs.
+     */
+    private Set<String> lockExisting(Connection conn, List<String> uuids) throws SQLException {
+        final Set<String> existing = new HashSet<>();
+
+        for (int start = 0; start < uuids.size(); start += BATCH_SIZE) {
+            final List<String> batch = uuids.subList(start, Math.min(uuids.size(), start + BATCH_SIZE));
+
+            // Create query
+            final String query = "SELECT uuid FROM HTML WHERE uuid IN (" + rows("?", ceilingShape(batch.size())) + ") FOR UPDATE";
+            // Prepare statement
+            try (PreparedStatement statement = conn.prepareStatement(query)) {
+
+                setUuids(statement, batch, ceilingShape(batch.size()));
+
+                // Execute query
+                try (final ResultSet result = statement.executeQuery()) {
+                    while (result.next()) {
+                        existing.add(result.getString("uuid"));
+                    }
+                }
+
+            }
+        }
+
+        return existing;
+    }
+
+    /**
+     * Sets the UUIDs of a multi-row statement with more rows than UUIDs, repeating the last UUID
+     * in the remaining rows. A repeated UUID does not change the rows of an IN list.
+     * 
+     * @param statement The statement.
+     * @param uuids The UUIDs, at least one.
+     * @param rows The number of rows of the statement.
+     * @throws SQLException If an SQL error occurs.
+     */
+    private static void setUuids(PreparedStatement statement, List<String> uuids, int rows) throws SQLException {
+        for (int i = 0; i < rows; i++) {
+            statement.setString(i + 1, uuids.get(Math.min(i, uuids.size() - 1)));
+        }
+    }
+
+    /**
+     * Returns the largest number of rows of a multi-row statement that is not greater than a count.
+     * 
+     * @param count The number of rows, at least one.
+     * @return The number of rows of the statement.
+     */
+    private static int floorShape(int count) {
+        for (int shape : BATCH_SHAPES) {
+            if (shape <= count) {
+                return shape;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Returns the smallest number of rows of a multi-row statement that is not less than a count.
+     * 
+     * @param count The number of rows, up to {@value #BATCH_SIZE}.
+     * @return The number of rows of the statement.
+     */
+    private static int ceilingShape(int count) {
+        int ceiling = BATCH_SIZE;
+        for (int shape : BATCH_SHAPES) {
+            if (shape >= count) {
+                ceiling = shape;
+            }
+        }
+        return ceiling;
+    }
+
+    /**
+     * Repeats the placeholders of a row, separated by commas, to build a multi-row statement.
+     * 
+     * @param row The placeholders of a row (e.g. "(?, ?)").
+     * @param count The number of rows.
+     * @return The placeholders of the rows.
+     */
+    private static String rows(String row, int count) {
+        final StringBuilder rows = new StringBuilder(count * (row.length() + 2));
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                rows.append(", ");
+            }
+            rows.append(row);
+        }
+        return rows.toString();
+    }
+
+    /**
+     * Validates the pages of a batch.
+     * 
+     * @param pages The pages.
+     * @throws IllegalArgumentException If the list or any page is null, or a page has a null/empty UUID.
+     */
+    private static void validatePages(List<Page> pages) {
+        if (pages == null) {
+            throw new IllegalArgumentException("Pages cannot be null");
+        }
+
+        for (Page page : pages) {
+            if (page == null) {
+                throw new IllegalArgumentException("Page cannot be null");
+            }
+            if (page.getUuid() == null || page.getUuid().isEmpty()) {
+                throw new IllegalArgumentException("Page UUID cannot be null or empty");
+            }
+        }
+    }
+
+    /**
+     * Validates the UUIDs of a batch.
+     * 
+     * @param uuids The UUIDs.
+     * @throws IllegalArgumentException If the list is null or any UUID is null or empty.
+     */
+    private static void validateUuids(List<String> uuids) {
+        if (uuids == null) {
+            throw new IllegalArgumentException("UUIDs cannot be null");
+        }
+
+        for (String uuid : uuids) {
+            if (uuid == null || uuid.isEmpty()) {
+                throw new IllegalArgumentException("Page UUID cannot be null or empty");
+            }
+        }
+    }
+
     /**
      * Converts a ResultSet row into a Page entity.
      * 
@@ -276,4 +917,19 @@ public class PageDBDAO extends DBDAO implements PageDAO {
         );
     }
 
+    /**
+     * Converts a ResultSet row with the metadata of a page into a PageSummary.
+     * 
+     * @param row The ResultSet positioned at the desired row.
+     * @return A PageSummary representing the data in the row.
+     * @throws SQLException If an SQL error occurs while accessing the ResultSet.
+     */
+    private PageSummary rowToSummary(final ResultSet row) throws SQLException {
+        return new PageSummary(
+            row.getString("uuid"),
+            row.getInt("version"),
+            row.getLong("size")
+        );
+    }
+
 }
@@ -1,46 +1,132 @@
 package es.uvigo.esei.dai.hybridserver.model.dao;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 import es.uvigo.esei.dai.hybridserver.PageNotFoundException;
 import es.uvigo.esei.dai.hybridserver.model.entity.Page;
+import es.uvigo.esei.dai.hybridserver.model.entity.PageSummary;
 
+/**
+ * DAO that keeps the pages in memory. The content and the version of each page are held
+ * together in one immutable value, so they are always read and replaced together.
+ */
 public class PageMapDAO implements PageDAO {
 
-    private Map<String, String> pages;
+    private final NavigableMap<String, StoredPage> pages;    // Sorted by UUID, for keyset pagination
 
     public PageMapDAO() {
-        this.pages = new HashMap<>();
+        this.pages = new ConcurrentSkipListMap<>();
     }
 
     public PageMapDAO(Map<String, String> pages) {
-        this.pages = pages;
+        this.pages = new ConcurrentSkipListMap<>();
+        for (Map.Entry<String, String> page : pages.entrySet()) {
+            this.pages.put(page.getKey(), new StoredPage(page.getValue(), 1));
+        }
+    }
+
+    @Override
+    public Optional<Page> get(String uuid) throws DAOException {
+        final StoredPage page = this.pages.get(uuid);
+        return page == null ? Optional.empty() : Optional.of(new Page(uuid, page.content, page.version));
+    }
+
+    @Override
+    public int getVersion(String uuid) throws DAOException, PageNotFoundException {
+        return stored(uuid).version;
+    }
+
+    @Override
+    public PageSummary getSummary(String uuid) throws DAOException, PageNotFoundException {
+        final StoredPage page = stored(uuid);
+        return new PageSummary(uuid, page.version, page.contentBytes().length);
     }
 
     @Override
-    public Page get(String uuid) throws DAOException, PageNotFoundException {
-        if (!this.pages.containsKey(uuid)) {
-            throw new PageNotFoundException("Page with UUID " + uuid + " not found");
+    public byte[] getContentRange(String uuid, int version, long offset, int length) throws DAOException, PageNotFoundException {
+        final StoredPage page = this.pages.get(uuid);
+        if (page == null || page.version != version) {
+            return null;
         }
-        return new Page(uuid, this.pages.get(uuid));
+
+        final byte[] content = page.contentBytes();
+        final int from = (int) Math.min(offset, content.length);
+        return Arrays.copyOfRange(content, from, (int) Math.min((long) from + length, content.length));
     }
 
     @Override
     public List<Page> list() throws DAOException {
 
-        List<Page> list = new LinkedList<>();
-        for (String uuid : this.pages.keySet()) {
-            list.add(new Page(uuid, this.pages.get(uuid)));
+        final List<Page> list = new ArrayList<>(this.pages.size());
+        for (Map.Entry<String, StoredPage> page : this.pages.entrySet()) {
+            list.add(new Page(page.getKey(), page.getValue().content, page.getValue().version));
         }
 
         return list;
     }
 
     @Override
-    public void create(Page page) throws DAOException, IllegalArgumentException {
+    public List<PageSummary> listSummaries(String after, int limit) throws DAOException {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+
+        final Map<String, StoredPage> tail = after == null ? this.pages : this.pages.tailMap(after, false);
+        final List<PageSummary> summaries = new ArrayList<>(Math.min(limit, 1024));
+        for (Map.Entry<String, StoredPage> page : tail.entrySet()) {
+            if (summaries.size() == limit) {
+                break;
+            }
+            summaries.add(summary(page.getKey(), page.getValue()));
+        }
+
+        return summaries;
+    }
+
+    @Override
+    public List<PageSummary> listSummaries() throws DAOException {
+        final List<PageSummary> summaries = new ArrayList<>(this.pages.size());
+        for (Map.Entry<String, StoredPage> page : this.pages.entrySet()) {
+            summaries.add(summary(page.getKey(), page.getValue()));
+        }
+
+        return summaries;
+    }
+
+    @Override
+    public List<String> listUuids(String after, int limit) throws DAOException {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+
+        final NavigableMap<String, StoredPage> tail = after == null ? this.pages : this.pages.tailMap(after, false);
+        final List<String> uuids = new ArrayList<>(Math.min(limit, 1024));
+        for (String uuid : tail.keySet()) {
+            if (uuids.size() == limit) {
+                break;
+            }
+            uuids.add(uuid);
+        }
+
+        return uuids;
+    }
+
+    @Override
+    public PageSummaryCursor openSummaryCursor(String after, int limit, int batchSize) {
+        return new PageSummaryCursor(this::listSummaries, after, limit, batchSize);
+    }
+
+    @Override
+    public boolean create(Page page) throws DAOException, IllegalArgumentException {
 
         if (page == null) {
             throw new IllegalArgumentException("Page cannot be null");
@@ -50,37 +136,142 @@ public class PageMapDAO implements PageDAO {
             throw new IllegalArgumentException("Page UUID cannot be null or empty");
         }
 
-        this.pages.put(page.getUuid(), page.getContent());
-
+        return this.pages.putIfAbsent(page.getUuid(), new StoredPage(page.getContent(), 1)) == null;
     }
 
     @Override
-    public void update(Page page) throws DAOException, PageNotFoundException {
-        if (!this.pages.containsKey(page.getUuid())) {
-            throw new PageNotFoundException("Page with UUID " + page.getUuid() + " not found");
-        }
-
-        this.pages.put(page.getUuid(), page.getContent());
-        
+    public boolean update(Page page) throws DAOException {
+        // The new value replaces the one its version was computed from, so concurrent updates are never lost
+        return this.pages.computeIfPresent(page.getUuid(),
+            (uuid, stored) -> new StoredPage(page.getContent(), stored.version + 1)) != null;
     }
 
     @Override
-    public void delete(String uuid) throws DAOException, PageNotFoundException {
+    public boolean delete(String uuid) throws DAOException {
         
         if (uuid == null || uuid.isEmpty()) {
             throw new IllegalArgumentException("UUID cannot be null or empty");
         }
 
-        if (!this.pages.containsKey(uuid)) {
-            throw new PageNotFoundException("Page with UUID " + uuid + " not found");
+        return this.pages.remove(uuid) != null;
+    }
+
+    @Override
+    public boolean createAll(List<Page> pages) throws DAOException {
+
+        if (pages == null) {
+            throw new IllegalArgumentException("Pages cannot be null");
+        }
+
+        final Set<String> uuids = new HashSet<>();
+        for (Page page : pages) {
+            if (page == null) {
+                throw new IllegalArgumentException("Page cannot be null");
+            }
+            if (page.getUuid() == null || page.getUuid().isEmpty()) {
+                throw new IllegalArgumentException("Page UUID cannot be null or empty");
+            }
+            if (!uuids.add(page.getUuid())) {
+                return false;
+            }
+        }
+
+        final List<StoredPage> created = new ArrayList<>(pages.size());
+        for (Page page : pages) {
+            final StoredPage stored = new StoredPage(page.getContent(), 1);
+            if (this.pages.putIfAbsent(page.getUuid(), stored) != null) {
+                // Either all the pages are created or none is
+                for (int i = 0; i < created.size(); i++) {
+                    this.pages.remove(pages.get(i).getUuid(), created.get(i));
+                }
+                return false;
+            }
+            created.add(stored);
         }
 
-        this.pages.remove(uuid);
+        return true;
+    }
+
+    @Override
+    public List<String> updateAll(List<Page> pages) throws DAOException {
+        final List<String> updated = new ArrayList<>(pages.size());
+        for (Page page : pages) {
+            if (update(page)) {
+                updated.add(page.getUuid());
+            }
+        }
+
+        return updated;
+    }
+
+    @Override
+    public List<String> deleteAll(List<String> uuids) throws DAOException {
+        final List<String> deleted = new ArrayList<>(uuids.size());
+        for (String uuid : uuids) {
+            if (delete(uuid)) {
+                deleted.add(uuid);
+            }
+        }
+
+        return deleted;
     }
 
     @Override
     public boolean exists(String uuid) throws DAOException {
         return this.pages.containsKey(uuid);    
     }
-    
+
+    private StoredPage stored(String uuid) throws PageNotFoundException {
+        final StoredPage page = this.pages.get(uuid);
+        if (page == null) {
+            throw new PageNotFoundException("Page with UUID " + uuid + " not found", uuid);
+        }
+        return page;
+    }
+
+    private static PageSummary summary(String uuid, StoredPage page) {
+        final byte[] bytes = page.bytes;
+        return new PageSummary(uuid, page.version, bytes != null ? bytes.length : utf8Length(page.content));
+    }
+
+    private static long utf8Length(String content) {
+        long length = content.length();
+        for (int i = 0; i < content.length(); i++) {
+            final char c = content.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < content.length() && Character.isLowSurrogate(content.charAt(i + 1))) {
+                length += 2;    // 4 bytes for the pair of chars
+                i++;
+            } else if (c >= 0x800) {
+                length += 2;
+            } else if (c >= 0x80) {
+                length++;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Class holding the content and the version of a stored page. Its content encoded
+     * as UTF-8 is computed the first time it is requested.
+     */
+    private static final class StoredPage {
+        private final String content;   // Content of the page
+        private final int version;      // Version of the page
+        private volatile byte[] bytes;  // Content of the page encoded as UTF-8, once computed
+
+        private StoredPage(String content, int version) {
+            this.content = content;
+            this.version = version;
+        }
+
+        private byte[] contentBytes() {
+            byte[] bytes = this.bytes;
+            if (bytes == null) {
+                bytes = this.content.getBytes(StandardCharsets.UTF_8);
+                this.bytes = bytes;
+            }
+            return bytes;
+        }
+    }
+
 }
@@ -0,0 +1,111 @@
+package es.uvigo.esei.dai.hybridserver.model.dao;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import es.uvigo.esei.dai.hybridserver.model.entity.PageSummary;
+
+/**
+ * Cursor over the metadata of the pages, in UUID order, that reads them in batches after the
+ * last one returned (keyset pagination). Only one batch is held in memory at a time, so the
+ * pages can be walked without loading all of them, and no connection is kept open between batches.
+ */
+public class PageSummaryCursor {
+
+    /**
+     * Functional interface for reading a batch of page summaries after a UUID.
+     */
+    @FunctionalInterface
+    public interface BatchReader {
+        /**
+         * Reads the metadata of the pages after a UUID, in UUID order.
+         * @param after The UUID after which the pages are read, or null to read from the first one.
+         * @param limit The max. number of pages read.
+         * @return The summaries of the pages, sorted by UUID.
+         * @throws DAOException If an error occurs while accessing the data store.
+         */
+        List<PageSummary> read(String after, int limit) throws DAOException;
+    }
+
+    private final BatchReader reader;   // Source of the batches
+    private final int limit;            // Max. number of pages returned by the cursor
+    private final int batchSize;        // Max. number of pages read at once
+
+    private Iterator<PageSummary> batch = Collections.emptyIterator();  // Pages of the current batch not returned yet
+    private String last;        // UUID of the last page read, or null if none has been read
+    private int read = 0;       // Number of pages read
+    private boolean exhausted;  // Whether there are no more pages to read
+
+    /**
+     * Constructs a PageSummaryCursor.
+     * @param reader The source of the batches of pages.
+     * @param after The UUID after which the pages are returned, or null to return them from the first one.
+     * @param limit The max. number of pages returned.
+     * @param batchSize The max. number of pages read at once.
+     * @throws IllegalArgumentException If the limit or the batch size are not positive.
+     */
+    public PageSummaryCursor(BatchReader reader, String after, int limit, int batchSize) {
+        if (limit <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Limit and batch size must be positive");
+        }
+
+        this.reader = reader;
+        this.last = after;
+        this.limit = limit;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Checks whether there are more pages, reading the next batch if the current one is over.
+     * @return true if there are more pages, false otherwise.
+     * @throws DAOException If an error occurs while accessing the data store.
+     */
+    public boolean hasNext() throws DAOException {
+        if (!this.batch.hasNext() && !this.exhausted) {
+            final int requested = Math.min(this.batchSize, this.limit - this.read);
+            final List<PageSummary> pages = this.reader.read(this.last, requested);
+
+            this.read += pages.size();
+            this.exhausted = pages.size() < requested || this.read == this.limit;
+            if (!pages.isEmpty()) {
+                this.last = pages.get(pages.size() - 1).getUuid();
+            }
+            this.batch = pages.iterator();
+        }
+
+        return this.batch.hasNext();
+    }
+
+    /**
+     * Returns the next page.
+     * @return The summary of the next page.
+     * @throws DAOException If an error occurs while accessing the data store.
+     * @throws NoSuchElementException If there are no more pages.
+     */
+    public PageSummary next() throws DAOException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more pages");
+        }
+        return this.batch.next();
+    }
+
+    /**
+     * Checks whether the cursor stopped because it returned as many pages as its limit,
+     * so there may be more pages after them.
+     * @return true if the limit was reached, false otherwise.
+     */
+    public boolean isLimitReached() {
+        return this.read == this.limit;
+    }
+
+    /**
+     * Returns the UUID of the last page read, which is the one to continue the listing after.
+     * @return The UUID of the last page read, or the initial one if none has been read.
+     */
+    public String getLast() {
+        return this.last;
+    }
+
+}
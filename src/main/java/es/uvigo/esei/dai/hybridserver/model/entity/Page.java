@@ -1,10 +1,14 @@
 package es.uvigo.esei.dai.hybridserver.model.entity;
 
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 
 /** 
  * Class representing a web page with a unique identifier (UUID) and content.
+ * The content encoded as UTF-8 is computed the first time it is requested and kept by
+ * the instance, so an instance shared by several responses (e.g. a cached page) is
+ * encoded once instead of once per response.
  */
 public class Page implements Serializable {
     
@@ -13,6 +17,7 @@ public class Page implements Serializable {
     private String uuid;    // Unique identifier for the page
     private String content; // Content of the page
     private int version;    // Version of the page
+    private transient volatile byte[] contentBytes; // Content of the page encoded as UTF-8, once computed
 
     /**
      * Default constructor for Page.
@@ -50,6 +55,7 @@ public class Page implements Serializable {
      */
     public void setUuid(String uuid) {
         this.uuid = uuid;
+        this.contentBytes = null;
     }
 
     /**
@@ -66,6 +72,21 @@ public class Page implements Serializable {
      */
     public void setContent(String content) {
         this.content = content;
+        this.contentBytes = null;
+    }
+
+    /**
+     * Returns the content of the page encoded as UTF-8.
+     * The array is shared by the callers, so it must not be modified.
+     * @return the encoded content of the page, or null if the page has no content
+     */
+    public byte[] getContentBytes() {
+        byte[] bytes = this.contentBytes;
+        if (bytes == null && this.content != null) {
+            bytes = this.content.getBytes(StandardCharsets.UTF_8);
+            this.contentBytes = bytes;
+        }
+        return bytes;
     }
 
     /**
@@ -82,6 +103,7 @@ public class Page implements Serializable {
      */
     public void setVersion(int version) {
         this.version = version;
+        this.contentBytes = null;
     }
 
     /**
@@ -120,4 +142,4 @@ public class Page implements Serializable {
     public String toString() {
         return "Pages [uuid=" + uuid + ", version= " + version + ", content=" + content + "]";
     }
-}
+}
\ No newline at end of file
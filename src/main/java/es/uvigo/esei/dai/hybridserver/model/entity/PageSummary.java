@@ -0,0 +1,91 @@
+package es.uvigo.esei.dai.hybridserver.model.entity;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Class representing the metadata of a web page without its content: its UUID,
+ * its version and the size of its content encoded as UTF-8.
+ * It is used to answer the requests that do not need the content of a page.
+ */
+public class PageSummary implements Serializable {
+
+    private static final long serialVersionUID = 1L; // For serialization compatibility
+
+    private final String uuid;  // Unique identifier for the page
+    private final int version;  // Version of the page
+    private final long size;    // Size in bytes of the content of the page encoded as UTF-8
+
+    /**
+     * Constructs a PageSummary.
+     * @param uuid the UUID of the page
+     * @param version the version of the page
+     * @param size the size in bytes of the content of the page encoded as UTF-8
+     */
+    public PageSummary(String uuid, int version, long size) {
+        this.uuid = uuid;
+        this.version = version;
+        this.size = size;
+    }
+
+    /**
+     * Returns the UUID of the page.
+     * @return the UUID of the page
+     */
+    public String getUuid() {
+        return this.uuid;
+    }
+
+    /**
+     * Returns the version of the page.
+     * @return the version of the page
+     */
+    public int getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Returns the size of the content of the page.
+     * @return the size in bytes of the content of the page encoded as UTF-8
+     */
+    public long getSize() {
+        return this.size;
+    }
+
+    /**
+     * Returns a hash code value for the object.
+     * @return a hash code value for this object
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(uuid, version, size);
+    }
+
+    /**
+     * Compares this object to the specified object.
+     * The result is true if and only if the argument is not null and
+     * is a PageSummary object with the same uuid, version and size as this object.
+     * @param obj the object to compare this PageSummary against
+     * @return true if the given object represents a PageSummary equivalent to this PageSummary, false otherwise
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        PageSummary other = (PageSummary) obj;
+        return Objects.equals(uuid, other.uuid) && version == other.version && size == other.size;
+    }
+
+    /**
+     * Returns a string representation of the object.
+     * @return a string representation of the object
+     */
+    @Override
+    public String toString() {
+        return "PageSummary [uuid=" + uuid + ", version= " + version + ", size=" + size + "]";
+    }
+}
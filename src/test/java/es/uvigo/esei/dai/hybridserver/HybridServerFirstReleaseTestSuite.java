@@ -24,7 +24,8 @@ import org.junit.platform.suite.api.Suite;
 @SelectClasses({
   Step1TestSuite.class,
   Step2TestSuite.class,
-  Step3TestSuite.class
+  Step3TestSuite.class,
+  ComponentsTestSuite.class
 })
 public class HybridServerFirstReleaseTestSuite {
 }
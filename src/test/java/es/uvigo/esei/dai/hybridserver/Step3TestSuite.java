@@ -22,11 +22,17 @@ import org.junit.platform.suite.api.Suite;
 
 import es.uvigo.esei.dai.hybridserver.step3.ClientRequestsWithDatabaseTest;
 import es.uvigo.esei.dai.hybridserver.step3.CustomPortTest;
+import es.uvigo.esei.dai.hybridserver.step3.KeepAliveTest;
+import es.uvigo.esei.dai.hybridserver.step3.PipeliningTest;
+import es.uvigo.esei.dai.hybridserver.step3.ServiceUnavailableTest;
 
 @Suite
 @SelectClasses({
   CustomPortTest.class,
-  ClientRequestsWithDatabaseTest.class
+  ClientRequestsWithDatabaseTest.class,
+  ServiceUnavailableTest.class,
+  KeepAliveTest.class,
+  PipeliningTest.class
 })
 public class Step3TestSuite {
 
@@ -0,0 +1,200 @@
+package es.uvigo.esei.dai.hybridserver.controler;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import es.uvigo.esei.dai.hybridserver.model.dao.DAOException;
+import es.uvigo.esei.dai.hybridserver.model.dao.PageMapDAO;
+import es.uvigo.esei.dai.hybridserver.model.entity.Page;
+
+public class CachingPagesControllerTest {
+  private static final int PAGE_SIZE = 1000;    // Weight of a page: its content plus 64 bytes of overhead
+  private static final long MAX_BYTES = 6000;   // Room for five pages in the main region
+
+  private PageMapDAO dao;
+  private Map<String, Integer> reads;
+  private Runnable onRead;
+  private CachingPagesController cache;
+
+  @BeforeEach
+  public void setUp() {
+    this.dao = new PageMapDAO();
+    this.reads = new HashMap<>();
+    this.onRead = () -> {};
+
+    final PagesController store = new DefaultPagesController(this.dao) {
+      @Override
+      public Optional<Page> get(String uuid) throws DAOException {
+        reads.merge(uuid, 1, Integer::sum);
+        final Optional<Page> page = super.get(uuid);
+        onRead.run();
+        return page;
+      }
+    };
+    this.cache = new CachingPagesController(store, MAX_BYTES);
+  }
+
+  private static String content(char c, int size) {
+    final StringBuilder content = new StringBuilder(size);
+    while (content.length() < size) {
+      content.append(c);
+    }
+    return content.toString();
+  }
+
+  private String addPage(String uuid, int size) throws DAOException {
+    this.dao.create(new Page(uuid, content(uuid.charAt(0), size)));
+    return uuid;
+  }
+
+  private int reads(String uuid) {
+    return this.reads.getOrDefault(uuid, 0);
+  }
+
+  @Test
+  public final void testPageReadOnce() throws Exception {
+    final String uuid = addPage("a", PAGE_SIZE);
+
+    assertThat(this.cache.get(uuid).get().getContent(), is(equalTo(content('a', PAGE_SIZE))));
+    assertThat(this.cache.get(uuid).get().getVersion(), is(equalTo(1)));
+    assertThat(this.cache.getVersion(uuid), is(equalTo(1)));
+
+    assertThat(reads(uuid), is(equalTo(1)));
+    assertThat(this.cache.getHitCount(), is(equalTo(2L)));
+    assertThat(this.cache.getMissCount(), is(equalTo(1L)));
+  }
+
+  @Test
+  public final void testMissingPageNotCached() throws Exception {
+    assertThat(this.cache.get("missing").isPresent(), is(false));
+    assertThat(this.cache.get("missing").isPresent(), is(false));
+
+    assertThat(reads("missing"), is(equalTo(2)));
+  }
+
+  @Test
+  public final void testWriteInvalidatesPage() throws Exception {
+    final String uuid = addPage("a", PAGE_SIZE);
+    this.cache.get(uuid);
+
+    assertThat(this.cache.update(new Page(uuid, "changed")), is(true));
+
+    final Page page = this.cache.get(uuid).get();
+    assertThat(page.getContent(), is(equalTo("changed")));
+    assertThat(page.getVersion(), is(equalTo(2)));
+    assertThat(reads(uuid), is(equalTo(2)));
+
+    assertThat(this.cache.delete(uuid), is(true));
+    assertThat(this.cache.get(uuid).isPresent(), is(false));
+  }
+
+  @Test
+  public final void testInvalidationDuringRead() throws Exception {
+    final String uuid = addPage("a", PAGE_SIZE);
+
+    // The page is updated after the store returns it, but before the cache admits it
+    this.onRead = () -> {
+      this.onRead = () -> {};
+      try {
+        this.cache.update(new Page(uuid, "changed"));
+      } catch (DAOException e) {
+        throw new IllegalStateException(e);
+      }
+    };
+
+    assertThat(this.cache.get(uuid).get().getVersion(), is(equalTo(1)));
+
+    // The stale page read before the invalidation is not kept
+    assertThat(this.cache.get(uuid).get().getContent(), is(equalTo("changed")));
+    assertThat(reads(uuid), is(equalTo(2)));
+
+    assertThat(this.cache.get(uuid).get().getContent(), is(equalTo("changed")));
+    assertThat(reads(uuid), is(equalTo(2)));
+  }
+
+  @Test
+  public final void testRangeOfOtherVersion() throws Exception {
+    final String uuid = addPage("a", PAGE_SIZE);
+    this.cache.get(uuid);
+
+    // The cached page is version 1; the store has version 2, updated behind the cache
+    this.dao.update(new Page(uuid, content('b', PAGE_SIZE)));
+
+    assertThat(new String(this.cache.getContentRange(uuid, 1, 0, 3)), is(equalTo("aaa")));
+    assertThat(new String(this.cache.getContentRange(uuid, 2, 0, 3)), is(equalTo("bbb")));
+    assertThat(this.cache.getContentRange(uuid, 3, 0, 3), is(nullValue()));
+  }
+
+  @Test
+  public final void testSizeBound() throws Exception {
+    for (int i = 0; i < 50; i++) {
+      this.cache.get(addPage("p" + i, PAGE_SIZE));
+      assertThat(this.cache.getWeightedSize(), is(lessThanOrEqualTo(MAX_BYTES)));
+    }
+
+    assertThat(this.cache.getEvictionCount(), is(greaterThan(0L)));
+  }
+
+  @Test
+  public final void testPageLargerThanCache() throws Exception {
+    final String uuid = addPage("big", (int) MAX_BYTES);
+
+    this.cache.get(uuid);
+    this.cache.get(uuid);
+
+    assertThat(reads(uuid), is(equalTo(2)));
+    assertThat(this.cache.getWeightedSize(), is(equalTo(0L)));
+  }
+
+  @Test
+  public final void testPopularPagesSurviveScan() throws Exception {
+    final String[] popular = new String[5];
+    for (int i = 0; i < popular.length; i++) {
+      popular[i] = addPage("hot" + i, PAGE_SIZE);
+      for (int j = 0; j < 5; j++) {
+        this.cache.get(popular[i]);
+      }
+    }
+
+    // A burst of pages requested only once does not replace the popular ones
+    for (int i = 0; i < 100; i++) {
+      this.cache.get(addPage("cold" + i, PAGE_SIZE));
+    }
+
+    for (String uuid : popular) {
+      this.cache.get(uuid);
+      assertThat(uuid, reads(uuid), is(equalTo(1)));
+    }
+  }
+
+  @Test
+  public final void testFrequentPageIsAdmitted() throws Exception {
+    for (int i = 0; i < 5; i++) {
+      final String uuid = addPage("hot" + i, PAGE_SIZE);
+      this.cache.get(uuid);
+      this.cache.get(uuid);
+    }
+
+    // A new page requested more often than the cached ones replaces one of them
+    final String uuid = addPage("new", PAGE_SIZE);
+    for (int i = 0; i < 10; i++) {
+      this.cache.get(uuid);
+    }
+
+    assertThat(reads(uuid), is(lessThanOrEqualTo(4)));
+    assertThat(this.cache.getEvictionCount(), is(greaterThan(0L)));
+    assertThat(this.cache.getWeightedSize(), is(lessThanOrEqualTo(MAX_BYTES)));
+  }
+
+}
@@ -0,0 +1,199 @@
+package es.uvigo.esei.dai.hybridserver.controler;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import es.uvigo.esei.dai.hybridserver.PageNotFoundException;
+import es.uvigo.esei.dai.hybridserver.model.dao.DAOException;
+import es.uvigo.esei.dai.hybridserver.model.dao.PageMapDAO;
+import es.uvigo.esei.dai.hybridserver.model.entity.Page;
+
+public class CoalescingPagesControllerTest {
+  private static final int WAITERS = 4;
+  private static final long TIMEOUT = 5000;   // Max. time (ms) waiting for the other threads
+
+  private PageMapDAO dao;
+  private AtomicInteger reads;
+  private CountDownLatch entered;     // Counted down when the first read reaches the store
+  private CountDownLatch release;     // Lets the first read finish
+  private volatile DAOException failure;
+  private CoalescingPagesController controller;
+  private ExecutorService threads;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    this.dao = new PageMapDAO();
+    this.dao.create(new Page("a", "content"));
+    this.reads = new AtomicInteger();
+    this.entered = new CountDownLatch(1);
+    this.release = new CountDownLatch(1);
+    this.threads = Executors.newCachedThreadPool();
+
+    // Only the first read waits to be released, so the later ones can be told apart
+    final PagesController store = new DefaultPagesController(this.dao) {
+      @Override
+      public Optional<Page> get(String uuid) throws DAOException {
+        final Optional<Page> page = super.get(uuid);
+        block();
+        return page;
+      }
+
+      @Override
+      public int getVersion(String uuid) throws DAOException, PageNotFoundException {
+        block();
+        return super.getVersion(uuid);
+      }
+
+      private void block() throws DAOException {
+        if (reads.incrementAndGet() == 1) {
+          entered.countDown();
+          try {
+            release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          if (failure != null) {
+            throw failure;
+          }
+        }
+      }
+    };
+    this.controller = new CoalescingPagesController(store);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    this.release.countDown();
+    this.threads.shutdownNow();
+  }
+
+  private <T> Future<T> first(Callable<T> lookup) throws InterruptedException {
+    final Future<T> future = this.threads.submit(lookup);
+    assertThat(this.entered.await(TIMEOUT, TimeUnit.MILLISECONDS), is(true));
+    return future;
+  }
+
+  private <T> List<Future<T>> waiters(Callable<T> lookup) throws InterruptedException {
+    final List<Future<T>> futures = new ArrayList<>();
+    for (int i = 0; i < WAITERS; i++) {
+      futures.add(this.threads.submit(lookup));
+    }
+
+    // The waiters are released once all of them share the lookup in flight
+    final long deadline = System.currentTimeMillis() + TIMEOUT;
+    while (this.controller.getCoalescedCount() < WAITERS && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(this.controller.getCoalescedCount(), is(equalTo((long) WAITERS)));
+
+    return futures;
+  }
+
+  private static Throwable failure(Future<?> future) throws InterruptedException {
+    final ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(TIMEOUT, TimeUnit.MILLISECONDS));
+    return e.getCause();
+  }
+
+  @Test
+  public final void testConcurrentLookupsShared() throws Exception {
+    final Future<Optional<Page>> first = first(() -> this.controller.get("a"));
+    final List<Future<Optional<Page>>> waiters = waiters(() -> this.controller.get("a"));
+
+    this.release.countDown();
+
+    final Optional<Page> page = first.get(TIMEOUT, TimeUnit.MILLISECONDS);
+    assertThat(page.get().getContent(), is(equalTo("content")));
+    for (Future<Optional<Page>> waiter : waiters) {
+      assertThat(waiter.get(TIMEOUT, TimeUnit.MILLISECONDS), is(sameInstance(page)));
+    }
+    assertThat(this.reads.get(), is(equalTo(1)));
+  }
+
+  @Test
+  public final void testSequentialLookupsNotShared() throws Exception {
+    this.release.countDown();
+
+    this.controller.get("a");
+    this.controller.get("a");
+
+    assertThat(this.reads.get(), is(equalTo(2)));
+    assertThat(this.controller.getCoalescedCount(), is(equalTo(0L)));
+  }
+
+  @Test
+  public final void testErrorPassedToEveryWaiter() throws Exception {
+    this.failure = new DAOException("store down");
+
+    final Future<Optional<Page>> first = first(() -> this.controller.get("a"));
+    final List<Future<Optional<Page>>> waiters = waiters(() -> this.controller.get("a"));
+
+    this.release.countDown();
+
+    assertThat(failure(first), is(sameInstance(this.failure)));
+    for (Future<Optional<Page>> waiter : waiters) {
+      final Throwable error = failure(waiter);
+      assertThat(error, is(instanceOf(DAOException.class)));
+      assertThat(error, is(not(sameInstance(this.failure))));
+      assertThat(error.getCause(), is(sameInstance(this.failure)));
+    }
+    assertThat(this.reads.get(), is(equalTo(1)));
+
+    // The failed lookup is not kept
+    assertThat(this.controller.get("a").isPresent(), is(true));
+  }
+
+  @Test
+  public final void testNotFoundPassedToEveryWaiter() throws Exception {
+    final Future<Integer> first = first(() -> this.controller.getVersion("missing"));
+    final List<Future<Integer>> waiters = waiters(() -> this.controller.getVersion("missing"));
+
+    this.release.countDown();
+
+    assertThat(failure(first), is(instanceOf(PageNotFoundException.class)));
+    for (Future<Integer> waiter : waiters) {
+      final Throwable error = failure(waiter);
+      assertThat(error, is(instanceOf(PageNotFoundException.class)));
+      assertThat(((PageNotFoundException) error).getUuid(), is(equalTo("missing")));
+    }
+    assertThat(this.reads.get(), is(equalTo(1)));
+  }
+
+  @Test
+  public final void testLookupDetachedAfterWrite() throws Exception {
+    final Future<Optional<Page>> first = first(() -> this.controller.get("a"));
+
+    assertThat(this.controller.update(new Page("a", "changed")), is(true));
+
+    // The lookup started before the update is not shared with the later ones
+    final Optional<Page> page = this.controller.get("a");
+    assertThat(page.get().getContent(), is(equalTo("changed")));
+    assertThat(page.get().getVersion(), is(equalTo(2)));
+    assertThat(this.controller.getCoalescedCount(), is(equalTo(0L)));
+
+    this.release.countDown();
+    assertThat(first.get(TIMEOUT, TimeUnit.MILLISECONDS).get().getVersion(), is(equalTo(1)));
+    assertThat(this.reads.get(), is(equalTo(2)));
+  }
+
+}
@@ -0,0 +1,194 @@
+package es.uvigo.esei.dai.hybridserver.controler;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import es.uvigo.esei.dai.hybridserver.PageNotFoundException;
+import es.uvigo.esei.dai.hybridserver.model.dao.DAOException;
+import es.uvigo.esei.dai.hybridserver.model.dao.PageMapDAO;
+import es.uvigo.esei.dai.hybridserver.model.entity.Page;
+
+public class NegativeLookupPagesControllerTest {
+  private PageMapDAO dao;
+  private Map<String, Integer> reads;
+  private Runnable onRead;
+  private PagesController store;
+
+  @BeforeEach
+  public void setUp() {
+    this.dao = new PageMapDAO();
+    this.reads = new HashMap<>();
+    this.onRead = () -> {};
+
+    this.store = new DefaultPagesController(this.dao) {
+      @Override
+      public Optional<Page> get(String uuid) throws DAOException {
+        reads.merge(uuid, 1, Integer::sum);
+        final Optional<Page> page = super.get(uuid);
+        onRead.run();
+        return page;
+      }
+    };
+  }
+
+  private NegativeLookupPagesController filtered(int maxMisses) throws DAOException {
+    final NegativeLookupPagesController controller = new NegativeLookupPagesController(this.store, maxMisses);
+    controller.rebuild(2);
+    return controller;
+  }
+
+  private int reads(String uuid) {
+    return this.reads.getOrDefault(uuid, 0);
+  }
+
+  @Test
+  public final void testFilterLoadedFromStore() throws Exception {
+    for (String uuid : List.of("a", "b", "c", "d", "e")) {
+      this.dao.create(new Page(uuid, uuid));
+    }
+
+    final NegativeLookupPagesController controller = filtered(0);
+
+    for (String uuid : List.of("a", "b", "c", "d", "e")) {
+      assertThat(controller.get(uuid).get().getContent(), is(equalTo(uuid)));
+    }
+    assertThat(controller.get("missing").isPresent(), is(false));
+    assertThat(controller.exists("missing"), is(false));
+    assertThrows(PageNotFoundException.class, () -> controller.getVersion("missing"));
+
+    assertThat(reads("missing"), is(equalTo(0)));
+    assertThat(controller.getFilteredCount(), is(equalTo(3L)));
+  }
+
+  @Test
+  public final void testCreatedPageAddedToFilter() throws Exception {
+    final NegativeLookupPagesController controller = filtered(0);
+
+    assertThat(controller.create(new Page("a", "content")), is(true));
+    assertThat(controller.createAll(List.of(new Page("b", "b"), new Page("c", "c"))), is(true));
+
+    assertThat(controller.get("a").get().getContent(), is(equalTo("content")));
+    assertThat(controller.get("b").isPresent(), is(true));
+    assertThat(controller.get("c").isPresent(), is(true));
+    assertThat(controller.getFilteredCount(), is(equalTo(0L)));
+  }
+
+  @Test
+  public final void testDeletedPageRemovedFromFilter() throws Exception {
+    final NegativeLookupPagesController controller = filtered(0);
+    controller.create(new Page("a", "content"));
+
+    assertThat(controller.delete("a"), is(true));
+
+    assertThat(controller.get("a").isPresent(), is(false));
+    assertThat(reads("a"), is(equalTo(0)));
+    assertThat(controller.getFilteredCount(), is(equalTo(1L)));
+
+    // The page can be created again
+    controller.create(new Page("a", "again"));
+    assertThat(controller.get("a").get().getContent(), is(equalTo("again")));
+  }
+
+  @Test
+  public final void testBulkDeleteRemovesFromFilter() throws Exception {
+    final NegativeLookupPagesController controller = filtered(0);
+    controller.createAll(List.of(new Page("a", "a"), new Page("b", "b")));
+
+    assertThat(controller.deleteAll(List.of("a", "b", "missing")), contains("a", "b"));
+
+    assertThat(controller.get("a").isPresent(), is(false));
+    assertThat(controller.get("b").isPresent(), is(false));
+    assertThat(reads("a") + reads("b"), is(equalTo(0)));
+  }
+
+  @Test
+  public final void testSaturatedCountersAreKept() throws Exception {
+    final NegativeLookupPagesController controller = filtered(0);
+
+    // Every attempt adds the UUID to the filter, even if the page already exists, so its
+    // counters reach their max. value instead of wrapping around to zero
+    for (int i = 0; i < 256; i++) {
+      controller.create(new Page("a", "content"));
+    }
+    assertThat(controller.get("a").isPresent(), is(true));
+
+    // Saturated counters are not decremented, as they could belong to other UUIDs
+    assertThat(controller.delete("a"), is(true));
+    assertThat(controller.get("a").isPresent(), is(false));
+    assertThat(reads("a"), is(equalTo(2)));
+    assertThat(controller.getFilteredCount(), is(equalTo(0L)));
+  }
+
+  @Test
+  public final void testMissesRemembered() throws Exception {
+    final NegativeLookupPagesController controller = new NegativeLookupPagesController(this.store, 10);
+
+    // Without the filter, only the negative cache answers
+    assertThat(controller.get("a").isPresent(), is(false));
+    assertThat(controller.get("a").isPresent(), is(false));
+    assertThrows(PageNotFoundException.class, () -> controller.getSummary("a"));
+
+    assertThat(reads("a"), is(equalTo(1)));
+    assertThat(controller.getRememberedCount(), is(equalTo(2L)));
+
+    // A created page is forgotten as missing
+    controller.create(new Page("a", "content"));
+    assertThat(controller.get("a").get().getContent(), is(equalTo("content")));
+  }
+
+  @Test
+  public final void testDeletedPageRemembered() throws Exception {
+    final NegativeLookupPagesController controller = new NegativeLookupPagesController(this.store, 10);
+    controller.create(new Page("a", "content"));
+    controller.delete("a");
+
+    assertThat(controller.get("a").isPresent(), is(false));
+    assertThat(reads("a"), is(equalTo(0)));
+    assertThat(controller.getRememberedCount(), is(equalTo(1L)));
+  }
+
+  @Test
+  public final void testMissesBounded() throws Exception {
+    final NegativeLookupPagesController controller = new NegativeLookupPagesController(this.store, 2);
+
+    controller.get("a");
+    controller.get("b");
+    controller.get("c");
+
+    // The least recently used miss is forgotten
+    controller.get("a");
+    controller.get("c");
+    assertThat(reads("a"), is(equalTo(2)));
+    assertThat(reads("c"), is(equalTo(1)));
+  }
+
+  @Test
+  public final void testCreationDuringLookup() throws Exception {
+    final NegativeLookupPagesController controller = new NegativeLookupPagesController(this.store, 10);
+
+    // The page is created after the store misses it, but before the miss is remembered
+    this.onRead = () -> {
+      this.onRead = () -> {};
+      try {
+        controller.create(new Page("a", "content"));
+      } catch (DAOException e) {
+        throw new IllegalStateException(e);
+      }
+    };
+
+    assertThat(controller.get("a").isPresent(), is(false));
+    assertThat(controller.get("a").get().getContent(), is(equalTo("content")));
+  }
+
+}
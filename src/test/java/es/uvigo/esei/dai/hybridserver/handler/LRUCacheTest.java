@@ -0,0 +1,78 @@
+package es.uvigo.esei.dai.hybridserver.handler;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class LRUCacheTest {
+
+  private static LRUCache<String, byte[]> bytesCache(long capacity) {
+    return new LRUCache<>(capacity, value -> value.length);
+  }
+
+  @Test
+  public final void testBoundedByEntries() {
+    final LRUCache<String, String> cache = new LRUCache<>(2);
+    cache.put("a", "A");
+    cache.put("b", "B");
+    cache.get("a");
+    cache.put("c", "C");
+
+    assertThat(cache.get("a"), is(equalTo("A")));
+    assertThat(cache.get("b"), is(nullValue()));
+    assertThat(cache.get("c"), is(equalTo("C")));
+    assertThat(cache.size(), is(equalTo(2)));
+  }
+
+  @Test
+  public final void testBoundedByWeight() {
+    final LRUCache<String, byte[]> cache = bytesCache(100);
+    cache.put("a", new byte[40]);
+    cache.put("b", new byte[40]);
+    cache.get("a");
+
+    // Makes room for a heavy value discarding the least recently used ones
+    cache.put("c", new byte[30]);
+    assertThat(cache.get("b"), is(nullValue()));
+    assertThat(cache.weight(), is(equalTo(70L)));
+
+    cache.put("d", new byte[90]);
+    assertThat(cache.size(), is(equalTo(1)));
+    assertThat(cache.weight(), is(equalTo(90L)));
+  }
+
+  @Test
+  public final void testReplacedValueWeight() {
+    final LRUCache<String, byte[]> cache = bytesCache(100);
+    cache.put("a", new byte[60]);
+    cache.put("a", new byte[20]);
+    cache.put("b", new byte[80]);
+
+    assertThat(cache.size(), is(equalTo(2)));
+    assertThat(cache.weight(), is(equalTo(100L)));
+  }
+
+  @Test
+  public final void testValueHeavierThanCapacity() {
+    final LRUCache<String, byte[]> cache = bytesCache(100);
+    cache.put("a", new byte[10]);
+    cache.put("b", new byte[10]);
+
+    // Not cached, and the value it replaces is discarded, but the rest are kept
+    cache.put("a", new byte[101]);
+    assertThat(cache.get("a"), is(nullValue()));
+    assertThat(cache.get("b").length, is(equalTo(10)));
+    assertThat(cache.weight(), is(equalTo(10L)));
+  }
+
+  @Test
+  public final void testInvalidCapacity() {
+    assertThrows(IllegalArgumentException.class, () -> new LRUCache<String, String>(0));
+    assertThrows(IllegalArgumentException.class, () -> bytesCache(0));
+  }
+
+}
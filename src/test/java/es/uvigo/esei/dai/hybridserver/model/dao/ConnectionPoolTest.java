@@ -0,0 +1,272 @@
+package es.uvigo.esei.dai.hybridserver.model.dao;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ConnectionPoolTest {
+  private static final long TIMEOUT = 5000;   // Max. time (ms) waiting for the pool
+
+  private FakeDatabase database;
+  private ConnectionPoolSettings settings;
+  private ConnectionPool pool;
+
+  @BeforeEach
+  public void setUp() throws SQLException {
+    this.database = new FakeDatabase();
+    this.settings = new ConnectionPoolSettings();
+    this.settings.setMinSize(0);
+    this.settings.setMaxSize(2);
+    this.settings.setBorrowTimeout(TIMEOUT);
+  }
+
+  @AfterEach
+  public void tearDown() throws SQLException {
+    if (this.pool != null) {
+      this.pool.close();
+    }
+    this.database.close();
+  }
+
+  private ConnectionPool pool() {
+    this.pool = new ConnectionPool(this.database.getUrl(), "user", "password", this.settings);
+    return this.pool;
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + TIMEOUT;
+    while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(condition.getAsBoolean(), is(true));
+  }
+
+  // The lent connections are named after the physical connection they use
+  private static String physical(Connection connection) {
+    return connection.toString().substring("Pooled ".length());
+  }
+
+  @Test
+  public final void testConnectionReused() throws Exception {
+    final ConnectionPool pool = pool();
+
+    for (int i = 0; i < 10; i++) {
+      try (Connection connection = pool.getConnection()) {
+        assertThat(physical(connection), is(equalTo("fake-1")));
+      }
+    }
+
+    assertThat(this.database.getOpenedCount(), is(equalTo(1)));
+    assertThat(pool.getBorrowCount(), is(equalTo(10L)));
+    assertThat(pool.getActiveCount(), is(equalTo(0)));
+    assertThat(pool.getIdleCount(), is(equalTo(1)));
+  }
+
+  @Test
+  public final void testMinSizeOpenedInBackground() throws Exception {
+    this.settings.setMinSize(2);
+    final ConnectionPool pool = pool();
+
+    await(() -> pool.getIdleCount() == 2);
+    assertThat(this.database.getOpenedCount(), is(equalTo(2)));
+  }
+
+  @Test
+  public final void testClosedTwice() throws Exception {
+    final ConnectionPool pool = pool();
+
+    final Connection connection = pool.getConnection();
+    connection.close();
+    connection.close();
+
+    assertThat(connection.isClosed(), is(true));
+    assertThrows(SQLException.class, () -> connection.prepareStatement("SELECT 1"));
+    assertThat(pool.getIdleCount(), is(equalTo(1)));
+  }
+
+  @Test
+  public final void testBorrowTimeout() throws Exception {
+    this.settings.setMaxSize(1);
+    this.settings.setBorrowTimeout(100);
+    final ConnectionPool pool = pool();
+
+    try (Connection held = pool.getConnection()) {
+      final long start = System.nanoTime();
+      assertThrows(SQLTransientConnectionException.class, () -> pool.getConnection());
+
+      assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), is(greaterThanOrEqualTo(100L)));
+      assertThat(pool.getTimeoutCount(), is(equalTo(1L)));
+      assertThat(pool.getSaturatedBorrowCount(), is(equalTo(1L)));
+      assertThat(pool.getWaitingCount(), is(equalTo(0)));
+    }
+  }
+
+  @Test
+  public final void testWaiterGetsReturnedConnection() throws Exception {
+    this.settings.setMaxSize(1);
+    final ConnectionPool pool = pool();
+    final ExecutorService threads = Executors.newSingleThreadExecutor();
+
+    try {
+      final Connection held = pool.getConnection();
+      final Future<String> waiter = threads.submit(() -> {
+        try (Connection connection = pool.getConnection()) {
+          return physical(connection);
+        }
+      });
+
+      await(() -> pool.getWaitingCount() == 1);
+      held.close();
+
+      assertThat(waiter.get(TIMEOUT, TimeUnit.MILLISECONDS), is(equalTo("fake-1")));
+      assertThat(this.database.getOpenedCount(), is(equalTo(1)));
+      assertThat(pool.getSaturatedBorrowCount(), is(equalTo(1L)));
+    } finally {
+      threads.shutdownNow();
+    }
+  }
+
+  @Test
+  public final void testBrokenConnectionDiscarded() throws Exception {
+    final ConnectionPool pool = pool();
+
+    try (Connection connection = pool.getConnection()) {
+      assertThrows(SQLException.class, () -> connection.createStatement());
+    }
+    assertThat(this.database.getClosedCount(), is(equalTo(1)));
+    assertThat(pool.getIdleCount(), is(equalTo(0)));
+
+    try (Connection connection = pool.getConnection()) {
+      assertThat(physical(connection), is(equalTo("fake-2")));
+    }
+  }
+
+  @Test
+  public final void testBrokenStatementDiscardsConnection() throws Exception {
+    final ConnectionPool pool = pool();
+
+    try (Connection connection = pool.getConnection();
+      PreparedStatement statement = connection.prepareStatement(FakeDatabase.LOST_SQL)) {
+      assertThrows(SQLException.class, () -> statement.executeQuery());
+    }
+
+    assertThat(this.database.getClosedCount(), is(equalTo(1)));
+    assertThat(pool.getIdleCount(), is(equalTo(0)));
+  }
+
+  @Test
+  public final void testFailedQueryKeepsConnection() throws Exception {
+    final ConnectionPool pool = pool();
+
+    try (Connection connection = pool.getConnection();
+      PreparedStatement statement = connection.prepareStatement(FakeDatabase.INVALID_SQL)) {
+      assertThrows(SQLException.class, () -> statement.executeQuery());
+    }
+
+    assertThat(this.database.getClosedCount(), is(equalTo(0)));
+    assertThat(pool.getIdleCount(), is(equalTo(1)));
+  }
+
+  @Test
+  public final void testInvalidConnectionReplaced() throws Exception {
+    this.settings.setValidationInterval(0);
+    final ConnectionPool pool = pool();
+
+    pool.getConnection().close();
+    this.database.setValid(false);
+
+    try (Connection connection = pool.getConnection()) {
+      assertThat(physical(connection), is(equalTo("fake-2")));
+    }
+    assertThat(this.database.getClosedCount(), is(equalTo(1)));
+  }
+
+  @Test
+  public final void testMaxLifetime() throws Exception {
+    this.settings.setMaxLifetime(100);
+    final ConnectionPool pool = pool();
+
+    // A connection that expires while it is lent is closed when it is returned
+    final Connection connection = pool.getConnection();
+    Thread.sleep(150);
+    connection.close();
+
+    assertThat(this.database.getClosedCount(), is(equalTo(1)));
+    assertThat(pool.getIdleCount(), is(equalTo(0)));
+
+    // An idle connection that expires is not lent again
+    pool.getConnection().close();
+    Thread.sleep(150);
+    try (Connection next = pool.getConnection()) {
+      assertThat(physical(next), is(equalTo("fake-3")));
+    }
+  }
+
+  @Test
+  public final void testIdleConnectionsEvicted() throws Exception {
+    this.settings.setMinSize(1);
+    this.settings.setMaxSize(3);
+    this.settings.setIdleTimeout(1);
+    final ConnectionPool pool = pool();
+
+    final Connection first = pool.getConnection();
+    final Connection second = pool.getConnection();
+    final Connection third = pool.getConnection();
+    first.close();
+    second.close();
+    third.close();
+
+    // The connections above the min. size are closed once they have been idle for too long
+    await(() -> pool.getIdleCount() == 1 && this.database.getClosedCount() == 2);
+    assertThat(this.database.getOpenedCount(), is(equalTo(3)));
+  }
+
+  @Test
+  public final void testTransactionRolledBackOnReturn() throws Exception {
+    final ConnectionPool pool = pool();
+
+    try (Connection connection = pool.getConnection()) {
+      connection.setAutoCommit(false);
+    }
+    assertThat(this.database.getRollbackCount(), is(equalTo(1)));
+
+    try (Connection connection = pool.getConnection()) {
+      assertThat(physical(connection), is(equalTo("fake-1")));
+      assertThat(connection.getAutoCommit(), is(true));
+    }
+    assertThat(this.database.getRollbackCount(), is(equalTo(1)));
+  }
+
+  @Test
+  public final void testPoolClosed() throws Exception {
+    final ConnectionPool pool = pool();
+    final Connection lent = pool.getConnection();
+    pool.getConnection().close();
+
+    pool.close();
+    assertThat(this.database.getClosedCount(), is(equalTo(1)));
+    assertThrows(SQLException.class, () -> pool.getConnection());
+
+    // The connections lent are closed when they are returned
+    lent.close();
+    assertThat(this.database.getClosedCount(), is(equalTo(2)));
+    assertThat(this.database.getOpenedCount(), is(equalTo(2)));
+  }
+
+}
@@ -0,0 +1,231 @@
+package es.uvigo.esei.dai.hybridserver.model.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * JDBC driver of a fake database, which records what is done with its connections and statements.
+ * Plain statements fail as if the link to the database were down, and so do the prepared statements
+ * whose SQL is {@link #LOST_SQL}; the ones whose SQL is {@link #INVALID_SQL} fail without breaking
+ * the connection.
+ */
+class FakeDatabase implements Driver, AutoCloseable {
+  static final String LOST_SQL = "SELECT lost";
+  static final String INVALID_SQL = "SELECT invalid";
+
+  private static final AtomicInteger DATABASES = new AtomicInteger();
+
+  private final String url = "jdbc:fake:" + DATABASES.incrementAndGet();
+  private final List<String> opened = Collections.synchronizedList(new ArrayList<>());
+  private final AtomicInteger closedConnections = new AtomicInteger();
+  private final AtomicInteger rollbacks = new AtomicInteger();
+  private final AtomicInteger prepared = new AtomicInteger();
+  private final AtomicInteger closedStatements = new AtomicInteger();
+  private final AtomicInteger closedResults = new AtomicInteger();
+  private volatile boolean valid = true;
+
+  FakeDatabase() throws SQLException {
+    DriverManager.registerDriver(this);
+  }
+
+  String getUrl() {
+    return this.url;
+  }
+
+  int getOpenedCount() {
+    return this.opened.size();
+  }
+
+  int getClosedCount() {
+    return this.closedConnections.get();
+  }
+
+  int getRollbackCount() {
+    return this.rollbacks.get();
+  }
+
+  int getPreparedCount() {
+    return this.prepared.get();
+  }
+
+  int getClosedStatementCount() {
+    return this.closedStatements.get();
+  }
+
+  int getClosedResultCount() {
+    return this.closedResults.get();
+  }
+
+  void setValid(boolean valid) {
+    this.valid = valid;
+  }
+
+  @Override
+  public void close() throws SQLException {
+    DriverManager.deregisterDriver(this);
+  }
+
+  @Override
+  public Connection connect(String url, Properties info) {
+    if (!acceptsURL(url)) {
+      return null;
+    }
+
+    final String name = "fake-" + (this.opened.size() + 1);
+    this.opened.add(name);
+    return proxy(Connection.class, new FakeConnection(name));
+  }
+
+  @Override
+  public boolean acceptsURL(String url) {
+    return this.url.equals(url);
+  }
+
+  @Override
+  public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+    return new DriverPropertyInfo[0];
+  }
+
+  @Override
+  public int getMajorVersion() {
+    return 1;
+  }
+
+  @Override
+  public int getMinorVersion() {
+    return 0;
+  }
+
+  @Override
+  public boolean jdbcCompliant() {
+    return false;
+  }
+
+  @Override
+  public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    throw new SQLFeatureNotSupportedException();
+  }
+
+  private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+    return type.cast(Proxy.newProxyInstance(FakeDatabase.class.getClassLoader(), new Class<?>[] { type }, handler));
+  }
+
+  private static Object defaultValue(Method method) {
+    final Class<?> type = method.getReturnType();
+    if (type == boolean.class) {
+      return false;
+    } else if (type == int.class) {
+      return 0;
+    } else if (type == long.class) {
+      return 0L;
+    }
+    return null;
+  }
+
+  private class FakeConnection implements InvocationHandler {
+    private final String name;
+    private boolean closed = false;
+    private boolean autoCommit = true;
+
+    private FakeConnection(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      switch (method.getName()) {
+        case "close":
+          if (!this.closed) {
+            this.closed = true;
+            closedConnections.incrementAndGet();
+          }
+          return null;
+        case "isClosed":
+          return this.closed;
+        case "isValid":
+          return FakeDatabase.this.valid && !this.closed;
+        case "getAutoCommit":
+          return this.autoCommit;
+        case "setAutoCommit":
+          this.autoCommit = (Boolean) args[0];
+          return null;
+        case "rollback":
+          rollbacks.incrementAndGet();
+          return null;
+        case "createStatement":
+          throw new SQLException("Communications link failure", "08S01");
+        case "prepareStatement":
+          prepared.incrementAndGet();
+          return proxy(PreparedStatement.class, new FakeStatement((String) args[0]));
+        case "toString":
+          return this.name;
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        default:
+          return defaultValue(method);
+      }
+    }
+  }
+
+  private class FakeStatement implements InvocationHandler {
+    private final String sql;
+    private boolean closed = false;
+
+    private FakeStatement(String sql) {
+      this.sql = sql;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      switch (method.getName()) {
+        case "close":
+          if (!this.closed) {
+            this.closed = true;
+            closedStatements.incrementAndGet();
+          }
+          return null;
+        case "isClosed":
+          return this.closed;
+        case "executeQuery":
+          if (this.sql.equals(LOST_SQL)) {
+            throw new SQLException("Communications link failure", "08S01");
+          } else if (this.sql.equals(INVALID_SQL)) {
+            throw new SQLException("Syntax error", "42000");
+          }
+          return proxy(ResultSet.class, (result, call, values) -> {
+            if (call.getName().equals("close")) {
+              closedResults.incrementAndGet();
+              return null;
+            }
+            return defaultValue(call);
+          });
+        case "toString":
+          return this.sql;
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        default:
+          return defaultValue(method);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,95 @@
+package es.uvigo.esei.dai.hybridserver.model.dao;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import es.uvigo.esei.dai.hybridserver.model.entity.Page;
+
+public class PageMapDAOTest {
+  private PageMapDAO dao;
+
+  @BeforeEach
+  public void setUp() {
+    this.dao = new PageMapDAO(Map.of("b", "<html>existing</html>"));
+  }
+
+  private List<String> uuids() throws DAOException {
+    final List<String> uuids = new ArrayList<>();
+    for (Page page : this.dao.list()) {
+      uuids.add(page.getUuid());
+    }
+    return uuids;
+  }
+
+  @Test
+  public final void testAllPagesCreated() throws Exception {
+    assertThat(this.dao.createAll(Arrays.asList(new Page("a", "<html>a</html>"), new Page("c", "<html>c</html>"))), is(true));
+
+    assertThat(uuids(), contains("a", "b", "c"));
+    assertThat(this.dao.get("a").get().getContent(), is(equalTo("<html>a</html>")));
+    assertThat(this.dao.get("c").get().getVersion(), is(equalTo(1)));
+  }
+
+  @Test
+  public final void testNoPageCreatedWhenUuidExists() throws Exception {
+    // The pages before the existing one are removed again
+    final List<Page> pages = Arrays.asList(new Page("a", "<html>a</html>"), new Page("b", "<html>b</html>"),
+      new Page("c", "<html>c</html>"));
+
+    assertThat(this.dao.createAll(pages), is(false));
+
+    assertThat(uuids(), contains("b"));
+    assertThat(this.dao.get("b").get().getContent(), is(equalTo("<html>existing</html>")));
+  }
+
+  @Test
+  public final void testNoPageCreatedWhenUuidRepeated() throws Exception {
+    final List<Page> pages = Arrays.asList(new Page("a", "<html>a</html>"), new Page("c", "<html>c</html>"),
+      new Page("a", "<html>other</html>"));
+
+    assertThat(this.dao.createAll(pages), is(false));
+
+    assertThat(uuids(), contains("b"));
+  }
+
+  @Test
+  public final void testPagesCreatedAfterFailure() throws Exception {
+    // The UUIDs of a failed creation are free again
+    assertThat(this.dao.createAll(Arrays.asList(new Page("a", "<html>a</html>"), new Page("b", "<html>b</html>"))), is(false));
+    assertThat(this.dao.createAll(Arrays.asList(new Page("a", "<html>again</html>"))), is(true));
+
+    assertThat(this.dao.get("a").get().getContent(), is(equalTo("<html>again</html>")));
+  }
+
+  @Test
+  public final void testEmptyList() throws Exception {
+    assertThat(this.dao.createAll(new ArrayList<>()), is(true));
+
+    assertThat(uuids(), contains("b"));
+  }
+
+  @Test
+  public final void testInvalidPages() throws Exception {
+    assertThrows(IllegalArgumentException.class, () -> this.dao.createAll(null));
+    assertThrows(IllegalArgumentException.class, () -> this.dao.createAll(Arrays.asList(new Page("a", "<html>a</html>"), null)));
+    assertThrows(IllegalArgumentException.class, () -> this.dao.createAll(Arrays.asList(new Page(null, "<html>a</html>"))));
+    assertThrows(IllegalArgumentException.class, () -> this.dao.createAll(Arrays.asList(new Page("", "<html>a</html>"))));
+
+    // The pages are validated before any is created
+    assertThrows(IllegalArgumentException.class,
+      () -> this.dao.createAll(Arrays.asList(new Page("a", "<html>a</html>"), new Page("", "<html>b</html>"))));
+    assertThat(uuids(), contains("b"));
+  }
+
+}
@@ -0,0 +1,194 @@
+package es.uvigo.esei.dai.hybridserver.model.dao;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class StatementCacheTest {
+  private FakeDatabase database;
+  private ConnectionPoolSettings settings;
+  private ConnectionPool pool;
+
+  @BeforeEach
+  public void setUp() throws SQLException {
+    this.database = new FakeDatabase();
+    this.settings = new ConnectionPoolSettings();
+    this.settings.setMinSize(0);
+    this.settings.setMaxSize(1);
+    this.settings.setStatementCacheSize(2);
+  }
+
+  @AfterEach
+  public void tearDown() throws SQLException {
+    if (this.pool != null) {
+      this.pool.close();
+    }
+    this.database.close();
+  }
+
+  private ConnectionPool pool() {
+    this.pool = new ConnectionPool(this.database.getUrl(), "user", "password", this.settings);
+    return this.pool;
+  }
+
+  private void query(String sql) throws SQLException {
+    try (Connection connection = this.pool.getConnection();
+      PreparedStatement statement = connection.prepareStatement(sql)) {
+      statement.setString(1, "value");
+      statement.executeQuery();
+    }
+  }
+
+  @Test
+  public final void testStatementReused() throws Exception {
+    final ConnectionPool pool = pool();
+
+    for (int i = 0; i < 10; i++) {
+      query("SELECT 1");
+    }
+
+    assertThat(this.database.getPreparedCount(), is(equalTo(1)));
+    assertThat(this.database.getClosedStatementCount(), is(equalTo(0)));
+    assertThat(pool.getStatementCacheHitCount(), is(equalTo(9L)));
+    assertThat(pool.getStatementCacheMissCount(), is(equalTo(1L)));
+    assertThat(pool.getStatementCacheHitRate(), is(equalTo(0.9)));
+  }
+
+  @Test
+  public final void testResultClosedOnReturn() throws Exception {
+    pool();
+
+    query("SELECT 1");
+    query("SELECT 1");
+
+    assertThat(this.database.getClosedResultCount(), is(equalTo(2)));
+  }
+
+  @Test
+  public final void testStatementOfLentConnection() throws Exception {
+    try (Connection connection = pool().getConnection();
+      PreparedStatement statement = connection.prepareStatement("SELECT 1")) {
+      assertThat(statement.getConnection(), is(sameInstance(connection)));
+    }
+  }
+
+  @Test
+  public final void testStatementClosedTwice() throws Exception {
+    try (Connection connection = pool().getConnection()) {
+      final PreparedStatement statement = connection.prepareStatement("SELECT 1");
+      statement.close();
+      statement.close();
+
+      assertThat(statement.isClosed(), is(true));
+      assertThrows(SQLException.class, () -> statement.executeQuery());
+
+      // The statement was cached once, so it is reused once
+      final PreparedStatement first = connection.prepareStatement("SELECT 1");
+      final PreparedStatement second = connection.prepareStatement("SELECT 1");
+      first.close();
+      second.close();
+    }
+
+    assertThat(this.database.getPreparedCount(), is(equalTo(2)));
+  }
+
+  @Test
+  public final void testSameStatementInUse() throws Exception {
+    try (Connection connection = pool().getConnection();
+      PreparedStatement first = connection.prepareStatement("SELECT 1");
+      PreparedStatement second = connection.prepareStatement("SELECT 1")) {
+      assertThat(first, is(not(sameInstance(second))));
+    }
+
+    // Only one of them is cached, the other one is closed
+    assertThat(this.database.getPreparedCount(), is(equalTo(2)));
+    assertThat(this.database.getClosedStatementCount(), is(equalTo(1)));
+  }
+
+  @Test
+  public final void testLeastRecentlyUsedEvicted() throws Exception {
+    final ConnectionPool pool = pool();
+
+    query("SELECT 1");
+    query("SELECT 2");
+    query("SELECT 1");
+    query("SELECT 3");    // Evicts SELECT 2
+
+    assertThat(this.database.getClosedStatementCount(), is(equalTo(1)));
+
+    query("SELECT 1");
+    query("SELECT 3");
+    assertThat(this.database.getPreparedCount(), is(equalTo(3)));
+
+    query("SELECT 2");
+    assertThat(this.database.getPreparedCount(), is(equalTo(4)));
+    assertThat(this.database.getClosedStatementCount(), is(equalTo(2)));
+    assertThat(pool.getStatementCacheHitCount(), is(equalTo(3L)));
+  }
+
+  @Test
+  public final void testStatementClosedAfterConnectionReturned() throws Exception {
+    final PreparedStatement statement;
+    try (Connection connection = pool().getConnection()) {
+      statement = connection.prepareStatement("SELECT 1");
+    }
+
+    // The connection may be lent again, so its statement is not cached anymore
+    statement.close();
+    assertThat(this.database.getClosedStatementCount(), is(equalTo(1)));
+
+    query("SELECT 1");
+    assertThat(this.database.getPreparedCount(), is(equalTo(2)));
+  }
+
+  @Test
+  public final void testStatementsClosedWithConnection() throws Exception {
+    pool();
+    query("SELECT 1");
+    query("SELECT 2");
+
+    this.pool.close();
+
+    assertThat(this.database.getClosedStatementCount(), is(equalTo(2)));
+    assertThat(this.database.getClosedCount(), is(equalTo(1)));
+  }
+
+  @Test
+  public final void testStatementsClosedWithBrokenConnection() throws Exception {
+    pool();
+    query("SELECT 1");
+
+    try (Connection connection = this.pool.getConnection();
+      PreparedStatement statement = connection.prepareStatement(FakeDatabase.LOST_SQL)) {
+      assertThrows(SQLException.class, () -> statement.executeQuery());
+    }
+
+    assertThat(this.database.getClosedStatementCount(), is(equalTo(2)));
+    assertThat(this.database.getClosedCount(), is(equalTo(1)));
+  }
+
+  @Test
+  public final void testCacheDisabled() throws Exception {
+    this.settings.setStatementCacheSize(0);
+    final ConnectionPool pool = pool();
+
+    query("SELECT 1");
+    query("SELECT 1");
+
+    assertThat(this.database.getPreparedCount(), is(equalTo(2)));
+    assertThat(this.database.getClosedStatementCount(), is(equalTo(2)));
+    assertThat(pool.getStatementCacheMissCount(), is(equalTo(0L)));
+  }
+
+}
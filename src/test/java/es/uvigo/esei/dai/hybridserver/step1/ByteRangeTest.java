@@ -0,0 +1,110 @@
+package es.uvigo.esei.dai.hybridserver.step1;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import es.uvigo.esei.dai.hybridserver.http.ByteRange;
+
+@Tag("request")
+public class ByteRangeTest {
+  private static final long SIZE = 1000;
+
+  private static void assertRange(ByteRange range, long first, long last) {
+    assertThat(range.getFirst(), is(equalTo(first)));
+    assertThat(range.getLast(), is(equalTo(last)));
+    assertThat(range.getLength(), is(equalTo((int) (last - first + 1))));
+  }
+
+  private static ByteRange single(String header) {
+    final List<ByteRange> ranges = ByteRange.parse(header, SIZE);
+    assertThat(ranges, hasSize(1));
+    return ranges.get(0);
+  }
+
+  @Test
+  public final void testClosedRange() {
+    final ByteRange range = single("bytes=0-499");
+
+    assertRange(range, 0, 499);
+    assertThat(range.toContentRange(SIZE), is(equalTo("bytes 0-499/1000")));
+  }
+
+  @Test
+  public final void testOpenRange() {
+    assertRange(single("bytes=500-"), 500, 999);
+  }
+
+  @Test
+  public final void testSuffixRange() {
+    assertRange(single("bytes=-100"), 900, 999);
+    assertRange(single("bytes=-5000"), 0, 999);
+  }
+
+  @Test
+  public final void testRangeLimitedToContent() {
+    assertRange(single("bytes=900-5000"), 900, 999);
+  }
+
+  @Test
+  public final void testUnitAndSpacesAreLenient() {
+    assertRange(single(" BYTES = 10-19 "), 10, 19);
+  }
+
+  @Test
+  public final void testSeveralRanges() {
+    final List<ByteRange> ranges = ByteRange.parse("bytes=20-29, 0-9,-10", SIZE);
+
+    assertThat(ranges, hasSize(3));
+    assertRange(ranges.get(0), 20, 29);
+    assertRange(ranges.get(1), 0, 9);
+    assertRange(ranges.get(2), 990, 999);
+  }
+
+  @Test
+  public final void testUnsatisfiableRanges() {
+    assertThat(ByteRange.parse("bytes=1000-1100", SIZE), is(empty()));
+    assertThat(ByteRange.parse("bytes=-0", SIZE), is(empty()));
+    assertThat(ByteRange.parse("bytes=0-0", 0), is(empty()));
+    assertThat(ByteRange.unsatisfiedContentRange(SIZE), is(equalTo("bytes */1000")));
+  }
+
+  @Test
+  public final void testUnsatisfiableRangesAreDiscarded() {
+    assertRange(single("bytes=2000-,0-0"), 0, 0);
+  }
+
+  @Test
+  public final void testIgnoredHeaders() {
+    for (String header : new String[] {
+      null, "items=0-5", "bytes", "bytes=abc", "bytes=5-2", "bytes=+1-2", "bytes=1-+2", "bytes=1--2", "bytes=0-9,x"
+    }) {
+      assertThat(header, ByteRange.parse(header, SIZE), is(nullValue()));
+    }
+  }
+
+  @Test
+  public final void testTooManyRanges() {
+    final StringBuilder header = new StringBuilder("bytes=0-0");
+    for (int i = 1; i < 17; i++) {
+      header.append(',').append(i * 10).append('-').append(i * 10);
+    }
+
+    assertThat(ByteRange.parse(header.toString(), SIZE), is(nullValue()));
+  }
+
+  @Test
+  public final void testOverlappingRangesLargerThanContent() {
+    assertThat(ByteRange.parse("bytes=0-999,0-999", SIZE), is(nullValue()));
+    assertThat(ByteRange.parse("bytes=0-499,0-499", SIZE), hasSize(2));
+  }
+
+}
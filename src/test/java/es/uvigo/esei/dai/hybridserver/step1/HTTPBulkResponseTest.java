@@ -0,0 +1,154 @@
+package es.uvigo.esei.dai.hybridserver.step1;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import es.uvigo.esei.dai.hybridserver.controler.DefaultPagesController;
+import es.uvigo.esei.dai.hybridserver.controler.PagesController;
+import es.uvigo.esei.dai.hybridserver.handler.Router;
+import es.uvigo.esei.dai.hybridserver.http.HTTPRequest;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponse;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponseStatus;
+import es.uvigo.esei.dai.hybridserver.model.dao.DAOException;
+import es.uvigo.esei.dai.hybridserver.model.dao.PageMapDAO;
+import es.uvigo.esei.dai.hybridserver.model.entity.Page;
+
+@Tag("response")
+public class HTTPBulkResponseTest {
+  private PageMapDAO dao;
+  private Router router;
+
+  @BeforeEach
+  public void setUp() {
+    this.dao = new PageMapDAO();
+    this.router = Router.createDefault();
+  }
+
+  // The requests are parsed from their bytes, as the server does, to keep the repeated parameters
+  private HTTPResponse post(PagesController controller, String content) throws Exception {
+    final String text = "POST /html/bulk HTTP/1.1\r\n"
+      + "Host: localhost\r\n"
+      + "Content-Type: application/x-www-form-urlencoded\r\n"
+      + "Content-Length: " + content.getBytes(StandardCharsets.UTF_8).length + "\r\n"
+      + "\r\n"
+      + content;
+
+    return this.router.handle(new HTTPRequest(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8))), controller);
+  }
+
+  private HTTPResponse post(String content) throws Exception {
+    return post(new DefaultPagesController(this.dao), content);
+  }
+
+  private static List<String> uuids(HTTPResponse response) {
+    return Arrays.asList(response.getContent().split("\n"));
+  }
+
+  @Test
+  public final void testPagesCreated() throws Exception {
+    final HTTPResponse response = post("html=%3Chtml%3Ea%3C%2Fhtml%3E&html=b+c&html=%C3%B1");
+
+    assertThat(response.getStatus(), is(equalTo(HTTPResponseStatus.S200)));
+    assertThat(response.getParameters(), hasEntry("Content-Type", "text/plain"));
+
+    // The UUIDs are in the order of the contents
+    final List<String> uuids = uuids(response);
+    assertThat(uuids, hasSize(3));
+    assertThat(this.dao.get(uuids.get(0)).get().getContent(), is(equalTo("<html>a</html>")));
+    assertThat(this.dao.get(uuids.get(1)).get().getContent(), is(equalTo("b c")));
+    assertThat(this.dao.get(uuids.get(2)).get().getContent(), is(equalTo("ñ")));
+    assertThat(this.dao.list(), hasSize(3));
+  }
+
+  @Test
+  public final void testSameContentsCreateDistinctPages() throws Exception {
+    final List<String> uuids = uuids(post("html=a&html=a"));
+
+    assertThat(uuids, hasSize(2));
+    assertThat(uuids.get(0), is(not(equalTo(uuids.get(1)))));
+  }
+
+  @Test
+  public final void testRetriedWhenUuidInUse() throws Exception {
+    // The first UUIDs are reported as in use, so the pages are created again with others
+    final AtomicInteger attempts = new AtomicInteger();
+    final PagesController controller = new DefaultPagesController(this.dao) {
+      @Override
+      public boolean createAll(List<Page> pages) throws DAOException {
+        return attempts.incrementAndGet() > 1 && super.createAll(pages);
+      }
+    };
+
+    final HTTPResponse response = post(controller, "html=a&html=b");
+
+    assertThat(response.getStatus(), is(equalTo(HTTPResponseStatus.S200)));
+    assertThat(attempts.get(), is(equalTo(2)));
+    assertThat(this.dao.list(), hasSize(2));
+  }
+
+  @Test
+  public final void testWithoutContents() throws Exception {
+    assertThat(post("other=a").getStatus(), is(equalTo(HTTPResponseStatus.S400)));
+    assertThat(this.dao.list(), hasSize(0));
+  }
+
+  @Test
+  public final void testWithUuid() throws Exception {
+    assertThat(post("html=a&uuid=6df1047e-cf19-4a83-8cf3-38f5e53f7725").getStatus(), is(equalTo(HTTPResponseStatus.S400)));
+    assertThat(this.dao.list(), hasSize(0));
+  }
+
+  @Test
+  public final void testWithoutContentType() throws Exception {
+    final String text = "POST /html/bulk HTTP/1.1\r\n"
+      + "Host: localhost\r\n"
+      + "Content-Length: 6\r\n"
+      + "\r\n"
+      + "html=a";
+
+    final HTTPResponse response = this.router.handle(new HTTPRequest(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8))), new DefaultPagesController(this.dao));
+
+    assertThat(response.getStatus(), is(equalTo(HTTPResponseStatus.S400)));
+  }
+
+  @Test
+  public final void testDatabaseError() throws Exception {
+    final PagesController controller = new DefaultPagesController(this.dao) {
+      @Override
+      public boolean createAll(List<Page> pages) throws DAOException {
+        throw new DAOException("Database down");
+      }
+    };
+
+    assertThat(post(controller, "html=a").getStatus(), is(equalTo(HTTPResponseStatus.S500)));
+  }
+
+  @Test
+  public final void testManyPages() throws Exception {
+    final StringBuilder content = new StringBuilder("html=0");
+    for (int i = 1; i < 1200; i++) {
+      content.append("&html=").append(i);
+    }
+
+    final List<String> uuids = uuids(post(content.toString()));
+
+    assertThat(uuids, hasSize(1200));
+    assertThat(this.dao.get(uuids.get(1199)).get().getContent(), is(equalTo("1199")));
+    assertThat(this.dao.list(), hasSize(1200));
+  }
+
+}
@@ -0,0 +1,182 @@
+package es.uvigo.esei.dai.hybridserver.step1;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import es.uvigo.esei.dai.hybridserver.controler.DefaultPagesController;
+import es.uvigo.esei.dai.hybridserver.handler.PageCompressor;
+import es.uvigo.esei.dai.hybridserver.handler.Router;
+import es.uvigo.esei.dai.hybridserver.http.HTTPRequest;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponse;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponseStatus;
+import es.uvigo.esei.dai.hybridserver.model.dao.PageMapDAO;
+import es.uvigo.esei.dai.hybridserver.model.entity.Page;
+
+@Tag("response")
+public class HTTPCompressionResponseTest {
+  private static final int MIN_SIZE = 256;
+  private static final String LARGE_UUID = "6df1047e-cf19-4a83-8cf3-38f5e53f7725";
+  private static final String SMALL_UUID = "79e01232-5ea4-41c8-8331-1c1880a1d3c8";
+  private static final String DENSE_UUID = "a35b6c5e-22d6-4707-98b4-462482e26c9e";
+  private static final String LARGE = "<html><body>" + "Hybrid Server ñ ".repeat(100) + "</body></html>";
+  private static final String SMALL = "<html><body>Hybrid Server</body></html>";
+
+  private PageMapDAO dao;
+  private Router router;
+
+  @BeforeEach
+  public void setUp() {
+    this.dao = new PageMapDAO(Map.of(LARGE_UUID, LARGE, SMALL_UUID, SMALL, DENSE_UUID, dense(MIN_SIZE)));
+    this.router = Router.createDefault(new PageCompressor(MIN_SIZE));
+  }
+
+  // Pseudo-random ASCII, which does not get smaller once compressed
+  private static String dense(int length) {
+    final StringBuilder content = new StringBuilder(length);
+    long seed = 42;
+    for (int i = 0; i < length; i++) {
+      seed = seed * 6364136223846793005L + 1442695040888963407L;
+      content.append((char) (33 + (seed >>> 33) % 94));
+    }
+    return content.toString();
+  }
+
+  private HTTPResponse request(Router router, String method, String uuid, String acceptEncoding) throws Exception {
+    final String text = method + " /html?uuid=" + uuid + " HTTP/1.1\r\n"
+      + "Host: localhost\r\n"
+      + (acceptEncoding == null ? "" : "Accept-Encoding: " + acceptEncoding + "\r\n")
+      + "\r\n";
+
+    return router.handle(new HTTPRequest(new StringReader(text)), new DefaultPagesController(this.dao));
+  }
+
+  private HTTPResponse get(String uuid, String acceptEncoding) throws Exception {
+    return request(this.router, "GET", uuid, acceptEncoding);
+  }
+
+  private static String decode(InputStream in) throws Exception {
+    try (in) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+  @Test
+  public final void testGzip() throws Exception {
+    final HTTPResponse response = get(LARGE_UUID, "gzip, deflate");
+
+    assertThat(response.getStatus(), is(equalTo(HTTPResponseStatus.S200)));
+    assertThat(response.getParameters(), hasEntry("Content-Encoding", "gzip"));
+    assertThat(response.getParameters(), hasEntry("Vary", "Accept-Encoding"));
+    assertThat(response.getParameters(), hasEntry("Content-Length", Integer.toString(response.getContentBytes().length)));
+    assertThat(response.getContentBytes().length, is(lessThan(LARGE.getBytes(StandardCharsets.UTF_8).length)));
+    assertThat(decode(new GZIPInputStream(new ByteArrayInputStream(response.getContentBytes()))), is(equalTo(LARGE)));
+  }
+
+  @Test
+  public final void testDeflatePreferredByQuality() throws Exception {
+    final HTTPResponse response = get(LARGE_UUID, "gzip;q=0.5, deflate");
+
+    assertThat(response.getParameters(), hasEntry("Content-Encoding", "deflate"));
+    assertThat(decode(new InflaterInputStream(new ByteArrayInputStream(response.getContentBytes()))), is(equalTo(LARGE)));
+  }
+
+  @Test
+  public final void testWildcard() throws Exception {
+    assertThat(get(LARGE_UUID, "*").getParameters(), hasEntry("Content-Encoding", "gzip"));
+    assertThat(get(LARGE_UUID, "gzip;q=0, *;q=0.1").getParameters(), hasEntry("Content-Encoding", "deflate"));
+  }
+
+  @Test
+  public final void testNoAcceptableCoding() throws Exception {
+    for (String acceptEncoding : new String[] { null, "identity", "br", "gzip;q=0, deflate;q=0", "*;q=0" }) {
+      final HTTPResponse response = get(LARGE_UUID, acceptEncoding);
+
+      // The response still depends on the header
+      assertThat(response.getParameters(), not(hasKey("Content-Encoding")));
+      assertThat(response.getParameters(), hasEntry("Vary", "Accept-Encoding"));
+      assertThat(new String(response.getContentBytes(), StandardCharsets.UTF_8), is(equalTo(LARGE)));
+    }
+  }
+
+  @Test
+  public final void testSmallPageNotCompressed() throws Exception {
+    final HTTPResponse response = get(SMALL_UUID, "gzip");
+
+    assertThat(response.getParameters(), not(hasKey("Content-Encoding")));
+    assertThat(response.getParameters(), not(hasKey("Vary")));
+    assertThat(new String(response.getContentBytes(), StandardCharsets.UTF_8), is(equalTo(SMALL)));
+  }
+
+  @Test
+  public final void testNotSmallerPageNotCompressed() throws Exception {
+    for (int i = 0; i < 2; i++) {
+      final HTTPResponse response = get(DENSE_UUID, "gzip");
+
+      assertThat(response.getParameters(), not(hasKey("Content-Encoding")));
+      assertThat(response.getParameters(), hasEntry("Vary", "Accept-Encoding"));
+      assertThat(response.getParameters(), hasEntry("Content-Length", Integer.toString(MIN_SIZE)));
+    }
+  }
+
+  @Test
+  public final void testHeadHasLengthOfCompressedContent() throws Exception {
+    final HTTPResponse get = get(LARGE_UUID, "gzip");
+    final HTTPResponse head = request(this.router, "HEAD", LARGE_UUID, "gzip");
+
+    assertThat(head.getParameters(), hasEntry("Content-Encoding", "gzip"));
+    assertThat(head.getParameters(), hasEntry("Content-Length", get.getParameters().get("Content-Length")));
+    assertThat(head.getContentBytes(), is(nullValue()));
+  }
+
+  @Test
+  public final void testCompressedContentReused() throws Exception {
+    final byte[] first = get(LARGE_UUID, "gzip").getContentBytes();
+
+    assertThat(get(LARGE_UUID, "gzip").getContentBytes(), is(sameInstance(first)));
+    assertThat(get(LARGE_UUID, "deflate").getContentBytes(), is(not(sameInstance(first))));
+  }
+
+  @Test
+  public final void testNewVersionCompressedAgain() throws Exception {
+    final byte[] first = get(LARGE_UUID, "gzip").getContentBytes();
+
+    this.dao.update(new Page(LARGE_UUID, LARGE + "<!-- v2 -->"));
+    final HTTPResponse response = get(LARGE_UUID, "gzip");
+
+    assertThat(response.getContentBytes(), is(not(sameInstance(first))));
+    assertThat(decode(new GZIPInputStream(new ByteArrayInputStream(response.getContentBytes()))),
+      is(equalTo(LARGE + "<!-- v2 -->")));
+  }
+
+  @Test
+  public final void testCacheBoundedByBytes() throws Exception {
+    // Not even one compressed content fits, so every response is compressed again
+    final Router uncached = Router.createDefault(new PageCompressor(MIN_SIZE, 64));
+    final byte[] first = request(uncached, "GET", LARGE_UUID, "gzip").getContentBytes();
+
+    assertThat(request(uncached, "GET", LARGE_UUID, "gzip").getContentBytes(), is(not(sameInstance(first))));
+
+    final Router disabled = Router.createDefault(new PageCompressor(MIN_SIZE, 0));
+    assertThat(request(disabled, "GET", LARGE_UUID, "gzip").getContentBytes(), is(equalTo(first)));
+  }
+
+}
@@ -0,0 +1,166 @@
+package es.uvigo.esei.dai.hybridserver.step1;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.StringReader;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import es.uvigo.esei.dai.hybridserver.controler.DefaultPagesController;
+import es.uvigo.esei.dai.hybridserver.handler.PageCompressor;
+import es.uvigo.esei.dai.hybridserver.handler.Router;
+import es.uvigo.esei.dai.hybridserver.http.HTTPRequest;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponse;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponseStatus;
+import es.uvigo.esei.dai.hybridserver.model.dao.PageMapDAO;
+import es.uvigo.esei.dai.hybridserver.model.entity.Page;
+
+@Tag("response")
+public class HTTPConditionalResponseTest {
+  private static final String UUID = "6df1047e-cf19-4a83-8cf3-38f5e53f7725";
+  private static final String CONTENT = "<html><body>" + "Hybrid Server ".repeat(100) + "</body></html>";
+  private static final String TAG = "\"" + UUID + "-1\"";
+
+  private PageMapDAO dao;
+  private Router router;
+
+  @BeforeEach
+  public void setUp() {
+    this.dao = new PageMapDAO(Map.of(UUID, CONTENT));
+    this.router = Router.createDefault(new PageCompressor(256));
+  }
+
+  private HTTPResponse request(String method, String uuid, String... headers) throws Exception {
+    final StringBuilder text = new StringBuilder(method).append(" /html?uuid=").append(uuid).append(" HTTP/1.1\r\n")
+      .append("Host: localhost\r\n");
+    for (String header : headers) {
+      text.append(header).append("\r\n");
+    }
+    text.append("\r\n");
+
+    return this.router.handle(new HTTPRequest(new StringReader(text.toString())), new DefaultPagesController(this.dao));
+  }
+
+  private HTTPResponse get(String... headers) throws Exception {
+    return request("GET", UUID, headers);
+  }
+
+  private static void assertNotModified(HTTPResponse response) {
+    assertThat(response.getStatus(), is(equalTo(HTTPResponseStatus.S304)));
+    assertThat(response.getParameters(), hasKey("Last-Modified"));
+    assertThat(response.getContent(), is(nullValue()));
+    assertThat(response.getContentBytes(), is(nullValue()));
+  }
+
+  @Test
+  public final void testValidators() throws Exception {
+    final HTTPResponse response = get();
+
+    assertThat(response.getStatus(), is(equalTo(HTTPResponseStatus.S200)));
+    assertThat(response.getParameters(), hasEntry("ETag", TAG));
+    assertThat(response.getParameters().get("Last-Modified"), is(notNullValue()));
+  }
+
+  @Test
+  public final void testTagOfCompressedContent() throws Exception {
+    assertThat(get("Accept-Encoding: gzip").getParameters(), hasEntry("ETag", "\"" + UUID + "-1-gzip\""));
+    assertThat(get("Accept-Encoding: deflate").getParameters(), hasEntry("ETag", "\"" + UUID + "-1-deflate\""));
+  }
+
+  @Test
+  public final void testIfNoneMatch() throws Exception {
+    final HTTPResponse response = get("If-None-Match: " + TAG);
+
+    assertNotModified(response);
+    assertThat(response.getParameters(), hasEntry("ETag", TAG));
+    assertThat(response.getParameters(), hasEntry("X-Version", "1"));
+  }
+
+  @Test
+  public final void testIfNoneMatchIgnoresCoding() throws Exception {
+    // A tag of the compressed content validates the uncompressed one, and the other way round
+    final String gzipTag = "\"" + UUID + "-1-gzip\"";
+
+    final HTTPResponse response = get("If-None-Match: " + gzipTag);
+    assertNotModified(response);
+    assertThat(response.getParameters(), hasEntry("ETag", gzipTag));
+
+    assertNotModified(get("Accept-Encoding: gzip", "If-None-Match: " + TAG));
+  }
+
+  @Test
+  public final void testIfNoneMatchWeakAndListedTags() throws Exception {
+    assertNotModified(get("If-None-Match: W/" + TAG));
+    assertNotModified(get("If-None-Match: \"other-1\", " + TAG));
+
+    final HTTPResponse any = get("If-None-Match: *");
+    assertNotModified(any);
+    assertThat(any.getParameters(), not(hasKey("ETag")));
+  }
+
+  @Test
+  public final void testIfNoneMatchWithOtherTag() throws Exception {
+    assertThat(get("If-None-Match: \"" + UUID + "-2\"").getStatus(), is(equalTo(HTTPResponseStatus.S200)));
+    assertThat(get("If-None-Match: \"" + UUID + "-1-gzip-x\"").getStatus(), is(equalTo(HTTPResponseStatus.S200)));
+    assertThat(get("If-None-Match: \"" + UUID + "-10\"").getStatus(), is(equalTo(HTTPResponseStatus.S200)));
+  }
+
+  @Test
+  public final void testIfNoneMatchAfterUpdate() throws Exception {
+    this.dao.update(new Page(UUID, CONTENT + "<!-- v2 -->"));
+
+    final HTTPResponse response = get("If-None-Match: " + TAG);
+    assertThat(response.getStatus(), is(equalTo(HTTPResponseStatus.S200)));
+    assertThat(response.getParameters(), hasEntry("ETag", "\"" + UUID + "-2\""));
+  }
+
+  @Test
+  public final void testIfModifiedSince() throws Exception {
+    final String lastModified = get().getParameters().get("Last-Modified");
+
+    assertNotModified(get("If-Modified-Since: " + lastModified));
+    assertThat(get("If-Modified-Since: Mon, 01 Jan 2001 00:00:00 GMT").getStatus(), is(equalTo(HTTPResponseStatus.S200)));
+    assertThat(get("If-Modified-Since: yesterday").getStatus(), is(equalTo(HTTPResponseStatus.S200)));
+  }
+
+  @Test
+  public final void testIfModifiedSinceAfterUpdate() throws Exception {
+    // The page changes within the same second its date was sent, so the date cannot tell both versions apart
+    final String lastModified = get().getParameters().get("Last-Modified");
+    this.dao.update(new Page(UUID, CONTENT + "<!-- v2 -->"));
+
+    final HTTPResponse response = get("If-Modified-Since: " + lastModified);
+    assertThat(response.getStatus(), is(equalTo(HTTPResponseStatus.S200)));
+    assertThat(response.getParameters(), hasEntry("ETag", "\"" + UUID + "-2\""));
+  }
+
+  @Test
+  public final void testIfNoneMatchTakesPrecedence() throws Exception {
+    final String lastModified = get().getParameters().get("Last-Modified");
+
+    assertThat(get("If-None-Match: \"other-1\"", "If-Modified-Since: " + lastModified).getStatus(),
+      is(equalTo(HTTPResponseStatus.S200)));
+  }
+
+  @Test
+  public final void testConditionalHead() throws Exception {
+    assertNotModified(request("HEAD", UUID, "If-None-Match: " + TAG));
+  }
+
+  @Test
+  public final void testConditionalMissingPage() throws Exception {
+    assertThat(request("GET", "79e01232-5ea4-41c8-8331-1c1880a1d3c8", "If-None-Match: *").getStatus(),
+      is(equalTo(HTTPResponseStatus.S404)));
+  }
+
+}
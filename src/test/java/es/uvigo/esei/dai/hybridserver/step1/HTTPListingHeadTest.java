@@ -0,0 +1,90 @@
+package es.uvigo.esei.dai.hybridserver.step1;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import es.uvigo.esei.dai.hybridserver.controler.DefaultPagesController;
+import es.uvigo.esei.dai.hybridserver.handler.PageCompressor;
+import es.uvigo.esei.dai.hybridserver.handler.Router;
+import es.uvigo.esei.dai.hybridserver.http.HTTPRequest;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponse;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponseStatus;
+import es.uvigo.esei.dai.hybridserver.model.dao.PageMapDAO;
+import es.uvigo.esei.dai.hybridserver.model.dao.PageSummaryCursor;
+
+@Tag("response")
+public class HTTPListingHeadTest {
+  private static final String UUID = "6df1047e-cf19-4a83-8cf3-38f5e53f7725";
+
+  private AtomicInteger cursors;
+  private PageMapDAO dao;
+  private Router router;
+
+  @BeforeEach
+  public void setUp() {
+    this.cursors = new AtomicInteger();
+    this.dao = new PageMapDAO(Map.of(UUID, "<html><body>Hybrid Server</body></html>")) {
+      @Override
+      public PageSummaryCursor openSummaryCursor(String after, int limit, int batchSize) {
+        cursors.incrementAndGet();
+        return super.openSummaryCursor(after, limit, batchSize);
+      }
+    };
+    this.router = Router.createDefault(new PageCompressor(256));
+  }
+
+  private HTTPResponse request(String method, String resource) throws Exception {
+    final String text = method + " " + resource + " HTTP/1.1\r\nHost: localhost\r\n\r\n";
+
+    return this.router.handle(new HTTPRequest(new StringReader(text)), new DefaultPagesController(this.dao));
+  }
+
+  @Test
+  public final void testHeadDoesNotReadPages() throws Exception {
+    final HTTPResponse response = request("HEAD", "/html");
+
+    assertThat(response.getStatus(), is(equalTo(HTTPResponseStatus.S200)));
+    assertThat(response.getParameters(), hasEntry("Content-Type", "text/html"));
+    assertThat(response.getParameters(), hasEntry("Transfer-Encoding", "chunked"));
+    assertThat(response.getContentStream(), is(nullValue()));
+    assertThat(this.cursors.get(), is(equalTo(0)));
+  }
+
+  @Test
+  public final void testHeadOfListingPageDoesNotReadPages() throws Exception {
+    final HTTPResponse response = request("HEAD", "/html?limit=10");
+
+    assertThat(response.getStatus(), is(equalTo(HTTPResponseStatus.S200)));
+    assertThat(response.getContentStream(), is(nullValue()));
+    assertThat(this.cursors.get(), is(equalTo(0)));
+  }
+
+  @Test
+  public final void testGetReadsPages() throws Exception {
+    final HTTPResponse response = request("GET", "/html");
+
+    assertThat(response.getStatus(), is(equalTo(HTTPResponseStatus.S200)));
+    assertThat(response.getContentStream(), is(notNullValue()));
+    assertThat(this.cursors.get(), is(equalTo(1)));
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    response.getContentStream().writeTo(out);
+    assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8), containsString(UUID));
+  }
+
+}
@@ -0,0 +1,140 @@
+package es.uvigo.esei.dai.hybridserver.step1;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import es.uvigo.esei.dai.hybridserver.PageNotFoundException;
+import es.uvigo.esei.dai.hybridserver.controler.DefaultPagesController;
+import es.uvigo.esei.dai.hybridserver.controler.PagesController;
+import es.uvigo.esei.dai.hybridserver.handler.Router;
+import es.uvigo.esei.dai.hybridserver.http.HTTPRequest;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponse;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponseStatus;
+import es.uvigo.esei.dai.hybridserver.model.dao.DAOException;
+import es.uvigo.esei.dai.hybridserver.model.dao.PageMapDAO;
+import es.uvigo.esei.dai.hybridserver.model.entity.Page;
+import es.uvigo.esei.dai.hybridserver.model.entity.PageSummary;
+
+@Tag("response")
+public class HTTPRangeResponseTest {
+  private static final String UUID = "6df1047e-cf19-4a83-8cf3-38f5e53f7725";
+  private static final String CONTENT = "<html><body>0123456789abcdefghij</body></html>";
+  private static final String CHANGED = "<html><body>ABCDEFGHIJ0123456789</body></html>";
+
+  private PageMapDAO dao;
+  private Router router;
+
+  @BeforeEach
+  public void setUp() {
+    this.dao = new PageMapDAO(Map.of(UUID, CONTENT));
+    this.router = Router.createDefault();
+  }
+
+  private HTTPResponse get(PagesController controller, String range) throws Exception {
+    final String text = "GET /html?uuid=" + UUID + " HTTP/1.1\r\n"
+      + "Host: localhost\r\n"
+      + "Range: " + range + "\r\n"
+      + "\r\n";
+
+    return this.router.handle(new HTTPRequest(new StringReader(text)), controller);
+  }
+
+  private HTTPResponse get(String range) throws Exception {
+    return get(new DefaultPagesController(this.dao), range);
+  }
+
+  private static String content(HTTPResponse response) {
+    return new String(response.getContentBytes(), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public final void testSingleRange() throws Exception {
+    final HTTPResponse response = get("bytes=12-21");
+
+    assertThat(response.getStatus(), is(equalTo(HTTPResponseStatus.S206)));
+    assertThat(response.getParameters(), hasEntry("Content-Range", "bytes 12-21/" + CONTENT.length()));
+    assertThat(content(response), is(equalTo("0123456789")));
+  }
+
+  @Test
+  public final void testSuffixRange() throws Exception {
+    final HTTPResponse response = get("bytes=-7");
+
+    assertThat(response.getStatus(), is(equalTo(HTTPResponseStatus.S206)));
+    assertThat(content(response), is(equalTo("</html>")));
+  }
+
+  @Test
+  public final void testUnsatisfiableRange() throws Exception {
+    final HTTPResponse response = get("bytes=" + CONTENT.length() + "-");
+
+    assertThat(response.getStatus(), is(equalTo(HTTPResponseStatus.S416)));
+    assertThat(response.getParameters(), hasEntry("Content-Range", "bytes */" + CONTENT.length()));
+  }
+
+  @Test
+  public final void testIgnoredRange() throws Exception {
+    final HTTPResponse response = get("items=0-5");
+
+    assertThat(response.getStatus(), is(equalTo(HTTPResponseStatus.S200)));
+    assertThat(content(response), is(equalTo(CONTENT)));
+  }
+
+  @Test
+  public final void testMultipartRanges() throws Exception {
+    final HTTPResponse response = get("bytes=12-13,22-23");
+
+    assertThat(response.getStatus(), is(equalTo(HTTPResponseStatus.S206)));
+
+    final String type = response.getParameters().get("Content-Type");
+    assertThat(type, startsWith("multipart/byteranges; boundary="));
+
+    final String boundary = type.substring(type.indexOf('=') + 1);
+    final String size = "/" + CONTENT.length();
+    assertThat(content(response), is(equalTo(
+      "--" + boundary + "\r\n"
+      + "Content-Type: text/html\r\n"
+      + "Content-Range: bytes 12-13" + size + "\r\n"
+      + "\r\n"
+      + "01\r\n"
+      + "--" + boundary + "\r\n"
+      + "Content-Type: text/html\r\n"
+      + "Content-Range: bytes 22-23" + size + "\r\n"
+      + "\r\n"
+      + "ab\r\n"
+      + "--" + boundary + "--\r\n"
+    )));
+  }
+
+  @Test
+  public final void testPageChangedAfterSummary() throws Exception {
+    // The page is updated between its summary and the read of the range, keeping its length
+    final PagesController controller = new DefaultPagesController(this.dao) {
+      @Override
+      public PageSummary getSummary(String uuid) throws DAOException, PageNotFoundException {
+        final PageSummary summary = super.getSummary(uuid);
+        dao.update(new Page(uuid, CHANGED));
+        return summary;
+      }
+    };
+
+    final HTTPResponse response = get(controller, "bytes=12-21");
+
+    // The range is cut from the new version, never mixed with the headers of the old one
+    assertThat(response.getStatus(), is(equalTo(HTTPResponseStatus.S206)));
+    assertThat(response.getParameters(), hasEntry("X-Version", "2"));
+    assertThat(content(response), is(equalTo("ABCDEFGHIJ")));
+  }
+
+}
@@ -0,0 +1,183 @@
+package es.uvigo.esei.dai.hybridserver.step1;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import es.uvigo.esei.dai.hybridserver.http.HTTPParseException;
+import es.uvigo.esei.dai.hybridserver.http.HTTPRequest;
+import es.uvigo.esei.dai.hybridserver.http.HTTPRequestDecoder;
+import es.uvigo.esei.dai.hybridserver.http.HTTPRequestDecoder.Status;
+import es.uvigo.esei.dai.hybridserver.http.HTTPRequestMethod;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponseStatus;
+
+@Tag("request")
+public class HTTPRequestDecoderTest {
+  private static final String GET_TEXT =
+    "GET /hello HTTP/1.1\r\n"
+    + "Host: localhost\r\n"
+    + "\r\n";
+
+  private static final String POST_TEXT =
+    "POST /html HTTP/1.1\r\n"
+    + "Host: localhost\r\n"
+    + "Content-Type: application/x-www-form-urlencoded\r\n"
+    + "Content-Length: 9\r\n"
+    + "\r\n"
+    + "html=abcd";
+
+  private HTTPRequestDecoder decoder;
+
+  @BeforeEach
+  public void setUp() {
+    this.decoder = new HTTPRequestDecoder(1024, 16);
+  }
+
+  private Status feed(String text) {
+    return this.decoder.feed(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static String post(String contentLengthHeaders, String content) {
+    return "POST /html HTTP/1.1\r\n"
+      + "Host: localhost\r\n"
+      + "Content-Type: application/x-www-form-urlencoded\r\n"
+      + contentLengthHeaders
+      + "\r\n"
+      + content;
+  }
+
+  @Test
+  public final void testWholeRequest() throws Exception {
+    assertThat(feed(POST_TEXT), is(equalTo(Status.COMPLETE)));
+
+    final HTTPRequest request = this.decoder.takeRequest();
+    assertThat(request.toString(), is(equalTo(POST_TEXT)));
+    assertThat(this.decoder.hasBufferedBytes(), is(false));
+  }
+
+  @Test
+  public final void testRequestSplitInChunks() throws Exception {
+    // Every byte on its own, so the end of the head and the content are split everywhere
+    for (int i = 0; i < POST_TEXT.length() - 1; i++) {
+      assertThat(feed(POST_TEXT.substring(i, i + 1)), is(equalTo(Status.NEED_MORE)));
+    }
+    assertThat(feed(POST_TEXT.substring(POST_TEXT.length() - 1)), is(equalTo(Status.COMPLETE)));
+
+    final HTTPRequest request = this.decoder.takeRequest();
+    assertThat(request.getResourceParameters().get("html"), is(equalTo("abcd")));
+  }
+
+  @Test
+  public final void testHeadAvailableBeforeContent() throws Exception {
+    assertThat(feed(POST_TEXT.substring(0, POST_TEXT.length() - 4)), is(equalTo(Status.NEED_MORE)));
+    assertThat(this.decoder.getHead(), is(notNullValue()));
+    assertThat(this.decoder.getHead().getMethod(), is(equalTo(HTTPRequestMethod.POST)));
+    assertThrows(IllegalStateException.class, () -> this.decoder.takeRequest());
+
+    assertThat(feed("abcd"), is(equalTo(Status.COMPLETE)));
+    assertThat(this.decoder.takeRequest().getContent(), is(equalTo("html=abcd")));
+  }
+
+  @Test
+  public final void testPipelinedRequests() throws Exception {
+    assertThat(feed(POST_TEXT + GET_TEXT + "GET /"), is(equalTo(Status.COMPLETE)));
+
+    assertThat(this.decoder.takeRequest().getMethod(), is(equalTo(HTTPRequestMethod.POST)));
+    assertThat(this.decoder.decode(), is(equalTo(Status.COMPLETE)));
+    assertThat(this.decoder.takeRequest().getResourceName(), is(equalTo("hello")));
+    assertThat(this.decoder.decode(), is(equalTo(Status.NEED_MORE)));
+    assertThat(this.decoder.hasBufferedBytes(), is(true));
+
+    assertThat(feed("bye HTTP/1.1\r\nHost: localhost\r\n\r\n"), is(equalTo(Status.COMPLETE)));
+    assertThat(this.decoder.takeRequest().getResourceName(), is(equalTo("bye")));
+  }
+
+  @Test
+  public final void testWhitespaceAroundContentLength() throws Exception {
+    final String text = post("Content-Length : 9\r\n", "html=abcd");
+
+    assertThat(feed(text), is(equalTo(Status.COMPLETE)));
+
+    final HTTPRequest request = this.decoder.takeRequest();
+    assertThat(request.getContentLength(), is(equalTo(9)));
+    assertThat(request.getContent(), is(equalTo("html=abcd")));
+  }
+
+  @Test
+  public final void testContentLengthWithSignAndCase() throws Exception {
+    assertThat(feed(post("content-length:  +9 \r\n", "html=abcd")), is(equalTo(Status.COMPLETE)));
+    assertThat(this.decoder.takeRequest().getContent(), is(equalTo("html=abcd")));
+  }
+
+  @Test
+  public final void testDuplicateContentLength() throws Exception {
+    assertThat(feed(post("Content-Length: 9\r\nContent-Length: 9\r\n", "html=abcd")), is(equalTo(Status.COMPLETE)));
+    assertThat(this.decoder.takeRequest().getContent(), is(equalTo("html=abcd")));
+  }
+
+  @Test
+  public final void testConflictingContentLength() {
+    assertThat(feed(post("Content-Length: 9\r\nContent-Length: 4\r\n", "html=abcd")), is(equalTo(Status.ERROR)));
+    assertThat(this.decoder.getError(), is(notNullValue()));
+    assertThrows(HTTPParseException.class, () -> this.decoder.takeRequest());
+  }
+
+  @Test
+  public final void testInvalidContentLength() {
+    assertThat(feed(post("Content-Length: -9\r\n", "html=abcd")), is(equalTo(Status.ERROR)));
+  }
+
+  @Test
+  public final void testInvalidHeadBeforeContent() {
+    assertThat(feed("GET /hello HTTP/1.0\r\n\r\n"), is(equalTo(Status.ERROR)));
+    assertThat(feed(GET_TEXT), is(equalTo(Status.ERROR)));
+  }
+
+  @Test
+  public final void testHeadTooLarge() {
+    final StringBuilder text = new StringBuilder("GET /hello HTTP/1.1\r\n");
+    while (text.length() <= 1024) {
+      text.append("X-Header: value\r\n");
+    }
+
+    assertThat(feed(text.toString()), is(equalTo(Status.ERROR)));
+    assertThat(this.decoder.getError().getStatus(), is(equalTo(HTTPResponseStatus.S400)));
+  }
+
+  @Test
+  public final void testContentTooLarge() {
+    // The request is rejected as soon as its head is received
+    assertThat(feed(post("Content-Length: 17\r\n", "")), is(equalTo(Status.ERROR)));
+    assertThat(this.decoder.getError().getStatus(), is(equalTo(HTTPResponseStatus.S413)));
+  }
+
+  @Test
+  public final void testContinueExpected() throws Exception {
+    assertThat(feed(post("Content-Length: 9\r\nExpect: 100-continue\r\n", "")), is(equalTo(Status.NEED_MORE)));
+    assertThat(this.decoder.isContinueExpected(), is(true));
+
+    this.decoder.continueSent();
+    assertThat(this.decoder.isContinueExpected(), is(false));
+
+    assertThat(feed("html=abcd"), is(equalTo(Status.COMPLETE)));
+    assertThat(this.decoder.takeRequest().getContent(), is(equalTo("html=abcd")));
+  }
+
+  @Test
+  public final void testUnsupportedExpectation() {
+    assertThat(feed(post("Content-Length: 9\r\nExpect: something\r\n", "")), is(equalTo(Status.ERROR)));
+    assertThat(this.decoder.getError().getStatus(), is(equalTo(HTTPResponseStatus.S417)));
+    assertThat(this.decoder.getHead(), is(nullValue()));
+  }
+
+}
@@ -0,0 +1,212 @@
+package es.uvigo.esei.dai.hybridserver.step1;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.aMapWithSize;
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import es.uvigo.esei.dai.hybridserver.http.HTTPParseException;
+import es.uvigo.esei.dai.hybridserver.http.HTTPRequest;
+import es.uvigo.esei.dai.hybridserver.http.HTTPRequestMethod;
+
+@Tag("request")
+public class HTTPRequestParserTest {
+  private static final String GET_TEXT =
+    "GET /hello HTTP/1.1\r\n"
+    + "Host: localhost\r\n"
+    + "\r\n";
+
+  private static final String POST_TEXT =
+    "POST /html HTTP/1.1\r\n"
+    + "Host: localhost\r\n"
+    + "Content-Type: application/x-www-form-urlencoded\r\n"
+    + "Content-Length: 9\r\n"
+    + "\r\n"
+    + "html=abcd";
+
+  private static byte[] bytes(String text) {
+    return text.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String withContentLength(String value) {
+    return "POST /html HTTP/1.1\r\n"
+      + "Host: localhost\r\n"
+      + "Content-Length: " + value + "\r\n"
+      + "\r\n"
+      + "abcd";
+  }
+
+  @Test
+  public final void testHeadersAreTrimmed() throws Exception {
+    final String text =
+      "GET /hello HTTP/1.1\r\n"
+      + "  Host \t:   localhost  \r\n"
+      + "Accept:text/html\r\n"
+      + "\r\n";
+
+    final HTTPRequest fromBytes = new HTTPRequest(ByteBuffer.wrap(bytes(text)));
+    final HTTPRequest fromReader = new HTTPRequest(new StringReader(text));
+
+    assertThat(fromBytes.getHeaderParameters(), hasEntry("Host", "localhost"));
+    assertThat(fromBytes.getHeaderParameters(), hasEntry("Accept", "text/html"));
+    assertThat(fromBytes.getHeaderParameters(), is(aMapWithSize(2)));
+    assertThat(fromBytes.getHeaderParameters(), is(equalTo(fromReader.getHeaderParameters())));
+  }
+
+  @Test
+  public final void testHeaderNamesIgnoreCase() throws Exception {
+    final HTTPRequest request = new HTTPRequest(ByteBuffer.wrap(bytes(GET_TEXT)));
+
+    assertThat(request.getHeader("host"), is(equalTo("localhost")));
+    assertThat(request.getHeader("HOST"), is(equalTo("localhost")));
+  }
+
+  @Test
+  public final void testHeaderWithoutColon() {
+    final String text =
+      "GET /hello HTTP/1.1\r\n"
+      + "Host localhost\r\n"
+      + "\r\n";
+
+    assertThrows(HTTPParseException.class, () -> new HTTPRequest(ByteBuffer.wrap(bytes(text))));
+  }
+
+  @Test
+  public final void testContentLengthWithWhitespace() throws Exception {
+    final HTTPRequest request = new HTTPRequest(ByteBuffer.wrap(bytes(withContentLength("  4 "))));
+
+    assertThat(request.getContentLength(), is(equalTo(4)));
+    assertThat(request.getContent(), is(equalTo("abcd")));
+  }
+
+  @Test
+  public final void testContentLengthWithPlusSign() throws Exception {
+    final String text = withContentLength("+4");
+
+    assertThat(new HTTPRequest(ByteBuffer.wrap(bytes(text))).getContentLength(), is(equalTo(4)));
+    assertThat(new HTTPRequest(new StringReader(text)).getContentLength(), is(equalTo(4)));
+  }
+
+  @Test
+  public final void testContentLengthNegativeZero() throws Exception {
+    final HTTPRequest request = new HTTPRequest(ByteBuffer.wrap(bytes(withContentLength("-0"))));
+
+    assertThat(request.getContentLength(), is(equalTo(0)));
+  }
+
+  @Test
+  public final void testContentLengthNegative() {
+    final String text = withContentLength("-4");
+
+    assertThrows(HTTPParseException.class, () -> new HTTPRequest(ByteBuffer.wrap(bytes(text))));
+    assertThrows(HTTPParseException.class, () -> new HTTPRequest(new StringReader(text)));
+  }
+
+  @Test
+  public final void testContentLengthInvalid() {
+    for (String value : new String[] { "+", "-", "4x", "0x4", "4 4", "2147483648" }) {
+      final String text = withContentLength(value);
+
+      assertThrows(HTTPParseException.class, () -> new HTTPRequest(ByteBuffer.wrap(bytes(text))), value);
+      assertThrows(HTTPParseException.class, () -> new HTTPRequest(new StringReader(text)), value);
+    }
+  }
+
+  @Test
+  public final void testContentLongerThanAvailable() {
+    assertThrows(HTTPParseException.class, () -> new HTTPRequest(ByteBuffer.wrap(bytes(withContentLength("5")))));
+  }
+
+  @Test
+  public final void testByteArrayIsDecodedLazily() throws Exception {
+    final byte[] bytes = bytes(GET_TEXT);
+    final HTTPRequest request = new HTTPRequest(bytes, 0, bytes.length);
+
+    assertThat(request.getMethod(), is(equalTo(HTTPRequestMethod.GET)));
+
+    // The resource is only decoded when it is requested, and then it is kept
+    bytes[GET_TEXT.indexOf("hello")] = 'j';
+    assertThat(request.getResourceName(), is(equalTo("jello")));
+
+    bytes[GET_TEXT.indexOf("hello")] = 'm';
+    assertThat(request.getResourceName(), is(equalTo("jello")));
+  }
+
+  @Test
+  public final void testByteArrayWithOffset() throws Exception {
+    final byte[] bytes = bytes("garbage" + POST_TEXT + "trailing");
+    final HTTPRequest request = new HTTPRequest(bytes, "garbage".length(), POST_TEXT.length() + "trailing".length());
+
+    assertThat(request.getMethod(), is(equalTo(HTTPRequestMethod.POST)));
+    assertThat(request.getResourceChain(), is(equalTo("/html")));
+    assertThat(request.getContentLength(), is(equalTo(9)));
+    assertThat(request.getResourceParameters(), hasEntry("html", "abcd"));
+    assertThat(request.toString(), is(equalTo(POST_TEXT)));
+  }
+
+  @Test
+  public final void testByteBufferIsDetached() throws Exception {
+    final byte[] bytes = bytes(GET_TEXT);
+    final HTTPRequest request = new HTTPRequest(ByteBuffer.wrap(bytes));
+
+    bytes[GET_TEXT.indexOf("hello")] = 'j';
+    assertThat(request.getResourceName(), is(equalTo("hello")));
+  }
+
+  @Test
+  public final void testByteBufferWithPipelinedRequests() throws Exception {
+    final ByteBuffer buffer = ByteBuffer.wrap(bytes(POST_TEXT + GET_TEXT));
+
+    final HTTPRequest first = new HTTPRequest(buffer);
+    assertThat(buffer.position(), is(equalTo(POST_TEXT.length())));
+
+    final HTTPRequest second = new HTTPRequest(buffer);
+    assertThat(buffer.hasRemaining(), is(false));
+
+    assertThat(first.getMethod(), is(equalTo(HTTPRequestMethod.POST)));
+    assertThat(first.getContent(), is(equalTo("html=abcd")));
+    assertThat(second.getMethod(), is(equalTo(HTTPRequestMethod.GET)));
+    assertThat(second.getResourcePath(), arrayContaining("hello"));
+  }
+
+  @Test
+  public final void testDirectByteBuffer() throws Exception {
+    final byte[] bytes = bytes(POST_TEXT);
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+    buffer.put(bytes).flip();
+
+    final HTTPRequest request = new HTTPRequest(buffer);
+
+    assertThat(buffer.hasRemaining(), is(false));
+    assertThat(request.toString(), is(equalTo(POST_TEXT)));
+  }
+
+  @Test
+  public final void testRepeatedParameterValues() throws Exception {
+    final String text =
+      "POST /html/bulk HTTP/1.1\r\n"
+      + "Host: localhost\r\n"
+      + "Content-Type: application/x-www-form-urlencoded\r\n"
+      + "Content-Length: 27\r\n"
+      + "\r\n"
+      + "html=a+b&uuid=x&html=%C3%B1";
+
+    final HTTPRequest request = new HTTPRequest(ByteBuffer.wrap(bytes(text)));
+
+    assertThat(request.getResourceParameterValues("html"), contains("a b", "ñ"));
+    assertThat(request.getResourceParameterValues("uuid"), contains("x"));
+    assertThat(request.getResourceParameterValues("missing").isEmpty(), is(true));
+  }
+
+}
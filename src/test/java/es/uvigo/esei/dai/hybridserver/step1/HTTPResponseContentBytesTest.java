@@ -0,0 +1,77 @@
+package es.uvigo.esei.dai.hybridserver.step1;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import es.uvigo.esei.dai.hybridserver.http.HTTPHeaders;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponse;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponseStatus;
+import es.uvigo.esei.dai.hybridserver.http.HTTPResponseWriter;
+
+@Tag("response")
+public class HTTPResponseContentBytesTest {
+  // Not valid UTF-8, as a compressed content
+  private static final byte[] BYTES = { 0x1f, (byte) 0x8b, 0x08, 0x00, (byte) 0xff, (byte) 0xfe };
+
+  private HTTPResponse response;
+
+  @BeforeEach
+  public void setUp() {
+    this.response = new HTTPResponse();
+    this.response.setStatus(HTTPResponseStatus.S200);
+    this.response.setVersion(HTTPHeaders.HTTP_1_1.getHeader());
+  }
+
+  @Test
+  public final void testBytesAreNotDecoded() {
+    this.response.putParameter("Content-Encoding", "gzip");
+    this.response.setContentBytes(BYTES);
+
+    assertThat(this.response.getContent(), is(nullValue()));
+    assertThat(this.response.getContentBytes(), is(BYTES));
+    assertThat(this.response.getParameters().get("Content-Length"), is(equalTo("6")));
+  }
+
+  @Test
+  public final void testBytesCannotBePrinted() {
+    this.response.setContentBytes(BYTES);
+
+    assertThrows(IllegalStateException.class, () -> this.response.print(new StringWriter()));
+    assertThrows(IllegalStateException.class, () -> this.response.toString());
+  }
+
+  @Test
+  public final void testBytesAreWrittenUnchanged() throws Exception {
+    this.response.setContentBytes(BYTES);
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final HTTPResponseWriter writer = new HTTPResponseWriter(out);
+    writer.write(this.response);
+    writer.flush();
+
+    final byte[] written = out.toByteArray();
+    assertArrayEquals(BYTES, Arrays.copyOfRange(written, written.length - BYTES.length, written.length));
+  }
+
+  @Test
+  public final void testStringReplacesBytes() throws Exception {
+    this.response.setContentBytes(BYTES);
+    this.response.setContent("Hello World");
+
+    assertThat(this.response.getContentBytes(), is(nullValue()));
+    assertThat(this.response.toString(), is(equalTo("HTTP/1.1 200 OK\r\nContent-Length: 11\r\n\r\nHello World")));
+  }
+
+}
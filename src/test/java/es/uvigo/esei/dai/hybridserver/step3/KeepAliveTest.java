@@ -0,0 +1,135 @@
+package es.uvigo.esei.dai.hybridserver.step3;
+
+import static es.uvigo.esei.dai.hybridserver.utils.HTTPConnection.get;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Properties;
+
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import es.uvigo.esei.dai.hybridserver.HybridServer;
+import es.uvigo.esei.dai.hybridserver.utils.HTTPConnection;
+import es.uvigo.esei.dai.hybridserver.utils.HTTPConnection.Response;
+
+@Timeout(5L)
+public class KeepAliveTest {
+  private static final int PORT = 9302;
+
+  // Only the welcome page is requested, so the database is never reached
+  private HybridServer startServer(String engine, int timeout, int maxRequests) {
+    final Properties properties = new Properties();
+    properties.setProperty("port", Integer.toString(PORT));
+    properties.setProperty("server.engine", engine);
+    properties.setProperty("http.keepAlive.timeout", Integer.toString(timeout));
+    properties.setProperty("http.keepAlive.maxRequests", Integer.toString(maxRequests));
+    properties.setProperty("db.url", "jdbc:mysql://localhost/hstestdb");
+    properties.setProperty("db.pool.minSize", "0");
+    properties.setProperty("cache.negative.maxEntries", "0");
+
+    final HybridServer server = new HybridServer(properties);
+    server.start();
+
+    return server;
+  }
+
+  private static void assertWelcome(Response response) {
+    assertThat(response.getStatus(), is(equalTo(200)));
+    assertThat(response.getContent(), containsString("Hybrid Server"));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = { "blocking", "nio" })
+  public void testConnectionKeptOpen(String engine) throws Exception {
+    try (HybridServer server = startServer(engine, 3000, 10);
+      HTTPConnection connection = new HTTPConnection(PORT)) {
+
+      for (int i = 1; i <= 3; i++) {
+        connection.send(get("/"));
+
+        final Response response = connection.receive();
+        assertWelcome(response);
+        assertThat(response.getHeader("Connection"), is(equalTo("keep-alive")));
+        assertThat(response.getHeader("Keep-Alive"), is(equalTo("timeout=3, max=" + (10 - i))));
+      }
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = { "blocking", "nio" })
+  public void testConnectionClosedByClient(String engine) throws Exception {
+    try (HybridServer server = startServer(engine, 3000, 10);
+      HTTPConnection connection = new HTTPConnection(PORT)) {
+
+      connection.send(get("/"));
+      assertWelcome(connection.receive());
+
+      connection.send(get("/", "Connection: close"));
+      final Response response = connection.receive();
+
+      assertWelcome(response);
+      assertThat(response.getHeader("Connection"), is(equalTo("close")));
+      assertThat(connection.isClosedByServer(), is(true));
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = { "blocking", "nio" })
+  public void testConnectionClosedAfterMaxRequests(String engine) throws Exception {
+    try (HybridServer server = startServer(engine, 3000, 2)) {
+      try (HTTPConnection connection = new HTTPConnection(PORT)) {
+        connection.send(get("/"));
+        assertThat(connection.receive().getHeader("Keep-Alive"), is(equalTo("timeout=3, max=1")));
+
+        connection.send(get("/"));
+        final Response response = connection.receive();
+
+        assertWelcome(response);
+        assertThat(response.getHeader("Connection"), is(equalTo("close")));
+        assertThat(connection.isClosedByServer(), is(true));
+      }
+
+      // The limit is per connection
+      try (HTTPConnection connection = new HTTPConnection(PORT)) {
+        connection.send(get("/"));
+        assertThat(connection.receive().getHeader("Connection"), is(equalTo("keep-alive")));
+      }
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = { "blocking", "nio" })
+  public void testIdleConnectionClosed(String engine) throws Exception {
+    try (HybridServer server = startServer(engine, 500, 10);
+      HTTPConnection connection = new HTTPConnection(PORT)) {
+
+      connection.send(get("/"));
+      assertWelcome(connection.receive());
+
+      final long start = System.currentTimeMillis();
+      assertThat(connection.isClosedByServer(), is(true));
+      assertThat(System.currentTimeMillis() - start, is(greaterThanOrEqualTo(400L)));
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = { "blocking", "nio" })
+  public void testIdleTimeoutRestartsWithEveryRequest(String engine) throws Exception {
+    try (HybridServer server = startServer(engine, 1000, 10);
+      HTTPConnection connection = new HTTPConnection(PORT)) {
+
+      // The connection lives longer than the timeout while it is used
+      for (int i = 0; i < 4; i++) {
+        connection.send(get("/"));
+        assertWelcome(connection.receive());
+        Thread.sleep(400);
+      }
+    }
+  }
+
+}
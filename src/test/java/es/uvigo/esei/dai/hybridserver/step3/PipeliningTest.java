@@ -0,0 +1,127 @@
+package es.uvigo.esei.dai.hybridserver.step3;
+
+import static es.uvigo.esei.dai.hybridserver.utils.HTTPConnection.get;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Properties;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import es.uvigo.esei.dai.hybridserver.HybridServer;
+import es.uvigo.esei.dai.hybridserver.utils.BlockingDriver;
+import es.uvigo.esei.dai.hybridserver.utils.HTTPConnection;
+import es.uvigo.esei.dai.hybridserver.utils.HTTPConnection.Response;
+
+@Timeout(5L)
+public class PipeliningTest {
+  private static final int PORT = 9303;
+  private static final String PAGE = "/html?uuid=6df1047e-cf19-4a83-8cf3-38f5e53f7725";
+
+  private BlockingDriver database;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    this.database = new BlockingDriver();
+  }
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    this.database.close();
+  }
+
+  // The pages wait for the database until it is released, and then fail
+  private HybridServer startServer(String engine) {
+    final Properties properties = new Properties();
+    properties.setProperty("port", Integer.toString(PORT));
+    properties.setProperty("server.engine", engine);
+    properties.setProperty("server.pipeline.threads", "4");
+    properties.setProperty("db.url", this.database.getUrl());
+    properties.setProperty("db.pool.minSize", "0");
+    properties.setProperty("cache.negative.maxEntries", "0");
+
+    final HybridServer server = new HybridServer(properties);
+    server.start();
+
+    return server;
+  }
+
+  private static void assertWelcome(Response response) {
+    assertThat(response.getStatus(), is(equalTo(200)));
+    assertThat(response.getContent(), containsString("Hybrid Server"));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = { "blocking", "nio" })
+  public void testPipelinedRequests(String engine) throws Exception {
+    try (HybridServer server = startServer(engine);
+      HTTPConnection connection = new HTTPConnection(PORT)) {
+
+      connection.send(get("/") + get("/") + get("/") + get("/", "Connection: close"));
+
+      for (int i = 0; i < 3; i++) {
+        assertWelcome(connection.receive());
+      }
+      final Response last = connection.receive();
+      assertWelcome(last);
+      assertThat(last.getHeader("Connection"), is(equalTo("close")));
+      assertThat(connection.isClosedByServer(), is(true));
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = { "blocking", "nio" })
+  public void testResponsesInRequestOrder(String engine) throws Exception {
+    try (HybridServer server = startServer(engine);
+      HTTPConnection connection = new HTTPConnection(PORT)) {
+
+      // The welcome page is ready at once, but it must wait for the page requested before it
+      connection.send(get(PAGE) + get("/"));
+      assertThat(this.database.awaitConnecting(), is(true));
+      Thread.sleep(200);
+      assertThat(connection.hasInput(), is(false));
+
+      this.database.release();
+      assertThat(connection.receive().getStatus(), is(equalTo(500)));
+      assertWelcome(connection.receive());
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = { "blocking", "nio" })
+  public void testRequestsAfterCloseIgnored(String engine) throws Exception {
+    try (HybridServer server = startServer(engine);
+      HTTPConnection connection = new HTTPConnection(PORT)) {
+
+      connection.send(get("/") + get("/", "Connection: close") + get("/"));
+
+      assertWelcome(connection.receive());
+      assertWelcome(connection.receive());
+      assertThat(connection.isClosedByServer(), is(true));
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = { "blocking", "nio" })
+  public void testRequestSplitAcrossWrites(String engine) throws Exception {
+    try (HybridServer server = startServer(engine);
+      HTTPConnection connection = new HTTPConnection(PORT)) {
+
+      final String second = get("/", "Connection: close");
+      connection.send(get("/") + second.substring(0, 10));
+      assertWelcome(connection.receive());
+
+      Thread.sleep(100);
+      connection.send(second.substring(10));
+      assertWelcome(connection.receive());
+      assertThat(connection.isClosedByServer(), is(true));
+    }
+  }
+
+}
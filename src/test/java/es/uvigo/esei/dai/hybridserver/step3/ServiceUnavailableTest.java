@@ -0,0 +1,124 @@
+package es.uvigo.esei.dai.hybridserver.step3;
+
+import static es.uvigo.esei.dai.hybridserver.utils.HTTPConnection.get;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Properties;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import es.uvigo.esei.dai.hybridserver.HybridServer;
+import es.uvigo.esei.dai.hybridserver.utils.BlockingDriver;
+import es.uvigo.esei.dai.hybridserver.utils.HTTPConnection;
+import es.uvigo.esei.dai.hybridserver.utils.HTTPConnection.Response;
+
+@Timeout(5L)
+public class ServiceUnavailableTest {
+  private static final int PORT = 9301;
+  private static final String PAGE = "/html?uuid=6df1047e-cf19-4a83-8cf3-38f5e53f7725";
+
+  private BlockingDriver database;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    this.database = new BlockingDriver();
+  }
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    this.database.close();
+  }
+
+  // A single worker, kept busy by a request that waits for the database
+  private HybridServer startServer(String engine, int capacity, long maxWait) {
+    final Properties properties = new Properties();
+    properties.setProperty("port", Integer.toString(PORT));
+    properties.setProperty("numClients", "1");
+    properties.setProperty("server.engine", engine);
+    properties.setProperty("server.queue.capacity", Integer.toString(capacity));
+    properties.setProperty("server.queue.maxWait", Long.toString(maxWait));
+    properties.setProperty("server.retryAfter", "7");
+    properties.setProperty("db.url", this.database.getUrl());
+    properties.setProperty("db.pool.minSize", "0");
+    properties.setProperty("cache.negative.maxEntries", "0");
+
+    final HybridServer server = new HybridServer(properties);
+    server.start();
+
+    return server;
+  }
+
+  private HTTPConnection busyWorker() throws Exception {
+    final HTTPConnection connection = new HTTPConnection(PORT);
+    connection.send(get(PAGE, "Connection: close"));
+    assertThat(this.database.awaitConnecting(), is(true));
+
+    return connection;
+  }
+
+  private static void assertServiceUnavailable(HTTPConnection connection) throws Exception {
+    final Response response = connection.receive();
+
+    assertThat(response.getStatus(), is(equalTo(503)));
+    assertThat(response.getHeader("Retry-After"), is(equalTo("7")));
+    assertThat(response.getHeader("Connection"), is(equalTo("close")));
+    assertThat(connection.isClosedByServer(), is(true));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = { "blocking", "nio" })
+  public void testRejectedWhenQueueFull(String engine) throws Exception {
+    try (HybridServer server = startServer(engine, 0, 0);
+      HTTPConnection busy = busyWorker();
+      HTTPConnection rejected = new HTTPConnection(PORT)) {
+
+      rejected.send(get("/"));
+      assertServiceUnavailable(rejected);
+
+      this.database.release();
+      assertThat(busy.receive().getStatus(), is(equalTo(500)));
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = { "blocking", "nio" })
+  public void testRejectedAfterMaxWait(String engine) throws Exception {
+    try (HybridServer server = startServer(engine, 1, 300);
+      HTTPConnection busy = busyWorker();
+      HTTPConnection queued = new HTTPConnection(PORT)) {
+
+      final long start = System.currentTimeMillis();
+      queued.send(get("/"));
+      assertServiceUnavailable(queued);
+      assertThat(System.currentTimeMillis() - start, is(greaterThanOrEqualTo(250L)));
+
+      this.database.release();
+      assertThat(busy.receive().getStatus(), is(equalTo(500)));
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = { "blocking", "nio" })
+  public void testQueuedClientServedWhenWorkerFree(String engine) throws Exception {
+    try (HybridServer server = startServer(engine, 1, 0);
+      HTTPConnection busy = busyWorker();
+      HTTPConnection queued = new HTTPConnection(PORT)) {
+
+      queued.send(get("/", "Connection: close"));
+      Thread.sleep(200);
+      assertThat(queued.hasInput(), is(false));
+
+      this.database.release();
+      assertThat(busy.receive().getStatus(), is(equalTo(500)));
+      assertThat(queued.receive().getStatus(), is(equalTo(200)));
+    }
+  }
+
+}
@@ -0,0 +1,103 @@
+package es.uvigo.esei.dai.hybridserver.utils;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLNonTransientConnectionException;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * JDBC driver whose connections never open: every attempt blocks until the driver is released and
+ * then fails. A request that reaches the database keeps its worker busy for as long as the test needs.
+ */
+public class BlockingDriver implements Driver, AutoCloseable {
+  private static final AtomicInteger DATABASES = new AtomicInteger();
+
+  private final String url = "jdbc:blocking:" + DATABASES.incrementAndGet();
+  private final Semaphore connecting = new Semaphore(0);
+  private final CountDownLatch released = new CountDownLatch(1);
+
+  public BlockingDriver() throws SQLException {
+    DriverManager.registerDriver(this);
+  }
+
+  public String getUrl() {
+    return this.url;
+  }
+
+  /**
+   * Waits until a connection is being opened.
+   *
+   * @return true if a connection is being opened, false if none was before the timeout.
+   * @throws InterruptedException if the thread is interrupted while waiting.
+   */
+  public boolean awaitConnecting() throws InterruptedException {
+    return this.connecting.tryAcquire(4, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Lets the pending and the following connection attempts fail.
+   */
+  public void release() {
+    this.released.countDown();
+  }
+
+  @Override
+  public void close() throws SQLException {
+    release();
+    DriverManager.deregisterDriver(this);
+  }
+
+  @Override
+  public Connection connect(String url, Properties info) throws SQLException {
+    if (!acceptsURL(url)) {
+      return null;
+    }
+
+    this.connecting.release();
+    try {
+      this.released.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    throw new SQLNonTransientConnectionException("Database unavailable", "08001");
+  }
+
+  @Override
+  public boolean acceptsURL(String url) {
+    return this.url.equals(url);
+  }
+
+  @Override
+  public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+    return new DriverPropertyInfo[0];
+  }
+
+  @Override
+  public int getMajorVersion() {
+    return 1;
+  }
+
+  @Override
+  public int getMinorVersion() {
+    return 0;
+  }
+
+  @Override
+  public boolean jdbcCompliant() {
+    return false;
+  }
+
+  @Override
+  public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    throw new SQLFeatureNotSupportedException();
+  }
+}
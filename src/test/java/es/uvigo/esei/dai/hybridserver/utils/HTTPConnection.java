@@ -0,0 +1,146 @@
+package es.uvigo.esei.dai.hybridserver.utils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Raw HTTP/1.1 connection to a server, to send several requests through the same socket
+ * (persistent connections and pipelining) and read the responses one by one.
+ */
+public class HTTPConnection implements AutoCloseable {
+  private static final int READ_TIMEOUT = 4000;
+
+  private final Socket socket;
+  private final InputStream input;
+
+  public HTTPConnection(int port) throws IOException {
+    this.socket = new Socket("localhost", port);
+    this.socket.setSoTimeout(READ_TIMEOUT);
+    this.input = new BufferedInputStream(this.socket.getInputStream());
+  }
+
+  public static String get(String path, String... headers) {
+    final StringBuilder request = new StringBuilder("GET ").append(path).append(" HTTP/1.1\r\n")
+      .append("Host: localhost\r\n");
+    for (String header : headers) {
+      request.append(header).append("\r\n");
+    }
+
+    return request.append("\r\n").toString();
+  }
+
+  public void send(String requests) throws IOException {
+    this.socket.getOutputStream().write(requests.getBytes(StandardCharsets.UTF_8));
+    this.socket.getOutputStream().flush();
+  }
+
+  public Response receive() throws IOException {
+    final String statusLine = readLine();
+    if (statusLine == null) {
+      throw new EOFException("Connection closed by the server");
+    }
+
+    final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    for (String line = readLine(); line != null && !line.isEmpty(); line = readLine()) {
+      final int colon = line.indexOf(':');
+      headers.put(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+    }
+
+    final ByteArrayOutputStream content = new ByteArrayOutputStream();
+    if ("chunked".equalsIgnoreCase(headers.get("Transfer-Encoding"))) {
+      for (int size = chunkSize(); size > 0; size = chunkSize()) {
+        content.write(readBytes(size));
+        readLine();
+      }
+      readLine();
+    } else if (headers.containsKey("Content-Length")) {
+      content.write(readBytes(Integer.parseInt(headers.get("Content-Length"))));
+    }
+
+    return new Response(Integer.parseInt(statusLine.split(" ")[1]), headers,
+      new String(content.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Waits until the server closes the connection.
+   *
+   * @return true if the server closed the connection without sending anything else.
+   * @throws IOException if the server does not close it before the read timeout.
+   */
+  public boolean isClosedByServer() throws IOException {
+    return this.input.read() == -1;
+  }
+
+  public boolean hasInput() throws IOException {
+    return this.input.available() > 0;
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.socket.close();
+  }
+
+  private int chunkSize() throws IOException {
+    final String line = readLine();
+    return Integer.parseInt(line.split(";")[0].trim(), 16);
+  }
+
+  private byte[] readBytes(int length) throws IOException {
+    final byte[] bytes = new byte[length];
+    int read = 0;
+    while (read < length) {
+      final int count = this.input.read(bytes, read, length - read);
+      if (count == -1) {
+        throw new EOFException("Connection closed by the server");
+      }
+      read += count;
+    }
+
+    return bytes;
+  }
+
+  private String readLine() throws IOException {
+    final StringBuilder line = new StringBuilder();
+    int c;
+    while ((c = this.input.read()) != -1) {
+      if (c == '\n') {
+        final int length = line.length();
+        return length > 0 && line.charAt(length - 1) == '\r' ? line.substring(0, length - 1) : line.toString();
+      }
+      line.append((char) c);
+    }
+
+    return line.length() == 0 ? null : line.toString();
+  }
+
+  public static class Response {
+    private final int status;
+    private final Map<String, String> headers;
+    private final String content;
+
+    private Response(int status, Map<String, String> headers, String content) {
+      this.status = status;
+      this.headers = headers;
+      this.content = content;
+    }
+
+    public int getStatus() {
+      return this.status;
+    }
+
+    public String getHeader(String name) {
+      return this.headers.get(name);
+    }
+
+    public String getContent() {
+      return this.content;
+    }
+  }
+}